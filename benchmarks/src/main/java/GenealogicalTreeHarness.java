@@ -0,0 +1,325 @@
+import bench.TreeHarness;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * This class implements {@link TreeHarness} over a {@link GenealogicalTree} that is generated by {@link SyntheticTree}.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+public class GenealogicalTreeHarness implements TreeHarness {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The number of candidates that are tried for every pair that is sampled, before giving up.
+     */
+    private static final int ATTEMPTS_PER_SAMPLE = 1000;
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The generated synthetic tree.
+     */
+    private SyntheticTree synthetic;
+
+    /**
+     * The genealogical tree with the people and relations of {@link GenealogicalTreeHarness#synthetic}.
+     */
+    private GenealogicalTree tree;
+
+    /**
+     * The journaled tree, opened by {@link GenealogicalTreeHarness#openJournal(Path)}.
+     */
+    private GenealogicalTree journaled;
+
+    /**
+     * The number of people that have been added to {@link GenealogicalTreeHarness#journaled}.
+     */
+    private int appended;
+
+    // ######################### METHODS #########################
+
+    @Override
+    public void generate(long seed, int size, int depth, double fertility, double marriageRate, String storage) {
+        synthetic = new SyntheticTree(seed, size, depth, fertility, marriageRate);
+        try {
+            tree = synthetic.toTree(switch (storage) {
+                case "heap" -> new GenealogicalTree();
+                case "off-heap" -> GenealogicalTree.offHeap();
+                case "mapped" -> {
+                    Path file = Files.createTempFile("people", ".bin");
+                    file.toFile().deleteOnExit();
+                    yield GenealogicalTree.offHeap(file);
+                }
+                default -> throw new IllegalArgumentException("Unknown storage: " + storage);
+            });
+        } catch (PersonNotFoundException | IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String[][] samplePairs(String branch, int count, long seed) {
+        Random random = new Random(seed);
+        List<String[]> pairs = new ArrayList<>();
+        try {
+            for (int attempt = 0; pairs.size() < count && attempt < count * ATTEMPTS_PER_SAMPLE; attempt++) {
+                Person person = tree.findPerson(synthetic.name(randomDescendant(random)));
+                Person other = switch (branch) {
+                    case "parent" -> person.getFather();
+                    case "sibling" -> pick(random, person.findSiblings());
+                    case "cousin" -> pick(random, person.findCousins());
+                    case "nephew" -> pick(random, person.findUnclesAndAunts());
+                    case "unrelated" -> tree.findPerson(synthetic.name(randomDescendant(random)));
+                    default -> throw new IllegalArgumentException("Unknown branch: " + branch);
+                };
+                if (other == null) continue;
+                String[] pair = branch.equals("parent")
+                        ? new String[]{other.getName(), person.getName()}
+                        : new String[]{person.getName(), other.getName()};
+                if (isBranch(branch, tree.findRelation(pair[0], pair[1]))) pairs.add(pair);
+            }
+        } catch (PersonNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+        if (pairs.size() < count) throw new IllegalStateException("Not enough " + branch + " pairs in the tree.");
+        return pairs.toArray(new String[0][]);
+    }
+
+    @Override
+    public String[] sampleNames(int count, long seed) {
+        Random random = new Random(seed);
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) names[i] = synthetic.name(randomDescendant(random));
+        return names;
+    }
+
+    @Override
+    public Object findPerson(String name) throws PersonNotFoundException {
+        return tree.findPerson(name);
+    }
+
+    @Override
+    public Object findRelation(String name1, String name2) throws PersonNotFoundException {
+        return tree.findRelation(name1, name2);
+    }
+
+    @Override
+    public double relationshipCoefficient(String name1, String name2) throws PersonNotFoundException {
+        return tree.findRelationshipCoefficient(name1, name2);
+    }
+
+    @Override
+    public void saveInbreeding(Path file) throws IOException {
+        tree.exportInbreedingToCsv(file);
+    }
+
+    @Override
+    public void setMetricsEnabled(boolean enabled) {
+        tree.setMetricsEnabled(enabled);
+    }
+
+    @Override
+    public int validate() {
+        return tree.validate().getProblems().size();
+    }
+
+    @Override
+    public void addChild(String parent, String child) throws PersonNotFoundException {
+        tree.addPerson(child, Gender.WOMAN);
+        tree.addRelation(parent, child, tree.findPerson(parent).getGender() == Gender.MAN ? Relation.FATHER : Relation.MOTHER);
+    }
+
+    @Override
+    public Object findKinship(String name1, String name2) throws PersonNotFoundException {
+        return tree.findKinship(name1, name2);
+    }
+
+    @Override
+    public Object findConnection(String name1, String name2) throws PersonNotFoundException {
+        return tree.findConnection(name1, name2);
+    }
+
+    @Override
+    public boolean isAncestor(String ancestor, String descendant) throws PersonNotFoundException {
+        return tree.isAncestor(ancestor, descendant);
+    }
+
+    @Override
+    public long countDescendants(String name) throws PersonNotFoundException {
+        return tree.findDescendants(name).count();
+    }
+
+    @Override
+    public Object findRelatives(String name, String kind) throws PersonNotFoundException {
+        if (kind.equals("all")) return tree.findRelatives(name).toMap();
+        if (kind.equals("firstCousin")) return tree.findRelatives(name).stream(Relation.COUSIN).findFirst();
+        Person person = tree.findPerson(name);
+        return switch (kind) {
+            case "allSeparately" -> List.of(person.getFather() == null ? Set.of() : Set.of(person.getFather()),
+                    person.getMother() == null ? Set.of() : Set.of(person.getMother()),
+                    person.getSpouse() == null ? Set.of() : Set.of(person.getSpouse()), person.getChildren(),
+                    person.findSiblings(), person.findGrandparents(), person.findGrandchildren(),
+                    person.findUnclesAndAunts(), person.findCousins(), person.findNephewsAndNieces());
+            case "siblings" -> person.findSiblings();
+            case "grandparents" -> person.findGrandparents();
+            case "grandchildren" -> person.findGrandchildren();
+            case "unclesAndAunts" -> person.findUnclesAndAunts();
+            case "cousins" -> person.findCousins();
+            case "nephewsAndNieces" -> person.findNephewsAndNieces();
+            default -> throw new IllegalArgumentException("Unknown kind of relatives: " + kind);
+        };
+    }
+
+    @Override
+    public void writeCsv(Path file) throws IOException {
+        synthetic.writeCsv(file);
+    }
+
+    @Override
+    public long loadCsv(Path file, int threads) throws Exception {
+        return new CsvTreeLoader(new GenealogicalTree(), threads, CsvTreeLoader.DEFAULT_CHUNK_SIZE).load(file);
+    }
+
+    @Override
+    public void writeCsv(Path[] files) throws IOException {
+        synthetic.writeCsv(files);
+    }
+
+    @Override
+    public long mergeCsv(Path[] files, int threads) throws Exception {
+        return new CsvTreeMerger(new GenealogicalTree(), NameCollation.IGNORE_CASE_AND_ACCENTS, true, true, threads,
+                CsvTreeLoader.DEFAULT_CHUNK_SIZE).merge(List.of(files)).getRows();
+    }
+
+    @Override
+    public long saveGedcom(Path file) throws IOException {
+        return tree.exportToGedcom(file);
+    }
+
+    @Override
+    public long loadGedcom(Path file) throws Exception {
+        return new GedcomTreeLoader(new GenealogicalTree()).load(file);
+    }
+
+    @Override
+    public void writeSnapshot(Path file) throws IOException {
+        tree.saveSnapshot(file);
+    }
+
+    @Override
+    public Object loadSnapshot(Path file) throws IOException {
+        GenealogicalTree loaded = new GenealogicalTree();
+        loaded.loadSnapshot(file);
+        return loaded;
+    }
+
+    @Override
+    public Object findRelationInSnapshot(Path file, String name1, String name2) throws Exception {
+        return GenealogicalTree.openSnapshot(file).findRelation(name1, name2);
+    }
+
+    @Override
+    public void openJournal(Path directory) throws Exception {
+        Path csv = Files.createTempFile("tree", ".csv");
+        try {
+            synthetic.writeCsv(csv);
+            journaled = new GenealogicalTree();
+            journaled.openJournal(directory);
+            new CsvTreeLoader(journaled).load(csv);
+            journaled.compactJournal().join();
+            appended = 0;
+        } finally {
+            Files.deleteIfExists(csv);
+        }
+    }
+
+    @Override
+    public int appendToJournal(int count) throws Exception {
+        for (int i = 0; i < count; i++, appended++) {
+            String name = "journaled" + appended;
+            journaled.addPerson(name, Gender.values()[appended & 1]);
+            journaled.addRelation(synthetic.name(appended % synthetic.size()), name, Relation.FATHER);
+        }
+        journaled.commitJournal();
+        return count * 2;
+    }
+
+    @Override
+    public void closeJournal() throws IOException {
+        journaled.closeJournal();
+    }
+
+    @Override
+    public Object peopleInOrder() {
+        return tree.getPeopleInOrder();
+    }
+
+    @Override
+    public Object peoplePage(String after, int limit) {
+        return tree.getPeopleInOrder(after, limit);
+    }
+
+    @Override
+    public Object peopleByPrefix(String prefix, int limit) {
+        return tree.findPeopleByPrefix(prefix, null, limit);
+    }
+
+    @Override
+    public void savePeopleInOrder(Path file) throws IOException {
+        GenealogicalTreeApp.writePeopleInOrder(tree, file.toFile());
+    }
+
+    @Override
+    public void saveTree(Path file) throws IOException {
+        tree.exportToCsv(file, true);
+    }
+
+    /**
+     * Picks a random person of the third generation or later, who may have grandparents.
+     *
+     * @param random the random number generator.
+     * @return the index of the person in the synthetic tree.
+     */
+    private int randomDescendant(Random random) {
+        int from = synthetic.size() > 2 ? Math.min(synthetic.generationStart(2), synthetic.size() - 1) : 0;
+        return from + random.nextInt(synthetic.size() - from);
+    }
+
+    /**
+     * Picks a random person from a set.
+     *
+     * @param random the random number generator.
+     * @param people the set of people.
+     * @return the person that was picked, or {@code null} if the set is empty.
+     */
+    private static Person pick(Random random, Set<Person> people) {
+        if (people.isEmpty()) return null;
+        return people.stream().skip(random.nextInt(people.size())).findFirst().orElseThrow();
+    }
+
+    /**
+     * Checks if a relation is the result of the specified branch of {@link GenealogicalTree#findRelation}.
+     *
+     * @param branch   the branch.
+     * @param relation the relation.
+     * @return {@code true} if the relation belongs to the branch, {@code false} otherwise.
+     */
+    private static boolean isBranch(String branch, Relation relation) {
+        return switch (branch) {
+            case "parent" -> relation == Relation.FATHER || relation == Relation.MOTHER;
+            case "sibling" -> relation == Relation.BROTHER || relation == Relation.SISTER;
+            case "cousin" -> relation == Relation.COUSIN;
+            case "nephew" -> relation == Relation.NEPHEW || relation == Relation.NIECE;
+            default -> relation == Relation.UNRELATED;
+        };
+    }
+}
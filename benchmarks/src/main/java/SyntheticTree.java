@@ -0,0 +1,329 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * This class represents a synthetic genealogical tree, generated from a seed, for use in benchmarks.
+ * <p>
+ * The tree is generated one generation at a time. The people of each generation marry each other with the specified
+ * marriage rate, and every couple has a number of children drawn from a Poisson distribution with the specified
+ * fertility as its mean. The children form the next generation; if there are not enough of them, the generation is
+ * topped up with founders that have no parents in the tree. The same seed and parameters always produce the same tree.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+public class SyntheticTree {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The first names given to the generated people.
+     */
+    private static final String[] FIRST_NAMES = {
+            "Aegon", "Alysanne", "Arya", "Brandon", "Catelyn", "Cersei", "Daenerys", "Davos", "Edmure", "Elia",
+            "Gendry", "Jaime", "Joanna", "Lyanna", "Margaery", "Myrcella", "Olenna", "Renly", "Rhaenys", "Robert",
+            "Sansa", "Selyse", "Shireen", "Stannis", "Steffon", "Tommen", "Tywin", "Viserys", "Walder", "Ygritte"
+    };
+
+    /**
+     * The houses given to the generated people.
+     */
+    private static final String[] HOUSES = {
+            "Arryn", "Baratheon", "Estermont", "Frey", "Greyjoy", "Lannister", "Martell", "Stark", "Targaryen", "Tully",
+            "Tyrell"
+    };
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The name of each person.
+     */
+    private final String[] names;
+
+    /**
+     * Whether each person is a man.
+     */
+    private final boolean[] men;
+
+    /**
+     * The index of the father of each person, or -1.
+     */
+    private final int[] fathers;
+
+    /**
+     * The index of the mother of each person, or -1.
+     */
+    private final int[] mothers;
+
+    /**
+     * The index of the spouse of each person, or -1.
+     */
+    private final int[] spouses;
+
+    /**
+     * The index of the first person of each generation, followed by the number of people.
+     */
+    private final int[] generationStarts;
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link SyntheticTree} class, that generates the tree.
+     *
+     * @param seed         the seed of the random number generator.
+     * @param size         the number of people in the tree.
+     * @param depth        the number of generations in the tree.
+     * @param fertility    the mean number of children of each couple.
+     * @param marriageRate the probability that a person of each generation is married.
+     */
+    public SyntheticTree(long seed, int size, int depth, double fertility, double marriageRate) {
+        if (size < 1 || depth < 1) throw new IllegalArgumentException("Size and depth must be positive.");
+        names = new String[size];
+        men = new boolean[size];
+        fathers = new int[size];
+        mothers = new int[size];
+        spouses = new int[size];
+        generationStarts = new int[depth + 1];
+
+        Random random = new Random(seed);
+        int perGeneration = (int) Math.ceil((double) size / depth);
+        int next = 0;
+        for (int generation = 0; generation < depth; generation++) {
+            generationStarts[generation] = next;
+            int target = generation == depth - 1 ? size - next : Math.min(perGeneration, size - next);
+            int end = next + target;
+            if (generation > 0) next = addChildren(random, generationStarts[generation - 1], next, end, fertility);
+            while (next < end) addPerson(random, next++, -1, -1);
+            marry(random, generationStarts[generation], end, marriageRate);
+        }
+        generationStarts[depth] = size;
+    }
+
+    // ####################### METHODS #######################
+
+    /**
+     * Adds the children of the couples of the previous generation, until the generation reaches its target size.
+     *
+     * @param random    the random number generator.
+     * @param from      the index of the first person of the previous generation.
+     * @param next      the index of the first child.
+     * @param end       the index after the last person of the generation.
+     * @param fertility the mean number of children of each couple.
+     * @return the index after the last child that was added.
+     */
+    private int addChildren(Random random, int from, int next, int end, double fertility) {
+        double limit = Math.exp(-fertility);
+        for (int parent = from; parent < next && next < end; parent++) {
+            if (!men[parent] || spouses[parent] < 0) continue;
+            for (int count = poisson(random, limit); count > 0 && next < end; count--) {
+                addPerson(random, next++, parent, spouses[parent]);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Marries the people of a generation to each other, each man with the next unmarried woman.
+     *
+     * @param random       the random number generator.
+     * @param from         the index of the first person of the generation.
+     * @param to           the index after the last person of the generation.
+     * @param marriageRate the probability that a person is married.
+     */
+    private void marry(Random random, int from, int to, double marriageRate) {
+        int woman = from;
+        for (int man = from; man < to; man++) {
+            if (!men[man] || random.nextDouble() >= marriageRate) continue;
+            while (woman < to && (men[woman] || spouses[woman] >= 0 || random.nextDouble() >= marriageRate)) woman++;
+            if (woman == to) return;
+            spouses[man] = woman;
+            spouses[woman] = man;
+        }
+    }
+
+    /**
+     * Adds a person with a random name and gender.
+     *
+     * @param random the random number generator.
+     * @param index  the index of the person.
+     * @param father the index of the person's father, or -1.
+     * @param mother the index of the person's mother, or -1.
+     */
+    private void addPerson(Random random, int index, int father, int mother) {
+        names[index] = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+                + HOUSES[random.nextInt(HOUSES.length)] + " " + index;
+        men[index] = random.nextBoolean();
+        fathers[index] = father;
+        mothers[index] = mother;
+        spouses[index] = -1;
+    }
+
+    /**
+     * Draws a number from a Poisson distribution.
+     *
+     * @param random the random number generator.
+     * @param limit  {@code e} raised to the negated mean of the distribution.
+     * @return the number that was drawn.
+     */
+    private static int poisson(Random random, double limit) {
+        int count = 0;
+        for (double product = random.nextDouble(); product > limit; product *= random.nextDouble()) count++;
+        return count;
+    }
+
+    /**
+     * Creates a genealogical tree with the people and relations of the synthetic tree.
+     *
+     * @return the genealogical tree.
+     * @throws PersonNotFoundException never, since every relation refers to people of the tree.
+     */
+    public GenealogicalTree toTree() throws PersonNotFoundException {
+        return toTree(new GenealogicalTree());
+    }
+
+    /**
+     * Adds the people and relations of the synthetic tree to an empty genealogical tree.
+     *
+     * @param tree the empty genealogical tree.
+     * @return the genealogical tree.
+     * @throws PersonNotFoundException never, since every relation refers to people of the tree.
+     */
+    public GenealogicalTree toTree(GenealogicalTree tree) throws PersonNotFoundException {
+        for (int i = 0; i < names.length; i++) tree.addPerson(names[i], men[i] ? Gender.MAN : Gender.WOMAN);
+        for (int i = 0; i < names.length; i++) {
+            if (fathers[i] >= 0) tree.addRelation(names[fathers[i]], names[i], Relation.FATHER);
+            if (mothers[i] >= 0) tree.addRelation(names[mothers[i]], names[i], Relation.MOTHER);
+            if (spouses[i] >= 0) tree.addRelation(names[i], names[spouses[i]], men[i] ? Relation.HUSBAND : Relation.WIFE);
+        }
+        tree.compact();
+        return tree;
+    }
+
+    /**
+     * Writes the synthetic tree to a file, in the CSV format read by {@link GenealogicalTreeApp}.
+     *
+     * @param file the file to write to.
+     * @throws IOException if the file cannot be written.
+     */
+    public void writeCsv(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < names.length; i++) writePerson(writer, i);
+            for (int i = 0; i < names.length; i++) writeRelations(writer, i);
+        }
+    }
+
+    /**
+     * Writes the synthetic tree to several files, like regional archives that overlap, in the CSV format read by
+     * {@link GenealogicalTreeApp}. The people are split into consecutive ranges, one per file, and every fifth person
+     * is also written to the next file, so about a fifth of the rows of people are duplicates. Each person is written
+     * with the relations that give them their father, mother and spouse, which may name people of other files.
+     *
+     * @param files the files to write to.
+     * @throws IOException if a file cannot be written.
+     */
+    public void writeCsv(Path[] files) throws IOException {
+        BufferedWriter[] writers = new BufferedWriter[files.length];
+        try {
+            for (int f = 0; f < files.length; f++) {
+                writers[f] = Files.newBufferedWriter(files[f], StandardCharsets.UTF_8);
+            }
+            for (int i = 0; i < names.length; i++) {
+                int part = (int) ((long) i * files.length / names.length);
+                writePerson(writers[part], i);
+                if (i % 5 == 0 && files.length > 1) writePerson(writers[(part + 1) % files.length], i);
+            }
+            for (int i = 0; i < names.length; i++) {
+                int part = (int) ((long) i * files.length / names.length);
+                writeRelations(writers[part], i);
+                if (i % 5 == 0 && files.length > 1) writeRelations(writers[(part + 1) % files.length], i);
+            }
+        } finally {
+            for (BufferedWriter writer : writers) {
+                if (writer != null) writer.close();
+            }
+        }
+    }
+
+    /**
+     * Writes the row of a person.
+     *
+     * @param writer the writer of the file.
+     * @param index  the index of the person.
+     * @throws IOException if the file cannot be written.
+     */
+    private void writePerson(BufferedWriter writer, int index) throws IOException {
+        writer.write(names[index] + "," + (men[index] ? Gender.MAN : Gender.WOMAN) + "\n");
+    }
+
+    /**
+     * Writes the relations that give a person their father, mother and spouse.
+     *
+     * @param writer the writer of the file.
+     * @param index  the index of the person.
+     * @throws IOException if the file cannot be written.
+     */
+    private void writeRelations(BufferedWriter writer, int index) throws IOException {
+        String name = names[index];
+        if (fathers[index] >= 0) writer.write(names[fathers[index]] + "," + Relation.FATHER + "," + name + "\n");
+        if (mothers[index] >= 0) writer.write(names[mothers[index]] + "," + Relation.MOTHER + "," + name + "\n");
+        if (spouses[index] >= 0) {
+            Relation relation = men[index] ? Relation.HUSBAND : Relation.WIFE;
+            writer.write(name + "," + relation + "," + names[spouses[index]] + "\n");
+        }
+    }
+
+    // ####################### GETTERS #######################
+
+    /**
+     * Returns the number of people in the tree.
+     *
+     * @return the number of people.
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Returns the name of a person.
+     *
+     * @param index the index of the person.
+     * @return the person's name.
+     */
+    public String name(int index) {
+        return names[index];
+    }
+
+    /**
+     * Returns the father of a person.
+     *
+     * @param index the index of the person.
+     * @return the index of the person's father, or -1.
+     */
+    public int father(int index) {
+        return fathers[index];
+    }
+
+    /**
+     * Returns the mother of a person.
+     *
+     * @param index the index of the person.
+     * @return the index of the person's mother, or -1.
+     */
+    public int mother(int index) {
+        return mothers[index];
+    }
+
+    /**
+     * Returns the index of the first person of a generation.
+     *
+     * @param generation the generation, where {@code depth} gives the size of the tree.
+     * @return the index of the first person of the generation.
+     */
+    public int generationStart(int generation) {
+        return generationStarts[generation];
+    }
+}
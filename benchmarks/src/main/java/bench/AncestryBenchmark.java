@@ -0,0 +1,88 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@code GenealogicalTree.isAncestor} for pairs where the first person is a parent of the second, so the
+ * answer is yes, and for pairs of random people, where it is mostly no, and streaming all the descendants of a person.
+ * The ancestry index is built by the first query, in the setup. With {@code validated}, the tree is validated first, so
+ * the queries can rule out pairs by their generations.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AncestryBenchmark extends TreeBenchmark {
+
+    /**
+     * The number of sampled pairs, a power of two.
+     */
+    private static final int PAIRS = 1024;
+
+    /**
+     * The branch of {@code findRelation} the sampled pairs end in.
+     */
+    @Param({"parent", "unrelated"})
+    public String branch;
+
+    /**
+     * Whether the tree is validated, so its generations are known.
+     */
+    @Param({"false", "true"})
+    public boolean validated;
+
+    /**
+     * The sampled pairs of names.
+     */
+    private String[][] pairs;
+
+    /**
+     * The index of the next pair to query.
+     */
+    private int next;
+
+    /**
+     * Generates the tree, samples the pairs, validates the tree if asked to, and builds the ancestry index.
+     *
+     * @throws Exception if a person is not in the tree.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        generate();
+        pairs = harness.samplePairs(branch, PAIRS, seed);
+        if (validated) harness.validate();
+        harness.isAncestor(pairs[0][0], pairs[0][1]);
+    }
+
+    /**
+     * Checks if the first person of the next sampled pair is an ancestor of the second.
+     *
+     * @return whether the first person is an ancestor of the second.
+     * @throws Exception if a person is not in the tree.
+     */
+    @Benchmark
+    public boolean isAncestor() throws Exception {
+        String[] pair = pairs[next++ & (PAIRS - 1)];
+        return harness.isAncestor(pair[0], pair[1]);
+    }
+
+    /**
+     * Streams the descendants of the first person of the next sampled pair.
+     *
+     * @return the number of descendants.
+     * @throws Exception if a person is not in the tree.
+     */
+    @Benchmark
+    public long countDescendants() throws Exception {
+        return harness.countDescendants(pairs[next++ & (PAIRS - 1)][0]);
+    }
+}
@@ -0,0 +1,30 @@
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The entry point of the benchmarks jar. Accepts the usual JMH command line options, and always attaches the GC
+ * profiler, so every result reports its allocation rate next to its throughput or time.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+public class BenchmarkRunner {
+
+    /**
+     * Runs the benchmarks selected by the command line arguments.
+     *
+     * @param args the JMH command line arguments, e.g. {@code RelationBenchmark -p size=1000}.
+     * @throws CommandLineOptionException if the arguments are invalid.
+     * @throws RunnerException            if a benchmark fails.
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder().parent(options).addProfiler(GCProfiler.class).build()).run();
+    }
+}
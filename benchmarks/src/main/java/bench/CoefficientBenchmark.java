@@ -0,0 +1,66 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@code GenealogicalTree.findRelationshipCoefficient} for pairs that {@code findRelation} puts in each of
+ * its branches. The pairs are queried over and over, so once the inbreeding coefficients they depend on have been
+ * remembered, a query only traces the ancestors of both people.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CoefficientBenchmark extends TreeBenchmark {
+
+    /**
+     * The number of sampled pairs, a power of two.
+     */
+    private static final int PAIRS = 1024;
+
+    /**
+     * The branch of {@code findRelation} the sampled pairs end in.
+     */
+    @Param({"cousin", "unrelated"})
+    public String branch;
+
+    /**
+     * The sampled pairs of names.
+     */
+    private String[][] pairs;
+
+    /**
+     * The index of the next pair to query.
+     */
+    private int next;
+
+    /**
+     * Generates the tree and samples the pairs.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        generate();
+        pairs = harness.samplePairs(branch, PAIRS, seed);
+    }
+
+    /**
+     * Computes the coefficient of relationship of the next sampled pair.
+     *
+     * @return the coefficient of relationship.
+     * @throws Exception if a person is not in the tree.
+     */
+    @Benchmark
+    public double relationshipCoefficient() throws Exception {
+        String[] pair = pairs[next++ & (PAIRS - 1)];
+        return harness.relationshipCoefficient(pair[0], pair[1]);
+    }
+}
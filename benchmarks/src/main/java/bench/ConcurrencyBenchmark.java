@@ -0,0 +1,124 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmarks {@code GenealogicalTree.findRelation} from many threads, while other threads keep adding people and
+ * relations to the same tree. The {@code mixed} group runs both; its number of readers and writers is set with the
+ * {@code -tg} option, readers first, e.g. {@code -tg 1,1}, {@code -tg 4,1} and {@code -tg 8,1} to see the read
+ * throughput scale with the number of readers under a steady stream of writes. The {@code readOnly} group runs the
+ * readers alone, as the baseline, with the number of threads set by {@code -t}.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConcurrencyBenchmark extends TreeBenchmark {
+
+    /**
+     * The number of sampled pairs and parents, a power of two.
+     */
+    private static final int SAMPLES = 1024;
+
+    /**
+     * The sampled pairs of names.
+     */
+    private String[][] pairs;
+
+    /**
+     * The sampled names of the parents that new people are added to.
+     */
+    private String[] parents;
+
+    /**
+     * The number of people that have been added, which gives every new person a unique name.
+     */
+    private final AtomicLong added = new AtomicLong();
+
+    /**
+     * The index of the next sample of a thread.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        /**
+         * The index of the next sample.
+         */
+        public int next;
+    }
+
+    /**
+     * Generates the tree and samples the pairs and parents.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        generate();
+        pairs = harness.samplePairs("cousin", SAMPLES, seed);
+        parents = harness.sampleNames(SAMPLES, seed);
+    }
+
+    /**
+     * Finds the relation of the next sampled pair, while people are being added.
+     *
+     * @param cursor the cursor of the thread.
+     * @return the relation.
+     * @throws Exception if a person is not in the tree.
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public Object read(Cursor cursor) throws Exception {
+        return findRelation(cursor);
+    }
+
+    /**
+     * Adds a new person, as the child of the next sampled parent.
+     *
+     * @param cursor the cursor of the thread.
+     * @throws Exception if the parent is not in the tree.
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void write(Cursor cursor) throws Exception {
+        harness.addChild(parents[cursor.next++ & (SAMPLES - 1)], "added" + added.getAndIncrement());
+    }
+
+    /**
+     * Finds the relation of the next sampled pair, with no people being added.
+     *
+     * @param cursor the cursor of the thread.
+     * @return the relation.
+     * @throws Exception if a person is not in the tree.
+     */
+    @Benchmark
+    @Group("readOnly")
+    public Object readOnly(Cursor cursor) throws Exception {
+        return findRelation(cursor);
+    }
+
+    /**
+     * Finds the relation of the next sampled pair of a thread.
+     *
+     * @param cursor the cursor of the thread.
+     * @return the relation.
+     * @throws Exception if a person is not in the tree.
+     */
+    private Object findRelation(Cursor cursor) throws Exception {
+        String[] pair = pairs[cursor.next++ & (SAMPLES - 1)];
+        return harness.findRelation(pair[0], pair[1]);
+    }
+}
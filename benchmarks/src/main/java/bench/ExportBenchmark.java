@@ -0,0 +1,93 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks sorting the people of a tree by name, on its own and when writing them to a file, the way
+ * {@code GenealogicalTreeApp.savePeopleInOrderToFile} does, when exporting the whole tree in the format it is
+ * loaded from, and when computing the inbreeding coefficient of every person and writing them to a file.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExportBenchmark extends TreeBenchmark {
+
+    /**
+     * The file the people are written to.
+     */
+    private Path file;
+
+    /**
+     * Generates the tree and creates the temporary file.
+     *
+     * @throws IOException if the file cannot be created.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        generate();
+        file = Files.createTempFile("people", ".csv");
+    }
+
+    /**
+     * Deletes the temporary file.
+     *
+     * @throws IOException if the file cannot be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Sorts the people by name.
+     *
+     * @return the sorted people.
+     */
+    @Benchmark
+    public Object peopleInOrder() {
+        return harness.peopleInOrder();
+    }
+
+    /**
+     * Writes the people to the file in alphabetical order.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    @Benchmark
+    public void savePeopleInOrder() throws IOException {
+        harness.savePeopleInOrder(file);
+    }
+
+    /**
+     * Writes the people to the file in alphabetical order, followed by the relations.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    @Benchmark
+    public void saveTree() throws IOException {
+        harness.saveTree(file);
+    }
+
+    /**
+     * Computes the inbreeding coefficient of every person and writes them to the file.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    @Benchmark
+    public void saveInbreeding() throws IOException {
+        harness.saveInbreeding(file);
+    }
+}
@@ -0,0 +1,98 @@
+package bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks importing a tree from a GEDCOM file, the way {@code GenealogicalTreeApp.loadTreeFromFile} does, and
+ * exporting it to one. Reports the number of records read or written per second next to the number of operations.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GedcomBenchmark extends TreeBenchmark {
+
+    /**
+     * The GEDCOM file with the generated tree, which is read.
+     */
+    private Path file;
+
+    /**
+     * The GEDCOM file the generated tree is written to.
+     */
+    private Path export;
+
+    /**
+     * Counts the records that were read or written.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Records {
+
+        /**
+         * The number of records that were read or written.
+         */
+        public long records;
+    }
+
+    /**
+     * Generates the tree and writes it to a temporary file.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        generate();
+        file = Files.createTempFile("tree", ".ged");
+        export = Files.createTempFile("export", ".ged");
+        harness.saveGedcom(file);
+    }
+
+    /**
+     * Deletes the temporary files.
+     *
+     * @throws IOException if a file cannot be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(export);
+    }
+
+    /**
+     * Loads a new tree from the file.
+     *
+     * @param records the counter of the records that were read.
+     * @throws Exception if the file cannot be read.
+     */
+    @Benchmark
+    public void loadGedcom(Records records) throws Exception {
+        records.records += harness.loadGedcom(file);
+    }
+
+    /**
+     * Exports the generated tree to a file.
+     *
+     * @param records the counter of the records that were written.
+     * @throws IOException if the file cannot be written.
+     */
+    @Benchmark
+    public void saveGedcom(Records records) throws IOException {
+        records.records += harness.saveGedcom(export);
+    }
+}
@@ -0,0 +1,76 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks adding a batch of people and relations to a journaled tree and committing them, i.e. the time it takes to
+ * bring a large tree up to date with a few new records, instead of reloading it.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JournalBenchmark extends TreeBenchmark {
+
+    /**
+     * The number of people added in each batch, each with a relation to a person of the tree.
+     */
+    @Param({"100", "1000", "5000"})
+    public int batch;
+
+    /**
+     * The directory of the journal.
+     */
+    private Path directory;
+
+    /**
+     * Generates the tree and compacts it into the base of a new journal.
+     *
+     * @throws Exception if the journal cannot be written.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        generate();
+        directory = Files.createTempDirectory("journal");
+        harness.openJournal(directory);
+    }
+
+    /**
+     * Closes the journal and deletes its directory.
+     *
+     * @throws IOException if the journal cannot be closed or the directory cannot be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        harness.closeJournal();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Adds a batch of people and relations to the journaled tree and commits them.
+     *
+     * @return the number of records that were committed.
+     * @throws Exception if the journal cannot be written.
+     */
+    @Benchmark
+    public int appendAndCommit() throws Exception {
+        return harness.appendToJournal(batch);
+    }
+}
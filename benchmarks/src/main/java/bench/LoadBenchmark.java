@@ -0,0 +1,88 @@
+package bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks loading a tree from a CSV file in bulk, the way {@code GenealogicalTreeApp.loadTreeFromFile} does, with
+ * different numbers of threads. Reports the number of rows loaded per second next to the number of loads.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LoadBenchmark extends TreeBenchmark {
+
+    /**
+     * The number of threads that parse the file.
+     */
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    /**
+     * The CSV file with the generated tree.
+     */
+    private Path file;
+
+    /**
+     * Counts the rows that were loaded.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Rows {
+
+        /**
+         * The number of rows that were loaded.
+         */
+        public long rows;
+    }
+
+    /**
+     * Generates the tree and writes it to a temporary file.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        generate();
+        file = Files.createTempFile("tree", ".csv");
+        harness.writeCsv(file);
+        harness = TreeHarness.create();
+    }
+
+    /**
+     * Deletes the temporary file.
+     *
+     * @throws IOException if the file cannot be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Loads the tree from the file.
+     *
+     * @param rows the counter of the rows that were loaded.
+     * @throws Exception if the file cannot be read.
+     */
+    @Benchmark
+    public void loadCsv(Rows rows) throws Exception {
+        rows.rows += harness.loadCsv(file, threads);
+    }
+}
@@ -0,0 +1,143 @@
+package bench;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates load against a running tree server, i.e. {@code GenealogicalTreeApp --serve}, and reports its throughput
+ * and latency percentiles.
+ * <p>
+ * Each connection sends {@code GET /relation} requests for the pairs of a file, one after the other, for the specified
+ * duration, after a warmup of the same length that is not measured. The file has one {@code name,name} pair per line,
+ * like the pairs file of the batch mode.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+public class LoadGenerator {
+
+    /**
+     * The percentiles that are reported.
+     */
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    /**
+     * Runs the load generator.
+     *
+     * @param args the base URL of the server, the pairs file, the number of connections and the duration of the
+     *             measurement, in seconds.
+     * @throws Exception if the pairs file cannot be read or a request fails.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 4) {
+            System.err.println("Usage: LoadGenerator <base url> <pairs file> <connections> <seconds>");
+            System.exit(1);
+        }
+        String base = args[0].endsWith("/") ? args[0].substring(0, args[0].length() - 1) : args[0];
+        URI[] uris = requests(base, Path.of(args[1]));
+        int connections = Integer.parseInt(args[2]);
+        long nanos = Long.parseLong(args[3]) * 1_000_000_000L;
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        run(client, uris, connections, nanos);
+        long start = System.nanoTime();
+        long[][] latencies = run(client, uris, connections, nanos);
+        long elapsed = System.nanoTime() - start;
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        System.out.printf("%d requests on %d connections in %.3f s, %.0f requests/sec%n", all.length, connections,
+                elapsed / 1e9, all.length * 1e9 / elapsed);
+        for (double percentile : PERCENTILES) {
+            System.out.printf("p%-5s %8.3f ms%n", percentile, percentile(all, percentile) / 1e6);
+        }
+        System.out.printf("max    %8.3f ms%n", all.length == 0 ? 0 : all[all.length - 1] / 1e6);
+    }
+
+    /**
+     * Reads the pairs file and builds the URI of the request of each pair.
+     *
+     * @param base  the base URL of the server.
+     * @param pairs the pairs file.
+     * @return the URIs.
+     * @throws IOException if the file cannot be read.
+     */
+    private static URI[] requests(String base, Path pairs) throws IOException {
+        List<URI> uris = new ArrayList<>();
+        for (String line : Files.readAllLines(pairs, StandardCharsets.UTF_8)) {
+            String[] names = line.split(",");
+            if (names.length != 2) continue;
+            uris.add(URI.create(base + "/relation?from=" + URLEncoder.encode(names[0], StandardCharsets.UTF_8)
+                    + "&to=" + URLEncoder.encode(names[1], StandardCharsets.UTF_8)));
+        }
+        if (uris.isEmpty()) throw new IllegalArgumentException("The pairs file has no pairs.");
+        return uris.toArray(new URI[0]);
+    }
+
+    /**
+     * Sends requests on many connections for a duration.
+     *
+     * @param client      the HTTP client.
+     * @param uris        the URIs of the requests.
+     * @param connections the number of connections.
+     * @param nanos       the duration, in nanoseconds.
+     * @return the latency of every request of each connection, in nanoseconds.
+     * @throws Exception if a request fails.
+     */
+    private static long[][] run(HttpClient client, URI[] uris, int connections, long nanos) throws Exception {
+        long[][] latencies = new long[connections][];
+        Thread[] threads = new Thread[connections];
+        AtomicLong failures = new AtomicLong();
+        long end = System.nanoTime() + nanos;
+        for (int c = 0; c < connections; c++) {
+            int connection = c;
+            threads[c] = new Thread(() -> {
+                long[] own = new long[1024];
+                int count = 0;
+                for (int next = connection; System.nanoTime() < end; next++) {
+                    HttpRequest request = HttpRequest.newBuilder(uris[next % uris.length]).build();
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() != 200) failures.incrementAndGet();
+                    } catch (IOException e) {
+                        failures.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    if (count == own.length) own = Arrays.copyOf(own, count << 1);
+                    own[count++] = System.nanoTime() - start;
+                }
+                latencies[connection] = Arrays.copyOf(own, count);
+            }, "load-" + c);
+            threads[c].start();
+        }
+        for (Thread thread : threads) thread.join();
+        if (failures.get() > 0) System.err.println(failures.get() + " requests failed.");
+        return latencies;
+    }
+
+    /**
+     * Finds a percentile of sorted latencies, by the nearest rank.
+     *
+     * @param sorted     the sorted latencies.
+     * @param percentile the percentile.
+     * @return the latency at the percentile, or zero if there are none.
+     */
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+}
@@ -0,0 +1,96 @@
+package bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks merging a tree that is split across several overlapping CSV files, the way
+ * {@code GenealogicalTreeApp.mergeFilesIntoTree} does, with different numbers of threads. Reports the number of rows
+ * read per second next to the number of merges.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MergeBenchmark extends TreeBenchmark {
+
+    /**
+     * The number of threads that parse the files and merge the people.
+     */
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    /**
+     * The number of files the tree is split across.
+     */
+    @Param("8")
+    public int files;
+
+    /**
+     * The CSV files with the generated tree.
+     */
+    private Path[] parts;
+
+    /**
+     * Counts the rows that were read.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Rows {
+
+        /**
+         * The number of rows that were read.
+         */
+        public long rows;
+    }
+
+    /**
+     * Generates the tree and writes it to temporary files.
+     *
+     * @throws IOException if a file cannot be written.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        generate();
+        parts = new Path[files];
+        for (int f = 0; f < files; f++) parts[f] = Files.createTempFile("tree" + f, ".csv");
+        harness.writeCsv(parts);
+        harness = TreeHarness.create();
+    }
+
+    /**
+     * Deletes the temporary files.
+     *
+     * @throws IOException if a file cannot be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        for (Path part : parts) Files.deleteIfExists(part);
+    }
+
+    /**
+     * Merges the files into an empty tree.
+     *
+     * @param rows the counter of the rows that were read.
+     * @throws Exception if a file cannot be read.
+     */
+    @Benchmark
+    public void mergeCsv(Rows rows) throws Exception {
+        rows.rows += harness.mergeCsv(parts, threads);
+    }
+}
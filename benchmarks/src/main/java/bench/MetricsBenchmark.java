@@ -0,0 +1,72 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@code GenealogicalTree.findRelation} with and without metrics, to measure the overhead of recording the
+ * time and result of every query. The {@code parent} branch is the fastest query, so the overhead is largest there.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MetricsBenchmark extends TreeBenchmark {
+
+    /**
+     * The number of sampled pairs, a power of two.
+     */
+    private static final int PAIRS = 1024;
+
+    /**
+     * The branch of {@code findRelation} the sampled pairs end in.
+     */
+    @Param({"parent", "unrelated"})
+    public String branch;
+
+    /**
+     * Whether metrics are recorded.
+     */
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    /**
+     * The sampled pairs of names.
+     */
+    private String[][] pairs;
+
+    /**
+     * The index of the next pair to query.
+     */
+    private int next;
+
+    /**
+     * Generates the tree, samples the pairs and enables or disables metrics.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        generate();
+        pairs = harness.samplePairs(branch, PAIRS, seed);
+        harness.setMetricsEnabled(metrics);
+    }
+
+    /**
+     * Finds the relation of the next sampled pair.
+     *
+     * @return the relation.
+     * @throws Exception if a person is not in the tree.
+     */
+    @Benchmark
+    public Object findRelation() throws Exception {
+        String[] pair = pairs[next++ & (PAIRS - 1)];
+        return harness.findRelation(pair[0], pair[1]);
+    }
+}
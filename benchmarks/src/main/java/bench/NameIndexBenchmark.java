@@ -0,0 +1,92 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks reading a page of people from the name index, either in order after a name, or by the prefix of a name,
+ * as a user interface that lists the people of a large tree would, and finding a person by name.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NameIndexBenchmark extends TreeBenchmark {
+
+    /**
+     * The number of sampled names, a power of two.
+     */
+    private static final int NAMES = 1024;
+
+    /**
+     * The number of people in a page.
+     */
+    @Param("50")
+    public int limit;
+
+    /**
+     * The number of characters of the sampled names that are searched as prefixes.
+     */
+    @Param("4")
+    public int prefixLength;
+
+    /**
+     * The sampled names.
+     */
+    private String[] names;
+
+    /**
+     * The index of the next name.
+     */
+    private int next;
+
+    /**
+     * Generates the tree, samples the names, and builds the name index with a first query.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        generate();
+        names = harness.sampleNames(NAMES, seed);
+        harness.peoplePage(null, 1);
+    }
+
+    /**
+     * Reads the page of people after the next sampled name.
+     *
+     * @return the people of the page.
+     */
+    @Benchmark
+    public Object page() {
+        return harness.peoplePage(names[next++ & (NAMES - 1)], limit);
+    }
+
+    /**
+     * Finds the first page of people whose names start like the next sampled name.
+     *
+     * @return the people of the page.
+     */
+    @Benchmark
+    public Object prefix() {
+        String name = names[next++ & (NAMES - 1)];
+        return harness.peopleByPrefix(name.substring(0, Math.min(prefixLength, name.length())), limit);
+    }
+
+    /**
+     * Finds the person with the next sampled name.
+     *
+     * @return the person.
+     * @throws Exception if the person is not in the tree.
+     */
+    @Benchmark
+    public Object find() throws Exception {
+        return harness.findPerson(names[next++ & (NAMES - 1)]);
+    }
+}
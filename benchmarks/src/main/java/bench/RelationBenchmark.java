@@ -0,0 +1,65 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@code GenealogicalTree.findRelation} for pairs that end in each of its branches. The {@code unrelated}
+ * branch is the worst case, since every check has to fail before it is reached.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RelationBenchmark extends TreeBenchmark {
+
+    /**
+     * The number of sampled pairs, a power of two.
+     */
+    private static final int PAIRS = 1024;
+
+    /**
+     * The branch of {@code findRelation} the sampled pairs end in.
+     */
+    @Param({"parent", "sibling", "cousin", "nephew", "unrelated"})
+    public String branch;
+
+    /**
+     * The sampled pairs of names.
+     */
+    private String[][] pairs;
+
+    /**
+     * The index of the next pair to query.
+     */
+    private int next;
+
+    /**
+     * Generates the tree and samples the pairs.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        generate();
+        pairs = harness.samplePairs(branch, PAIRS, seed);
+    }
+
+    /**
+     * Finds the relation of the next sampled pair.
+     *
+     * @return the relation.
+     * @throws Exception if a person is not in the tree.
+     */
+    @Benchmark
+    public Object findRelation() throws Exception {
+        String[] pair = pairs[next++ & (PAIRS - 1)];
+        return harness.findRelation(pair[0], pair[1]);
+    }
+}
@@ -0,0 +1,65 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the {@code Person.find*} methods, for people that have grandparents, against finding all the relatives
+ * of a person in one walk, and the first cousin only.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RelativesBenchmark extends TreeBenchmark {
+
+    /**
+     * The number of sampled names, a power of two.
+     */
+    private static final int NAMES = 1024;
+
+    /**
+     * The kind of relatives to find.
+     */
+    @Param({"siblings", "grandparents", "grandchildren", "unclesAndAunts", "cousins", "nephewsAndNieces", "all",
+            "allSeparately", "firstCousin"})
+    public String kind;
+
+    /**
+     * The sampled names.
+     */
+    private String[] names;
+
+    /**
+     * The index of the next name to query.
+     */
+    private int next;
+
+    /**
+     * Generates the tree and samples the names.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        generate();
+        names = harness.sampleNames(NAMES, seed);
+    }
+
+    /**
+     * Finds the relatives of the next sampled person.
+     *
+     * @return the relatives.
+     * @throws Exception if a person is not in the tree.
+     */
+    @Benchmark
+    public Object findRelatives() throws Exception {
+        return harness.findRelatives(names[next++ & (NAMES - 1)], kind);
+    }
+}
@@ -0,0 +1,101 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks loading the same tree from a binary snapshot and from a CSV file, i.e. the time it takes a process to get
+ * from start to answering queries with each format, and opening the snapshot without loading it to answer one query.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SnapshotBenchmark extends TreeBenchmark {
+
+    /**
+     * The CSV file with the generated tree.
+     */
+    private Path csv;
+
+    /**
+     * The snapshot file with the generated tree.
+     */
+    private Path snapshot;
+
+    /**
+     * The pair of cousins whose relation is found in the opened snapshot.
+     */
+    private String[] cousins;
+
+    /**
+     * Generates the tree and writes it to temporary files in both formats.
+     *
+     * @throws IOException if the files cannot be written.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        generate();
+        csv = Files.createTempFile("tree", ".csv");
+        snapshot = Files.createTempFile("tree", ".snapshot");
+        harness.writeCsv(csv);
+        harness.writeSnapshot(snapshot);
+        cousins = harness.samplePairs("cousin", 1, seed)[0];
+        harness = TreeHarness.create();
+    }
+
+    /**
+     * Deletes the temporary files.
+     *
+     * @throws IOException if the files cannot be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(csv);
+        Files.deleteIfExists(snapshot);
+    }
+
+    /**
+     * Loads the tree from the snapshot.
+     *
+     * @return the loaded tree.
+     * @throws Exception if the file cannot be read.
+     */
+    @Benchmark
+    public Object loadSnapshot() throws Exception {
+        return harness.loadSnapshot(snapshot);
+    }
+
+    /**
+     * Loads the tree from the CSV file, with one thread per available processor.
+     *
+     * @return the number of rows that were loaded.
+     * @throws Exception if the file cannot be read.
+     */
+    @Benchmark
+    public long loadCsv() throws Exception {
+        return harness.loadCsv(csv, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Opens the snapshot without loading it, and finds the relation of two cousins in it.
+     *
+     * @return the relation.
+     * @throws Exception if the file cannot be read.
+     */
+    @Benchmark
+    public Object openSnapshotAndFindRelation() throws Exception {
+        return harness.findRelationInSnapshot(snapshot, cousins[0], cousins[1]);
+    }
+}
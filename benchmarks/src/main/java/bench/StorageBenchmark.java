@@ -0,0 +1,63 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the pause of a full garbage collection while a tree is live, to compare the storage of its people, e.g.
+ * with {@code -p storage=heap,off-heap}. Prints the heap in use and the resident set of the process once the tree is
+ * generated. Queries are compared by running the other benchmarks with the same parameter.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StorageBenchmark extends TreeBenchmark {
+
+    /**
+     * Generates the tree and prints the memory it takes.
+     *
+     * @throws IOException if the resident set cannot be read.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        generate();
+        System.gc();
+        long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        System.out.printf("%nHeap in use: %d MB, resident set: %s%n", heap >> 20, residentSet());
+    }
+
+    /**
+     * Runs a full garbage collection, which traces everything the tree keeps on the heap.
+     */
+    @Benchmark
+    public void fullGc() {
+        System.gc();
+    }
+
+    /**
+     * Reads the resident set of the process, on Linux.
+     *
+     * @return the resident set, or {@code unknown} on other systems.
+     * @throws IOException if the status of the process cannot be read.
+     */
+    private static String residentSet() throws IOException {
+        Path status = Path.of("/proc/self/status");
+        if (!Files.exists(status)) return "unknown";
+        for (String line : Files.readAllLines(status)) {
+            if (line.startsWith("VmRSS:")) return line.substring("VmRSS:".length()).strip();
+        }
+        return "unknown";
+    }
+}
@@ -0,0 +1,72 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The base of the benchmarks that run against a synthetic tree. Holds the parameters of the tree generator, so every
+ * benchmark can be run against trees of different shapes, e.g. with {@code -p fertility=3.0}.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public abstract class TreeBenchmark {
+
+    /**
+     * The number of people in the tree.
+     */
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    /**
+     * The number of generations in the tree.
+     */
+    @Param("12")
+    public int depth;
+
+    /**
+     * The mean number of children of each couple.
+     */
+    @Param("2.5")
+    public double fertility;
+
+    /**
+     * The probability that a person is married.
+     */
+    @Param("0.8")
+    public double marriageRate;
+
+    /**
+     * The seed of the tree generator.
+     */
+    @Param("42")
+    public long seed;
+
+    /**
+     * Where the people of the tree are kept: {@code heap}, {@code off-heap}, or {@code mapped} for off-heap memory
+     * mapped from a temporary file, e.g. with {@code -p storage=heap,off-heap}.
+     */
+    @Param("heap")
+    public String storage;
+
+    /**
+     * The harness over the generated tree.
+     */
+    protected TreeHarness harness;
+
+    /**
+     * Generates the tree with the benchmark's parameters.
+     */
+    protected void generate() {
+        harness = TreeHarness.create();
+        harness.generate(seed, size, depth, fertility, marriageRate, storage);
+    }
+}
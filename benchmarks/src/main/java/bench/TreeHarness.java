@@ -0,0 +1,329 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The operations of the genealogical tree that are benchmarked.
+ * <p>
+ * JMH requires benchmarks to be in a named package, while the application lives in the unnamed package, which cannot
+ * be imported. The benchmarks therefore reach the application through this interface, whose implementation lives in
+ * the unnamed package and is loaded by name. The calls are monomorphic, so the JIT inlines them.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+public interface TreeHarness {
+
+    /**
+     * The name of the class that implements this interface.
+     */
+    String IMPLEMENTATION = "GenealogicalTreeHarness";
+
+    /**
+     * Creates a new harness.
+     *
+     * @return the harness.
+     */
+    static TreeHarness create() {
+        try {
+            return (TreeHarness) Class.forName(IMPLEMENTATION).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create " + IMPLEMENTATION, e);
+        }
+    }
+
+    /**
+     * Generates a synthetic tree and loads it into the harness.
+     *
+     * @param seed         the seed of the random number generator.
+     * @param size         the number of people in the tree.
+     * @param depth        the number of generations in the tree.
+     * @param fertility    the mean number of children of each couple.
+     * @param marriageRate the probability that a person is married.
+     * @param storage      where the people are kept: {@code heap}, {@code off-heap}, or {@code mapped} for off-heap
+     *                     memory mapped from a temporary file.
+     */
+    void generate(long seed, int size, int depth, double fertility, double marriageRate, String storage);
+
+    /**
+     * Samples pairs of names from the generated tree, whose relation falls in the specified branch of
+     * {@code findRelation}.
+     *
+     * @param branch one of {@code parent}, {@code sibling}, {@code cousin}, {@code nephew} or {@code unrelated}.
+     * @param count  the number of pairs.
+     * @param seed   the seed of the random number generator.
+     * @return the pairs, each as an array of two names.
+     */
+    String[][] samplePairs(String branch, int count, long seed);
+
+    /**
+     * Samples names of people of the generated tree that have grandparents.
+     *
+     * @param count the number of names.
+     * @param seed  the seed of the random number generator.
+     * @return the names.
+     */
+    String[] sampleNames(int count, long seed);
+
+    /**
+     * Finds a person of the generated tree by name.
+     *
+     * @param name the name of the person.
+     * @return the person.
+     * @throws Exception if the person is not in the tree.
+     */
+    Object findPerson(String name) throws Exception;
+
+    /**
+     * Finds the relation the first person has to the second person.
+     *
+     * @param name1 the name of the first person.
+     * @param name2 the name of the second person.
+     * @return the relation.
+     * @throws Exception if either of the people are not in the tree.
+     */
+    Object findRelation(String name1, String name2) throws Exception;
+
+    /**
+     * Adds a new person to the generated tree, as a child of a person that is already in it.
+     *
+     * @param parent the name of the parent.
+     * @param child  the name of the new person.
+     * @throws Exception if the parent is not in the tree.
+     */
+    void addChild(String parent, String child) throws Exception;
+
+    /**
+     * Finds the blood relation of any degree the first person has to the second person.
+     *
+     * @param name1 the name of the first person.
+     * @param name2 the name of the second person.
+     * @return the kinship.
+     * @throws Exception if either of the people are not in the tree.
+     */
+    Object findKinship(String name1, String name2) throws Exception;
+
+    /**
+     * Finds a shortest path of parent, child and spouse links from the first person to the second person.
+     *
+     * @param name1 the name of the first person.
+     * @param name2 the name of the second person.
+     * @return the connection.
+     * @throws Exception if either of the people are not in the tree.
+     */
+    Object findConnection(String name1, String name2) throws Exception;
+
+    /**
+     * Checks if the first person is an ancestor of the second person, at any depth.
+     *
+     * @param ancestor   the name of the possible ancestor.
+     * @param descendant the name of the possible descendant.
+     * @return whether the first person is an ancestor of the second.
+     * @throws Exception if either of the people are not in the tree.
+     */
+    boolean isAncestor(String ancestor, String descendant) throws Exception;
+
+    /**
+     * Counts the descendants of a person, by streaming them.
+     *
+     * @param name the name of the person.
+     * @return the number of descendants.
+     * @throws Exception if the person is not in the tree.
+     */
+    long countDescendants(String name) throws Exception;
+
+    /**
+     * Finds the relatives of a person with one of the {@code Person.find*} methods, or all of them at once.
+     *
+     * @param name the name of the person.
+     * @param kind one of {@code siblings}, {@code grandparents}, {@code grandchildren}, {@code unclesAndAunts},
+     *             {@code cousins} or {@code nephewsAndNieces}; {@code all} for all the relatives, grouped by relation,
+     *             in one walk, or {@code allSeparately} for all of them with one {@code Person} method per kind; or
+     *             {@code firstCousin} for the first cousin that the walk finds.
+     * @return the relatives.
+     * @throws Exception if the person is not in the tree.
+     */
+    Object findRelatives(String name, String kind) throws Exception;
+
+    /**
+     * Writes the generated tree to a file, in the CSV format the application reads.
+     *
+     * @param file the file to write to.
+     * @throws IOException if the file cannot be written.
+     */
+    void writeCsv(Path file) throws IOException;
+
+    /**
+     * Loads a tree from a CSV file in bulk, the way the application does.
+     *
+     * @param file    the file to read.
+     * @param threads the number of threads that parse the file.
+     * @return the number of rows that were loaded.
+     * @throws Exception if the file cannot be read.
+     */
+    long loadCsv(Path file, int threads) throws Exception;
+
+    /**
+     * Writes the generated tree to several CSV files that overlap, with about a fifth of the people in two files.
+     *
+     * @param files the files to write to.
+     * @throws IOException if a file cannot be written.
+     */
+    void writeCsv(Path[] files) throws IOException;
+
+    /**
+     * Merges several CSV files into an empty tree, deduplicating the people they share by name, gender and parents.
+     *
+     * @param files   the files to read.
+     * @param threads the number of threads that parse the files and merge the people.
+     * @return the number of rows that were read.
+     * @throws Exception if a file cannot be read.
+     */
+    long mergeCsv(Path[] files, int threads) throws Exception;
+
+    /**
+     * Exports the generated tree to a GEDCOM file, the way the application does.
+     *
+     * @param file the file to write to.
+     * @return the number of records that were written.
+     * @throws IOException if the file cannot be written.
+     */
+    long saveGedcom(Path file) throws IOException;
+
+    /**
+     * Loads a tree from a GEDCOM file, the way the application does.
+     *
+     * @param file the file to read.
+     * @return the number of records that were read.
+     * @throws Exception if the file cannot be read.
+     */
+    long loadGedcom(Path file) throws Exception;
+
+    /**
+     * Writes the generated tree to a file, as a binary snapshot.
+     *
+     * @param file the file to write to.
+     * @throws IOException if the file cannot be written.
+     */
+    void writeSnapshot(Path file) throws IOException;
+
+    /**
+     * Loads a tree from a binary snapshot file.
+     *
+     * @param file the file to read.
+     * @return the loaded tree.
+     * @throws IOException if the file cannot be read.
+     */
+    Object loadSnapshot(Path file) throws IOException;
+
+    /**
+     * Opens a binary snapshot file without loading it, and finds the relation the first person has to the second
+     * person in it.
+     *
+     * @param file  the file to open.
+     * @param name1 the name of the first person.
+     * @param name2 the name of the second person.
+     * @return the relation.
+     * @throws Exception if the file cannot be read, or either of the people are not in it.
+     */
+    Object findRelationInSnapshot(Path file, String name1, String name2) throws Exception;
+
+    /**
+     * Opens a journal in an empty directory, on a tree of its own, and compacts the generated tree into its base.
+     *
+     * @param directory the directory of the journal.
+     * @throws Exception if the journal cannot be written.
+     */
+    void openJournal(Path directory) throws Exception;
+
+    /**
+     * Adds new people to the journaled tree, each as a child of a person of the generated tree, and commits them.
+     *
+     * @param count the number of people to add.
+     * @return the number of records that were committed.
+     * @throws Exception if the journal cannot be written.
+     */
+    int appendToJournal(int count) throws Exception;
+
+    /**
+     * Closes the journal of the journaled tree.
+     *
+     * @throws IOException if the journal cannot be written.
+     */
+    void closeJournal() throws IOException;
+
+    /**
+     * Sorts the people of the generated tree by name.
+     *
+     * @return the sorted people.
+     */
+    Object peopleInOrder();
+
+    /**
+     * Returns a page of the people of the generated tree, sorted by name, that starts after a name.
+     *
+     * @param after the name the page starts after.
+     * @param limit the maximum number of people in the page.
+     * @return the people of the page.
+     */
+    Object peoplePage(String after, int limit);
+
+    /**
+     * Finds a page of the people of the generated tree whose names start with a prefix.
+     *
+     * @param prefix the prefix of the names.
+     * @param limit  the maximum number of people in the page.
+     * @return the people of the page.
+     */
+    Object peopleByPrefix(String prefix, int limit);
+
+    /**
+     * Writes the people of the generated tree to a file in alphabetical order, the way the application does.
+     *
+     * @param file the file to write to.
+     * @throws IOException if the file cannot be written.
+     */
+    void savePeopleInOrder(Path file) throws IOException;
+
+    /**
+     * Exports the people of the generated tree to a CSV file in alphabetical order, followed by its relations, so that
+     * the file can be loaded back.
+     *
+     * @param file the file to write to.
+     * @throws IOException if the file cannot be written.
+     */
+    void saveTree(Path file) throws IOException;
+
+    /**
+     * Computes Wright's coefficient of relationship of two people of the generated tree.
+     *
+     * @param name1 the name of the first person.
+     * @param name2 the name of the second person.
+     * @return the coefficient of relationship.
+     * @throws Exception if a person is not in the tree.
+     */
+    double relationshipCoefficient(String name1, String name2) throws Exception;
+
+    /**
+     * Computes the inbreeding coefficient of every person of the generated tree, and writes them to a CSV file.
+     *
+     * @param file the file to write to.
+     * @throws IOException if the file cannot be written.
+     */
+    void saveInbreeding(Path file) throws IOException;
+
+    /**
+     * Enables or disables the metrics of the operations of the generated tree.
+     *
+     * @param enabled whether metrics are recorded.
+     */
+    void setMetricsEnabled(boolean enabled);
+
+    /**
+     * Validates the links of the generated tree, and finds the generation of every person.
+     *
+     * @return the number of problems that were found.
+     */
+    int validate();
+}
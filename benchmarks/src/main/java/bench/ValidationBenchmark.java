@@ -0,0 +1,40 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@code GenealogicalTree.validate}, which checks every link of the tree and layers its people into
+ * generations, as {@code GenealogicalTreeApp} does after every load.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ValidationBenchmark extends TreeBenchmark {
+
+    /**
+     * Generates the tree.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        generate();
+    }
+
+    /**
+     * Validates the tree.
+     *
+     * @return the number of problems that were found.
+     */
+    @Benchmark
+    public int validate() {
+        return harness.validate();
+    }
+}
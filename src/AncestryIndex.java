@@ -0,0 +1,519 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.stream.IntStream;
+
+/**
+ * This class answers whether one person of a {@link PersonStore} is an ancestor of another, at any depth, without
+ * walking the whole family in between.
+ * <p>
+ * The people and their parent links form a directed acyclic graph, in which the same ancestor can be reached through
+ * more than one line, so a single interval per person, as in a tree, cannot describe who descends from whom. Instead,
+ * the graph is traversed depth-first {@link AncestryIndex#LABELINGS} times, in different orders, and each traversal
+ * labels every person with the interval of the post-order ranks of all their descendants. Whoever descends from a
+ * person has an interval inside theirs in every labeling, so a person whose interval falls outside is ruled out at
+ * once. The first traversal also labels every person with the interval of the pre-order ranks of the people it reached
+ * through them, which confirms an ancestor at once. Only the queries that neither check settles search the ancestors
+ * of the descendant, skipping every line that a label rules out. The traversals are independent, so they are run in
+ * parallel.
+ * <p>
+ * A link is followed only if the child has the parent as their father or mother, and the parent has the child among
+ * their children. New people and links are added to the labels in place, by widening the intervals of the ancestors of
+ * the new link; a link that replaces a parent cannot be removed from them, so the index must then be rebuilt, as it
+ * must after any change that bypasses the tree. If someone were their own ancestor, the labels could miss ancestors
+ * that close the cycle.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+class AncestryIndex {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The number of traversals that label the people.
+     */
+    static final int LABELINGS = 2;
+
+    /**
+     * The state of a person that has not been reached by a traversal.
+     */
+    private static final byte UNSEEN = 0;
+
+    /**
+     * The state of a person whose descendants are being traversed.
+     */
+    private static final byte OPEN = 1;
+
+    /**
+     * The state of a person whose descendants have all been traversed.
+     */
+    private static final byte DONE = 2;
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The people that are indexed.
+     */
+    private final PersonStore people;
+
+    /**
+     * The lowest post-order rank among each person and their descendants, in each labeling.
+     */
+    private final int[][] low;
+
+    /**
+     * The highest post-order rank among each person and their descendants, in each labeling.
+     */
+    private final int[][] high;
+
+    /**
+     * The pre-order rank of each person in the first traversal, or -1 if they were added after it.
+     */
+    private int[] first;
+
+    /**
+     * The pre-order rank after the last person reached through each person in the first traversal, exclusive.
+     */
+    private int[] end;
+
+    /**
+     * The number of people that are indexed.
+     */
+    private int size;
+
+    /**
+     * The store's count of changes to the links of the people that the index reflects.
+     */
+    private long modCount;
+
+    /**
+     * The search state of each thread.
+     */
+    private final ThreadLocal<Search> searches = ThreadLocal.withInitial(Search::new);
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link AncestryIndex} class, that labels no one.
+     *
+     * @param people   the people that are indexed.
+     * @param capacity the number of people the labels can hold before they have to grow.
+     */
+    private AncestryIndex(PersonStore people, int capacity) {
+        this.people = people;
+        this.low = new int[LABELINGS][capacity];
+        this.high = new int[LABELINGS][capacity];
+        this.first = new int[capacity];
+        this.end = new int[capacity];
+    }
+
+    // ######################### METHODS #########################
+
+    /**
+     * Builds the index of all the people of a store, running each traversal on a thread of its own.
+     *
+     * @param people the people to index.
+     * @return the index.
+     */
+    static AncestryIndex build(PersonStore people) {
+        int count = people.size();
+        AncestryIndex index = new AncestryIndex(people, Math.max(count, 1));
+        IntStream.range(0, LABELINGS).parallel().forEach(index::label);
+        index.size = count;
+        index.modCount = people.modCount();
+        return index;
+    }
+
+    /**
+     * Labels the people by one traversal, which visits the people without parents, and then anyone left in a cycle,
+     * forwards by ID in even labelings and backwards in odd ones, and the children of each person in the same order.
+     *
+     * @param labeling the index of the labeling.
+     */
+    private void label(int labeling) {
+        int count = people.size();
+        boolean backwards = (labeling & 1) == 1;
+        int[] lows = low[labeling];
+        int[] highs = high[labeling];
+        byte[] state = new byte[count];
+        int[] stack = new int[64];
+        int[] cursors = new int[64];
+        int rank = 0;
+        int order = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < count; i++) {
+                int root = backwards ? count - 1 - i : i;
+                if (state[root] != UNSEEN || pass == 0 && hasParent(root)) continue;
+                int depth = 0;
+                stack[0] = root;
+                cursors[0] = 0;
+                state[root] = OPEN;
+                lows[root] = Integer.MAX_VALUE;
+                if (labeling == 0) first[root] = order++;
+                while (depth >= 0) {
+                    int id = stack[depth];
+                    int children = people.childCount(id);
+                    if (cursors[depth] < children) {
+                        int index = cursors[depth]++;
+                        int child = people.child(id, backwards ? children - 1 - index : index);
+                        if (!isParent(id, child) || state[child] == OPEN) continue;
+                        if (state[child] == DONE) {
+                            lows[id] = Math.min(lows[id], lows[child]);
+                            continue;
+                        }
+                        if (++depth == stack.length) {
+                            stack = Arrays.copyOf(stack, depth << 1);
+                            cursors = Arrays.copyOf(cursors, depth << 1);
+                        }
+                        stack[depth] = child;
+                        cursors[depth] = 0;
+                        state[child] = OPEN;
+                        lows[child] = Integer.MAX_VALUE;
+                        if (labeling == 0) first[child] = order++;
+                        continue;
+                    }
+                    lows[id] = Math.min(lows[id], rank);
+                    highs[id] = rank++;
+                    state[id] = DONE;
+                    if (labeling == 0) end[id] = order;
+                    if (--depth >= 0) lows[stack[depth]] = Math.min(lows[stack[depth]], lows[id]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a person that was added to the store after the index was built, with a rank of their own in every labeling.
+     * The person has no links yet.
+     *
+     * @param id the ID of the person.
+     */
+    void addPerson(int id) {
+        if (id >= first.length) {
+            int capacity = Math.max(first.length << 1, id + 1);
+            for (int labeling = 0; labeling < LABELINGS; labeling++) {
+                low[labeling] = Arrays.copyOf(low[labeling], capacity);
+                high[labeling] = Arrays.copyOf(high[labeling], capacity);
+            }
+            first = Arrays.copyOf(first, capacity);
+            end = Arrays.copyOf(end, capacity);
+        }
+        for (int labeling = 0; labeling < LABELINGS; labeling++) {
+            low[labeling][id] = id;
+            high[labeling][id] = id;
+        }
+        first[id] = -1;
+        end[id] = -1;
+        size = id + 1;
+    }
+
+    /**
+     * Adds a link from a parent to a child, which must already be in the store, by widening the intervals of the parent
+     * and of their ancestors to cover the child's. The widening stops at the ancestors whose intervals already do.
+     *
+     * @param parent the ID of the parent.
+     * @param child  the ID of the child.
+     */
+    void addParent(int parent, int child) {
+        Search search = searches.get();
+        for (int labeling = 0; labeling < LABELINGS; labeling++) {
+            int[] lows = low[labeling];
+            int[] highs = high[labeling];
+            int childLow = lows[child];
+            int childHigh = highs[child];
+            int depth = 0;
+            search.stack[depth++] = parent;
+            while (depth > 0) {
+                int id = search.stack[--depth];
+                if (lows[id] <= childLow && highs[id] >= childHigh) continue;
+                lows[id] = Math.min(lows[id], childLow);
+                highs[id] = Math.max(highs[id], childHigh);
+                depth = search.push(depth, parentIfLinked(people.father(id), id));
+                depth = search.push(depth, parentIfLinked(people.mother(id), id));
+            }
+        }
+    }
+
+    /**
+     * Checks if the index still reflects the links of the people, i.e. if no change has been made to them since, other
+     * than the ones added to it.
+     *
+     * @param modCount the store's current count of changes to the links of the people.
+     * @return {@code true} if the index is up to date, {@code false} if it must be rebuilt.
+     */
+    boolean isCurrent(long modCount) {
+        return this.modCount == modCount;
+    }
+
+    /**
+     * Records that the index reflects the links of the people as of a count of changes, after the changes were added
+     * to it.
+     *
+     * @param modCount the store's count of changes to the links of the people.
+     */
+    void sync(long modCount) {
+        this.modCount = modCount;
+    }
+
+    /**
+     * Checks if a person is an ancestor of another, at any depth. People who are not in an earlier generation than the
+     * other, as found by the last validation of the tree, are ruled out without looking at the labels.
+     *
+     * @param ancestor   the ID of the possible ancestor.
+     * @param descendant the ID of the possible descendant.
+     * @return {@code true} if the first person is an ancestor of the second, {@code false} otherwise.
+     */
+    boolean isAncestor(int ancestor, int descendant) {
+        if (ancestor == descendant || !people.mayPrecede(ancestor, descendant) || !mayReach(ancestor, descendant)) {
+            return false;
+        }
+        if (reaches(ancestor, descendant)) return true;
+        return searches.get().run(ancestor, descendant);
+    }
+
+    /**
+     * Checks if the labels allow a person to be an ancestor of another, i.e. if the interval of the second person is
+     * inside the interval of the first in every labeling.
+     *
+     * @param ancestor   the ID of the possible ancestor.
+     * @param descendant the ID of the possible descendant.
+     * @return {@code false} if the first person is certainly not an ancestor of the second, {@code true} otherwise.
+     */
+    private boolean mayReach(int ancestor, int descendant) {
+        for (int labeling = 0; labeling < LABELINGS; labeling++) {
+            if (low[labeling][descendant] < low[labeling][ancestor]
+                    || high[labeling][descendant] > high[labeling][ancestor]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the first traversal reached a person through another, which makes the second person a descendant of
+     * the first.
+     *
+     * @param ancestor   the ID of the possible ancestor.
+     * @param descendant the ID of the possible descendant.
+     * @return {@code true} if the first person is certainly an ancestor of the second, {@code false} otherwise.
+     */
+    private boolean reaches(int ancestor, int descendant) {
+        int rank = first[descendant];
+        return rank >= 0 && first[ancestor] <= rank && rank < end[ancestor];
+    }
+
+    /**
+     * Checks if a person has a parent that is linked to them.
+     *
+     * @param id the ID of the person.
+     * @return {@code true} if the person has a linked parent, {@code false} otherwise.
+     */
+    private boolean hasParent(int id) {
+        return parentIfLinked(people.father(id), id) != PersonStore.NONE
+                || parentIfLinked(people.mother(id), id) != PersonStore.NONE;
+    }
+
+    /**
+     * Checks if a child has a person as their father or mother, whether or not the person has them among their
+     * children.
+     *
+     * @param parent the ID of the parent.
+     * @param child  the ID of the child.
+     * @return {@code true} if the child has the person as a parent, {@code false} otherwise.
+     */
+    private boolean isParent(int parent, int child) {
+        return people.father(child) == parent || people.mother(child) == parent;
+    }
+
+    /**
+     * Returns the father or mother of a person, if they have the person among their children.
+     *
+     * @param parent the ID of the father or mother, or {@link PersonStore#NONE}.
+     * @param child  the ID of the person.
+     * @return the ID of the parent, or {@link PersonStore#NONE} if they are not linked to the person.
+     */
+    private int parentIfLinked(int parent, int child) {
+        return parent != PersonStore.NONE && people.hasChild(parent, child) ? parent : PersonStore.NONE;
+    }
+
+    /**
+     * Returns the people of a store that descend from a person, or that the person descends from, one generation
+     * after the other, each only once, although they may be reached through more than one line. The people are found
+     * as the iterator advances, so only the ones that have been returned, and the ones of the next generation, are
+     * ever held at once.
+     *
+     * @param people      the people.
+     * @param id          the ID of the person.
+     * @param descendants {@code true} for the descendants, {@code false} for the ancestors.
+     * @return the IDs of the descendants or ancestors.
+     */
+    static PrimitiveIterator.OfInt lineage(PersonStore people, int id, boolean descendants) {
+        return new Lineage(people, id, descendants);
+    }
+
+    // ####################### NESTED TYPES #######################
+
+    /**
+     * The state of an ancestor search, reused by all the searches of a thread. The ancestors of the descendant are
+     * visited depth-first, and every visit is marked with the number of the search, so the marks never have to be
+     * cleared.
+     */
+    private class Search {
+
+        /**
+         * The number of the last search that visited each person.
+         */
+        private int[] visited = new int[0];
+
+        /**
+         * The people that are left to visit.
+         */
+        private int[] stack = new int[64];
+
+        /**
+         * The number of the current search.
+         */
+        private int number;
+
+        /**
+         * Searches the ancestors of a person for another person.
+         *
+         * @param ancestor   the ID of the person to search for.
+         * @param descendant the ID of the person whose ancestors are searched.
+         * @return {@code true} if the first person is an ancestor of the second, {@code false} otherwise.
+         */
+        boolean run(int ancestor, int descendant) {
+            if (visited.length < size) visited = Arrays.copyOf(visited, Math.max(size, visited.length << 1));
+            if (++number == 0) {
+                Arrays.fill(visited, 0);
+                number = 1;
+            }
+            int depth = push(0, parentIfLinked(people.father(descendant), descendant));
+            depth = push(depth, parentIfLinked(people.mother(descendant), descendant));
+            while (depth > 0) {
+                int id = stack[--depth];
+                if (id == ancestor) return true;
+                if (visited[id] == number || !people.mayPrecede(ancestor, id) || !mayReach(ancestor, id)) continue;
+                if (reaches(ancestor, id)) return true;
+                visited[id] = number;
+                depth = push(depth, parentIfLinked(people.father(id), id));
+                depth = push(depth, parentIfLinked(people.mother(id), id));
+            }
+            return false;
+        }
+
+        /**
+         * Pushes a person onto the stack, unless there is no person.
+         *
+         * @param depth the number of people on the stack.
+         * @param id    the ID of the person, or {@link PersonStore#NONE}.
+         * @return the new number of people on the stack.
+         */
+        int push(int depth, int id) {
+            if (id == PersonStore.NONE) return depth;
+            if (depth == stack.length) stack = Arrays.copyOf(stack, depth << 1);
+            stack[depth] = id;
+            return depth + 1;
+        }
+    }
+
+    /**
+     * A breadth-first walk over the descendants or the ancestors of a person.
+     */
+    private static class Lineage implements PrimitiveIterator.OfInt {
+
+        /**
+         * The people that are walked.
+         */
+        private final PersonStore people;
+
+        /**
+         * Whether the walk goes down to the descendants, or up to the ancestors.
+         */
+        private final boolean descendants;
+
+        /**
+         * The people that have been reached, including the first, as keys. Unlike a set of bits, it only grows with the
+         * number of people reached, not with their IDs.
+         */
+        private final KinshipEngine.IntIntMap reached = new KinshipEngine.IntIntMap();
+
+        /**
+         * The people that have been reached but not returned, from {@link Lineage#head} to {@link Lineage#tail}.
+         */
+        private int[] queue = new int[16];
+
+        /**
+         * The position of the next person to return.
+         */
+        private int head;
+
+        /**
+         * The position after the last person reached.
+         */
+        private int tail;
+
+        /**
+         * Constructor method for the {@link Lineage} class.
+         *
+         * @param people      the people that are walked.
+         * @param id          the ID of the person the walk starts from, who is not returned.
+         * @param descendants whether the walk goes down to the descendants, or up to the ancestors.
+         */
+        Lineage(PersonStore people, int id, boolean descendants) {
+            this.people = people;
+            this.descendants = descendants;
+            reached.put(id, 0);
+            expand(id);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return head < tail;
+        }
+
+        @Override
+        public int nextInt() {
+            if (head == tail) throw new NoSuchElementException();
+            int id = queue[head++];
+            expand(id);
+            return id;
+        }
+
+        /**
+         * Queues the children or the parents of a person that have not been reached yet.
+         *
+         * @param id the ID of the person.
+         */
+        private void expand(int id) {
+            if (descendants) {
+                for (int i = 0, children = people.childCount(id); i < children; i++) {
+                    int child = people.child(id, i);
+                    if (people.father(child) == id || people.mother(child) == id) enqueue(child);
+                }
+            } else {
+                int father = people.father(id);
+                int mother = people.mother(id);
+                if (father != PersonStore.NONE && people.hasChild(father, id)) enqueue(father);
+                if (mother != PersonStore.NONE && people.hasChild(mother, id)) enqueue(mother);
+            }
+        }
+
+        /**
+         * Queues a person, unless they have been reached already.
+         *
+         * @param id the ID of the person.
+         */
+        private void enqueue(int id) {
+            if (reached.get(id) >= 0) return;
+            reached.put(id, 0);
+            if (tail == queue.length) {
+                if (head > queue.length >> 1) {
+                    System.arraycopy(queue, head, queue, 0, tail - head);
+                    tail -= head;
+                    head = 0;
+                } else queue = Arrays.copyOf(queue, queue.length << 1);
+            }
+            queue[tail++] = id;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * This class finds the relations of many pairs of people in a tree, without user interaction.
+ * <p>
+ * The input file has one pair per line, as {@code name,name}, like the input of option [3] of
+ * {@link GenealogicalTreeApp}. The pairs are read in blocks, which are resolved in parallel on a fork/join pool, and
+ * the results are written to the output file in the order of the input. Only a bounded number of blocks are resolved
+ * ahead of the block that is being written. Each line of the output repeats the pair and adds its relation, as
+ * {@code name,name,relation}. A pair that cannot be resolved, e.g. because one of the names is not in the tree, is
+ * written as {@code name,name,error,message} and does not stop the run.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+class BatchRelationFinder {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The default number of pairs in a block.
+     */
+    static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    /**
+     * The number of blocks each thread may resolve ahead of the block that is being written.
+     */
+    private static final int BLOCKS_AHEAD_PER_THREAD = 4;
+
+    /**
+     * The size of the buffers of the input and output files, in characters.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The tree the pairs are resolved against.
+     */
+    private final GenealogicalTree tree;
+
+    /**
+     * The number of threads that resolve blocks.
+     */
+    private final int threads;
+
+    /**
+     * The number of pairs in a block.
+     */
+    private final int blockSize;
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link BatchRelationFinder} class, that uses one thread per available processor.
+     *
+     * @param tree the tree the pairs are resolved against.
+     */
+    BatchRelationFinder(GenealogicalTree tree) {
+        this(tree, Runtime.getRuntime().availableProcessors(), DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Constructor method for the {@link BatchRelationFinder} class.
+     *
+     * @param tree      the tree the pairs are resolved against.
+     * @param threads   the number of threads that resolve blocks.
+     * @param blockSize the number of pairs in a block.
+     */
+    BatchRelationFinder(GenealogicalTree tree, int threads, int blockSize) {
+        if (threads < 1 || blockSize < 1) throw new IllegalArgumentException("Threads and block size must be positive.");
+        this.tree = tree;
+        this.threads = threads;
+        this.blockSize = blockSize;
+    }
+
+    // ######################### METHODS #########################
+
+    /**
+     * Finds the relations of the pairs of the input file, and writes them to the output file.
+     *
+     * @param input  the file with the pairs.
+     * @param output the file the results are written to.
+     * @return the summary of the run.
+     * @throws IOException if either file cannot be read or written.
+     */
+    Summary run(Path input, Path output) throws IOException {
+        long start = System.nanoTime();
+        long pairs = 0;
+        long errors = 0;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Deque<Future<Block>> pending = new ArrayDeque<>();
+        try (BufferedReader reader = new BufferedReader(Files.newBufferedReader(input, StandardCharsets.UTF_8), BUFFER_SIZE);
+             BufferedWriter writer = new BufferedWriter(Files.newBufferedWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            boolean more = true;
+            while (more || !pending.isEmpty()) {
+                while (more && pending.size() < threads * BLOCKS_AHEAD_PER_THREAD) {
+                    List<String> lines = readBlock(reader);
+                    more = lines.size() == blockSize;
+                    if (!lines.isEmpty()) pending.add(pool.submit(() -> resolve(lines)));
+                }
+                if (pending.isEmpty()) break;
+                Block block = await(pending.remove());
+                for (String result : block.results) {
+                    writer.write(result);
+                    writer.newLine();
+                }
+                pairs += block.results.length;
+                errors += block.errors;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return new Summary(pairs, errors, System.nanoTime() - start);
+    }
+
+    /**
+     * Reads the next block of lines of the input file, skipping blank lines.
+     *
+     * @param reader the reader of the input file.
+     * @return the lines, fewer than {@link BatchRelationFinder#blockSize} only at the end of the file.
+     * @throws IOException if the file cannot be read.
+     */
+    private List<String> readBlock(BufferedReader reader) throws IOException {
+        List<String> lines = new ArrayList<>(blockSize);
+        String line;
+        while (lines.size() < blockSize && (line = reader.readLine()) != null) {
+            if (!line.isBlank()) lines.add(line);
+        }
+        return lines;
+    }
+
+    /**
+     * Resolves a block of pairs.
+     *
+     * @param lines the lines of the block, each with a pair.
+     * @return the results of the block.
+     */
+    private Block resolve(List<String> lines) {
+        String[] results = new String[lines.size()];
+        int errors = 0;
+        for (int i = 0; i < results.length; i++) {
+            String line = lines.get(i);
+            try {
+                String[] names = line.split(",");
+                if (names.length != 2) throw new InvalidInputException("Expected 2 names separated by comma.");
+                results[i] = line + "," + tree.findRelation(names[0], names[1]);
+            } catch (PersonNotFoundException | InvalidInputException e) {
+                results[i] = line + ",error," + e.getMessage();
+                errors++;
+            }
+        }
+        return new Block(results, errors);
+    }
+
+    /**
+     * Waits for a block to be resolved.
+     *
+     * @param future the future of the block.
+     * @return the resolved block.
+     */
+    private static Block await(Future<Block> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while finding relations.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to find relations.", e.getCause());
+        }
+    }
+
+    // ####################### NESTED TYPES #######################
+
+    /**
+     * The results of a block of pairs.
+     *
+     * @param results the output lines, one per pair.
+     * @param errors  the number of pairs that could not be resolved.
+     */
+    private record Block(String[] results, int errors) {
+    }
+
+    /**
+     * The summary of a run.
+     *
+     * @param pairs  the number of pairs that were read.
+     * @param errors the number of pairs that could not be resolved.
+     * @param nanos  the duration of the run, in nanoseconds.
+     */
+    record Summary(long pairs, long errors, long nanos) {
+
+        /**
+         * Calculates the number of pairs resolved per second.
+         *
+         * @return the number of pairs per second.
+         */
+        double pairsPerSecond() {
+            return nanos == 0 ? 0 : pairs * 1e9 / nanos;
+        }
+
+        /**
+         * Overrides the {@link Object#toString()} method, to return a string representation of the summary.
+         *
+         * @return the number of pairs, errors, the duration and the throughput of the run.
+         */
+        @Override
+        public String toString() {
+            return String.format("%d pairs (%d errors) in %.3f s, %.0f pairs/sec", pairs, errors, nanos / 1e9,
+                    pairsPerSecond());
+        }
+    }
+}
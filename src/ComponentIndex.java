@@ -0,0 +1,222 @@
+import java.util.Arrays;
+
+/**
+ * This class keeps track of the connected components of the people of a {@link PersonStore}, i.e. the groups of people
+ * that are linked to each other through parents, children and spouses, with a union-find forest. Two people in
+ * different components cannot be related in any way, so queries about them can be answered without a search.
+ * <p>
+ * Every person starts in a component of their own, and the components of two people are joined when a relation is
+ * added between them; components are never split, so a parent that is replaced leaves the two components it joined as
+ * one, which may only make a query search when it need not. The smaller tree is always hung under the root of the
+ * larger one, so a tree of {@code n} people is at most {@code log2(n)} levels deep, and the paths that are followed
+ * while joining two components are halved on the way. Finding the component of a person never writes, so it is safe
+ * while other threads read.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+class ComponentIndex {
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The person each person is hung under, or the person themselves for the root of a component.
+     */
+    private int[] parents;
+
+    /**
+     * The number of people of the component of each root.
+     */
+    private int[] sizes;
+
+    /**
+     * The number of people in the index.
+     */
+    private int size;
+
+    /**
+     * The number of components.
+     */
+    private int count;
+
+    /**
+     * The store's count of changes to the links of the people that the index reflects.
+     */
+    private long modCount;
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link ComponentIndex} class, which creates an empty index.
+     */
+    ComponentIndex() {
+        this(16);
+    }
+
+    /**
+     * Constructor method for the {@link ComponentIndex} class, which creates an empty index with room for a number of
+     * people.
+     *
+     * @param capacity the number of people there is room for.
+     */
+    private ComponentIndex(int capacity) {
+        parents = new int[Math.max(capacity, 16)];
+        sizes = new int[parents.length];
+    }
+
+    // ######################### METHODS #########################
+
+    /**
+     * Builds the index of all the people of a store, from the fathers, mothers, spouses and children of each of them.
+     *
+     * @param people the people to index.
+     * @return the index.
+     */
+    static ComponentIndex build(PersonStore people) {
+        int count = people.size();
+        ComponentIndex index = new ComponentIndex(count);
+        for (int id = 0; id < count; id++) index.addPerson(id);
+        for (int id = 0; id < count; id++) {
+            if (people.father(id) != PersonStore.NONE) index.union(people.father(id), id);
+            if (people.mother(id) != PersonStore.NONE) index.union(people.mother(id), id);
+            if (people.spouse(id) != PersonStore.NONE) index.union(people.spouse(id), id);
+            for (int c = 0, children = people.childCount(id); c < children; c++) index.union(id, people.child(id, c));
+        }
+        index.sync(people.modCount());
+        return index;
+    }
+
+    /**
+     * Adds a person, in a component of their own.
+     *
+     * @param id the ID of the person, which is the number of people in the index.
+     */
+    void addPerson(int id) {
+        if (id == parents.length) {
+            parents = Arrays.copyOf(parents, id << 1);
+            sizes = Arrays.copyOf(sizes, id << 1);
+        }
+        parents[id] = id;
+        sizes[id] = 1;
+        size = id + 1;
+        count++;
+    }
+
+    /**
+     * Joins the components of two people.
+     *
+     * @param id1 the ID of the first person.
+     * @param id2 the ID of the second person.
+     */
+    void union(int id1, int id2) {
+        int root1 = compress(id1);
+        int root2 = compress(id2);
+        if (root1 == root2) return;
+        if (sizes[root1] < sizes[root2]) {
+            int swap = root1;
+            root1 = root2;
+            root2 = swap;
+        }
+        parents[root2] = root1;
+        sizes[root1] += sizes[root2];
+        count--;
+    }
+
+    /**
+     * Finds the component of a person, without changing the index.
+     *
+     * @param id the ID of the person.
+     * @return the ID of the root of the person's component.
+     */
+    int find(int id) {
+        while (parents[id] != id) id = parents[id];
+        return id;
+    }
+
+    /**
+     * Checks if two people are in the same component.
+     *
+     * @param id1 the ID of the first person.
+     * @param id2 the ID of the second person.
+     * @return {@code true} if the two people are linked through any number of relations, {@code false} otherwise.
+     */
+    boolean connected(int id1, int id2) {
+        return id1 == id2 || find(id1) == find(id2);
+    }
+
+    /**
+     * Returns the number of people of the component of a root.
+     *
+     * @param root the ID of the root of the component.
+     * @return the number of people of the component.
+     */
+    int sizeOf(int root) {
+        return sizes[root];
+    }
+
+    /**
+     * Returns the number of components.
+     *
+     * @return the number of components.
+     */
+    int count() {
+        return count;
+    }
+
+    /**
+     * Groups the people by component.
+     *
+     * @return the people of each component, one component after the other, each in order of ID, and the index where
+     * each component starts, followed by the number of people.
+     */
+    int[][] members() {
+        int[] component = new int[size];
+        int[] starts = new int[count + 1];
+        int next = 0;
+        for (int id = 0; id < size; id++) {
+            if (parents[id] == id) {
+                starts[next + 1] = starts[next] + sizes[id];
+                component[id] = next++;
+            }
+        }
+        for (int id = 0; id < size; id++) component[id] = component[find(id)];
+        int[] fill = Arrays.copyOf(starts, count);
+        int[] members = new int[size];
+        for (int id = 0; id < size; id++) members[fill[component[id]]++] = id;
+        return new int[][]{members, starts};
+    }
+
+    /**
+     * Checks if the index reflects the current links of the people.
+     *
+     * @param modCount the store's current count of changes to the links of the people.
+     * @return {@code true} if the index is up to date, {@code false} otherwise.
+     */
+    boolean isCurrent(long modCount) {
+        return this.modCount == modCount;
+    }
+
+    /**
+     * Records that the index reflects the links of the people as of a count of changes, after the changes were added
+     * to it.
+     *
+     * @param modCount the store's count of changes to the links of the people.
+     */
+    void sync(long modCount) {
+        this.modCount = modCount;
+    }
+
+    /**
+     * Finds the component of a person, halving the path to its root on the way.
+     *
+     * @param id the ID of the person.
+     * @return the ID of the root of the person's component.
+     */
+    private int compress(int id) {
+        while (parents[id] != id) {
+            parents[id] = parents[parents[id]];
+            id = parents[id];
+        }
+        return id;
+    }
+}
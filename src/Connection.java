@@ -0,0 +1,122 @@
+import java.util.List;
+
+/**
+ * This class represents how one person is connected to another through the links of the tree, i.e. a shortest path
+ * from the first person to the second, where each hop goes to a parent, a child or a spouse.
+ * <p>
+ * Each hop is labeled with the relation of the person before it to the person after it, e.g. the connection
+ * {@code A -son-> B -husband-> C -father-> D} says that A is the son of B, who is the husband of C, who is the father
+ * of D.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+public final class Connection {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The connection of two people that are not connected within the limits of the search.
+     */
+    public static final Connection NONE = new Connection(List.of(), List.of());
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The names of the people on the path, from the first person to the second.
+     */
+    private final List<String> names;
+
+    /**
+     * The relation of each person on the path to the next one.
+     */
+    private final List<Relation> relations;
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link Connection} class.
+     *
+     * @param names     the names of the people on the path, from the first person to the second.
+     * @param relations the relation of each person on the path to the next one.
+     */
+    Connection(List<String> names, List<Relation> relations) {
+        this.names = List.copyOf(names);
+        this.relations = List.copyOf(relations);
+    }
+
+    // ####################### METHODS #######################
+
+    /**
+     * Checks if the two people are connected.
+     *
+     * @return {@code true} if a path was found between the two people, {@code false} otherwise.
+     */
+    public boolean isConnected() {
+        return !names.isEmpty();
+    }
+
+    /**
+     * Returns the number of hops of the path.
+     *
+     * @return the number of hops, or -1 if the two people are not connected.
+     */
+    public int length() {
+        return isConnected() ? relations.size() : -1;
+    }
+
+    /**
+     * Getter method for the names of the people on the path.
+     *
+     * @return the names of the people on the path, from the first person to the second.
+     */
+    public List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * Getter method for the relations of the path.
+     *
+     * @return the relation of each person on the path to the next one.
+     */
+    public List<Relation> getRelations() {
+        return relations;
+    }
+
+    /**
+     * Overrides the {@link Object#toString()} method, to return the path, e.g. {@code A -son-> B -husband-> C}.
+     *
+     * @return the path, or {@code unconnected} if the two people are not connected.
+     */
+    @Override
+    public String toString() {
+        if (!isConnected()) return "unconnected";
+        StringBuilder path = new StringBuilder(names.get(0));
+        for (int i = 0; i < relations.size(); i++) {
+            path.append(" -").append(relations.get(i)).append("-> ").append(names.get(i + 1));
+        }
+        return path.toString();
+    }
+
+    /**
+     * Overrides the {@link Object#equals(Object)} method. Two connections are equal if they have the same path.
+     *
+     * @param o the object to compare with.
+     * @return {@code true} if the object is an equal connection, {@code false} otherwise.
+     */
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Connection connection && connection.names.equals(names)
+                && connection.relations.equals(relations);
+    }
+
+    /**
+     * Overrides the {@link Object#hashCode()} method, to be consistent with {@link Connection#equals(Object)}.
+     *
+     * @return the hash code of the path.
+     */
+    @Override
+    public int hashCode() {
+        return 31 * names.hashCode() + relations.hashCode();
+    }
+}
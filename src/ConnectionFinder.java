@@ -0,0 +1,247 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class finds how two people of a {@link PersonStore} are connected, i.e. a shortest path between them through
+ * parent, child and, optionally, spouse links, whether or not they are related by blood.
+ * <p>
+ * The search is breadth-first from both people at once, always expanding the side with the smaller frontier by one
+ * hop, so each side only has to reach about half way. The people reached by each side are kept in a hash map from
+ * their ID to the person they were reached from, whose size depends on the number of people reached, not on the size of
+ * the tree. The first person that both sides reach is on a shortest path, since every shorter one would have been found
+ * when the previous hop was expanded. The search gives up when the path would be longer than the depth limit, or when
+ * the frontier to expand has more people than the frontier limit, which bounds the time spent on people that are not
+ * connected at all. Each thread reuses its own search state.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+class ConnectionFinder {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The default maximum number of hops of a path.
+     */
+    static final int DEFAULT_MAX_DEPTH = 24;
+
+    /**
+     * The default maximum number of people in a frontier that is expanded.
+     */
+    static final int DEFAULT_MAX_FRONTIER = 1 << 16;
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The people that are searched.
+     */
+    private final PersonStore people;
+
+    /**
+     * The search state of each thread.
+     */
+    private final ThreadLocal<Search> searches = ThreadLocal.withInitial(Search::new);
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link ConnectionFinder} class.
+     *
+     * @param people the people that are searched.
+     */
+    ConnectionFinder(PersonStore people) {
+        this.people = people;
+    }
+
+    // ######################### METHODS #########################
+
+    /**
+     * Finds a shortest path from the first person to the second person.
+     *
+     * @param id1         the ID of the first person.
+     * @param id2         the ID of the second person.
+     * @param maxDepth    the maximum number of hops of the path.
+     * @param maxFrontier the maximum number of people in a frontier that is expanded.
+     * @param spouses     whether the path may go from a person to their spouse.
+     * @return the connection, or {@link Connection#NONE} if there is no path within the limits.
+     */
+    Connection find(int id1, int id2, int maxDepth, int maxFrontier, boolean spouses) {
+        return searches.get().run(id1, id2, maxDepth, maxFrontier, spouses);
+    }
+
+    /**
+     * Finds the relation of a person to the next person on a path, who is their parent, child or spouse.
+     *
+     * @param id   the ID of the person.
+     * @param next the ID of the next person.
+     * @return the relation of the person to the next person.
+     */
+    private Relation hop(int id, int next) {
+        boolean man = people.gender(id) == Gender.MAN;
+        if (people.father(id) == next || people.mother(id) == next) return man ? Relation.SON : Relation.DAUGHTER;
+        if (people.father(next) == id || people.mother(next) == id) return man ? Relation.FATHER : Relation.MOTHER;
+        return man ? Relation.HUSBAND : Relation.WIFE;
+    }
+
+    /**
+     * Returns the father or mother of a person, if they have the person among their children.
+     *
+     * @param parent the ID of the father or mother, or {@link PersonStore#NONE}.
+     * @param child  the ID of the person.
+     * @return the ID of the parent, or {@link PersonStore#NONE} if they are not linked to the person.
+     */
+    private int linkedParent(int parent, int child) {
+        return parent != PersonStore.NONE && people.hasChild(parent, child) ? parent : PersonStore.NONE;
+    }
+
+    // ####################### NESTED TYPES #######################
+
+    /**
+     * The state of a search, reused by all the searches of a thread.
+     */
+    private class Search {
+
+        /**
+         * The people reached by each of the two sides, each with the person they were reached from, or with themselves
+         * for the person the side started from.
+         */
+        private final KinshipEngine.IntIntMap[] reached = {
+                new KinshipEngine.IntIntMap(), new KinshipEngine.IntIntMap()
+        };
+
+        /**
+         * The people reached by the last hop of each side.
+         */
+        private final int[][] frontiers = {new int[16], new int[16]};
+
+        /**
+         * The number of people in each frontier.
+         */
+        private final int[] frontierSizes = new int[2];
+
+        /**
+         * A buffer the next frontier is collected in.
+         */
+        private int[] next = new int[16];
+
+        /**
+         * The first person reached by both sides, or {@link PersonStore#NONE} if there is none yet.
+         */
+        private int meeting;
+
+        /**
+         * Runs a search.
+         *
+         * @param id1         the ID of the first person.
+         * @param id2         the ID of the second person.
+         * @param maxDepth    the maximum number of hops of the path.
+         * @param maxFrontier the maximum number of people in a frontier that is expanded.
+         * @param spouses     whether the path may go from a person to their spouse.
+         * @return the connection, or {@link Connection#NONE} if there is no path within the limits.
+         */
+        Connection run(int id1, int id2, int maxDepth, int maxFrontier, boolean spouses) {
+            if (id1 == id2) return new Connection(List.of(people.name(id1)), List.of());
+            start(0, id1);
+            start(1, id2);
+            meeting = PersonStore.NONE;
+            for (int depth = 0; depth < maxDepth && meeting == PersonStore.NONE; depth++) {
+                int side = frontierSizes[0] <= frontierSizes[1] ? 0 : 1;
+                if (frontierSizes[side] == 0 || frontierSizes[side] > maxFrontier) break;
+                expand(side, spouses);
+            }
+            return meeting == PersonStore.NONE ? Connection.NONE : path();
+        }
+
+        /**
+         * Starts the search from one of the two people.
+         *
+         * @param side the side of the search, 0 for the first person and 1 for the second.
+         * @param id   the ID of the person.
+         */
+        private void start(int side, int id) {
+            reached[side].clear();
+            reached[side].put(id, id);
+            frontiers[side][0] = id;
+            frontierSizes[side] = 1;
+        }
+
+        /**
+         * Expands the frontier of one side by one hop, to the parents, children and spouses of its people, and stops
+         * at the first person that the other side has reached. Only the links that are set both ways are followed,
+         * e.g. not the spouse of someone who has since married someone else, so both sides see the same links.
+         *
+         * @param side    the side of the search, 0 for the first person and 1 for the second.
+         * @param spouses whether spouses are expanded.
+         */
+        private void expand(int side, boolean spouses) {
+            int[] frontier = frontiers[side];
+            int size = 0;
+            for (int i = 0, count = frontierSizes[side]; i < count && meeting == PersonStore.NONE; i++) {
+                int person = frontier[i];
+                size = visit(side, person, linkedParent(people.father(person), person), size);
+                size = visit(side, person, linkedParent(people.mother(person), person), size);
+                for (int c = 0, children = people.childCount(person); c < children; c++) {
+                    int child = people.child(person, c);
+                    if (people.father(child) == person || people.mother(child) == person) {
+                        size = visit(side, person, child, size);
+                    }
+                }
+                int spouse = people.spouse(person);
+                if (spouses && spouse != PersonStore.NONE && people.spouse(spouse) == person) {
+                    size = visit(side, person, spouse, size);
+                }
+            }
+            frontiers[side] = next;
+            next = frontier;
+            frontierSizes[side] = size;
+        }
+
+        /**
+         * Visits a person linked to a person of the frontier.
+         *
+         * @param side   the side of the search, 0 for the first person and 1 for the second.
+         * @param from   the ID of the person of the frontier.
+         * @param linked the ID of the linked person, or {@link PersonStore#NONE}.
+         * @param size   the size of the next frontier.
+         * @return the new size of the next frontier.
+         */
+        private int visit(int side, int from, int linked, int size) {
+            if (linked == PersonStore.NONE || reached[side].get(linked) >= 0) return size;
+            reached[side].put(linked, from);
+            if (reached[1 - side].get(linked) >= 0) {
+                if (meeting == PersonStore.NONE) meeting = linked;
+                return size;
+            }
+            if (size == next.length) next = Arrays.copyOf(next, size << 1);
+            next[size] = linked;
+            return size + 1;
+        }
+
+        /**
+         * Builds the path through the person both sides reached, from the first person to the second.
+         *
+         * @return the connection.
+         */
+        private Connection path() {
+            List<Integer> ids = new ArrayList<>();
+            for (int id = meeting; ; id = reached[0].get(id)) {
+                ids.add(id);
+                if (reached[0].get(id) == id) break;
+            }
+            Collections.reverse(ids);
+            for (int id = meeting; reached[1].get(id) != id; ) {
+                id = reached[1].get(id);
+                ids.add(id);
+            }
+            List<String> names = new ArrayList<>(ids.size());
+            List<Relation> relations = new ArrayList<>(ids.size() - 1);
+            for (int i = 0; i < ids.size(); i++) {
+                names.add(people.name(ids.get(i)));
+                if (i > 0) relations.add(hop(ids.get(i - 1), ids.get(i)));
+            }
+            return new Connection(names, relations);
+        }
+    }
+}
@@ -0,0 +1,481 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+
+/**
+ * This class exports the people of a {@link PersonStore} to a CSV file, sorted by name, and optionally their relations.
+ * <p>
+ * Unless the order of the people is already known, e.g. from the name index of the tree, the names are sorted by an
+ * external merge sort, so memory is bounded by the size of a run instead of the size of the tree: the current people
+ * are read in runs of at most {@link CsvTreeExporter#runSize} names, each run is sorted and spilled to a temporary
+ * file, and the runs are merged into the export with a heap of their next rows. A tree that fits in one run is not
+ * spilled.
+ * <p>
+ * Every file is written as UTF-8 through a large buffer. The people are written as {@code name,gender} rows, and the
+ * relations as {@code name,relation,name} rows, i.e. the dialect {@link CsvTreeLoader} reads, so an export with
+ * relations loads back into the same tree. Only the father, mother and spouse links are exported, since the other
+ * relations are derived from them, and they are ordered so that the links a later relation left one-sided, i.e. a
+ * parent who was replaced but still has the child, or a spouse who has since married someone else, are kept too.
+ * Links to people that were replaced by a person with the same name cannot be named, so they are not exported, and
+ * neither is a link that no order of relations can give, e.g. one made through the setters of a {@link Person}.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+class CsvTreeExporter {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The default number of names in a run.
+     */
+    static final int DEFAULT_RUN_SIZE = 1 << 20;
+
+    /**
+     * The size of the buffer of every file that is written, in characters.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * The size of the buffer of every run that is merged, in characters, which is smaller since many runs are read at
+     * once.
+     */
+    private static final int RUN_BUFFER_SIZE = 64 << 10;
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The people that are exported.
+     */
+    private final PersonStore people;
+
+    /**
+     * The collation the people are sorted in.
+     */
+    private final NameCollation collation;
+
+    /**
+     * The maximum number of names in a run.
+     */
+    private final int runSize;
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link CsvTreeExporter} class.
+     *
+     * @param people    the people that are exported.
+     * @param collation the collation the people are sorted in.
+     * @param runSize   the maximum number of names in a run.
+     */
+    CsvTreeExporter(PersonStore people, NameCollation collation, int runSize) {
+        if (runSize < 1) throw new IllegalArgumentException("The run size must be positive.");
+        this.people = people;
+        this.collation = collation;
+        this.runSize = runSize;
+    }
+
+    // ######################### METHODS #########################
+
+    /**
+     * Exports the people to a file, sorted by name, and optionally their relations after them. The export is written to
+     * a temporary file next to the target, which is then moved over it, so an existing file is never left
+     * half-written.
+     *
+     * @param file      the file to write to.
+     * @param order     the IDs of the current people, sorted by name, or {@code null} to sort them.
+     * @param relations whether the relations are exported.
+     * @return the number of rows that were written.
+     * @throws IOException if the file cannot be written.
+     */
+    long export(Path file, int[] order, boolean relations) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        long rows;
+        try (Writer out = open(temporary)) {
+            rows = order != null ? writePeople(out, order) : sortPeople(out, temporary);
+            if (relations) rows += writeRelations(out);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        return rows;
+    }
+
+    /**
+     * Writes the people in a known order.
+     *
+     * @param out   the export.
+     * @param order the IDs of the people, sorted by name.
+     * @return the number of rows that were written.
+     * @throws IOException if the export cannot be written.
+     */
+    private long writePeople(Writer out, int[] order) throws IOException {
+        for (int id : order) writePerson(out, people.name(id), people.gender(id));
+        return order.length;
+    }
+
+    /**
+     * Sorts the current people by name with an external merge sort and writes them. The runs are spilled to a
+     * temporary directory next to the export, which is deleted when done.
+     *
+     * @param out    the export.
+     * @param target the file the export is written to.
+     * @return the number of rows that were written.
+     * @throws IOException if a run or the export cannot be written.
+     */
+    private long sortPeople(Writer out, Path target) throws IOException {
+        Comparator<String> order = comparator();
+        String[] run = new String[Math.min(runSize, Math.max(people.size(), 1))];
+        int count = 0;
+        Path directory = null;
+        List<Path> runs = new ArrayList<>();
+        try {
+            for (int id = 0, size = people.size(); id < size; id++) {
+                if (!people.isCurrent(id)) continue;
+                if (count == run.length) {
+                    if (directory == null) {
+                        directory = Files.createTempDirectory(target.toAbsolutePath().getParent(), "export-runs");
+                    }
+                    runs.add(spill(directory, runs.size(), run, count, order));
+                    count = 0;
+                }
+                run[count++] = people.name(id);
+            }
+            if (runs.isEmpty()) {
+                Arrays.sort(run, 0, count, order);
+                for (int i = 0; i < count; i++) writePerson(out, run[i], people.gender(people.idOf(run[i])));
+                return count;
+            }
+            runs.add(spill(directory, runs.size(), run, count, order));
+            run = null; // free the last run before the readers of the merge are allocated
+            return merge(out, runs);
+        } finally {
+            if (directory != null) delete(directory);
+        }
+    }
+
+    /**
+     * Sorts a run of names and spills it to a file, one {@code name,gender} row per person.
+     *
+     * @param directory the directory of the runs.
+     * @param index     the index of the run.
+     * @param run       the names of the run.
+     * @param count     the number of names of the run.
+     * @param order     the order the names are sorted in.
+     * @return the file of the run.
+     * @throws IOException if the run cannot be written.
+     */
+    private Path spill(Path directory, int index, String[] run, int count, Comparator<String> order)
+            throws IOException {
+        Arrays.sort(run, 0, count, order);
+        Path file = directory.resolve("run-" + index + ".csv");
+        try (Writer out = open(file)) {
+            for (int i = 0; i < count; i++) {
+                writePerson(out, run[i], people.gender(people.idOf(run[i])));
+                run[i] = null;
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Merges sorted runs into the export, with a heap of the next row of every run.
+     *
+     * @param out  the export.
+     * @param runs the files of the runs.
+     * @return the number of rows that were written.
+     * @throws IOException if a run cannot be read or the export cannot be written.
+     */
+    private long merge(Writer out, List<Path> runs) throws IOException {
+        Comparator<String> order = comparator();
+        PriorityQueue<Run> heap = new PriorityQueue<>(runs.size(), (a, b) -> order.compare(a.name, b.name));
+        long rows = 0;
+        try {
+            for (Path file : runs) {
+                Run run = new Run(file);
+                if (run.advance()) heap.add(run);
+                else run.close();
+            }
+            while (!heap.isEmpty()) {
+                Run run = heap.poll();
+                out.write(run.row);
+                out.write('\n');
+                rows++;
+                if (run.advance()) heap.add(run);
+                else run.close();
+            }
+            return rows;
+        } finally {
+            for (Run run : heap) run.close();
+        }
+    }
+
+    /**
+     * Writes the father, mother and spouse links of the current people, as relation rows. A relation row links the
+     * parent to the child both ways, so a link from a parent who was replaced is written before the row of the current
+     * parent, which overwrites it; see {@link CsvTreeExporter#writeReplacedParents(Writer)}. Likewise, a relation row
+     * links both spouses, so a link to a spouse that has since married someone else is written before the links of
+     * that spouse, which overwrite it; see {@link CsvTreeExporter#remarriageOrder()}.
+     *
+     * @param out the export.
+     * @return the number of rows that were written.
+     * @throws IOException if the export cannot be written.
+     */
+    private long writeRelations(Writer out) throws IOException {
+        long rows = writeReplacedParents(out);
+        int[] remarried = remarriageOrder();
+        for (int id : remarried) writeSpouse(out, id, people.spouse(id));
+        rows += remarried.length;
+        for (int id = 0, size = people.size(); id < size; id++) {
+            if (!people.isCurrent(id)) continue;
+            int father = people.father(id);
+            if (isExported(id, father)) {
+                writeRelation(out, father, Relation.FATHER, id);
+                rows++;
+            }
+            int mother = people.mother(id);
+            if (isExported(id, mother)) {
+                writeRelation(out, mother, Relation.MOTHER, id);
+                rows++;
+            }
+            int spouse = people.spouse(id);
+            if (isExported(id, spouse) && people.spouse(spouse) == id && id <= spouse) {
+                writeSpouse(out, id, spouse);
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Writes the links of the parents that were replaced by another parent, and still have the child among their
+     * children. Each link is written as a row of the relation of a current parent of the child who is exported, i.e. as
+     * a father row if the child has a father, and otherwise as a mother row, so the row of that parent, which is
+     * written after it, sets the parent of the child again, and only the link from the replaced parent is left.
+     *
+     * @param out the export.
+     * @return the number of rows that were written.
+     * @throws IOException if the export cannot be written.
+     */
+    private long writeReplacedParents(Writer out) throws IOException {
+        long rows = 0;
+        for (int parent = 0, size = people.size(); parent < size; parent++) {
+            if (!people.isCurrent(parent)) continue;
+            for (int i = 0, count = people.childCount(parent); i < count; i++) {
+                int child = people.child(parent, i);
+                if (!people.isCurrent(child) || people.father(child) == parent || people.mother(child) == parent) {
+                    continue;
+                }
+                Relation relation = isExported(child, people.father(child)) ? Relation.FATHER
+                        : isExported(child, people.mother(child)) ? Relation.MOTHER : null;
+                if (relation == null) continue;
+                writeRelation(out, parent, relation, child);
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Orders the people whose spouse has since married someone else. Following the spouse links from such a person
+     * leads to a married couple, and every link on the way must be written before the next one, so the people are
+     * sorted by their distance from the couple, farthest first.
+     *
+     * @return the IDs of the people, in the order their spouse links are written.
+     */
+    private int[] remarriageOrder() {
+        int size = people.size();
+        int[] distance = new int[size];
+        Arrays.fill(distance, -1);
+        int[] chain = new int[16];
+        int count = 0;
+        for (int id = 0; id < size; id++) {
+            int length = 0;
+            int next = id;
+            while (distance[next] == -1) {
+                int spouse = people.spouse(next);
+                distance[next] = -2;
+                if (!isExported(next, spouse) || people.spouse(spouse) == next) {
+                    distance[next] = 0;
+                    break;
+                }
+                if (length == chain.length) chain = Arrays.copyOf(chain, length << 1);
+                chain[length++] = next;
+                next = spouse;
+            }
+            int base = Math.max(distance[next], 0);
+            for (int i = 0; i < length; i++) distance[chain[i]] = base + length - i;
+            count += length;
+        }
+
+        long[] keys = new long[count];
+        for (int id = 0, i = 0; id < size; id++) {
+            if (distance[id] > 0) keys[i++] = (long) -distance[id] << 32 | id;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) order[i] = (int) keys[i];
+        return order;
+    }
+
+    /**
+     * Checks if a link of a person is exported, i.e. if both people are current.
+     *
+     * @param id     the ID of the person.
+     * @param linked the ID of the linked person, or {@link PersonStore#NONE}.
+     * @return whether the link is exported.
+     */
+    private boolean isExported(int id, int linked) {
+        return linked != PersonStore.NONE && people.isCurrent(id) && people.isCurrent(linked);
+    }
+
+    /**
+     * Writes the relation row of a person to their spouse.
+     *
+     * @param out    the export.
+     * @param id     the ID of the person.
+     * @param spouse the ID of the spouse.
+     * @throws IOException if the export cannot be written.
+     */
+    private void writeSpouse(Writer out, int id, int spouse) throws IOException {
+        writeRelation(out, id, people.gender(id) == Gender.WOMAN ? Relation.WIFE : Relation.HUSBAND, spouse);
+    }
+
+    /**
+     * Writes a person row.
+     *
+     * @param out    the file.
+     * @param name   the name of the person.
+     * @param gender the gender of the person.
+     * @throws IOException if the file cannot be written.
+     */
+    private static void writePerson(Writer out, String name, Gender gender) throws IOException {
+        out.write(name);
+        out.write(',');
+        out.write(gender.toString());
+        out.write('\n');
+    }
+
+    /**
+     * Writes a relation row.
+     *
+     * @param out      the export.
+     * @param id1      the ID of the first person.
+     * @param relation the relation of the first person to the second.
+     * @param id2      the ID of the second person.
+     * @throws IOException if the export cannot be written.
+     */
+    private void writeRelation(Writer out, int id1, Relation relation, int id2) throws IOException {
+        out.write(people.name(id1));
+        out.write(',');
+        out.write(relation.toString());
+        out.write(',');
+        out.write(people.name(id2));
+        out.write('\n');
+    }
+
+    /**
+     * Returns the order of the names under the collation: by key, then by exact spelling, like the name index.
+     *
+     * @return the order of the names.
+     */
+    private Comparator<String> comparator() {
+        return collation == NameCollation.EXACT ? Comparator.naturalOrder()
+                : Comparator.comparing(collation::key).thenComparing(Comparator.naturalOrder());
+    }
+
+    /**
+     * Opens a file for writing, as UTF-8, through a large buffer.
+     *
+     * @param file the file.
+     * @return the writer of the file.
+     * @throws IOException if the file cannot be opened.
+     */
+    private static Writer open(Path file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8),
+                BUFFER_SIZE);
+    }
+
+    /**
+     * Deletes a directory of runs and the runs in it.
+     *
+     * @param directory the directory.
+     * @throws IOException if the directory cannot be deleted.
+     */
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(file);
+        }
+    }
+
+    // ####################### NESTED TYPES #######################
+
+    /**
+     * A sorted run that is being merged, with its next row.
+     */
+    private static class Run implements AutoCloseable {
+
+        /**
+         * The reader of the run.
+         */
+        private final BufferedReader reader;
+
+        /**
+         * The next row of the run.
+         */
+        private String row;
+
+        /**
+         * The name of the next row.
+         */
+        private String name;
+
+        /**
+         * Constructor method for the {@link Run} class.
+         *
+         * @param file the file of the run.
+         * @throws IOException if the file cannot be opened.
+         */
+        Run(Path file) throws IOException {
+            reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8),
+                    RUN_BUFFER_SIZE);
+        }
+
+        /**
+         * Reads the next row of the run.
+         *
+         * @return whether there was a next row.
+         * @throws IOException if the run cannot be read.
+         */
+        boolean advance() throws IOException {
+            row = reader.readLine();
+            if (row == null) return false;
+            name = row.substring(0, row.lastIndexOf(','));
+            return true;
+        }
+
+        /**
+         * Closes the reader of the run.
+         *
+         * @throws IOException if the reader cannot be closed.
+         */
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,513 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * This class loads a genealogical tree from a CSV file in bulk.
+ * <p>
+ * The file is memory-mapped and split into line-aligned chunks, which are parsed in parallel, without regular
+ * expressions. Each row of the file is either a person, as {@code name,gender}, or a relation, as
+ * {@code name,relation,name}. The file is read in two phases: the first adds every person to the tree, and the second
+ * resolves the names of every relation to IDs and applies it. The results of each chunk are applied in the order of the
+ * file, and only a bounded number of chunks are parsed ahead, so the rows of the file are never all kept in memory.
+ * <p>
+ * As when the rows are added one by one, all people are added before any relations, later people replace earlier ones
+ * with the same name, and empty trailing fields are ignored. Blank lines are skipped.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+class CsvTreeLoader {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The default size of a chunk, in bytes.
+     */
+    static final int DEFAULT_CHUNK_SIZE = 16 << 20;
+
+    /**
+     * The number of chunks each thread may parse ahead of the chunk that is being applied.
+     */
+    private static final int CHUNKS_AHEAD_PER_THREAD = 2;
+
+    /**
+     * The maximum number of fields a row can have.
+     */
+    private static final int MAX_FIELDS = 3;
+
+    /**
+     * The genders, indexed by the ordinals stored while parsing.
+     */
+    private static final Gender[] GENDERS = Gender.values();
+
+    /**
+     * The relations, indexed by the ordinals stored while parsing.
+     */
+    private static final Relation[] RELATIONS = Relation.values();
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The tree the people and relations are added to.
+     */
+    private final GenealogicalTree tree;
+
+    /**
+     * The number of threads that parse chunks.
+     */
+    private final int threads;
+
+    /**
+     * The size of a chunk, in bytes.
+     */
+    private final int chunkSize;
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link CsvTreeLoader} class, that uses one thread per available processor.
+     *
+     * @param tree the tree the people and relations are added to.
+     */
+    CsvTreeLoader(GenealogicalTree tree) {
+        this(tree, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructor method for the {@link CsvTreeLoader} class.
+     *
+     * @param tree      the tree the people and relations are added to.
+     * @param threads   the number of threads that parse chunks.
+     * @param chunkSize the size of a chunk, in bytes.
+     */
+    CsvTreeLoader(GenealogicalTree tree, int threads, int chunkSize) {
+        if (threads < 1 || chunkSize < 1) throw new IllegalArgumentException("Threads and chunk size must be positive.");
+        this.tree = tree;
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+    }
+
+    // ######################### METHODS #########################
+
+    /**
+     * Loads the people and relations of a file into the tree.
+     *
+     * @param file the file to read.
+     * @return the number of rows that were loaded.
+     * @throws IOException             if the file cannot be read.
+     * @throws PersonNotFoundException if a relation refers to a person that is not in the file.
+     * @throws IllegalArgumentException if a row is invalid.
+     */
+    long load(Path file) throws IOException, PersonNotFoundException {
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] bounds = splitIntoChunks(channel, chunkSize);
+            long rows = 0;
+            for (People people : this.<People>parseInOrder(executor, channel, bounds, this::parsePeople)) {
+                for (int i = 0; i < people.count; i++) tree.addPerson(people.names[i], GENDERS[people.genders[i]]);
+                rows += people.count;
+            }
+            for (Relations relations : this.<Relations>parseInOrder(executor, channel, bounds, this::parseRelations)) {
+                int[] ids = relations.rows;
+                for (int i = 0; i < relations.count * 3; i += 3) {
+                    tree.addRelation(ids[i], ids[i + 1], RELATIONS[ids[i + 2]]);
+                }
+                rows += relations.count;
+            }
+            tree.compact();
+            TreeMetrics metrics = tree.getMetrics();
+            if (metrics != null) metrics.recordLoad(System.nanoTime() - start);
+            return rows;
+        } catch (CompletionException e) {
+            throw rethrow(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Splits a file into chunks of roughly a number of bytes, that end at the end of a line.
+     *
+     * @param channel   the channel of the file.
+     * @param chunkSize the size of a chunk, in bytes.
+     * @return the offsets at which the chunks start, followed by the size of the file.
+     * @throws IOException if the file cannot be read.
+     */
+    static long[] splitIntoChunks(FileChannel channel, int chunkSize) throws IOException {
+        long size = channel.size();
+        long[] bounds = new long[(int) (size / chunkSize) + 2];
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        int count = 1;
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(start + chunkSize, size);
+            while (end < size) {
+                buffer.clear();
+                int read = channel.read(buffer, end);
+                if (read <= 0) {
+                    end = size;
+                    break;
+                }
+                int newline = indexOfNewline(buffer, read);
+                if (newline >= 0) {
+                    end += newline + 1;
+                    break;
+                }
+                end += read;
+            }
+            bounds[count++] = end;
+            start = end;
+        }
+        return Arrays.copyOf(bounds, count);
+    }
+
+    /**
+     * Finds the first newline among the bytes that were read into a buffer.
+     *
+     * @param buffer the buffer.
+     * @param read   the number of bytes that were read.
+     * @return the index of the newline, or -1 if there is none.
+     */
+    private static int indexOfNewline(ByteBuffer buffer, int read) {
+        for (int i = 0; i < read; i++) {
+            if (buffer.get(i) == '\n') return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Parses the chunks of a file in parallel and returns their results in order. Only a bounded number of chunks are
+     * parsed ahead of the result that is being consumed.
+     *
+     * @param executor the executor that parses the chunks.
+     * @param channel  the channel of the file.
+     * @param bounds   the bounds of the chunks.
+     * @param parser   the parser of a chunk.
+     * @param <T>      the type of the result of a chunk.
+     * @return the results of the chunks, in order.
+     */
+    private <T> Iterable<T> parseInOrder(ExecutorService executor, FileChannel channel, long[] bounds,
+                                         ChunkParser<T> parser) {
+        return () -> new Iterator<>() {
+            private final Deque<Future<T>> pending = new ArrayDeque<>();
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                while (next < bounds.length - 1 && pending.size() < threads * CHUNKS_AHEAD_PER_THREAD) {
+                    long start = bounds[next];
+                    long length = bounds[++next] - start;
+                    pending.add(executor.submit(() -> parser.parse(channel.map(FileChannel.MapMode.READ_ONLY, start, length))));
+                }
+                return !pending.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                hasNext();
+                try {
+                    return pending.remove().get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while loading the file.", e);
+                } catch (ExecutionException e) {
+                    throw new CompletionException(e.getCause());
+                }
+            }
+        };
+    }
+
+    /**
+     * Parses the people of a chunk.
+     *
+     * @param chunk the chunk.
+     * @return the names and genders of the people, in order.
+     */
+    private People parsePeople(ByteBuffer chunk) {
+        People people = new People();
+        new RowReader(chunk).forEachRow(2, row -> people.add(row.decode(0), row.match(1, GENDERS)));
+        return people;
+    }
+
+    /**
+     * Parses the relations of a chunk, and resolves the names in them to IDs.
+     *
+     * @param chunk the chunk.
+     * @return the relations, as triples of two IDs and the ordinal of the relation.
+     * @throws PersonNotFoundException if a relation refers to a person that is not in the tree.
+     */
+    private Relations parseRelations(ByteBuffer chunk) throws PersonNotFoundException {
+        Relations relations = new Relations();
+        try {
+            new RowReader(chunk).forEachRow(3, row -> {
+                int relation = row.match(1, RELATIONS);
+                relations.add(findId(row.decode(0)), findId(row.decode(2)), relation);
+            });
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof PersonNotFoundException cause) throw cause;
+            throw e;
+        }
+        return relations;
+    }
+
+    /**
+     * Finds the ID of a person while parsing a chunk.
+     *
+     * @param name the name of the person.
+     * @return the ID of the person.
+     * @throws CompletionException wrapping a {@link PersonNotFoundException}, if the person is not in the tree.
+     */
+    private int findId(String name) {
+        try {
+            return tree.findId(name);
+        } catch (PersonNotFoundException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Rethrows the cause of an exception that was thrown while loading a chunk.
+     *
+     * @param e the exception.
+     * @return the exception itself, if its cause is not one of the exceptions that are rethrown.
+     * @throws IOException             if the cause is an {@link IOException}.
+     * @throws PersonNotFoundException if the cause is a {@link PersonNotFoundException}.
+     */
+    private static RuntimeException rethrow(CompletionException e) throws IOException, PersonNotFoundException {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException io) throw io;
+        if (cause instanceof PersonNotFoundException notFound) throw notFound;
+        if (cause instanceof RuntimeException runtime) return runtime;
+        return e;
+    }
+
+    // ####################### NESTED TYPES #######################
+
+    /**
+     * Parses a chunk of a file.
+     *
+     * @param <T> the type of the result.
+     */
+    @FunctionalInterface
+    private interface ChunkParser<T> {
+
+        /**
+         * Parses a chunk of a file.
+         *
+         * @param chunk the chunk.
+         * @return the result.
+         * @throws Exception if the chunk cannot be parsed.
+         */
+        T parse(ByteBuffer chunk) throws Exception;
+    }
+
+    /**
+     * The people parsed from a chunk.
+     */
+    private static class People {
+
+        /**
+         * The names of the people.
+         */
+        private String[] names = new String[256];
+
+        /**
+         * The ordinals of the genders of the people.
+         */
+        private byte[] genders = new byte[256];
+
+        /**
+         * The number of people.
+         */
+        private int count;
+
+        /**
+         * Adds a person.
+         *
+         * @param name   the person's name.
+         * @param gender the ordinal of the person's gender.
+         */
+        void add(String name, int gender) {
+            if (count == names.length) {
+                names = Arrays.copyOf(names, count << 1);
+                genders = Arrays.copyOf(genders, count << 1);
+            }
+            names[count] = name;
+            genders[count++] = (byte) gender;
+        }
+    }
+
+    /**
+     * The relations parsed from a chunk.
+     */
+    private static class Relations {
+
+        /**
+         * The relations, as triples of the IDs of the two people and the ordinal of the relation.
+         */
+        private int[] rows = new int[768];
+
+        /**
+         * The number of relations.
+         */
+        private int count;
+
+        /**
+         * Adds a relation.
+         *
+         * @param id1      the ID of the first person.
+         * @param id2      the ID of the second person.
+         * @param relation the ordinal of the relation.
+         */
+        void add(int id1, int id2, int relation) {
+            if (count * 3 == rows.length) rows = Arrays.copyOf(rows, rows.length << 1);
+            rows[count * 3] = id1;
+            rows[count * 3 + 1] = id2;
+            rows[count * 3 + 2] = relation;
+            count++;
+        }
+    }
+
+    /**
+     * Reads the rows of a chunk, one at a time, keeping the bounds of their fields.
+     */
+    static class RowReader {
+
+        /**
+         * The chunk.
+         */
+        private final ByteBuffer chunk;
+
+        /**
+         * The start and end of each field of the current row.
+         */
+        private final int[] bounds = new int[MAX_FIELDS * 2];
+
+        /**
+         * A buffer the bytes of a field are copied to, before they are decoded.
+         */
+        private byte[] scratch = new byte[256];
+
+        /**
+         * Constructor method for the {@link RowReader} class.
+         *
+         * @param chunk the chunk.
+         */
+        RowReader(ByteBuffer chunk) {
+            this.chunk = chunk;
+        }
+
+        /**
+         * Calls the consumer for every row of the chunk that has the specified number of fields. Rows with the other
+         * valid number of fields are skipped, and any other row is rejected.
+         *
+         * @param fields   the number of fields of the rows to consume.
+         * @param consumer the consumer of the rows.
+         * @throws IllegalArgumentException if a row has an invalid number of fields.
+         */
+        void forEachRow(int fields, Consumer<RowReader> consumer) {
+            int limit = chunk.limit();
+            int position = 0;
+            while (position < limit) {
+                int end = position;
+                while (end < limit && chunk.get(end) != '\n') end++;
+                int count = split(position, end);
+                if (count == fields) consumer.accept(this);
+                else if (count != 0 && (count < 2 || count > MAX_FIELDS)) {
+                    throw new IllegalArgumentException("Invalid row length: " + decode(position, end));
+                }
+                position = end + 1;
+            }
+        }
+
+        /**
+         * Splits a line into fields, ignoring empty trailing fields like {@link String#split(String)}.
+         *
+         * @param start the start of the line.
+         * @param end   the end of the line, excluding the newline.
+         * @return the number of fields, -1 if there are too many, or 0 if the line is blank.
+         */
+        private int split(int start, int end) {
+            if (end > start && chunk.get(end - 1) == '\r') end--;
+            if (end == start) return 0;
+            int field = 0;
+            int fields = 0;
+            int fieldStart = start;
+            for (int i = start; i <= end; i++) {
+                if (i < end && chunk.get(i) != ',') continue;
+                if (i > fieldStart) {
+                    if (field >= MAX_FIELDS) return -1;
+                    fields = field + 1;
+                }
+                if (field < MAX_FIELDS) {
+                    bounds[field * 2] = fieldStart;
+                    bounds[field * 2 + 1] = i;
+                }
+                field++;
+                fieldStart = i + 1;
+            }
+            return fields == 0 ? -1 : fields;
+        }
+
+        /**
+         * Decodes a field of the current row.
+         *
+         * @param field the index of the field.
+         * @return the field as a string.
+         */
+        String decode(int field) {
+            return decode(bounds[field * 2], bounds[field * 2 + 1]);
+        }
+
+        /**
+         * Decodes a range of the chunk as UTF-8.
+         *
+         * @param start the start of the range.
+         * @param end   the end of the range.
+         * @return the range as a string.
+         */
+        private String decode(int start, int end) {
+            int length = end - start;
+            if (length > scratch.length) scratch = new byte[Math.max(length, scratch.length << 1)];
+            chunk.get(start, scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Matches a field of the current row against the names of the constants of an enum, ignoring case.
+         *
+         * @param field     the index of the field.
+         * @param constants the constants of the enum.
+         * @return the ordinal of the matching constant.
+         * @throws IllegalArgumentException if no constant matches.
+         */
+        int match(int field, Enum<?>[] constants) {
+            int start = bounds[field * 2];
+            int length = bounds[field * 2 + 1] - start;
+            for (Enum<?> constant : constants) {
+                String name = constant.name();
+                if (name.length() != length) continue;
+                int i = 0;
+                while (i < length && Character.toUpperCase((char) chunk.get(start + i)) == name.charAt(i)) i++;
+                if (i == length) return constant.ordinal();
+            }
+            throw new IllegalArgumentException("No " + constants[0].getDeclaringClass().getSimpleName()
+                    + " named " + decode(field));
+        }
+    }
+}
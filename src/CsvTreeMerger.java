@@ -0,0 +1,760 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+/**
+ * This class merges many CSV files, which may list the same people, into a genealogical tree, adding every person
+ * only once.
+ * <p>
+ * Each file is in the format {@link CsvTreeLoader} reads, and is split into the same line-aligned chunks, which are
+ * parsed in parallel, all files at once. The names of the relations of each file are then resolved to the people of
+ * the same file, and every row of a person is given a key: their name, with its whitespace collapsed and compared
+ * under a {@link NameCollation}, and optionally their gender, and the names of the father and mother their file gives
+ * them. The rows, and the people already in the tree, are partitioned by the hash of their name across the threads,
+ * and each thread merges the rows with the same key into the person already in the tree, or into the first of them,
+ * so a person that many files list is added once, with the name and gender of the first row.
+ * <p>
+ * The relations are then added in the order of the files, without replacing the ones that are already in the tree: a
+ * relation that is already known is skipped, and one that would give a person a second father, mother or spouse is
+ * skipped and reported as a conflict. A relation that names a person who is not in its file is resolved by name
+ * against the tree, so a file may link to people of another file. See {@link MergeReport}.
+ * <p>
+ * Unlike a load, a merge keeps the rows of all files in memory until they are applied, and the tree should not be
+ * changed by anything else while it runs.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+class CsvTreeMerger {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The genders, indexed by the ordinals stored while parsing.
+     */
+    private static final Gender[] GENDERS = Gender.values();
+
+    /**
+     * The relations, indexed by the ordinals stored while parsing.
+     */
+    private static final Relation[] RELATIONS = Relation.values();
+
+    /**
+     * The character that separates the parts of a key, which names are not expected to contain.
+     */
+    private static final char SEPARATOR = '\0';
+
+    /**
+     * Matches the runs of whitespace that are collapsed to a single space in keys.
+     */
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The tree the people and relations are merged into.
+     */
+    private final GenealogicalTree tree;
+
+    /**
+     * The collation the names of the keys are compared under.
+     */
+    private final NameCollation collation;
+
+    /**
+     * Whether the key of a person includes their gender.
+     */
+    private final boolean byGender;
+
+    /**
+     * Whether the key of a person includes the names of their father and mother.
+     */
+    private final boolean byParents;
+
+    /**
+     * The number of threads that parse chunks and merge partitions.
+     */
+    private final int threads;
+
+    /**
+     * The size of a chunk, in bytes.
+     */
+    private final int chunkSize;
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link CsvTreeMerger} class, that uses one thread per available processor.
+     *
+     * @param tree      the tree the people and relations are merged into.
+     * @param collation the collation the names of the keys are compared under.
+     * @param byGender  whether the key of a person includes their gender.
+     * @param byParents whether the key of a person includes the names of their father and mother.
+     */
+    CsvTreeMerger(GenealogicalTree tree, NameCollation collation, boolean byGender, boolean byParents) {
+        this(tree, collation, byGender, byParents, Runtime.getRuntime().availableProcessors(),
+                CsvTreeLoader.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructor method for the {@link CsvTreeMerger} class.
+     *
+     * @param tree      the tree the people and relations are merged into.
+     * @param collation the collation the names of the keys are compared under.
+     * @param byGender  whether the key of a person includes their gender.
+     * @param byParents whether the key of a person includes the names of their father and mother.
+     * @param threads   the number of threads that parse chunks and merge partitions.
+     * @param chunkSize the size of a chunk, in bytes.
+     */
+    CsvTreeMerger(GenealogicalTree tree, NameCollation collation, boolean byGender, boolean byParents, int threads,
+                  int chunkSize) {
+        if (threads < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("Threads and chunk size must be positive.");
+        }
+        this.tree = tree;
+        this.collation = collation;
+        this.byGender = byGender;
+        this.byParents = byParents;
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+    }
+
+    // ######################### METHODS #########################
+
+    /**
+     * Merges the people and relations of some files into the tree.
+     *
+     * @param files the files to read, in order.
+     * @return the report of the merge.
+     * @throws IOException              if a file cannot be read.
+     * @throws IllegalArgumentException if a row is invalid.
+     */
+    MergeReport merge(List<Path> files) throws IOException {
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Source> sources = parse(executor, files);
+            Records records = tree.withPeople(people -> new Records(executor, people, sources));
+            List<MergeReport.Conflict> conflicts = new ArrayList<>();
+            int[] first = deduplicate(executor, records, conflicts);
+            MergeReport report = apply(records, first, conflicts);
+            tree.compact();
+            TreeMetrics metrics = tree.getMetrics();
+            if (metrics != null) metrics.recordLoad(System.nanoTime() - start);
+            return report;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Parses every chunk of every file in parallel, and then resolves the relations and computes the keys of the
+     * people of every file in parallel.
+     *
+     * @param executor the executor that parses the chunks.
+     * @param files    the files.
+     * @return the rows of each file, in order.
+     * @throws IOException if a file cannot be read.
+     */
+    private List<Source> parse(ExecutorService executor, List<Path> files) throws IOException {
+        List<FileChannel> channels = new ArrayList<>();
+        try {
+            List<Callable<Rows>> chunks = new ArrayList<>();
+            int[] firstChunks = new int[files.size() + 1];
+            for (int f = 0; f < files.size(); f++) {
+                FileChannel channel = FileChannel.open(files.get(f), StandardOpenOption.READ);
+                channels.add(channel);
+                long[] bounds = CsvTreeLoader.splitIntoChunks(channel, chunkSize);
+                for (int c = 0; c + 1 < bounds.length; c++) {
+                    long from = bounds[c];
+                    long length = bounds[c + 1] - from;
+                    chunks.add(() -> parseChunk(channel.map(FileChannel.MapMode.READ_ONLY, from, length)));
+                }
+                firstChunks[f + 1] = chunks.size();
+            }
+            List<Rows> parsed = runAll(executor, chunks);
+            List<Callable<Source>> sources = new ArrayList<>();
+            for (int f = 0; f < files.size(); f++) {
+                Path file = files.get(f);
+                List<Rows> own = parsed.subList(firstChunks[f], firstChunks[f + 1]);
+                sources.add(() -> new Source(file, own));
+            }
+            return runAll(executor, sources);
+        } finally {
+            for (FileChannel channel : channels) channel.close();
+        }
+    }
+
+    /**
+     * Parses the people and relations of a chunk.
+     *
+     * @param chunk the chunk.
+     * @return the rows of the chunk, in order.
+     */
+    private static Rows parseChunk(ByteBuffer chunk) {
+        Rows rows = new Rows();
+        CsvTreeLoader.RowReader reader = new CsvTreeLoader.RowReader(chunk);
+        reader.forEachRow(2, row -> rows.addPerson(row.decode(0), row.match(1, GENDERS)));
+        reader.forEachRow(3, row -> rows.addRelation(row.decode(0), row.match(1, RELATIONS), row.decode(2)));
+        return rows;
+    }
+
+    /**
+     * Merges the rows of people with the same key, partitioned by the hash of their name across the threads, so
+     * people with the same name are always merged, and checked for conflicts, by the same thread.
+     *
+     * @param executor  the executor that merges the partitions.
+     * @param records   the people already in the tree and the rows of people.
+     * @param conflicts the list to add the conflicts that are found to, in the order of the rows.
+     * @return the record each record is merged into, which is itself for the people already in the tree and for the
+     * rows of people that are added.
+     */
+    private int[] deduplicate(ExecutorService executor, Records records, List<MergeReport.Conflict> conflicts) {
+        int count = records.names.length;
+        int[] starts = new int[threads + 1];
+        for (int r = 0; r < count; r++) starts[partition(records.nameHashes[r]) + 1]++;
+        for (int p = 0; p < threads; p++) starts[p + 1] += starts[p];
+        int[] order = new int[count];
+        int[] fill = Arrays.copyOf(starts, threads);
+        for (int r = 0; r < count; r++) order[fill[partition(records.nameHashes[r])]++] = r;
+
+        int[] first = new int[count];
+        List<Callable<List<int[]>>> partitions = new ArrayList<>();
+        for (int p = 0; p < threads; p++) {
+            int from = starts[p];
+            int to = starts[p + 1];
+            partitions.add(() -> deduplicate(records, order, from, to, first));
+        }
+        List<int[]> found = new ArrayList<>();
+        for (List<int[]> partition : runAll(executor, partitions)) found.addAll(partition);
+        found.sort(Comparator.comparingInt(conflict -> conflict[0]));
+        for (int[] conflict : found) {
+            int r = conflict[0];
+            int other = conflict[2];
+            String name = records.names[r];
+            String otherName = records.names[other];
+            if (conflict[1] == MergeReport.Kind.GENDER.ordinal()) {
+                conflicts.add(new MergeReport.Conflict(MergeReport.Kind.GENDER, List.of(name, otherName),
+                        name + " is a " + GENDERS[records.genders[r]] + " in " + records.origin(r) + ", but "
+                                + otherName + " is a " + GENDERS[records.genders[other]] + " in "
+                                + records.origin(other)));
+            } else {
+                conflicts.add(new MergeReport.Conflict(MergeReport.Kind.SAME_NAME, List.of(name, otherName),
+                        name + " in " + records.origin(r) + " is not the same person as " + otherName + " in "
+                                + records.origin(other) + ", who can no longer be found by name"));
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Merges the records of a partition, in order, so that a row of a person is merged into the last person already
+     * in the tree with the same key, or else into the first row with it.
+     *
+     * @param records the people already in the tree and the rows of people.
+     * @param order   the records, grouped by partition, in order within each.
+     * @param from    the position of the first record of the partition.
+     * @param to      the position after the last record of the partition.
+     * @param first   the array to put the record each record is merged into in.
+     * @return the conflicts that were found, as the record, the ordinal of the {@link MergeReport.Kind}, and the
+     * other record involved.
+     */
+    private static List<int[]> deduplicate(Records records, int[] order, int from, int to, int[] first) {
+        Map<String, Integer> byKey = new HashMap<>();
+        Map<String, Integer> byName = new HashMap<>();
+        List<int[]> found = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            int r = order[i];
+            first[r] = r;
+            if (r < records.existing) {
+                byKey.put(records.keys[r], r);
+                byName.put(records.names[r], r);
+                continue;
+            }
+            Integer known = byKey.putIfAbsent(records.keys[r], r);
+            if (known != null) {
+                first[r] = known;
+                if (records.genders[known] != records.genders[r]) {
+                    found.add(new int[]{r, MergeReport.Kind.GENDER.ordinal(), known});
+                }
+                continue;
+            }
+            Integer other = byName.put(records.names[r], r);
+            if (other != null) found.add(new int[]{r, MergeReport.Kind.SAME_NAME.ordinal(), other});
+        }
+        return found;
+    }
+
+    /**
+     * Adds the people that were not merged, and then the relations of every file, in order, to the tree.
+     *
+     * @param records   the people already in the tree and the rows of people.
+     * @param first     the record each record is merged into.
+     * @param conflicts the list to add the conflicts that are found to.
+     * @return the report of the merge.
+     */
+    private MergeReport apply(Records records, int[] first, List<MergeReport.Conflict> conflicts) {
+        int count = records.names.length;
+        int[] ids = new int[count];
+        int added = 0;
+        for (int r = 0; r < count; r++) {
+            if (r < records.existing) ids[r] = r;
+            else if (first[r] != r) ids[r] = ids[first[r]];
+            else {
+                ids[r] = tree.addPersonId(records.names[r], GENDERS[records.genders[r]]);
+                added++;
+            }
+        }
+        int size = records.existing + added;
+        int[] fathers = Arrays.copyOf(records.fathers, size);
+        int[] mothers = Arrays.copyOf(records.mothers, size);
+        int[] spouses = Arrays.copyOf(records.spouses, size);
+        Arrays.fill(fathers, records.existing, size, PersonStore.NONE);
+        Arrays.fill(mothers, records.existing, size, PersonStore.NONE);
+        Arrays.fill(spouses, records.existing, size, PersonStore.NONE);
+
+        int relations = 0;
+        int known = 0;
+        long rows = 0;
+        for (Source source : records.sources) {
+            rows += source.rows.people + source.rows.relations;
+            String origin = source.file.toString();
+            for (int i = 0; i < source.rows.relations; i++) {
+                int id1 = resolve(source, i * 2, ids, conflicts);
+                int id2 = resolve(source, i * 2 + 1, ids, conflicts);
+                if (id1 == PersonStore.NONE || id2 == PersonStore.NONE) continue;
+                Relation relation = RELATIONS[source.rows.relationKinds[i]];
+                int[] parents = relation == Relation.FATHER ? fathers : relation == Relation.MOTHER ? mothers : null;
+                if (parents != null) {
+                    if (parents[id2] == id1) known++;
+                    else if (parents[id2] != PersonStore.NONE) {
+                        String child = source.rows.ends[i * 2 + 1];
+                        String kept = tree.withPeople(people -> people.name(parents[id2]));
+                        conflicts.add(new MergeReport.Conflict(relation == Relation.FATHER ? MergeReport.Kind.FATHER
+                                : MergeReport.Kind.MOTHER, List.of(child, kept, source.rows.ends[i * 2]),
+                                child + " already has " + kept + " as their " + relation.toString().toLowerCase()
+                                        + ", so " + source.rows.ends[i * 2] + " in " + origin + " was skipped"));
+                    } else {
+                        tree.addRelation(id1, id2, relation);
+                        parents[id2] = id1;
+                        relations++;
+                    }
+                } else if (relation == Relation.HUSBAND || relation == Relation.WIFE) {
+                    if (spouses[id1] == id2 && spouses[id2] == id1) known++;
+                    else if (spouses[id1] != PersonStore.NONE || spouses[id2] != PersonStore.NONE) {
+                        String name1 = source.rows.ends[i * 2];
+                        String name2 = source.rows.ends[i * 2 + 1];
+                        String married = spouses[id1] != PersonStore.NONE ? name1 : name2;
+                        conflicts.add(new MergeReport.Conflict(MergeReport.Kind.SPOUSE, List.of(name1, name2),
+                                married + " is already married, so the marriage of " + name1 + " and " + name2
+                                        + " in " + origin + " was skipped"));
+                    } else {
+                        tree.addRelation(id1, id2, relation);
+                        spouses[id1] = id2;
+                        spouses[id2] = id1;
+                        relations++;
+                    }
+                }
+            }
+        }
+        return new MergeReport(records.sources.size(), rows, added, count - records.existing - added, relations,
+                known, conflicts);
+    }
+
+    /**
+     * Resolves a person of a relation of a file to their ID in the tree: the person of the file with their name, or
+     * else the person of the tree with it.
+     *
+     * @param source    the file.
+     * @param end       the position of the person among the people of the relations of the file.
+     * @param ids       the ID of the person of each record.
+     * @param conflicts the list to add a conflict to, if the person is not found.
+     * @return the ID of the person, or {@link PersonStore#NONE} if they are not found.
+     */
+    private int resolve(Source source, int end, int[] ids, List<MergeReport.Conflict> conflicts) {
+        int local = source.resolved[end];
+        if (local != PersonStore.NONE) return ids[source.base + local];
+        String name = source.rows.ends[end];
+        int id = tree.withPeople(people -> people.idOf(name));
+        if (id == PersonStore.NONE) {
+            conflicts.add(new MergeReport.Conflict(MergeReport.Kind.MISSING_PERSON, List.of(name),
+                    name + " is neither in " + source.file + " nor in the tree, so a relation was skipped"));
+        }
+        return id;
+    }
+
+    /**
+     * Computes the key of a person.
+     *
+     * @param name   the person's normalized name.
+     * @param gender the ordinal of the person's gender.
+     * @param father the normalized name of the person's father, or {@code null} if it is not known.
+     * @param mother the normalized name of the person's mother, or {@code null} if it is not known.
+     * @return the key.
+     */
+    private String key(String name, int gender, String father, String mother) {
+        if (!byGender && !byParents) return name;
+        StringBuilder key = new StringBuilder(name.length() + 32).append(name);
+        if (byGender) key.append(SEPARATOR).append(gender);
+        if (byParents) {
+            key.append(SEPARATOR).append(father == null ? "" : father);
+            key.append(SEPARATOR).append(mother == null ? "" : mother);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Normalizes a name for a key: strips it, collapses every run of whitespace in it to a single space, and applies
+     * the collation.
+     *
+     * @param name the name.
+     * @return the normalized name.
+     */
+    private String normalize(String name) {
+        String stripped = name.strip();
+        for (int i = 0; i < stripped.length(); i++) {
+            char c = stripped.charAt(i);
+            if (Character.isWhitespace(c) && (c != ' ' || Character.isWhitespace(stripped.charAt(i + 1)))) {
+                stripped = WHITESPACE.matcher(stripped).replaceAll(" ");
+                break;
+            }
+        }
+        return collation.key(stripped);
+    }
+
+    /**
+     * Finds the partition of a record.
+     *
+     * @param nameHash the hash code of the normalized name of the record.
+     * @return the partition.
+     */
+    private int partition(int nameHash) {
+        int h = nameHash * 0x9E3779B9;
+        return (int) (((h ^ (h >>> 16)) & 0xFFFFFFFFL) * threads >>> 32);
+    }
+
+    /**
+     * Runs some tasks on an executor and waits for all of them.
+     *
+     * @param executor the executor.
+     * @param tasks    the tasks.
+     * @param <T>      the type of the result of a task.
+     * @return the results of the tasks, in order.
+     * @throws UncheckedIOException if a task threw an {@link IOException}.
+     */
+    private static <T> List<T> runAll(ExecutorService executor, List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> result : executor.invokeAll(tasks)) results.add(result.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while merging the files.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw new UncheckedIOException(io);
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            if (cause instanceof Error error) throw error;
+            throw new IllegalStateException(cause);
+        }
+        return results;
+    }
+
+    // ####################### NESTED TYPES #######################
+
+    /**
+     * The rows of people and relations of a chunk, or of a whole file.
+     */
+    private static class Rows {
+
+        /**
+         * The names of the people.
+         */
+        private String[] names = new String[256];
+
+        /**
+         * The ordinals of the genders of the people.
+         */
+        private byte[] genders = new byte[256];
+
+        /**
+         * The number of people.
+         */
+        private int people;
+
+        /**
+         * The names of the two people of each relation.
+         */
+        private String[] ends = new String[512];
+
+        /**
+         * The ordinals of the relations.
+         */
+        private byte[] relationKinds = new byte[256];
+
+        /**
+         * The number of relations.
+         */
+        private int relations;
+
+        /**
+         * Adds a person.
+         *
+         * @param name   the person's name.
+         * @param gender the ordinal of the person's gender.
+         */
+        void addPerson(String name, int gender) {
+            if (people == names.length) {
+                names = Arrays.copyOf(names, people << 1);
+                genders = Arrays.copyOf(genders, people << 1);
+            }
+            names[people] = name;
+            genders[people++] = (byte) gender;
+        }
+
+        /**
+         * Adds a relation.
+         *
+         * @param name1    the name of the first person.
+         * @param relation the ordinal of the relation the first person has to the second person.
+         * @param name2    the name of the second person.
+         */
+        void addRelation(String name1, int relation, String name2) {
+            if (relations == relationKinds.length) {
+                ends = Arrays.copyOf(ends, relations << 2);
+                relationKinds = Arrays.copyOf(relationKinds, relations << 1);
+            }
+            ends[relations * 2] = name1;
+            ends[relations * 2 + 1] = name2;
+            relationKinds[relations++] = (byte) relation;
+        }
+
+        /**
+         * Adds the rows of another chunk after these.
+         *
+         * @param other the rows of the other chunk.
+         */
+        void addAll(Rows other) {
+            for (int i = 0; i < other.people; i++) addPerson(other.names[i], other.genders[i]);
+            for (int i = 0; i < other.relations; i++) {
+                addRelation(other.ends[i * 2], other.relationKinds[i], other.ends[i * 2 + 1]);
+            }
+        }
+    }
+
+    /**
+     * The rows of a file, with the people of its relations resolved, and the key of each of its people.
+     */
+    private final class Source {
+
+        /**
+         * The file.
+         */
+        private final Path file;
+
+        /**
+         * The rows of the file.
+         */
+        private final Rows rows;
+
+        /**
+         * The person of the file with the name of each person of the relations, i.e. the last one with it, or
+         * {@link PersonStore#NONE} if there is none.
+         */
+        private final int[] resolved;
+
+        /**
+         * The normalized name of each person.
+         */
+        private final String[] normalized;
+
+        /**
+         * The key of each person.
+         */
+        private final String[] keys;
+
+        /**
+         * The record of the first person of the file. See {@link Records}.
+         */
+        private int base;
+
+        /**
+         * Constructor method for the {@link Source} class, that joins the rows of the chunks of a file, resolves its
+         * relations, and computes the keys of its people.
+         *
+         * @param file   the file.
+         * @param chunks the rows of the chunks of the file, in order.
+         */
+        Source(Path file, List<Rows> chunks) {
+            this.file = file;
+            Rows joined = chunks.isEmpty() ? new Rows() : chunks.get(0);
+            for (int c = 1; c < chunks.size(); c++) joined.addAll(chunks.get(c));
+            this.rows = joined;
+            Map<String, Integer> people = new HashMap<>(Math.max(16, rows.people * 2));
+            for (int i = 0; i < rows.people; i++) people.put(rows.names[i], i);
+            resolved = new int[rows.relations * 2];
+            for (int i = 0; i < rows.relations * 2; i++) {
+                resolved[i] = people.getOrDefault(rows.ends[i], PersonStore.NONE);
+            }
+            normalized = new String[rows.people];
+            for (int i = 0; i < rows.people; i++) normalized[i] = normalize(rows.names[i]);
+            String[] fathers = new String[rows.people];
+            String[] mothers = new String[rows.people];
+            for (int i = 0; i < rows.relations && byParents; i++) {
+                int child = resolved[i * 2 + 1];
+                if (child == PersonStore.NONE) continue;
+                Relation relation = RELATIONS[rows.relationKinds[i]];
+                String[] parents = relation == Relation.FATHER ? fathers : relation == Relation.MOTHER ? mothers : null;
+                if (parents == null || parents[child] != null) continue;
+                int parent = resolved[i * 2];
+                parents[child] = parent == PersonStore.NONE ? normalize(rows.ends[i * 2]) : normalized[parent];
+            }
+            keys = new String[rows.people];
+            for (int i = 0; i < rows.people; i++) keys[i] = key(normalized[i], rows.genders[i], fathers[i], mothers[i]);
+        }
+    }
+
+    /**
+     * The people already in the tree, followed by the rows of people of every file, in order, as records: a person
+     * already in the tree is the record of their ID, and the rows of a file follow those of the file before it.
+     */
+    private final class Records {
+
+        /**
+         * The number of people already in the tree.
+         */
+        private final int existing;
+
+        /**
+         * The files.
+         */
+        private final List<Source> sources;
+
+        /**
+         * The name of each record.
+         */
+        private final String[] names;
+
+        /**
+         * The ordinal of the gender of each record.
+         */
+        private final byte[] genders;
+
+        /**
+         * The key of each record.
+         */
+        private final String[] keys;
+
+        /**
+         * The hash code of the normalized name of each record.
+         */
+        private final int[] nameHashes;
+
+        /**
+         * The ID of the father of each person already in the tree, or {@link PersonStore#NONE}.
+         */
+        private final int[] fathers;
+
+        /**
+         * The ID of the mother of each person already in the tree, or {@link PersonStore#NONE}.
+         */
+        private final int[] mothers;
+
+        /**
+         * The ID of the spouse of each person already in the tree, or {@link PersonStore#NONE}.
+         */
+        private final int[] spouses;
+
+        /**
+         * Constructor method for the {@link Records} class, that reads the people already in the tree, and computes
+         * their keys in parallel.
+         *
+         * @param executor the executor that computes the keys.
+         * @param people   the people already in the tree.
+         * @param sources  the rows of each file.
+         */
+        Records(ExecutorService executor, PersonStore people, List<Source> sources) {
+            this.existing = people.size();
+            this.sources = sources;
+            int count = existing;
+            for (Source source : sources) {
+                source.base = count;
+                count += source.rows.people;
+            }
+            names = new String[count];
+            genders = new byte[count];
+            keys = new String[count];
+            nameHashes = new int[count];
+            fathers = new int[existing];
+            mothers = new int[existing];
+            spouses = new int[existing];
+            List<Callable<Void>> ranges = new ArrayList<>();
+            int step = Math.max(1, (existing + threads - 1) / threads);
+            for (int from = 0; from < existing; from += step) {
+                int start = from;
+                int end = Math.min(existing, from + step);
+                ranges.add(() -> {
+                    for (int id = start; id < end; id++) readPerson(people, id);
+                    return null;
+                });
+            }
+            runAll(executor, ranges);
+            for (Source source : sources) {
+                System.arraycopy(source.rows.names, 0, names, source.base, source.rows.people);
+                System.arraycopy(source.rows.genders, 0, genders, source.base, source.rows.people);
+                System.arraycopy(source.keys, 0, keys, source.base, source.rows.people);
+                for (int i = 0; i < source.rows.people; i++) {
+                    nameHashes[source.base + i] = source.normalized[i].hashCode();
+                }
+            }
+        }
+
+        /**
+         * Reads a person already in the tree, and computes their key.
+         *
+         * @param people the people already in the tree.
+         * @param id     the ID of the person.
+         */
+        private void readPerson(PersonStore people, int id) {
+            names[id] = people.name(id);
+            genders[id] = (byte) people.gender(id).ordinal();
+            fathers[id] = people.father(id);
+            mothers[id] = people.mother(id);
+            spouses[id] = people.spouse(id);
+            String normalized = normalize(names[id]);
+            nameHashes[id] = normalized.hashCode();
+            String father = byParents && fathers[id] != PersonStore.NONE ? normalize(people.name(fathers[id])) : null;
+            String mother = byParents && mothers[id] != PersonStore.NONE ? normalize(people.name(mothers[id])) : null;
+            keys[id] = key(normalized, genders[id], father, mother);
+        }
+
+        /**
+         * Returns where a record comes from.
+         *
+         * @param record the record.
+         * @return the file of the record, or {@code the tree} for a person already in the tree.
+         */
+        private String origin(int record) {
+            if (record < existing) return "the tree";
+            for (int s = sources.size() - 1; ; s--) {
+                if (sources.get(s).base <= record) return sources.get(s).file.toString();
+            }
+        }
+    }
+}
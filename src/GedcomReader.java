@@ -0,0 +1,195 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * This class reads a GEDCOM file as a stream of lines, and passes them to a {@link GedcomReader.Handler} as they are
+ * read, like a SAX parser, so a record is never kept in memory once its lines have been handled.
+ * <p>
+ * Every line of a GEDCOM file is {@code level [@xref@] tag [value]}. A line of level zero starts a record, e.g. an
+ * individual ({@code INDI}) or a family ({@code FAM}), and the lines of higher levels that follow belong to it. The
+ * file is read as UTF-8, with or without a byte order mark, and lines may end with {@code \n} or {@code \r\n}. The
+ * {@code @@} that escapes an {@code @} in a value is unescaped. Blank lines are skipped.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+class GedcomReader {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The size of the buffer the file is read through, in characters.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * The byte order mark a UTF-8 file may start with, as it is decoded.
+     */
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The handler of the lines.
+     */
+    private final Handler handler;
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link GedcomReader} class.
+     *
+     * @param handler the handler of the lines.
+     */
+    GedcomReader(Handler handler) {
+        this.handler = handler;
+    }
+
+    // ######################### METHODS #########################
+
+    /**
+     * Checks if a file is a GEDCOM file, i.e. if it starts with a {@code 0 HEAD} line.
+     *
+     * @param file the file to check.
+     * @return {@code true} if the file is a GEDCOM file, {@code false} otherwise.
+     * @throws IOException if the file cannot be read.
+     */
+    static boolean isGedcom(Path file) throws IOException {
+        try (BufferedReader in = open(file, 64)) {
+            String line = in.readLine();
+            if (line == null) return false;
+            if (!line.isEmpty() && line.charAt(0) == BYTE_ORDER_MARK) line = line.substring(1);
+            return line.strip().equals("0 HEAD");
+        }
+    }
+
+    /**
+     * Reads a file and passes its lines to the handler.
+     *
+     * @param file the file to read.
+     * @return the number of records that were read.
+     * @throws IOException              if the file cannot be read.
+     * @throws IllegalArgumentException if a line is invalid.
+     * @throws PersonNotFoundException  if the handler could not find a person.
+     */
+    long read(Path file) throws IOException, PersonNotFoundException {
+        long records = 0;
+        try (BufferedReader in = open(file, BUFFER_SIZE)) {
+            long number = 0;
+            boolean open = false;
+            for (String line; (line = in.readLine()) != null; ) {
+                number++;
+                if (number == 1 && !line.isEmpty() && line.charAt(0) == BYTE_ORDER_MARK) line = line.substring(1);
+                int end = line.length();
+                while (end > 0 && line.charAt(end - 1) <= ' ') end--;
+                int start = 0;
+                while (start < end && line.charAt(start) <= ' ') start++;
+                if (start == end) continue;
+                int level = 0;
+                int position = start;
+                while (position < end && Character.isDigit(line.charAt(position))) {
+                    level = level * 10 + line.charAt(position++) - '0';
+                }
+                if (position == start || position == end || line.charAt(position) != ' ') throw invalid(number, line);
+                position++;
+                String xref = null;
+                if (line.charAt(position) == '@') {
+                    int close = line.indexOf("@ ", position + 1);
+                    if (close < 0) throw invalid(number, line);
+                    xref = line.substring(position, close + 1);
+                    position = close + 2;
+                }
+                int space = line.indexOf(' ', position);
+                if (space < 0 || space > end) space = end;
+                if (space == position) throw invalid(number, line);
+                String tag = line.substring(position, space);
+                String value = space < end ? unescape(line.substring(space + 1, end)) : "";
+                if (level == 0) {
+                    if (open) handler.endRecord();
+                    handler.startRecord(xref, tag, value);
+                    open = true;
+                    records++;
+                } else if (!open) {
+                    throw invalid(number, line);
+                } else {
+                    handler.line(level, tag, value);
+                }
+            }
+            if (open) handler.endRecord();
+        }
+        return records;
+    }
+
+    /**
+     * Opens a GEDCOM file for reading.
+     *
+     * @param file       the file.
+     * @param bufferSize the size of the buffer, in characters.
+     * @return the reader of the file.
+     * @throws IOException if the file cannot be opened.
+     */
+    private static BufferedReader open(Path file, int bufferSize) throws IOException {
+        return new BufferedReader(new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8),
+                bufferSize);
+    }
+
+    /**
+     * Replaces every {@code @@} of a value with a single {@code @}.
+     *
+     * @param value the value as it is in the file.
+     * @return the value.
+     */
+    private static String unescape(String value) {
+        return value.contains("@@") ? value.replace("@@", "@") : value;
+    }
+
+    /**
+     * Creates the exception of an invalid line.
+     *
+     * @param number the number of the line.
+     * @param line   the line.
+     * @return the exception.
+     */
+    private static IllegalArgumentException invalid(long number, String line) {
+        return new IllegalArgumentException("Invalid GEDCOM line " + number + ": " + line);
+    }
+
+    // ####################### NESTED TYPES #######################
+
+    /**
+     * The handler of the lines of a GEDCOM file.
+     */
+    interface Handler {
+
+        /**
+         * Handles the first line of a record, of level zero.
+         *
+         * @param xref  the cross-reference ID of the record, e.g. {@code @I1@}, or {@code null} if it has none.
+         * @param tag   the tag of the record, e.g. {@code INDI}.
+         * @param value the value of the line, or an empty string.
+         * @throws PersonNotFoundException if the handler could not find a person.
+         */
+        void startRecord(String xref, String tag, String value) throws PersonNotFoundException;
+
+        /**
+         * Handles a line of the current record, of a level above zero.
+         *
+         * @param level the level of the line.
+         * @param tag   the tag of the line, e.g. {@code NAME}.
+         * @param value the value of the line, or an empty string.
+         * @throws PersonNotFoundException if the handler could not find a person.
+         */
+        void line(int level, String tag, String value) throws PersonNotFoundException;
+
+        /**
+         * Handles the end of the current record.
+         *
+         * @throws PersonNotFoundException if the handler could not find a person.
+         */
+        void endRecord() throws PersonNotFoundException;
+    }
+}
@@ -0,0 +1,371 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * This class exports the people of a {@link PersonStore} to a GEDCOM file, i.e. the format {@link GedcomTreeLoader}
+ * reads, so an export loads back into the same tree.
+ * <p>
+ * Every person is written as an individual record ({@code INDI}), in order of ID, including the people that were
+ * replaced by a person with the same name, since the records link to each other by ID. The person with ID {@code n} is
+ * {@code @I<n + 1>@}. The children of the same father and mother are written as one family record ({@code FAM}), as is
+ * every married couple without children. A family whose husband and wife are married has a {@code MARR Y} line, and one
+ * whose are not has a {@code NO MARR} line, so they are not married when the export is loaded.
+ * <p>
+ * A later relation can leave a link one-sided, and such links are exported too, as {@link CsvTreeExporter} exports
+ * them. A parent who was replaced by another still has the child among their children, so they are written as a
+ * family of their own, with only that parent, as the husband if the child has a father and as the wife otherwise, and
+ * the children they still have. These families come first, so the family of the current parents of a child, which is
+ * loaded after them, sets the parents of the child again. A person whose spouse has since married someone else is
+ * linked to their spouse from their side only. Such a link is written as a family with a {@code MARR Y} line too, and
+ * since loading a marriage links both spouses, these families are written before the family of the marriage that
+ * replaced the link, which then overwrites it. All other families are written in order of their key. A link that no
+ * order of relations can give, e.g. one made through the setters of a {@link Person}, is not exported.
+ * <p>
+ * The families are found with a sort of their keys, and each record is built in memory and streamed to the file as
+ * UTF-8 through a large buffer, so only a few integers per person are kept in memory. Names are written as they are,
+ * with every {@code @} escaped as {@code @@}; a name with slashes loses them when it is loaded back, since GEDCOM
+ * reserves them for the surname.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+class GedcomTreeExporter {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The size of the buffer of the file, in characters.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The people that are exported.
+     */
+    private final PersonStore people;
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link GedcomTreeExporter} class.
+     *
+     * @param people the people that are exported.
+     */
+    GedcomTreeExporter(PersonStore people) {
+        this.people = people;
+    }
+
+    // ######################### METHODS #########################
+
+    /**
+     * Exports the people to a file. The export is written to a temporary file next to the target, which is then moved
+     * over it, so an existing file is never left half-written.
+     *
+     * @param file the file to write to.
+     * @return the number of records that were written, including the header and trailer.
+     * @throws IOException if the file cannot be written.
+     */
+    long export(Path file) throws IOException {
+        int size = people.size();
+        long[] families = families();
+        int[] childFamilies = new int[size];
+        int[] childStarts = new int[families.length + 1];
+        int[] spouseStarts = new int[size + 1];
+        for (int id = 0; id < size; id++) {
+            int father = people.father(id);
+            int mother = people.mother(id);
+            if (father == PersonStore.NONE && mother == PersonStore.NONE) {
+                childFamilies[id] = -1;
+                continue;
+            }
+            childFamilies[id] = Arrays.binarySearch(families, key(father, mother));
+            childStarts[childFamilies[id] + 1]++;
+        }
+        for (long family : families) {
+            if (husband(family) != PersonStore.NONE) spouseStarts[husband(family) + 1]++;
+            if (wife(family) != PersonStore.NONE && wife(family) != husband(family)) spouseStarts[wife(family) + 1]++;
+        }
+        for (int f = 0; f < families.length; f++) childStarts[f + 1] += childStarts[f];
+        for (int id = 0; id < size; id++) spouseStarts[id + 1] += spouseStarts[id];
+        int[] children = new int[childStarts[families.length]];
+        int[] fill = Arrays.copyOf(childStarts, families.length);
+        for (int id = 0; id < size; id++) if (childFamilies[id] >= 0) children[fill[childFamilies[id]]++] = id;
+        int[] spouseFamilies = new int[spouseStarts[size]];
+        fill = Arrays.copyOf(spouseStarts, size);
+        for (int f = 0; f < families.length; f++) {
+            if (husband(families[f]) != PersonStore.NONE) spouseFamilies[fill[husband(families[f])]++] = f;
+            if (wife(families[f]) != PersonStore.NONE && wife(families[f]) != husband(families[f])) {
+                spouseFamilies[fill[wife(families[f])]++] = f;
+            }
+        }
+        fill = null;
+        int[] order = familyOrder(families);
+        long[] replaced = replacedParents();
+        int[] replacedFamilies = new int[replaced.length];
+        int familyCount = families.length;
+        for (int i = 0; i < replaced.length; i++) {
+            if (i == 0 || replaced[i] >>> 32 != replaced[i - 1] >>> 32) familyCount++;
+            replacedFamilies[i] = familyCount - 1;
+        }
+        long[] replacedChildren = new long[replaced.length];
+        for (int i = 0; i < replaced.length; i++) {
+            replacedChildren[i] = (long) (int) replaced[i] << 32 | replacedFamilies[i];
+        }
+        Arrays.sort(replacedChildren);
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        StringBuilder record = new StringBuilder(256);
+        try (Writer out = open(temporary)) {
+            out.write("0 HEAD\n1 SOUR GenealogicalTree\n1 GEDC\n2 VERS 5.5.1\n2 FORM LINEAGE-LINKED\n1 CHAR UTF-8\n");
+            int child = 0;
+            int parent = 0;
+            for (int id = 0; id < size; id++) {
+                record.setLength(0);
+                appendReference(record, 0, null, 'I', id);
+                record.append(" INDI\n1 NAME ");
+                appendEscaped(record, people.name(id));
+                record.append(people.gender(id) == Gender.WOMAN ? "\n1 SEX F\n" : "\n1 SEX M\n");
+                if (childFamilies[id] >= 0) appendReference(record, 1, "FAMC", 'F', childFamilies[id]);
+                for (; child < replacedChildren.length && replacedChildren[child] >>> 32 == id; child++) {
+                    appendReference(record, 1, "FAMC", 'F', (int) replacedChildren[child]);
+                }
+                for (int i = spouseStarts[id]; i < spouseStarts[id + 1]; i++) {
+                    appendReference(record, 1, "FAMS", 'F', spouseFamilies[i]);
+                }
+                for (; parent < replaced.length && replaced[parent] >>> 33 == id; parent++) {
+                    if (parent == 0 || replacedFamilies[parent] != replacedFamilies[parent - 1]) {
+                        appendReference(record, 1, "FAMS", 'F', replacedFamilies[parent]);
+                    }
+                }
+                out.append(record);
+            }
+            for (int i = 0; i < replaced.length; ) {
+                int f = replacedFamilies[i];
+                record.setLength(0);
+                appendReference(record, 0, null, 'F', f);
+                record.append(" FAM\n");
+                String role = (replaced[i] >>> 32 & 1) == 1 ? "HUSB" : "WIFE";
+                appendReference(record, 1, role, 'I', (int) (replaced[i] >>> 33));
+                for (; i < replaced.length && replacedFamilies[i] == f; i++) {
+                    appendReference(record, 1, "CHIL", 'I', (int) replaced[i]);
+                }
+                out.append(record);
+            }
+            for (int f : order) {
+                int husband = husband(families[f]);
+                int wife = wife(families[f]);
+                record.setLength(0);
+                appendReference(record, 0, null, 'F', f);
+                record.append(" FAM\n");
+                if (husband != PersonStore.NONE) appendReference(record, 1, "HUSB", 'I', husband);
+                if (wife != PersonStore.NONE) appendReference(record, 1, "WIFE", 'I', wife);
+                if (husband != PersonStore.NONE && wife != PersonStore.NONE) {
+                    record.append(isMarried(husband, wife) ? "1 MARR Y\n" : "1 NO MARR\n");
+                }
+                for (int i = childStarts[f]; i < childStarts[f + 1]; i++) {
+                    appendReference(record, 1, "CHIL", 'I', children[i]);
+                }
+                out.append(record);
+            }
+            out.write("0 TRLR\n");
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        return size + familyCount + 2L;
+    }
+
+    /**
+     * Finds the families of the people: the pair of parents of every person who has any, and every pair of people
+     * either of whom is the spouse of the other, with the man as the husband, or the person with the lower ID if both
+     * have the same gender. A person who is their own spouse is both the husband and the wife of a family.
+     *
+     * @return the keys of the families, sorted and without duplicates. See {@link GedcomTreeExporter#key(int, int)}.
+     */
+    private long[] families() {
+        int size = people.size();
+        long[] keys = new long[16];
+        int count = 0;
+        for (int id = 0; id < size; id++) {
+            int father = people.father(id);
+            int mother = people.mother(id);
+            int spouse = people.spouse(id);
+            if (count + 2 > keys.length) keys = Arrays.copyOf(keys, keys.length << 1);
+            if (father != PersonStore.NONE || mother != PersonStore.NONE) keys[count++] = key(father, mother);
+            if (spouse != PersonStore.NONE) {
+                boolean husband = people.gender(id) != people.gender(spouse) ? people.gender(id) == Gender.MAN
+                        : id <= spouse;
+                if (people.spouse(spouse) != id) keys[count++] = husband ? key(id, spouse) : key(spouse, id);
+                else if (husband) keys[count++] = key(id, spouse);
+            }
+        }
+        Arrays.sort(keys, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) if (unique == 0 || keys[i] != keys[unique - 1]) keys[unique++] = keys[i];
+        return Arrays.copyOf(keys, unique);
+    }
+
+    /**
+     * Finds the links of the parents that were replaced by another parent, and still have the child among their
+     * children. Each link is given the role of a current parent of the child: that of the father, if the child has
+     * one, and otherwise that of the mother. A link whose child has neither is left out, since it cannot be loaded.
+     *
+     * @return the links, sorted, each as the ID of the parent, shifted left by 33 bits, the role, 1 for the father and
+     * 0 for the mother, shifted left by 32 bits, and the ID of the child.
+     */
+    private long[] replacedParents() {
+        long[] links = new long[16];
+        int count = 0;
+        for (int parent = 0, size = people.size(); parent < size; parent++) {
+            for (int i = 0, children = people.childCount(parent); i < children; i++) {
+                int child = people.child(parent, i);
+                if (people.father(child) == parent || people.mother(child) == parent) continue;
+                int role = people.father(child) != PersonStore.NONE ? 1
+                        : people.mother(child) != PersonStore.NONE ? 0 : -1;
+                if (role < 0) continue;
+                if (count == links.length) links = Arrays.copyOf(links, count << 1);
+                links[count++] = (long) parent << 33 | (long) role << 32 | child;
+            }
+        }
+        Arrays.sort(links, 0, count);
+        return Arrays.copyOf(links, count);
+    }
+
+    /**
+     * Orders the families as they are written. Following the spouse links from a person whose spouse has since married
+     * someone else leads to a married couple, and the family of every link on the way must be written before the next
+     * one, so these families are sorted by the distance of the person from the couple, farthest first, and the other
+     * families follow them, in order of their key.
+     *
+     * @param families the keys of the families.
+     * @return the indices of the families, in the order they are written.
+     */
+    private int[] familyOrder(long[] families) {
+        int size = people.size();
+        int[] distance = new int[size];
+        Arrays.fill(distance, -1);
+        int[] chain = new int[16];
+        for (int id = 0; id < size; id++) {
+            int length = 0;
+            int next = id;
+            while (distance[next] == -1) {
+                int spouse = people.spouse(next);
+                distance[next] = -2;
+                if (spouse == PersonStore.NONE || people.spouse(spouse) == next) {
+                    distance[next] = 0;
+                    break;
+                }
+                if (length == chain.length) chain = Arrays.copyOf(chain, length << 1);
+                chain[length++] = next;
+                next = spouse;
+            }
+            int base = Math.max(distance[next], 0);
+            for (int i = 0; i < length; i++) distance[chain[i]] = base + length - i;
+        }
+
+        long[] keys = new long[families.length];
+        for (int f = 0; f < families.length; f++) {
+            int husband = husband(families[f]);
+            int wife = wife(families[f]);
+            int from = !isMarried(husband, wife) || people.spouse(wife) == husband && people.spouse(husband) == wife
+                    ? PersonStore.NONE : people.spouse(husband) == wife ? husband : wife;
+            keys[f] = (long) -(from == PersonStore.NONE ? 0 : distance[from]) << 32 | f;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[families.length];
+        for (int i = 0; i < order.length; i++) order[i] = (int) keys[i];
+        return order;
+    }
+
+    /**
+     * Checks if either of two people is the spouse of the other, i.e. if they are married, or one of them was married
+     * to the other before the other married someone else.
+     *
+     * @param id1 the ID of the first person, or {@link PersonStore#NONE}.
+     * @param id2 the ID of the second person, or {@link PersonStore#NONE}.
+     * @return {@code true} if either person is the spouse of the other, {@code false} otherwise.
+     */
+    private boolean isMarried(int id1, int id2) {
+        if (id1 == PersonStore.NONE || id2 == PersonStore.NONE) return false;
+        return people.spouse(id1) == id2 || people.spouse(id2) == id1;
+    }
+
+    /**
+     * Returns the key of a family, which sorts the families by husband and then by wife.
+     *
+     * @param husband the ID of the husband, or {@link PersonStore#NONE}.
+     * @param wife    the ID of the wife, or {@link PersonStore#NONE}.
+     * @return the key of the family.
+     */
+    private static long key(int husband, int wife) {
+        return (long) (husband + 1) << 32 | (wife + 1);
+    }
+
+    /**
+     * Returns the husband of a family.
+     *
+     * @param key the key of the family.
+     * @return the ID of the husband, or {@link PersonStore#NONE}.
+     */
+    private static int husband(long key) {
+        return (int) (key >>> 32) - 1;
+    }
+
+    /**
+     * Returns the wife of a family.
+     *
+     * @param key the key of the family.
+     * @return the ID of the wife, or {@link PersonStore#NONE}.
+     */
+    private static int wife(long key) {
+        return (int) key - 1;
+    }
+
+    /**
+     * Appends a line with a cross-reference ID to a record, e.g. {@code 1 HUSB @I1@}, or the start of the first line of
+     * a record, e.g. {@code 0 @I1@}, without its tag.
+     *
+     * @param record the record.
+     * @param level  the level of the line.
+     * @param tag    the tag of the line, or {@code null} for the first line of a record.
+     * @param prefix the prefix of the cross-reference ID, {@code I} for an individual or {@code F} for a family.
+     * @param index  the ID of the individual, or the index of the family.
+     */
+    private static void appendReference(StringBuilder record, int level, String tag, char prefix, int index) {
+        record.append(level).append(' ');
+        if (tag != null) record.append(tag).append(' ');
+        record.append('@').append(prefix).append(index + 1).append('@');
+        if (tag != null) record.append('\n');
+    }
+
+    /**
+     * Appends a value to a record, with every {@code @} escaped as {@code @@}.
+     *
+     * @param record the record.
+     * @param value  the value.
+     */
+    private static void appendEscaped(StringBuilder record, String value) {
+        record.append(value.indexOf('@') < 0 ? value : value.replace("@", "@@"));
+    }
+
+    /**
+     * Opens a file for writing, as UTF-8, through a large buffer.
+     *
+     * @param file the file.
+     * @return the writer of the file.
+     * @throws IOException if the file cannot be opened.
+     */
+    private static Writer open(Path file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8),
+                BUFFER_SIZE);
+    }
+}
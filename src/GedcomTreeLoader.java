@@ -0,0 +1,381 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class loads a genealogical tree from a GEDCOM file, as a stream of records that are read by a
+ * {@link GedcomReader}, so only the record that is being read is kept in memory, besides the ID of every person.
+ * <p>
+ * Every individual record ({@code INDI}) is added as a person, with the first of its names, without the slashes around
+ * the surname, and the gender of its {@code SEX}. People are added and linked by ID, as found by the cross-reference ID
+ * of their record, so people with the same name are kept apart, and the last of them is the one that is found by name.
+ * Every family record ({@code FAM}) makes its husband ({@code HUSB}) the father, and its wife ({@code WIFE}) the
+ * mother, of each of its children ({@code CHIL}), and marries the husband and wife, unless it has a {@code NO MARR}
+ * line. The links of the individual records ({@code FAMC} and {@code FAMS}) repeat those of the families, so they are
+ * ignored, as are all other records and lines.
+ * <p>
+ * A person whose sex is neither {@code M} nor {@code F} is added when a family first names them: as a man if they are
+ * its husband, as a woman if they are its wife, and as {@link GedcomTreeLoader#DEFAULT_GENDER} if they are a child or
+ * no family names them. A family that names a person whose record comes later in the file is applied at the end of the
+ * file.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+class GedcomTreeLoader implements GedcomReader.Handler {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The gender of the people whose sex is unknown and who are not a husband or wife.
+     */
+    static final Gender DEFAULT_GENDER = Gender.MAN;
+
+    /**
+     * The largest number of a cross-reference ID of the form {@code @I<number>@} that is kept in an array instead of a
+     * map.
+     */
+    private static final int MAX_NUMBERED_ID = 1 << 28;
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The tree the people and relations are added to.
+     */
+    private final GenealogicalTree tree;
+
+    /**
+     * The ID of the person of each individual record of the form {@code @I<number>@}, plus one, indexed by its number,
+     * or zero if no such record has been read.
+     */
+    private int[] numberedIds = new int[1024];
+
+    /**
+     * The ID of the person of each other individual record, by cross-reference ID.
+     */
+    private final Map<String, Integer> namedIds = new HashMap<>();
+
+    /**
+     * The names of the people whose sex is unknown and who have not been added yet, by cross-reference ID, in the
+     * order of the file.
+     */
+    private final Map<String, String> unknownSex = new LinkedHashMap<>();
+
+    /**
+     * The families that name a person whose record had not been read yet, in the order of the file.
+     */
+    private final List<Family> deferred = new ArrayList<>();
+
+    /**
+     * The type of the record that is being read.
+     */
+    private RecordType type = RecordType.OTHER;
+
+    /**
+     * The cross-reference ID of the record that is being read.
+     */
+    private String xref;
+
+    /**
+     * The name of the individual that is being read, or {@code null} if it has not been read yet.
+     */
+    private String name;
+
+    /**
+     * The gender of the individual that is being read, or {@code null} if it is unknown.
+     */
+    private Gender gender;
+
+    /**
+     * The family that is being read.
+     */
+    private Family family;
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link GedcomTreeLoader} class.
+     *
+     * @param tree the tree the people and relations are added to.
+     */
+    GedcomTreeLoader(GenealogicalTree tree) {
+        this.tree = tree;
+    }
+
+    // ######################### METHODS #########################
+
+    /**
+     * Loads the individuals and families of a file into the tree.
+     *
+     * @param file the file to read.
+     * @return the number of records that were read.
+     * @throws IOException              if the file cannot be read.
+     * @throws PersonNotFoundException  if a family refers to an individual that is not in the file.
+     * @throws IllegalArgumentException if a line is invalid.
+     */
+    long load(Path file) throws IOException, PersonNotFoundException {
+        long start = System.nanoTime();
+        long records = new GedcomReader(this).read(file);
+        for (Family family : deferred) {
+            if (!isKnown(family)) throw new PersonNotFoundException("Person not found: " + missing(family));
+            apply(family);
+        }
+        deferred.clear();
+        for (Map.Entry<String, String> person : unknownSex.entrySet()) {
+            put(person.getKey(), tree.addPersonId(person.getValue(), DEFAULT_GENDER));
+        }
+        unknownSex.clear();
+        tree.compact();
+        TreeMetrics metrics = tree.getMetrics();
+        if (metrics != null) metrics.recordLoad(System.nanoTime() - start);
+        return records;
+    }
+
+    /**
+     * Starts an individual or family record, or a record that is ignored.
+     *
+     * @param xref  the cross-reference ID of the record, or {@code null} if it has none.
+     * @param tag   the tag of the record.
+     * @param value the value of the line.
+     */
+    @Override
+    public void startRecord(String xref, String tag, String value) {
+        this.xref = xref;
+        type = xref == null ? RecordType.OTHER : switch (tag) {
+            case "INDI" -> RecordType.INDIVIDUAL;
+            case "FAM" -> RecordType.FAMILY;
+            default -> RecordType.OTHER;
+        };
+        name = null;
+        gender = null;
+        family = type == RecordType.FAMILY ? new Family() : null;
+    }
+
+    /**
+     * Reads the name or sex of an individual, or a member of a family.
+     *
+     * @param level the level of the line.
+     * @param tag   the tag of the line.
+     * @param value the value of the line.
+     */
+    @Override
+    public void line(int level, String tag, String value) {
+        if (level != 1) return;
+        if (type == RecordType.INDIVIDUAL) {
+            switch (tag) {
+                case "NAME" -> {
+                    if (name == null) name = personName(value);
+                }
+                case "SEX" -> gender = value.equals("M") ? Gender.MAN : value.equals("F") ? Gender.WOMAN : null;
+            }
+        } else if (type == RecordType.FAMILY) {
+            switch (tag) {
+                case "HUSB" -> family.husband = value;
+                case "WIFE" -> family.wife = value;
+                case "CHIL" -> family.children.add(value);
+                case "NO" -> {
+                    if (value.equals("MARR")) family.married = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the individual that was read to the tree, or applies the family that was read.
+     *
+     * @throws PersonNotFoundException if a member of the family is not known, which cannot happen, since families
+     *                                 that name people who have not been read are deferred.
+     */
+    @Override
+    public void endRecord() throws PersonNotFoundException {
+        if (type == RecordType.INDIVIDUAL) {
+            String personName = name == null || name.isEmpty() ? xref.substring(1, xref.length() - 1) : name;
+            if (gender == null) unknownSex.put(xref, personName);
+            else put(xref, tree.addPersonId(personName, gender));
+        } else if (type == RecordType.FAMILY) {
+            if (isKnown(family)) apply(family);
+            else deferred.add(family);
+        }
+        type = RecordType.OTHER;
+        family = null;
+    }
+
+    /**
+     * Applies the relations of a family whose members are all known.
+     *
+     * @param family the family.
+     * @throws PersonNotFoundException if a member of the family is not known.
+     */
+    private void apply(Family family) throws PersonNotFoundException {
+        int husband = family.husband == null ? PersonStore.NONE : resolve(family.husband, Gender.MAN);
+        int wife = family.wife == null ? PersonStore.NONE : resolve(family.wife, Gender.WOMAN);
+        for (String child : family.children) {
+            int id = resolve(child, DEFAULT_GENDER);
+            if (husband != PersonStore.NONE) tree.addRelation(husband, id, Relation.FATHER);
+            if (wife != PersonStore.NONE) tree.addRelation(wife, id, Relation.MOTHER);
+        }
+        if (family.married && husband != PersonStore.NONE && wife != PersonStore.NONE) {
+            tree.addRelation(husband, wife, Relation.HUSBAND);
+        }
+    }
+
+    /**
+     * Finds the ID of a person by the cross-reference ID of their record, adding them to the tree with a gender if
+     * their sex is unknown.
+     *
+     * @param xref   the cross-reference ID.
+     * @param gender the gender of the person if their sex is unknown.
+     * @return the ID of the person.
+     * @throws PersonNotFoundException if there is no such person.
+     */
+    private int resolve(String xref, Gender gender) throws PersonNotFoundException {
+        int id = idOf(xref);
+        if (id != PersonStore.NONE) return id;
+        String pending = unknownSex.remove(xref);
+        if (pending == null) throw new PersonNotFoundException("Person not found: " + xref);
+        id = tree.addPersonId(pending, gender);
+        put(xref, id);
+        return id;
+    }
+
+    /**
+     * Checks if every member of a family has been read.
+     *
+     * @param family the family.
+     * @return {@code true} if every member is known, {@code false} otherwise.
+     */
+    private boolean isKnown(Family family) {
+        return missing(family) == null;
+    }
+
+    /**
+     * Finds a member of a family that has not been read.
+     *
+     * @param family the family.
+     * @return the cross-reference ID of the member, or {@code null} if every member is known.
+     */
+    private String missing(Family family) {
+        if (family.husband != null && !isKnown(family.husband)) return family.husband;
+        if (family.wife != null && !isKnown(family.wife)) return family.wife;
+        for (String child : family.children) if (!isKnown(child)) return child;
+        return null;
+    }
+
+    /**
+     * Checks if an individual has been read.
+     *
+     * @param xref the cross-reference ID of the individual.
+     * @return {@code true} if the individual has been read, {@code false} otherwise.
+     */
+    private boolean isKnown(String xref) {
+        return idOf(xref) != PersonStore.NONE || unknownSex.containsKey(xref);
+    }
+
+    /**
+     * Finds the ID of a person that has been added, by the cross-reference ID of their record.
+     *
+     * @param xref the cross-reference ID.
+     * @return the ID of the person, or {@link PersonStore#NONE} if they have not been added.
+     */
+    private int idOf(String xref) {
+        int number = number(xref);
+        if (number < 0) return namedIds.getOrDefault(xref, PersonStore.NONE);
+        return number < numberedIds.length ? numberedIds[number] - 1 : PersonStore.NONE;
+    }
+
+    /**
+     * Records the ID of the person of a record.
+     *
+     * @param xref the cross-reference ID of the record.
+     * @param id   the ID of the person.
+     */
+    private void put(String xref, int id) {
+        int number = number(xref);
+        if (number < 0) {
+            namedIds.put(xref, id);
+            return;
+        }
+        if (number >= numberedIds.length) {
+            numberedIds = Arrays.copyOf(numberedIds, Math.max(numberedIds.length << 1, number + 1));
+        }
+        numberedIds[number] = id + 1;
+    }
+
+    /**
+     * Parses the number of a cross-reference ID of the form {@code @I<number>@}.
+     *
+     * @param xref the cross-reference ID.
+     * @return the number, or -1 if the ID is of another form, or its number is above
+     * {@link GedcomTreeLoader#MAX_NUMBERED_ID}.
+     */
+    private static int number(String xref) {
+        int length = xref.length();
+        if (length < 4 || length > 12 || xref.charAt(1) != 'I' || xref.charAt(length - 1) != '@') return -1;
+        long number = 0;
+        for (int i = 2; i < length - 1; i++) {
+            char digit = xref.charAt(i);
+            if (digit < '0' || digit > '9') return -1;
+            number = number * 10 + digit - '0';
+        }
+        return number <= MAX_NUMBERED_ID ? (int) number : -1;
+    }
+
+    /**
+     * Turns a GEDCOM name into the name of a person, by removing the slashes around the surname and collapsing the
+     * spaces, e.g. {@code John /Smith/} into {@code John Smith}.
+     *
+     * @param value the GEDCOM name.
+     * @return the name of the person.
+     */
+    private static String personName(String value) {
+        StringBuilder name = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '/') c = ' ';
+            if (c == ' ' && (name.isEmpty() || name.charAt(name.length() - 1) == ' ')) continue;
+            name.append(c);
+        }
+        if (!name.isEmpty() && name.charAt(name.length() - 1) == ' ') name.setLength(name.length() - 1);
+        return name.toString();
+    }
+
+    // ####################### NESTED TYPES #######################
+
+    /**
+     * The types of records that are read.
+     */
+    private enum RecordType {
+        INDIVIDUAL, FAMILY, OTHER
+    }
+
+    /**
+     * The members of a family record, by cross-reference ID.
+     */
+    private static class Family {
+
+        /**
+         * The husband, or {@code null} if the family has none.
+         */
+        private String husband;
+
+        /**
+         * The wife, or {@code null} if the family has none.
+         */
+        private String wife;
+
+        /**
+         * The children.
+         */
+        private final List<String> children = new ArrayList<>(4);
+
+        /**
+         * Whether the husband and wife are married.
+         */
+        private boolean married = true;
+    }
+}
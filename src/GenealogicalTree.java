@@ -1,7 +1,22 @@
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * This class represents a genealogical tree.
+ * <p>
+ * The tree can be read and changed from many threads at once. Changes, e.g. {@link GenealogicalTree#addPerson} and
+ * {@link GenealogicalTree#addRelation}, take a write lock, so they are applied, and journaled, one at a time. Queries,
+ * e.g. {@link GenealogicalTree#findRelation} and {@link GenealogicalTree#findKinship}, never take a lock unless a
+ * change is made while they run: they read the tree optimistically and then check that no change was made in the
+ * meantime, and only if one was are they repeated under a read lock. Changes made through the setters of a
+ * {@link Person}, e.g. {@link Person#setFather}, bypass the lock, and must not be made while the tree is shared.
  *
  * @author George Gkonis
  * @version 1.0
@@ -11,87 +26,1270 @@ public class GenealogicalTree {
     // ####################### ATTRIBUTES #######################
 
     /**
-     * The people in the genealogical tree. Maps the name of the person to the person for easy access.
+     * The people in the genealogical tree. Each person is given an integer ID, by which their data can be found.
      */
-    private final Map<String, Person> people = new HashMap<>();
+    private final PersonStore people;
+
+    /**
+     * The engine that finds blood relations of any degree between the people of the tree.
+     */
+    private final KinshipEngine kinships;
+
+    /**
+     * The finder of the shortest paths between the people of the tree.
+     */
+    private final ConnectionFinder connections;
+
+    /**
+     * The cache of the relations found by {@link GenealogicalTree#findRelation(String, String)}, or {@code null} if
+     * relations are not cached.
+     */
+    private volatile RelationCache relationCache;
+
+    /**
+     * The number of changes to the relations of the people that the tree knows of, i.e. that were made through
+     * {@link GenealogicalTree#addRelation(int, int, Relation)}. Any other change, e.g. through {@link Person#setFather},
+     * is noticed when the store's count moves away from this one.
+     */
+    private long knownModCount;
+
+    /**
+     * Whether every parent of every person has that person among their children, and the other way around. Only then
+     * can the cache find the people affected by a change by following the links of the people that were changed; once
+     * a parent is replaced, or a change is made outside the tree, every change flushes the whole cache.
+     */
+    private boolean linksConsistent = true;
+
+    /**
+     * The journal the people and relations that are added to the tree are appended to, or {@code null} if the tree is
+     * not journaled.
+     */
+    private TreeJournal journal;
+
+    /**
+     * The index of the names of the people, in the order of {@link GenealogicalTree#nameCollation}, or {@code null} if
+     * it has not been needed yet. It is built on the first query that needs it, so a bulk load only sorts the names
+     * once, and from then on it is updated as people are added.
+     */
+    private NameIndex nameIndex;
+
+    /**
+     * The collation the names of the people are sorted and searched in.
+     */
+    private NameCollation nameCollation = NameCollation.EXACT;
+
+    /**
+     * The connected components of the people, i.e. the groups of people that are linked through parents, children and
+     * spouses. It is updated as people and relations are added, and rebuilt after a change made outside the tree.
+     */
+    private ComponentIndex components = new ComponentIndex();
+
+    /**
+     * The index that tells whether one person is an ancestor of another, or {@code null} if it has not been needed yet,
+     * or a parent has been replaced since. It is built on the first query that needs it, and from then on it is updated
+     * as people and parents are added.
+     */
+    private AncestryIndex ancestry;
+
+    /**
+     * The ranking of the people that their kinship and inbreeding coefficients are computed over, or {@code null} if it
+     * has not been needed yet. It is built on the first query that needs it, and again on the first one after a
+     * relation is added.
+     */
+    private KinshipCoefficients coefficients;
+
+    /**
+     * The metrics of the operations of the tree, or {@code null} if metrics are not enabled.
+     */
+    private volatile TreeMetrics metrics;
+
+    /**
+     * The lock that changes to the tree are made under, and that queries validate their reads against.
+     */
+    private final StampedLock lock = new StampedLock();
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link GenealogicalTree} class, which creates an empty tree that keeps its people on
+     * the heap.
+     */
+    public GenealogicalTree() {
+        this(new PersonStore());
+    }
+
+    /**
+     * Constructor method for the {@link GenealogicalTree} class, which creates an empty tree that keeps its people in
+     * a store.
+     *
+     * @param people the empty store the people are kept in.
+     */
+    private GenealogicalTree(PersonStore people) {
+        this.people = people;
+        kinships = new KinshipEngine(people, KinshipEngine.DEFAULT_MAX_GENERATIONS);
+        connections = new ConnectionFinder(people);
+    }
 
     // ######################### METHODS #########################
 
     /**
-     * Adds a person to the tree.
+     * Creates an empty tree that keeps its people outside the Java heap, in anonymous memory, so that the garbage
+     * collector does not have to trace them. Queries work the same on it, but each name is decoded when it is asked
+     * for. See {@link OffHeapPersonStore}.
+     *
+     * @return the tree.
+     */
+    public static GenealogicalTree offHeap() {
+        return new GenealogicalTree(new OffHeapPersonStore());
+    }
+
+    /**
+     * Creates an empty tree that keeps its people outside the Java heap, in memory mapped from a scratch file, which
+     * the operating system can page out when memory is short. The file is created, or emptied if it exists, and is not
+     * deleted when the tree is no longer used. See {@link OffHeapPersonStore}.
+     *
+     * @param file the scratch file.
+     * @return the tree.
+     * @throws IOException if the file cannot be created.
+     */
+    public static GenealogicalTree offHeap(Path file) throws IOException {
+        return new GenealogicalTree(new OffHeapPersonStore(file));
+    }
+
+    /**
+     * Opens a snapshot file, that was saved by {@link GenealogicalTree#saveSnapshot(Path)}, as a read-only tree,
+     * without loading it: the file is mapped into memory, and each person is only read from it when a query touches
+     * them, so the first query is answered at once however large the tree is. The tree cannot be changed, and queries
+     * that need the whole tree, e.g. {@link GenealogicalTree#getComponents()} or
+     * {@link GenealogicalTree#validate()}, read all of it. See {@link SnapshotPersonStore}.
+     *
+     * @param file the snapshot file.
+     * @return the tree.
+     * @throws IOException if the file cannot be read, or is not a valid snapshot of the current version.
+     */
+    public static GenealogicalTree openSnapshot(Path file) throws IOException {
+        SnapshotPersonStore people = TreeSnapshot.open(file);
+        GenealogicalTree tree = new GenealogicalTree(people);
+        tree.linksConsistent = (people.flags() & TreeSnapshot.FLAG_LINKS_CONSISTENT) != 0;
+        tree.knownModCount = people.modCount();
+        return tree;
+    }
+
+    /**
+     * Adds a person to the tree.
+     *
+     * @param person the person to add to the tree.
+     */
+    public void addPerson(Person person) {
+        long stamp = lock.writeLock();
+        try {
+            int id = people.add(person.getName(), person.getGender());
+            person.attach(people, id);
+            components.addPerson(id);
+            if (nameIndex != null) nameIndex.put(person.getName(), id);
+            if (ancestry != null) ancestry.addPerson(id);
+            if (journal != null) journal.logPerson(person.getName(), person.getGender());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds a person with the specified name and gender to the tree, without creating a {@link Person} for them.
+     *
+     * @param name   the person's name.
+     * @param gender the person's gender.
+     */
+    public void addPerson(String name, Gender gender) {
+        addPersonId(name, gender);
+    }
+
+    /**
+     * Adds a person with the specified name and gender to the tree, and returns their ID, by which they can be found
+     * even after a person with the same name replaces them. See {@link GenealogicalTree#addPerson(String, Gender)}.
+     *
+     * @param name   the person's name.
+     * @param gender the person's gender.
+     * @return the ID of the person.
+     */
+    int addPersonId(String name, Gender gender) {
+        long stamp = lock.writeLock();
+        try {
+            int id = people.add(name, gender);
+            components.addPerson(id);
+            if (nameIndex != null) nameIndex.put(name, id);
+            if (ancestry != null) ancestry.addPerson(id);
+            if (journal != null) journal.logPerson(name, gender);
+            return id;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Finds and returns the person with the specified name from the tree. If the person cannot be found, an exception
+     * with a relevant message is thrown.
+     *
+     * @param name the name of the person to find.
+     * @return the person that was found.
+     * @throws PersonNotFoundException if the person could not be found.
+     */
+    public Person findPerson(String name) throws PersonNotFoundException {
+        return read(() -> people.view(this.findId(name)));
+    }
+
+    /**
+     * Finds and returns the ID of the person with the specified name. If the person cannot be found, an exception with a
+     * relevant message is thrown.
+     *
+     * @param name the name of the person to find.
+     * @return the ID of the person that was found.
+     * @throws PersonNotFoundException if the person could not be found.
+     */
+    int findId(String name) throws PersonNotFoundException {
+        int id = people.idOf(name);
+        if (id == PersonStore.NONE) throw new PersonNotFoundException("Person not found: " + name);
+        return id;
+    }
+
+    /**
+     * Adds the specified relation between the first and second person.
+     * <ul>
+     * <li>If the relation is {@link Relation#FATHER}, the first person is set as the father of the second person, and
+     * the second person is added to the first person's list of children.
+     * <li>If the relation is {@link Relation#MOTHER}, the first person is set as the mother of the second person, and
+     * the second person is added to the first person's list of children.
+     * <li>If the relation is {@link Relation#HUSBAND} or {@link Relation#WIFE}, the first person is set as the spouse of
+     * the second person, and the second person is set as the spouse of the first person.
+     * </ul>
+     * The above relations are the only ones that are saved directly for each person. All other relations are calculated
+     * using the tree's structure.
+     * <p>
+     * If either the first or second person cannot be found in the tree, an exception with a relevant message is thrown.
+     *
+     * @param name1    the name of the first person.
+     * @param name2    the name of the second person.
+     * @param relation the relation the first person has to the second person.
+     * @throws PersonNotFoundException if either of the people are not in the tree.
+     */
+    public void addRelation(String name1, String name2, Relation relation) throws PersonNotFoundException {
+        long stamp = lock.writeLock();
+        try {
+            applyRelation(this.findId(name1), this.findId(name2), relation);
+        } catch (PersonNotFoundException e) {
+            throw missed(e);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds the specified relation between the first and second person, who are already known by ID. See
+     * {@link GenealogicalTree#addRelation(String, String, Relation)}.
+     *
+     * @param id1      the ID of the first person.
+     * @param id2      the ID of the second person.
+     * @param relation the relation the first person has to the second person.
+     */
+    void addRelation(int id1, int id2, Relation relation) {
+        long stamp = lock.writeLock();
+        try {
+            applyRelation(id1, id2, relation);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds the specified relation between the first and second person, while the write lock is held, and appends it
+     * to the journal. A relation other than a parent or spouse changes no link, so it is neither applied nor journaled,
+     * and does not join the components of the two people.
+     *
+     * @param id1      the ID of the first person.
+     * @param id2      the ID of the second person.
+     * @param relation the relation the first person has to the second person.
+     */
+    private void applyRelation(int id1, int id2, Relation relation) {
+        boolean link = switch (relation) {
+            case FATHER, MOTHER, HUSBAND, WIFE -> true;
+            default -> false;
+        };
+        if (!link) return;
+        checkLinks();
+        boolean replacesParent = relation == Relation.FATHER && people.father(id2) != PersonStore.NONE
+                && people.father(id2) != id1
+                || relation == Relation.MOTHER && people.mother(id2) != PersonStore.NONE && people.mother(id2) != id1;
+        if (replacesParent) linksConsistent = false;
+        if (ancestry != null && (replacesParent || !ancestry.isCurrent(people.modCount()))) ancestry = null;
+        RelationCache cache = relationCache;
+        if (cache != null) invalidateRelations(cache, id1, id2, relation);
+        switch (relation) {
+            case FATHER -> {
+                people.addChild(id1, id2);
+                people.setFather(id2, id1);
+            }
+            case MOTHER -> {
+                people.addChild(id1, id2);
+                people.setMother(id2, id1);
+            }
+            case HUSBAND, WIFE -> {
+                people.setSpouse(id1, id2);
+                people.setSpouse(id2, id1);
+            }
+        }
+        knownModCount = people.modCount();
+        components.union(id1, id2);
+        components.sync(knownModCount);
+        if (ancestry != null) {
+            if (relation == Relation.FATHER || relation == Relation.MOTHER) ancestry.addParent(id1, id2);
+            ancestry.sync(knownModCount);
+        }
+        if (journal != null) journal.logRelation(id1, id2, relation);
+    }
+
+    /**
+     * Invalidates the cached relations that may change when a relation is added. The relation the first person of a
+     * pair has to the second only depends on the links of the first person, their parents, grandparents, children,
+     * siblings, and their parents' siblings, so only the people that have one of the changed people in those places
+     * are invalidated.
+     *
+     * @param cache    the cache of relations.
+     * @param id1      the ID of the first person of the relation that is added.
+     * @param id2      the ID of the second person of the relation that is added.
+     * @param relation the relation that is added.
+     */
+    private void invalidateRelations(RelationCache cache, int id1, int id2, Relation relation) {
+        if (!linksConsistent) {
+            cache.clear();
+            return;
+        }
+        switch (relation) {
+            case FATHER, MOTHER -> {
+                invalidateFamily(cache, id1);
+                invalidateFamily(cache, id2);
+            }
+            case HUSBAND, WIFE -> {
+                cache.invalidate(id1);
+                cache.invalidate(id2);
+            }
+        }
+    }
+
+    /**
+     * Invalidates the cached relations of a person, their parents, siblings, children, grandchildren, and the children
+     * of their siblings, i.e. of everyone whose relations depend on the links of that person.
+     *
+     * @param cache the cache of relations.
+     * @param id    the ID of the person.
+     */
+    private void invalidateFamily(RelationCache cache, int id) {
+        cache.invalidate(id);
+        invalidateDescendants(cache, id);
+        if (people.father(id) != PersonStore.NONE) {
+            cache.invalidate(people.father(id));
+            invalidateDescendants(cache, people.father(id));
+        }
+        if (people.mother(id) != PersonStore.NONE) {
+            cache.invalidate(people.mother(id));
+            invalidateDescendants(cache, people.mother(id));
+        }
+    }
+
+    /**
+     * Invalidates the cached relations of the children and grandchildren of a person.
+     *
+     * @param cache the cache of relations.
+     * @param id    the ID of the person.
+     */
+    private void invalidateDescendants(RelationCache cache, int id) {
+        for (int i = 0, count = people.childCount(id); i < count; i++) {
+            int child = people.child(id, i);
+            cache.invalidate(child);
+            for (int j = 0, grandchildren = people.childCount(child); j < grandchildren; j++) {
+                cache.invalidate(people.child(child, j));
+            }
+        }
+    }
+
+    /**
+     * Checks if the relations of the people have been changed outside the tree since the tree last changed them, in
+     * which case the links can no longer be trusted to be consistent, and any cached relation may be out of date. Must
+     * be called while the write lock is held.
+     */
+    private void checkLinks() {
+        long modCount = people.modCount();
+        if (modCount == knownModCount) return;
+        components();
+        linksConsistent = false;
+        knownModCount = modCount;
+        RelationCache cache = relationCache;
+        if (cache != null) cache.clear();
+    }
+
+    /**
+     * Sets the maximum number of relations that are cached by {@link GenealogicalTree#findRelation(String, String)}.
+     * The cache is useful when the same pairs are queried again and again, e.g. in batch runs. Any relations that were
+     * already cached are discarded.
+     *
+     * @param size the maximum number of cached relations, or zero to stop caching relations.
+     */
+    public void setRelationCacheSize(int size) {
+        if (size < 0) throw new IllegalArgumentException("The size of the cache cannot be negative.");
+        long stamp = lock.writeLock();
+        try {
+            checkLinks();
+            relationCache = size == 0 ? null : new RelationCache(size);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the counters of the relation cache.
+     *
+     * @return the counters of the cache, or {@code null} if relations are not cached.
+     */
+    public RelationCache.Stats getRelationCacheStats() {
+        RelationCache cache = relationCache;
+        return cache == null ? null : cache.stats();
+    }
+
+    /**
+     * Enables or disables the metrics of the operations of the tree, i.e. the number and times of the loads, exports
+     * and relation queries, and the number of lookups of people that are not in the tree. Metrics that were already
+     * recorded are kept while metrics stay enabled, and discarded when they are disabled. See {@link TreeMetrics}.
+     *
+     * @param enabled whether metrics are recorded.
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        long stamp = lock.writeLock();
+        try {
+            if (!enabled) metrics = null;
+            else if (metrics == null) metrics = new TreeMetrics();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the metrics of the operations of the tree.
+     *
+     * @return the metrics, or {@code null} if metrics are not enabled.
+     */
+    public TreeMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Counts a lookup of a person that is not in the tree, if metrics are enabled.
+     *
+     * @param e the exception of the lookup.
+     * @return the exception, to be rethrown.
+     */
+    private PersonNotFoundException missed(PersonNotFoundException e) {
+        TreeMetrics metrics = this.metrics;
+        if (metrics != null) metrics.recordLookupMiss();
+        return e;
+    }
+
+    /**
+     * Validates the links of the tree, and finds the generation of every person. Every problem is reported at once:
+     * people who are their own ancestors, fathers who are not men and mothers who are not women, parents that were
+     * replaced or that do not have their children among their children, and spouses who are married to someone else.
+     * The generations are kept until the next change, and {@link GenealogicalTree#isAncestor(String, String)} uses
+     * them to rule out people who are not in an earlier generation. Runs in time linear in the size of the tree, with
+     * each family validated in parallel, under the write lock. See {@link TreeValidator}.
+     *
+     * @return the report of the validation.
+     */
+    public ValidationReport validate() {
+        long stamp = lock.writeLock();
+        try {
+            checkLinks();
+            return validateLocked();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Validates the links of the tree, while the write lock is held, after {@link GenealogicalTree#checkLinks()}. A
+     * tree without replaced or one-way parents has consistent links again.
+     *
+     * @return the report of the validation.
+     */
+    private ValidationReport validateLocked() {
+        ValidationReport report = TreeValidator.validate(people, components());
+        linksConsistent = report.getProblems().stream().map(ValidationReport.Problem::getKind)
+                .noneMatch(kind -> kind == ValidationReport.Kind.ONE_WAY_PARENT
+                        || kind == ValidationReport.Kind.CONFLICTING_PARENT);
+        return report;
+    }
+
+    /**
+     * Returns the connected components of the tree, i.e. the groups of people that are linked to each other through
+     * parents, children and spouses, and to no one outside the group, with their sizes and depths. People of different
+     * components are unrelated, so the components can be processed in parallel. The tree is validated first, to find
+     * the depths, if it was changed since it was last validated.
+     *
+     * @return the components, largest first.
+     */
+    public List<TreeComponent> getComponents() {
+        long stamp = lock.writeLock();
+        try {
+            checkLinks();
+            if (!people.hasGenerations()) validateLocked();
+            int[][] grouped = components().members();
+            int[] members = grouped[0];
+            int[] starts = grouped[1];
+            List<TreeComponent> found = new ArrayList<>(starts.length - 1);
+            for (int c = 0; c + 1 < starts.length; c++) {
+                String[] names = new String[starts[c + 1] - starts[c]];
+                int deepest = -1;
+                for (int i = starts[c]; i < starts[c + 1]; i++) {
+                    names[i - starts[c]] = people.name(members[i]);
+                    deepest = Math.max(deepest, people.generation(members[i]));
+                }
+                found.add(new TreeComponent(Arrays.asList(names), deepest + 1));
+            }
+            found.sort(Comparator.comparingInt(TreeComponent::getSize).reversed());
+            return found;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Saves the people and relations of the tree to a binary snapshot file, which can be loaded much faster than a CSV
+     * file. See {@link TreeSnapshot} for the format.
+     *
+     * @param file the file to write to.
+     * @throws IOException if the file cannot be written.
+     */
+    public void saveSnapshot(Path file) throws IOException {
+        long stamp = lock.writeLock();
+        try {
+            checkLinks();
+            int flags = linksConsistent ? TreeSnapshot.FLAG_LINKS_CONSISTENT : 0;
+            stamp = lock.tryConvertToReadLock(stamp);
+            TreeSnapshot.write(people, flags, file);
+        } finally {
+            lock.unlock(stamp);
+        }
+    }
+
+    /**
+     * Exports the people of the tree to a CSV file, one {@code name,gender} row per person, sorted by name in the order
+     * of the tree's collation, and optionally the relations of the tree after them, as {@code name,relation,name} rows,
+     * so that the export can be loaded back. If the name index has not been built, the people are sorted by an external
+     * merge sort, with bounded memory. See {@link CsvTreeExporter}.
+     *
+     * @param file      the file to write to.
+     * @param relations whether the relations are exported.
+     * @return the number of rows that were written.
+     * @throws IOException if the file cannot be written.
+     */
+    public long exportToCsv(Path file, boolean relations) throws IOException {
+        long start = System.nanoTime();
+        long stamp = lock.readLock();
+        try {
+            int[] order = nameIndex == null ? null : nameIndex.scan(null, false, null, null, Integer.MAX_VALUE);
+            long rows = new CsvTreeExporter(people, nameCollation, CsvTreeExporter.DEFAULT_RUN_SIZE)
+                    .export(file, order, relations);
+            TreeMetrics metrics = this.metrics;
+            if (metrics != null) metrics.recordExport(System.nanoTime() - start);
+            return rows;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Exports the tree to a GEDCOM file, with an individual record per person and a family record per couple that has
+     * children or is married, so that the export can be loaded back, see {@link GenealogicalTreeApp#readTree}. Every
+     * person is exported, including those that were replaced by a person with the same name, so the links to them are
+     * kept. The records are streamed to the file. See {@link GedcomTreeExporter}.
+     *
+     * @param file the file to write to.
+     * @return the number of records that were written.
+     * @throws IOException if the file cannot be written.
+     */
+    public long exportToGedcom(Path file) throws IOException {
+        long start = System.nanoTime();
+        long stamp = lock.readLock();
+        try {
+            long records = new GedcomTreeExporter(people).export(file);
+            TreeMetrics metrics = this.metrics;
+            if (metrics != null) metrics.recordExport(System.nanoTime() - start);
+            return records;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Loads the people and relations of a binary snapshot file, that was saved by
+     * {@link GenealogicalTree#saveSnapshot(Path)}, into the tree. The tree must be empty.
+     *
+     * @param file the file to read.
+     * @throws IOException           if the file cannot be read or is not a valid snapshot.
+     * @throws IllegalStateException if the tree is not empty, or has a journal.
+     */
+    public void loadSnapshot(Path file) throws IOException {
+        long start = System.nanoTime();
+        long stamp = lock.writeLock();
+        try {
+            if (journal != null) throw new IllegalStateException("Cannot load a snapshot into a journaled tree.");
+            int flags = TreeSnapshot.read(file, people);
+            linksConsistent = (flags & TreeSnapshot.FLAG_LINKS_CONSISTENT) != 0;
+            knownModCount = people.modCount();
+            RelationCache cache = relationCache;
+            if (cache != null) cache.clear();
+            if (nameIndex != null) nameIndex = NameIndex.build(people, nameCollation);
+            components = ComponentIndex.build(people);
+            ancestry = null;
+            coefficients = null;
+            if (metrics != null) metrics.recordLoad(System.nanoTime() - start);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Opens the journal in a directory and loads it into the tree, which must be empty: the newest base snapshot is
+     * loaded, and the people and relations that were added since are replayed. From then on, every person and relation
+     * that is added to the tree is appended to the journal, and is made durable by
+     * {@link GenealogicalTree#commitJournal()}. Changes that are made outside the tree, e.g. through
+     * {@link Person#setFather}, are not journaled. See {@link TreeJournal} for the format.
+     *
+     * @param directory the directory of the journal, which is created if it does not exist.
+     * @throws IOException           if the journal cannot be read or is corrupt.
+     * @throws IllegalStateException if the tree is not empty, or already has a journal.
+     */
+    public void openJournal(Path directory) throws IOException {
+        if (journal != null) throw new IllegalStateException("The tree already has a journal.");
+        if (people.size() != 0) throw new IllegalStateException("Cannot open a journal into a tree that is not empty.");
+        TreeJournal opened = TreeJournal.open(this, directory);
+        long stamp = lock.writeLock();
+        try {
+            journal = opened;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Makes every person and relation that has been added to the tree so far durable in its journal. The records are
+     * written and synced to the disk together, so committing after a batch of changes costs a single {@code fsync}.
+     *
+     * @throws IOException           if the journal cannot be written.
+     * @throws IllegalStateException if the tree has no journal.
+     */
+    public void commitJournal() throws IOException {
+        requireJournal().commit();
+    }
+
+    /**
+     * Compacts the journal of the tree in the background, into a new base snapshot that holds every record so far. The
+     * tree can keep being changed while the compaction runs.
+     *
+     * @return the compaction, which completes once the new base is in place.
+     * @throws IOException           if the journal cannot be written.
+     * @throws IllegalStateException if the tree has no journal.
+     */
+    public CompletableFuture<Void> compactJournal() throws IOException {
+        return requireJournal().compact();
+    }
+
+    /**
+     * Commits and closes the journal of the tree. The people and relations that are added afterwards are not
+     * journaled.
+     *
+     * @throws IOException           if the journal cannot be written, or its compaction failed.
+     * @throws IllegalStateException if the tree has no journal.
+     */
+    public void closeJournal() throws IOException {
+        TreeJournal closing;
+        long stamp = lock.writeLock();
+        try {
+            closing = requireJournal();
+            journal = null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        closing.close();
+    }
+
+    /**
+     * Returns the journal of the tree.
+     *
+     * @return the journal.
+     * @throws IllegalStateException if the tree has no journal.
+     */
+    private TreeJournal requireJournal() {
+        if (journal == null) throw new IllegalStateException("The tree has no journal.");
+        return journal;
+    }
+
+    /**
+     * Returns the number of people that have been added to the tree, including any that were replaced by a person that
+     * was added later with the same name.
+     *
+     * @return the number of people.
+     */
+    int size() {
+        return people.size();
+    }
+
+    /**
+     * Runs a task over the people of the tree while the read lock is held, e.g. to read all of them at once.
+     *
+     * @param task the task.
+     * @param <T>  the type of the result of the task.
+     * @return the result of the task.
+     */
+    <T> T withPeople(Function<PersonStore, T> task) {
+        long stamp = lock.readLock();
+        try {
+            return task.apply(people);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Runs a task over the person with the specified name optimistically, as the queries of the tree run, so the task
+     * never sees the links of the people half-changed by a change that is made at the same time. The task may be run
+     * more than once, and must only read the person and the people it reaches through them.
+     *
+     * @param name the name of the person.
+     * @param task the task.
+     * @param <T>  the type of the result of the task.
+     * @return the result of the task.
+     * @throws PersonNotFoundException if the person is not in the tree.
+     */
+    <T> T withPerson(String name, Function<Person, T> task) throws PersonNotFoundException {
+        return read(() -> task.apply(people.view(this.findId(name))));
+    }
+
+    /**
+     * Packs the tree's storage together and releases any spare capacity. Should be called once a bulk load is complete;
+     * the tree can still be modified afterwards.
+     */
+    public void compact() {
+        long stamp = lock.writeLock();
+        try {
+            boolean current = components.isCurrent(people.modCount());
+            people.compact();
+            if (current) components.sync(people.modCount());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Finds the relation the first person has to the second person.
+     * <p>
+     * People in different connected components are unrelated, which is found at once, without looking at their links;
+     * see {@link GenealogicalTree#getComponents()}. Otherwise, the relation is classified by walking only the parent and
+     * child links it needs, without allocating any collections. When assertions are enabled, the result is checked
+     * against the classification that uses the {@link Person} methods, e.g. {@link Person#findCousins()}. If a relation
+     * cache has been set up with {@link GenealogicalTree#setRelationCacheSize(int)}, relations that were found before
+     * are taken from it.
+     *
+     * @param name1 the name of the first person.
+     * @param name2 the name of the second person.
+     * @return the relation the first person has to the second person.
+     * @throws PersonNotFoundException if either of the people are not in the tree.
+     */
+    public Relation findRelation(String name1, String name2) throws PersonNotFoundException {
+        TreeMetrics metrics = this.metrics;
+        boolean timed = metrics != null && metrics.sampleQuery();
+        long start = timed ? System.nanoTime() : 0;
+        if (people.modCount() != knownModCount
+                && (relationCache != null || !components.isCurrent(people.modCount()))) {
+            long stamp = lock.writeLock();
+            try {
+                checkLinks();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+        Relation found = read(() -> {
+            int id1 = this.findId(name1);
+            int id2 = this.findId(name2);
+            RelationCache cache = relationCache;
+            Relation relation = !mayBeRelated(id1, id2) ? Relation.UNRELATED
+                    : cache == null ? classify(id1, id2) : cache.get(id1, id2);
+            assert relation == null || relation == classifyBySets(people.view(id1), people.view(id2))
+                    : "Relation mismatch: " + name1 + ", " + name2;
+            return relation;
+        });
+        Relation relation = found != null ? found : classifyCached(name1, name2);
+        if (timed) metrics.recordRelation(relation, System.nanoTime() - start);
+        else if (metrics != null) metrics.countRelation(relation);
+        return relation;
+    }
+
+    /**
+     * Finds the blood relation of any degree the first person has to the second person, e.g. great-grandfather or
+     * second cousin once removed. Unlike {@link GenealogicalTree#findRelation(String, String)}, only blood relations
+     * are considered, so spouses are unrelated unless they also share an ancestor.
+     *
+     * @param name1 the name of the first person.
+     * @param name2 the name of the second person.
+     * @return the kinship of the first person to the second person.
+     * @throws PersonNotFoundException if either of the people are not in the tree.
+     */
+    public Kinship findKinship(String name1, String name2) throws PersonNotFoundException {
+        return read(() -> {
+            int id1 = this.findId(name1);
+            int id2 = this.findId(name2);
+            return mayBeRelated(id1, id2) ? kinships.find(id1, id2) : Kinship.UNRELATED;
+        });
+    }
+
+    /**
+     * Finds how the first person is connected to the second person, through any parent, child and spouse links, e.g.
+     * {@code A -son-> B -husband-> C -father-> D}, even if they are not related. See
+     * {@link GenealogicalTree#findConnection(String, String, int, int, boolean)}; paths of up to
+     * {@value ConnectionFinder#DEFAULT_MAX_DEPTH} hops are searched, and spouses may be part of them.
+     *
+     * @param name1 the name of the first person.
+     * @param name2 the name of the second person.
+     * @return a shortest connection, or {@link Connection#NONE} if the people are not connected within the limits.
+     * @throws PersonNotFoundException if either of the people are not in the tree.
+     */
+    public Connection findConnection(String name1, String name2) throws PersonNotFoundException {
+        return findConnection(name1, name2, ConnectionFinder.DEFAULT_MAX_DEPTH, ConnectionFinder.DEFAULT_MAX_FRONTIER,
+                true);
+    }
+
+    /**
+     * Finds how the first person is connected to the second person, as a shortest path of parent, child and,
+     * optionally, spouse links. The path is searched from both people at once, and the search gives up when the path
+     * would be longer than the depth limit, or a side has reached more people at once than the frontier limit, so
+     * people that are not connected at all are not searched through the whole tree. See {@link ConnectionFinder}.
+     *
+     * @param name1       the name of the first person.
+     * @param name2       the name of the second person.
+     * @param maxDepth    the maximum number of hops of the path.
+     * @param maxFrontier the maximum number of people a side of the search may expand at once.
+     * @param spouses     whether the path may go from a person to their spouse.
+     * @return a shortest connection, or {@link Connection#NONE} if the people are not connected within the limits.
+     * @throws PersonNotFoundException  if either of the people are not in the tree.
+     * @throws IllegalArgumentException if either of the limits is not positive.
+     */
+    public Connection findConnection(String name1, String name2, int maxDepth, int maxFrontier, boolean spouses)
+            throws PersonNotFoundException {
+        if (maxDepth < 1 || maxFrontier < 1) throw new IllegalArgumentException("The limits must be positive.");
+        return read(() -> {
+            int id1 = this.findId(name1);
+            int id2 = this.findId(name2);
+            if (!mayBeRelated(id1, id2)) return Connection.NONE;
+            return connections.find(id1, id2, maxDepth, maxFrontier, spouses);
+        });
+    }
+
+    /**
+     * Checks if a person is an ancestor of another, at any depth, through any line. The answer is taken from the
+     * ancestry index, which is built on the first such query, so it usually takes constant time, whatever the number of
+     * generations in between. See {@link AncestryIndex}.
+     *
+     * @param ancestor   the name of the possible ancestor.
+     * @param descendant the name of the possible descendant.
+     * @return {@code true} if the first person is an ancestor of the second, {@code false} otherwise.
+     * @throws PersonNotFoundException if either of the people are not in the tree.
+     */
+    public boolean isAncestor(String ancestor, String descendant) throws PersonNotFoundException {
+        while (true) {
+            AncestryIndex index = ancestry();
+            Boolean found = read(() -> {
+                if (index != ancestry || !index.isCurrent(people.modCount())) return null;
+                int id1 = this.findId(ancestor);
+                int id2 = this.findId(descendant);
+                return mayBeRelated(id1, id2) && index.isAncestor(id1, id2);
+            });
+            if (found != null) return found;
+        }
+    }
+
+    /**
+     * Checks if a person is a descendant of another, at any depth, through any line. See
+     * {@link GenealogicalTree#isAncestor(String, String)}.
+     *
+     * @param descendant the name of the possible descendant.
+     * @param ancestor   the name of the possible ancestor.
+     * @return {@code true} if the first person is a descendant of the second, {@code false} otherwise.
+     * @throws PersonNotFoundException if either of the people are not in the tree.
+     */
+    public boolean isDescendant(String descendant, String ancestor) throws PersonNotFoundException {
+        return isAncestor(ancestor, descendant);
+    }
+
+    /**
+     * Returns the descendants of a person, one generation after the other, and each only once, even if they descend
+     * from the person through more than one line. The descendants are found as the stream is consumed, a few at a time
+     * under the read lock, so the stream can be stopped early without walking the rest of them.
+     *
+     * @param name the name of the person.
+     * @return the descendants of the person.
+     * @throws PersonNotFoundException if the person is not in the tree.
+     * @throws ConcurrentModificationException when consumed, if a relation was added to the tree after the stream was
+     *                                         created.
+     */
+    public Stream<Person> findDescendants(String name) throws PersonNotFoundException {
+        return lineage(name, true);
+    }
+
+    /**
+     * Returns the ancestors of a person, one generation after the other, and each only once, even if the person
+     * descends from them through more than one line. See {@link GenealogicalTree#findDescendants(String)}.
+     *
+     * @param name the name of the person.
+     * @return the ancestors of the person.
+     * @throws PersonNotFoundException if the person is not in the tree.
+     * @throws ConcurrentModificationException when consumed, if a relation was added to the tree after the stream was
+     *                                         created.
+     */
+    public Stream<Person> findAncestors(String name) throws PersonNotFoundException {
+        return lineage(name, false);
+    }
+
+    /**
+     * Finds the close relatives of a person, i.e. their parents, children, siblings, cousins, spouse, grandparents,
+     * grandchildren, uncles and aunts, and nephews and nieces, grouped by the relation each of them has to the person,
+     * as {@link GenealogicalTree#findRelation(String, String)} finds it. The relatives are walked from the person, out
+     * to at most four parent, child and spouse links, when they are asked for, instead of comparing the person to
+     * everyone else; see {@link Relatives}. A relative that is only linked to the person from their side, e.g. a
+     * spouse who is married to someone else, is not found, so the groups match the relations when
+     * {@link GenealogicalTree#validate()} reports no one-way links.
      *
-     * @param person the person to add to the tree.
+     * @param name the name of the person.
+     * @return the relatives of the person.
+     * @throws PersonNotFoundException if the person is not in the tree.
      */
-    public void addPerson(Person person) {
-        people.put(person.getName(), person);
+    public Relatives findRelatives(String name) throws PersonNotFoundException {
+        return read(() -> {
+            int id = this.findId(name);
+            return new Relatives(this, people.view(id), id, people.modCount());
+        });
     }
 
     /**
-     * Finds and returns the person with the specified name from the tree. If the person cannot be found, an exception
-     * with a relevant message is thrown.
+     * Computes the kinship coefficient of two people, i.e. the probability that a gene picked at random from each of
+     * them is identical by descent, e.g. 1/4 for siblings, or 1/16 for first cousins, and more if their parents were
+     * related. See {@link KinshipCoefficients}.
      *
-     * @param name the name of the person to find.
-     * @return the person that was found.
-     * @throws PersonNotFoundException if the person could not be found.
+     * @param name1 the name of the first person.
+     * @param name2 the name of the second person.
+     * @return the kinship coefficient, between 0 and 1.
+     * @throws PersonNotFoundException if either of the people are not in the tree.
+     * @throws IllegalStateException   if someone in the tree is their own ancestor.
      */
-    public Person findPerson(String name) throws PersonNotFoundException {
-        Person person = people.get(name);
-        if (person == null) throw new PersonNotFoundException("Person not found: " + name);
-        return person;
+    public double findKinshipCoefficient(String name1, String name2) throws PersonNotFoundException {
+        return coefficient(index -> {
+            int id1 = this.findId(name1);
+            int id2 = this.findId(name2);
+            return mayBeRelated(id1, id2) ? index.kinship(id1, id2) : 0;
+        });
     }
 
     /**
-     * Adds the specified relation between the first and second person.
-     * <ul>
-     * <li>If the relation is {@link Relation#FATHER}, the first person is set as the father of the second person, and
-     * the second person is added to the first person's list of children.
-     * <li>If the relation is {@link Relation#MOTHER}, the first person is set as the mother of the second person, and
-     * the second person is added to the first person's list of children.
-     * <li>If the relation is {@link Relation#HUSBAND} or {@link Relation#WIFE}, the first person is set as the spouse of
-     * the second person, and the second person is set as the spouse of the first person.
-     * </ul>
-     * The above relations are the only ones that are saved directly for each person. All other relations are calculated
-     * using the tree's structure.
-     * <p>
-     * If either the first or second person cannot be found in the tree, an exception with a relevant message is thrown.
+     * Computes Wright's coefficient of relationship of two people, i.e. the fraction of their genes that are identical
+     * by descent, e.g. 1/2 for siblings, or 1/8 for first cousins, and more if their parents were related.
      *
-     * @param name1    the name of the first person.
-     * @param name2    the name of the second person.
-     * @param relation the relation the first person has to the second person.
+     * @param name1 the name of the first person.
+     * @param name2 the name of the second person.
+     * @return the coefficient of relationship, between 0 and 1.
      * @throws PersonNotFoundException if either of the people are not in the tree.
+     * @throws IllegalStateException   if someone in the tree is their own ancestor.
      */
-    public void addRelation(String name1, String name2, Relation relation) throws PersonNotFoundException {
-        Person person1 = this.findPerson(name1);
-        Person person2 = this.findPerson(name2);
+    public double findRelationshipCoefficient(String name1, String name2) throws PersonNotFoundException {
+        return coefficient(index -> {
+            int id1 = this.findId(name1);
+            int id2 = this.findId(name2);
+            return mayBeRelated(id1, id2) ? index.relationship(id1, id2) : 0;
+        });
+    }
 
-        switch (relation) {
-            case FATHER -> {
-                person1.getChildren().add(person2);
-                person2.setFather(person1);
+    /**
+     * Computes the inbreeding coefficient of a person, i.e. the kinship coefficient of their parents, e.g. 1/16 for the
+     * child of first cousins.
+     *
+     * @param name the name of the person.
+     * @return the inbreeding coefficient, between 0 and 1, which is 0 if either parent is unknown.
+     * @throws PersonNotFoundException if the person is not in the tree.
+     * @throws IllegalStateException   if someone in the tree is their own ancestor.
+     */
+    public double findInbreedingCoefficient(String name) throws PersonNotFoundException {
+        return coefficient(index -> index.inbreeding(this.findId(name)));
+    }
+
+    /**
+     * Computes the inbreeding coefficient of every person in the tree, in parallel, and writes them to a CSV file, one
+     * {@code name,coefficient} row per person, in the order the people were added.
+     *
+     * @param file the file to write to.
+     * @return the number of rows that were written.
+     * @throws IOException           if the file cannot be written.
+     * @throws IllegalStateException if someone in the tree is their own ancestor.
+     */
+    public long exportInbreedingToCsv(Path file) throws IOException {
+        while (true) {
+            KinshipCoefficients index = coefficients();
+            long stamp = lock.readLock();
+            try {
+                if (index == coefficients && index.isCurrent(people.modCount())) return index.exportInbreeding(file);
+            } finally {
+                lock.unlockRead(stamp);
             }
-            case MOTHER -> {
-                person1.getChildren().add(person2);
-                person2.setMother(person1);
+        }
+    }
+
+    /**
+     * Runs a query over the ranking of the people for their coefficients, building it first if it is out of date.
+     *
+     * @param query the query.
+     * @return the result of the query.
+     * @throws PersonNotFoundException if the query could not find a person.
+     */
+    private double coefficient(CoefficientQuery query) throws PersonNotFoundException {
+        while (true) {
+            KinshipCoefficients index = coefficients();
+            Double found = read(() -> index == coefficients && index.isCurrent(people.modCount())
+                    ? query.run(index) : null);
+            if (found != null) return found;
+        }
+    }
+
+    /**
+     * Returns the ranking of the people for their coefficients, building it first, under the write lock, if it has not
+     * been built, or is out of date.
+     *
+     * @return the ranking.
+     */
+    private KinshipCoefficients coefficients() {
+        KinshipCoefficients index = coefficients;
+        if (index != null && index.isCurrent(people.modCount())) return index;
+        long stamp = lock.writeLock();
+        try {
+            if (coefficients == null || !coefficients.isCurrent(people.modCount())) {
+                coefficients = KinshipCoefficients.build(people);
             }
-            case HUSBAND, WIFE -> {
-                person1.setSpouse(person2);
-                person2.setSpouse(person1);
+            return coefficients;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the connected components of the people, rebuilding them first if a change was made outside the tree.
+     * Must be called while the write lock is held.
+     *
+     * @return the connected components.
+     */
+    private ComponentIndex components() {
+        if (!components.isCurrent(people.modCount())) components = ComponentIndex.build(people);
+        return components;
+    }
+
+    /**
+     * Checks if two people may be related in any way, i.e. unless they are in different connected components. If a
+     * change was made outside the tree since the components were last updated, any two people may be related.
+     *
+     * @param id1 the ID of the first person.
+     * @param id2 the ID of the second person.
+     * @return {@code false} if the two people are certainly unrelated, {@code true} otherwise.
+     */
+    private boolean mayBeRelated(int id1, int id2) {
+        ComponentIndex index = components;
+        return !index.isCurrent(people.modCount()) || index.connected(id1, id2);
+    }
+
+    /**
+     * Returns the ancestry index, building it first, under the write lock, if it has not been built, or is out of date.
+     *
+     * @return the ancestry index.
+     */
+    private AncestryIndex ancestry() {
+        AncestryIndex index = ancestry;
+        if (index != null && index.isCurrent(people.modCount())) return index;
+        long stamp = lock.writeLock();
+        try {
+            if (ancestry == null || !ancestry.isCurrent(people.modCount())) ancestry = AncestryIndex.build(people);
+            return ancestry;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the relatives of a person of some relations, as a stream that walks them under the read lock. See
+     * {@link RelativesWalk}.
+     *
+     * @param id        the ID of the person.
+     * @param modCount  the store's count of changes to the links of the people when the person was found.
+     * @param relations the relations of the relatives.
+     * @return the relatives of the person.
+     */
+    Stream<Person> relatives(int id, long modCount, Set<Relation> relations) {
+        RelativesWalk walk = new RelativesWalk(this, people, id, relations);
+        return StreamSupport.stream(new WalkSpliterator(walk, modCount), false);
+    }
+
+    /**
+     * Returns the relatives of a person of some relations, grouped by relation, in one walk under the read lock.
+     *
+     * @param id        the ID of the person.
+     * @param modCount  the store's count of changes to the links of the people when the person was found.
+     * @param relations the relations of the relatives.
+     * @return the relatives of each relation the person has any of, in the order of {@link Relation}.
+     * @throws ConcurrentModificationException if a relation was added to the tree after the person was found.
+     */
+    Map<Relation, List<Person>> relativesByRelation(int id, long modCount, Set<Relation> relations) {
+        Map<Relation, List<Person>> groups = new EnumMap<>(Relation.class);
+        long stamp = lock.readLock();
+        try {
+            if (people.modCount() != modCount) throw new ConcurrentModificationException();
+            RelativesWalk walk = new RelativesWalk(this, people, id, relations);
+            while (walk.hasNext()) {
+                Person relative = people.view(walk.nextInt());
+                groups.computeIfAbsent(walk.relation(), relation -> new ArrayList<>()).add(relative);
             }
+        } finally {
+            lock.unlockRead(stamp);
         }
+        groups.replaceAll((relation, group) -> Collections.unmodifiableList(group));
+        return Collections.unmodifiableMap(groups);
     }
 
     /**
-     * Finds the relation the first person has to the second person.
+     * Returns the descendants or the ancestors of a person, as a stream that walks them under the read lock.
+     *
+     * @param name        the name of the person.
+     * @param descendants {@code true} for the descendants, {@code false} for the ancestors.
+     * @return the descendants or the ancestors of the person.
+     * @throws PersonNotFoundException if the person is not in the tree.
+     */
+    private Stream<Person> lineage(String name, boolean descendants) throws PersonNotFoundException {
+        long stamp = lock.readLock();
+        try {
+            PrimitiveIterator.OfInt walk = AncestryIndex.lineage(people, this.findId(name), descendants);
+            return StreamSupport.stream(new WalkSpliterator(walk, people.modCount()), false);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Classifies the relation the first person has to the second person, and caches it, after it was not found in the
+     * relation cache. Runs under the read lock, so no change can invalidate the relation before it is cached.
      *
      * @param name1 the name of the first person.
      * @param name2 the name of the second person.
      * @return the relation the first person has to the second person.
      * @throws PersonNotFoundException if either of the people are not in the tree.
      */
-    public Relation findRelation(String name1, String name2) throws PersonNotFoundException {
-        Person person1 = this.findPerson(name1);
-        Person person2 = this.findPerson(name2);
+    private Relation classifyCached(String name1, String name2) throws PersonNotFoundException {
+        long stamp = lock.readLock();
+        try {
+            int id1 = this.findId(name1);
+            int id2 = this.findId(name2);
+            Relation relation = classify(id1, id2);
+            assert relation == classifyBySets(people.view(id1), people.view(id2))
+                    : "Relation mismatch: " + name1 + ", " + name2;
+            RelationCache cache = relationCache;
+            if (cache != null) cache.put(id1, id2, relation);
+            return relation;
+        } catch (PersonNotFoundException e) {
+            throw missed(e);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Runs a query optimistically, without taking a lock, and returns its result if no change was made to the tree
+     * while it ran. Otherwise, the query may have seen the tree half-changed, and any result or exception of it is
+     * discarded; the query is then repeated under the read lock.
+     *
+     * @param query the query.
+     * @param <T>   the type of the result of the query.
+     * @return the result of the query.
+     * @throws PersonNotFoundException if the query could not find a person.
+     */
+    private <T> T read(Query<T> query) throws PersonNotFoundException {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = query.run();
+                if (lock.validate(stamp)) return result;
+            } catch (PersonNotFoundException e) {
+                if (lock.validate(stamp)) throw missed(e);
+            } catch (RuntimeException | AssertionError e) {
+                if (lock.validate(stamp)) throw e;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return query.run();
+        } catch (PersonNotFoundException e) {
+            throw missed(e);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Classifies the relation the first person has to the second person, without allocating any collections.
+     *
+     * @param id1 the ID of the first person.
+     * @param id2 the ID of the second person.
+     * @return the relation the first person has to the second person.
+     */
+    Relation classify(int id1, int id2) {
+        boolean man = people.gender(id1) == Gender.MAN;
+
+        if (isParent(id1, id2)) {
+            return man ? Relation.FATHER : Relation.MOTHER;
+        }
+        if (isChild(id1, id2)) {
+            return man ? Relation.SON : Relation.DAUGHTER;
+        }
+        if (isSibling(id1, id2)) {
+            return man ? Relation.BROTHER : Relation.SISTER;
+        }
+        if (isCousin(id1, id2)) {
+            return Relation.COUSIN;
+        }
+        if (isSpouse(id1, id2)) {
+            return man ? Relation.HUSBAND : Relation.WIFE;
+        }
+        if (isGrandparent(id1, id2)) {
+            return man ? Relation.GRANDFATHER : Relation.GRANDMOTHER;
+        }
+        if (isGrandchild(id1, id2)) {
+            return man ? Relation.GRANDSON : Relation.GRANDDAUGHTER;
+        }
+        if (isUncleOrAunt(id1, id2)) {
+            return man ? Relation.UNCLE : Relation.AUNT;
+        }
+        if (isNephewOrNiece(id1, id2)) {
+            return man ? Relation.NEPHEW : Relation.NIECE;
+        }
+        return Relation.UNRELATED;
+    }
 
+    /**
+     * Classifies the relation the first person has to the second person, using the sets of relatives that are returned
+     * by the {@link Person} methods. Serves as the reference for {@link GenealogicalTree#classify(int, int)}.
+     *
+     * @param person1 the first person.
+     * @param person2 the second person.
+     * @return the relation the first person has to the second person.
+     */
+    Relation classifyBySets(Person person1, Person person2) {
         if (isParent(person1, person2)) {
             return person1.getGender() == Gender.MAN ? Relation.FATHER : Relation.MOTHER;
         }
@@ -122,6 +1320,160 @@ public class GenealogicalTree {
         return Relation.UNRELATED;
     }
 
+    /**
+     * Checks if the first person is the father or mother of the second person.
+     *
+     * @param id1 the ID of the first person.
+     * @param id2 the ID of the second person.
+     * @return {@code true} if the first person is the father or mother of the second person, {@code false} otherwise.
+     */
+    private boolean isParent(int id1, int id2) {
+        return people.hasChild(id1, id2);
+    }
+
+    /**
+     * Checks if the first person is a son or daughter of the second person.
+     *
+     * @param id1 the ID of the first person.
+     * @param id2 the ID of the second person.
+     * @return {@code true} if the first person is a son or daughter of the second person, {@code false} otherwise.
+     */
+    private boolean isChild(int id1, int id2) {
+        return people.father(id1) == id2 || people.mother(id1) == id2;
+    }
+
+    /**
+     * Checks if the first person is a brother or sister of the second person, i.e. if the second person is one of the
+     * children of the first person's father or mother.
+     *
+     * @param id1 the ID of the first person.
+     * @param id2 the ID of the second person.
+     * @return {@code true} if the first person is a brother or sister of the second person, {@code false} otherwise.
+     */
+    private boolean isSibling(int id1, int id2) {
+        return id1 != id2 && (hasChild(people.father(id1), id2) || hasChild(people.mother(id1), id2));
+    }
+
+    /**
+     * Checks if the first person is a cousin of the second person, i.e. if the second person is one of the children of
+     * a sibling of the first person's father or mother.
+     *
+     * @param id1 the ID of the first person.
+     * @param id2 the ID of the second person.
+     * @return {@code true} if the first person is a cousin of the second person, {@code false} otherwise.
+     */
+    private boolean isCousin(int id1, int id2) {
+        int father = people.father(id1);
+        int mother = people.mother(id1);
+        return (father != PersonStore.NONE && hasSiblingWithChild(father, id2))
+                || (mother != PersonStore.NONE && hasSiblingWithChild(mother, id2));
+    }
+
+    /**
+     * Checks if the first person is the husband or wife of the second person.
+     *
+     * @param id1 the ID of the first person.
+     * @param id2 the ID of the second person.
+     * @return {@code true} if the first person is the husband or wife of the second person, {@code false} otherwise.
+     */
+    private boolean isSpouse(int id1, int id2) {
+        return people.spouse(id1) == id2;
+    }
+
+    /**
+     * Checks if the first person is a grandfather or grandmother of the second person.
+     *
+     * @param id1 the ID of the first person.
+     * @param id2 the ID of the second person.
+     * @return {@code true} if the first person is a grandfather or grandmother of the second person, {@code false}
+     * otherwise.
+     */
+    private boolean isGrandparent(int id1, int id2) {
+        for (int i = 0, count = people.childCount(id1); i < count; i++) {
+            if (people.hasChild(people.child(id1, i), id2)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the first person is a grandson or granddaughter of the second person.
+     *
+     * @param id1 the ID of the first person.
+     * @param id2 the ID of the second person.
+     * @return {@code true} if the first person is a grandson or granddaughter of the second person, {@code false}
+     * otherwise.
+     */
+    private boolean isGrandchild(int id1, int id2) {
+        int father = people.father(id1);
+        int mother = people.mother(id1);
+        return (father != PersonStore.NONE && isChild(father, id2))
+                || (mother != PersonStore.NONE && isChild(mother, id2));
+    }
+
+    /**
+     * Checks if the first person is an uncle or aunt of the second person.
+     *
+     * @param id1 the ID of the first person.
+     * @param id2 the ID of the second person.
+     * @return {@code true} if the first person is an uncle or aunt of the second person, {@code false} otherwise.
+     */
+    private boolean isUncleOrAunt(int id1, int id2) {
+        return hasSiblingWithChild(id1, id2);
+    }
+
+    /**
+     * Checks if the first person is a nephew or niece of the second person.
+     *
+     * @param id1 the ID of the first person.
+     * @param id2 the ID of the second person.
+     * @return {@code true} if the first person is a nephew or niece of the second person, {@code false} otherwise.
+     */
+    private boolean isNephewOrNiece(int id1, int id2) {
+        int father = people.father(id1);
+        int mother = people.mother(id1);
+        return (father != PersonStore.NONE && isSibling(father, id2))
+                || (mother != PersonStore.NONE && isSibling(mother, id2));
+    }
+
+    /**
+     * Checks if a person is one of the children of a parent, who may be missing.
+     *
+     * @param parent the ID of the parent, or {@link PersonStore#NONE}.
+     * @param child  the ID of the child.
+     * @return {@code true} if the parent exists and the child is one of their children, {@code false} otherwise.
+     */
+    private boolean hasChild(int parent, int child) {
+        return parent != PersonStore.NONE && people.hasChild(parent, child);
+    }
+
+    /**
+     * Checks if a person is one of the children of any sibling of another person.
+     *
+     * @param id    the ID of the person whose siblings are checked.
+     * @param child the ID of the child.
+     * @return {@code true} if the child is the child of one of the person's siblings, {@code false} otherwise.
+     */
+    private boolean hasSiblingWithChild(int id, int child) {
+        return hasSiblingWithChild(id, people.father(id), child) || hasSiblingWithChild(id, people.mother(id), child);
+    }
+
+    /**
+     * Checks if a person is one of the children of any sibling of another person, through one of that person's parents.
+     *
+     * @param id     the ID of the person whose siblings are checked.
+     * @param parent the ID of the person's father or mother, or {@link PersonStore#NONE}.
+     * @param child  the ID of the child.
+     * @return {@code true} if the child is the child of one of the parent's other children, {@code false} otherwise.
+     */
+    private boolean hasSiblingWithChild(int id, int parent, int child) {
+        if (parent == PersonStore.NONE) return false;
+        for (int i = 0, count = people.childCount(parent); i < count; i++) {
+            int sibling = people.child(parent, i);
+            if (sibling != id && people.hasChild(sibling, child)) return true;
+        }
+        return false;
+    }
+
     /**
      * Checks if the first person is the father or mother of the second person.
      *
@@ -141,7 +1493,7 @@ public class GenealogicalTree {
      * @return {@code true} if the first person is a son or daughter of the second person, {@code false} otherwise.
      */
     private boolean isChild(Person person1, Person person2) {
-        return person1.getFather() == person2 || person1.getMother() == person2;
+        return person2.equals(person1.getFather()) || person2.equals(person1.getMother());
     }
 
     /**
@@ -198,7 +1550,7 @@ public class GenealogicalTree {
      * @return {@code true} if the first person is the husband or wife of the second person, {@code false} otherwise.
      */
     private boolean isSpouse(Person person1, Person person2) {
-        return person1.getSpouse() == person2;
+        return person2.equals(person1.getSpouse());
     }
 
     /**
@@ -224,11 +1576,178 @@ public class GenealogicalTree {
     }
 
     /**
-     * Sorts the people in the genealogical tree by name and returns them in a list.
+     * Returns the people in the genealogical tree in a list, sorted by name in the order of the tree's collation. The
+     * people are read from the name index, so they are not sorted again.
      *
      * @return the people sorted by name.
      */
     public List<Person> getPeopleInOrder() {
-        return people.values().stream().sorted(Comparator.comparing(Person::getName)).toList();
+        return getPeopleInOrder(null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns a page of the people in the genealogical tree, sorted by name in the order of the tree's collation. The
+     * next page starts after the name of the last person of this one.
+     *
+     * @param after the name of the last person of the previous page, or {@code null} for the first page.
+     * @param limit the maximum number of people in the page.
+     * @return the people of the page, sorted by name.
+     */
+    public List<Person> getPeopleInOrder(String after, int limit) {
+        return scanNames(after, null, null, null, limit);
+    }
+
+    /**
+     * Finds the people whose names start with a prefix, a page at a time, sorted by name. Under a collation that
+     * ignores case or accents, so does the prefix, e.g. {@code bar} finds {@code Baratheon}.
+     *
+     * @param prefix the prefix of the names.
+     * @param after  the name of the last person of the previous page, or {@code null} for the first page.
+     * @param limit  the maximum number of people in the page.
+     * @return the people of the page, sorted by name.
+     */
+    public List<Person> findPeopleByPrefix(String prefix, String after, int limit) {
+        return scanNames(after, prefix, prefix, null, limit);
+    }
+
+    /**
+     * Finds the people whose names are in a range, a page at a time, sorted by name. The range includes the names from
+     * its start on, and excludes the names from its end on, in the order of the tree's collation.
+     *
+     * @param from  the start of the range, inclusive.
+     * @param to    the end of the range, exclusive, or {@code null} for no end.
+     * @param after the name of the last person of the previous page, or {@code null} for the first page.
+     * @param limit the maximum number of people in the page.
+     * @return the people of the page, sorted by name.
+     */
+    public List<Person> findPeopleInRange(String from, String to, String after, int limit) {
+        return scanNames(after, from, null, to, limit);
+    }
+
+    /**
+     * Sets the collation the names of the people are sorted and searched in, e.g. to ignore case and accents. The
+     * name index is rebuilt in the new order.
+     *
+     * @param collation the collation.
+     */
+    public void setNameCollation(NameCollation collation) {
+        long stamp = lock.writeLock();
+        try {
+            nameCollation = Objects.requireNonNull(collation);
+            if (nameIndex != null && nameIndex.collation() != collation) nameIndex = NameIndex.build(people, collation);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Scans the name index for a page of people.
+     *
+     * @param after  the name of the last person of the previous page, or {@code null} for the first page.
+     * @param from   the name to start from, inclusive, if there is no previous page, or {@code null}.
+     * @param prefix the prefix of the names, or {@code null}.
+     * @param to     the end of the names, exclusive, or {@code null}.
+     * @param limit  the maximum number of people in the page.
+     * @return the people of the page, sorted by name.
+     */
+    private List<Person> scanNames(String after, String from, String prefix, String to, int limit) {
+        if (limit < 0) throw new IllegalArgumentException("The limit cannot be negative.");
+        if (nameIndex == null) {
+            long stamp = lock.writeLock();
+            try {
+                if (nameIndex == null) nameIndex = NameIndex.build(people, nameCollation);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+        try {
+            int[] ids = read(() -> after != null ? nameIndex.scan(after, true, prefix, to, limit)
+                    : nameIndex.scan(from, false, prefix, to, limit));
+            List<Person> page = new ArrayList<>(ids.length);
+            for (int id : ids) page.add(people.view(id));
+            return page;
+        } catch (PersonNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ####################### NESTED TYPES #######################
+
+    /**
+     * A spliterator over the people of a walk, e.g. over the descendants or the ancestors of a person, that advances
+     * the walk under the read lock, one person at a time.
+     */
+    private class WalkSpliterator extends Spliterators.AbstractSpliterator<Person> {
+
+        /**
+         * The walk over the IDs of the people.
+         */
+        private final PrimitiveIterator.OfInt walk;
+
+        /**
+         * The store's count of changes to the links of the people when the walk started.
+         */
+        private final long modCount;
+
+        /**
+         * Constructor method for the {@link WalkSpliterator} class.
+         *
+         * @param walk     the walk over the IDs of the people.
+         * @param modCount the store's count of changes to the links of the people when the walk started.
+         */
+        WalkSpliterator(PrimitiveIterator.OfInt walk, long modCount) {
+            super(Long.MAX_VALUE, Spliterator.DISTINCT | Spliterator.NONNULL);
+            this.walk = walk;
+            this.modCount = modCount;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Person> action) {
+            Person next;
+            long stamp = lock.readLock();
+            try {
+                if (people.modCount() != modCount) throw new ConcurrentModificationException();
+                if (!walk.hasNext()) return false;
+                next = people.view(walk.nextInt());
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            action.accept(next);
+            return true;
+        }
+    }
+
+    /**
+     * A query of the tree, that is run by {@link GenealogicalTree#read(Query)}.
+     *
+     * @param <T> the type of the result of the query.
+     */
+    @FunctionalInterface
+    private interface Query<T> {
+
+        /**
+         * Runs the query.
+         *
+         * @return the result of the query.
+         * @throws PersonNotFoundException if the query could not find a person.
+         */
+        T run() throws PersonNotFoundException;
+    }
+
+    /**
+     * A query over the ranking of the people for their coefficients, that is run by
+     * {@link GenealogicalTree#coefficient(CoefficientQuery)}.
+     */
+    @FunctionalInterface
+    private interface CoefficientQuery {
+
+        /**
+         * Runs the query.
+         *
+         * @param coefficients the ranking of the people.
+         * @return the result of the query.
+         * @throws PersonNotFoundException if the query could not find a person.
+         */
+        double run(KinshipCoefficients coefficients) throws PersonNotFoundException;
     }
 }
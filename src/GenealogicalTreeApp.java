@@ -1,7 +1,9 @@
+import javax.management.JMException;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
 
 /**
@@ -16,18 +18,74 @@ public class GenealogicalTreeApp {
     /**
      * The main method of the application. Creates an instance of the {@link GenealogicalTreeApp} class and calls the method
      * {@link GenealogicalTreeApp#showOptions()} to print the options to the user.
+     * <p>
+     * If the paths of a tree file, a file with pairs of names and an output file are given as arguments, the relations
+     * of the pairs are found in batch instead, without user interaction. See {@link BatchRelationFinder}. If
+     * {@code --serve}, the path of a tree file and optionally a port are given, the tree is served over HTTP until the
+     * process is stopped. See {@link TreeServer}. If {@code --find}, the path of a snapshot file and two names are
+     * given, the relation of the two people is printed, after reading only the people it needs from the snapshot. See
+     * {@link GenealogicalTree#openSnapshot(Path)}.
+     * <p>
+     * In every mode but the last, the metrics of the tree are published over JMX, and printed every few seconds to the
+     * standard error if the system property {@value GenealogicalTreeApp#METRICS_DUMP_PROPERTY} is set to the number of
+     * seconds. See {@link TreeMetrics}.
+     * <p>
+     * The people of the tree are kept on the heap, unless the system property
+     * {@value GenealogicalTreeApp#STORAGE_PROPERTY} is set to {@code off-heap}, in which case they are kept outside of
+     * it, in memory mapped from the file of the system property {@value GenealogicalTreeApp#STORAGE_FILE_PROPERTY} if
+     * it is set. See {@link OffHeapPersonStore}.
      *
      * @param args the command line arguments.
      */
     public static void main(String[] args) {
+        if (args.length == 4 && args[0].equals("--find")) {
+            findRelationInSnapshot(args[1], args[2], args[3]);
+            return;
+        }
         GenealogicalTreeApp app = new GenealogicalTreeApp();
-        app.showOptions();
+        app.enableMetrics();
+        if (args.length == 0) app.showOptions();
+        else if (args[0].equals("--serve") && (args.length == 2 || args.length == 3)) {
+            app.serve(args[1], args.length == 3 ? args[2] : String.valueOf(TreeServer.DEFAULT_PORT));
+        } else if (args.length == 3) app.findRelationsInBatch(args[0], args[1], args[2]);
+        else {
+            System.err.println("Usage: GenealogicalTreeApp [<tree file> <pairs file> <output file>]"
+                    + " | [--serve <tree file> [<port>]] | [--find <snapshot file> <name> <name>]");
+            System.exit(1);
+        }
     }
 
+    /**
+     * The system property with the number of seconds between two dumps of the metrics.
+     */
+    static final String METRICS_DUMP_PROPERTY = "genealogy.metrics.dump";
+
+    /**
+     * The system property with the storage of the people: {@code heap}, the default, or {@code off-heap}.
+     */
+    static final String STORAGE_PROPERTY = "genealogy.storage";
+
+    /**
+     * The system property with the scratch file the people are mapped from, when they are kept off the heap.
+     */
+    static final String STORAGE_FILE_PROPERTY = "genealogy.storage.file";
+
+    /**
+     * The system property with what the key of a merged person includes besides their name, as a comma-separated list
+     * of {@code gender} and {@code parents}, which may be empty. It is {@code gender} by default.
+     */
+    static final String MERGE_KEY_PROPERTY = "genealogy.merge.key";
+
+    /**
+     * The system property with the {@link NameCollation} the names of merged people are compared under. It is
+     * {@code IGNORE_CASE_AND_ACCENTS} by default.
+     */
+    static final String MERGE_COLLATION_PROPERTY = "genealogy.merge.collation";
+
     /**
      * The genealogical tree.
      */
-    private final GenealogicalTree tree = new GenealogicalTree();
+    private final GenealogicalTree tree = createTree();
 
     /**
      * The scanner used to read input from the user.
@@ -42,6 +100,14 @@ public class GenealogicalTreeApp {
                 [1] Read the file and save the data to the tree.
                 [2] Save the people in the tree to a file, in alphabetical order.
                 [3] Find the relation one person has to another.
+                [4] Find the blood relation of any degree one person has to another.
+                [5] Save the tree to a snapshot file, which loads faster than the original file.
+                [6] Save the people and relations in the tree to a CSV file, which can be read back by option [1].
+                [7] Find how one person is connected to another, through parents, children and spouses.
+                [8] Find the coefficient of relationship of two people, and how inbred each of them is.
+                [9] Save the inbreeding coefficient of every person in the tree to a CSV file.
+                [10] Save the tree to a GEDCOM file, which can be read back by option [1].
+                [11] Merge several CSV files into the tree, adding the people they share only once.
                 [0] Exit the program.""");
 
         while (true) {
@@ -52,11 +118,19 @@ public class GenealogicalTreeApp {
                     case 1 -> loadTreeFromFile();
                     case 2 -> savePeopleInOrderToFile();
                     case 3 -> findRelation();
+                    case 4 -> findKinship();
+                    case 5 -> saveSnapshotToFile();
+                    case 6 -> saveTreeToFile();
+                    case 7 -> findConnection();
+                    case 8 -> findCoefficients();
+                    case 9 -> saveInbreedingToFile();
+                    case 10 -> saveGedcomToFile();
+                    case 11 -> mergeFilesIntoTree();
                     case 0 -> exitTheProgram();
                     default -> throw new InvalidInputException();
                 }
             } catch (NumberFormatException | InvalidInputException e) {
-                System.out.println("\nInvalid input. Please enter a number between 0 and 3.");
+                System.out.println("\nInvalid input. Please enter a number between 0 and 11.");
             }
         }
     }
@@ -68,57 +142,95 @@ public class GenealogicalTreeApp {
         try {
             System.out.print("\nPlease enter the path of the file: ");
             String filepath = inputScanner.nextLine();
-            File file = new File(filepath);
-            Scanner fileScanner = new Scanner(file);
-            List<String[]> peopleToAdd = new ArrayList<>();
-            List<String[]> relationsToAdd = new ArrayList<>();
-
-            while (fileScanner.hasNext()) {
-                String[] row = fileScanner.nextLine().split(",");
-                switch (row.length) {
-                    case 2 -> peopleToAdd.add(row);
-                    case 3 -> relationsToAdd.add(row);
-                    default -> throw new RuntimeException("Invalid row length");
-                }
-            }
-            for (String[] row : peopleToAdd) {
-                String name = row[0];
-                Gender gender = Gender.valueOf(row[1].toUpperCase());
-                Person person = new Person(name, gender);
-                tree.addPerson(person);
-            }
-            for (String[] row : relationsToAdd) {
-                String name1 = row[0];
-                String name2 = row[2];
-                Relation relation = Relation.valueOf(row[1].toUpperCase());
-                tree.addRelation(name1, name2, relation);
-            }
+            ValidationReport report = readTree(tree, new File(filepath));
             System.out.println("\nGenealogical tree successfully loaded from file.");
-        } catch (FileNotFoundException | PersonNotFoundException e) {
+            if (!report.isValid()) System.out.println(report);
+        } catch (IOException | PersonNotFoundException | IllegalArgumentException | IllegalStateException e) {
             System.err.println(e.getMessage());
             System.exit(1);
         }
     }
 
+    /**
+     * Reads the people and relations from a CSV file and adds them to a tree. Each row of the file is either a person,
+     * as {@code name,gender}, or a relation, as {@code name,relation,name}. All people are added before any relations.
+     * The file is loaded in bulk by a {@link CsvTreeLoader}, using one thread per available processor.
+     * <p>
+     * If the file is a snapshot that was saved by option [5], it is loaded with
+     * {@link GenealogicalTree#loadSnapshot(Path)} instead, which requires the tree to be empty. If it is a GEDCOM file,
+     * e.g. one that was saved by option [10], it is streamed by a {@link GedcomTreeLoader} instead.
+     * <p>
+     * The tree is validated once it is loaded, see {@link GenealogicalTree#validate()}.
+     *
+     * @param tree the tree to add the people and relations to.
+     * @param file the file to read.
+     * @return the report of the validation of the tree.
+     * @throws IOException             if the file cannot be read.
+     * @throws PersonNotFoundException if a relation or family refers to a person that is not in the file.
+     */
+    static ValidationReport readTree(GenealogicalTree tree, File file) throws IOException, PersonNotFoundException {
+        if (TreeSnapshot.isSnapshot(file.toPath())) tree.loadSnapshot(file.toPath());
+        else if (GedcomReader.isGedcom(file.toPath())) new GedcomTreeLoader(tree).load(file.toPath());
+        else new CsvTreeLoader(tree).load(file.toPath());
+        return tree.validate();
+    }
+
     /**
      * Saves the people in the tree to a file, in alphabetical order.
      */
     private void savePeopleInOrderToFile() {
         System.out.print("\nPlease enter the name of the file: ");
         String filename = inputScanner.nextLine();
-        File file = new File(filename);
-        
-        List<Person> peopleInOrder = tree.getPeopleInOrder();
         try {
-            FileWriter fileWriter = new FileWriter(file);
-            for (Person person : peopleInOrder) fileWriter.write(person + "\n");
-            fileWriter.close();
+            writePeopleInOrder(tree, new File(filename));
             System.out.println("\nPeople successfully saved to file in alphabetical order.");
         } catch (IOException e) {
             System.out.println(e.getMessage());
         }
     }
 
+    /**
+     * Writes the people in a tree to a file, one {@code name,gender} row per person, in alphabetical order. The people
+     * are streamed to the file, and sorted with bounded memory if needed, see
+     * {@link GenealogicalTree#exportToCsv(Path, boolean)}.
+     *
+     * @param tree the tree whose people are written.
+     * @param file the file to write to.
+     * @throws IOException if the file cannot be written.
+     */
+    static void writePeopleInOrder(GenealogicalTree tree, File file) throws IOException {
+        tree.exportToCsv(file.toPath(), false);
+    }
+
+    /**
+     * Saves the people in the tree to a CSV file, in alphabetical order, followed by the relations in the tree, in the
+     * format option [1] reads.
+     */
+    private void saveTreeToFile() {
+        System.out.print("\nPlease enter the name of the file: ");
+        String filename = inputScanner.nextLine();
+        try {
+            tree.exportToCsv(Path.of(filename), true);
+            System.out.println("\nGenealogical tree successfully saved to CSV file.");
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Saves the people and relations in the tree to a snapshot file.
+     */
+    private void saveSnapshotToFile() {
+        System.out.print("\nPlease enter the name of the file: ");
+        String filename = inputScanner.nextLine();
+        try {
+            tree.saveSnapshot(Path.of(filename));
+            System.out.println("\nGenealogical tree successfully saved to snapshot file.");
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
     /**
      * Finds the relation one person has with another person.
      */
@@ -136,6 +248,235 @@ public class GenealogicalTreeApp {
         }
     }
 
+    /**
+     * Finds the blood relation of any degree one person has with another person, e.g. second cousin once removed.
+     */
+    private void findKinship() {
+        System.out.print("\nEnter 2 names separated by comma: ");
+        String[] names = inputScanner.nextLine().split(",");
+        try {
+            if (names.length != 2) throw new InvalidInputException("Please enter 2 names separated by comma.");
+            String name1 = names[0];
+            String name2 = names[1];
+            Kinship kinship = tree.findKinship(name1, name2);
+            System.out.println("\n" + name1 + " is " + kinship + " to " + name2);
+        } catch (PersonNotFoundException | InvalidInputException e) {
+            System.out.println("\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Finds how one person is connected to another person, e.g. through marriages and several generations, when they
+     * may not be related by blood.
+     */
+    private void findConnection() {
+        System.out.print("\nEnter 2 names separated by comma: ");
+        String[] names = inputScanner.nextLine().split(",");
+        try {
+            if (names.length != 2) throw new InvalidInputException("Please enter 2 names separated by comma.");
+            Connection connection = tree.findConnection(names[0], names[1]);
+            if (connection.isConnected()) System.out.println("\n" + connection);
+            else System.out.println("\n" + names[0] + " is not connected to " + names[1]);
+        } catch (PersonNotFoundException | InvalidInputException e) {
+            System.out.println("\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Finds the coefficient of relationship and the kinship coefficient of two people, and the inbreeding coefficient
+     * of each of them.
+     */
+    private void findCoefficients() {
+        System.out.print("\nEnter 2 names separated by comma: ");
+        String[] names = inputScanner.nextLine().split(",");
+        try {
+            if (names.length != 2) throw new InvalidInputException("Please enter 2 names separated by comma.");
+            String name1 = names[0];
+            String name2 = names[1];
+            System.out.printf("%nCoefficient of relationship: %.6f%n", tree.findRelationshipCoefficient(name1, name2));
+            System.out.printf("Kinship coefficient: %.6f%n", tree.findKinshipCoefficient(name1, name2));
+            System.out.printf("Inbreeding coefficient of %s: %.6f%n", name1, tree.findInbreedingCoefficient(name1));
+            System.out.printf("Inbreeding coefficient of %s: %.6f%n", name2, tree.findInbreedingCoefficient(name2));
+        } catch (PersonNotFoundException | InvalidInputException | IllegalStateException e) {
+            System.out.println("\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Saves the inbreeding coefficient of every person in the tree to a CSV file.
+     */
+    private void saveInbreedingToFile() {
+        System.out.print("\nPlease enter the name of the file: ");
+        String filename = inputScanner.nextLine();
+        try {
+            tree.exportInbreedingToCsv(Path.of(filename));
+            System.out.println("\nInbreeding coefficients successfully saved to CSV file.");
+        } catch (IOException | IllegalStateException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Saves the people and relations in the tree to a GEDCOM file, as individual and family records, which option [1]
+     * reads back.
+     */
+    private void saveGedcomToFile() {
+        System.out.print("\nPlease enter the name of the file: ");
+        String filename = inputScanner.nextLine();
+        try {
+            tree.exportToGedcom(Path.of(filename));
+            System.out.println("\nGenealogical tree successfully saved to GEDCOM file.");
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Merges several CSV files into the tree, and prints the report of the merge.
+     */
+    private void mergeFilesIntoTree() {
+        System.out.print("\nPlease enter the paths of the files separated by comma: ");
+        List<Path> files = new ArrayList<>();
+        for (String file : inputScanner.nextLine().split(",")) {
+            if (!file.isBlank()) files.add(Path.of(file.strip()));
+        }
+        try {
+            MergeReport report = createMerger(tree).merge(files);
+            System.out.println("\nFiles successfully merged into the tree.");
+            System.out.println(report);
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Creates a merger into a tree, with the key of the system property {@value GenealogicalTreeApp#MERGE_KEY_PROPERTY}
+     * and the collation of the system property {@value GenealogicalTreeApp#MERGE_COLLATION_PROPERTY}.
+     *
+     * @param tree the tree to merge into.
+     * @return the merger.
+     * @throws IllegalArgumentException if a property is invalid.
+     */
+    static CsvTreeMerger createMerger(GenealogicalTree tree) {
+        NameCollation collation = NameCollation.valueOf(System.getProperty(MERGE_COLLATION_PROPERTY,
+                NameCollation.IGNORE_CASE_AND_ACCENTS.name()));
+        boolean byGender = false;
+        boolean byParents = false;
+        for (String part : System.getProperty(MERGE_KEY_PROPERTY, "gender").split(",")) {
+            switch (part.strip()) {
+                case "gender" -> byGender = true;
+                case "parents" -> byParents = true;
+                case "" -> { }
+                default -> throw new IllegalArgumentException("Unknown merge key: " + part);
+            }
+        }
+        return new CsvTreeMerger(tree, collation, byGender, byParents);
+    }
+
+    /**
+     * Loads the tree from a file and finds the relations of the pairs of names of another file, writing them to an
+     * output file. Prints a summary with the number of pairs resolved per second when done.
+     *
+     * @param treeFile   the path of the file with the tree.
+     * @param pairsFile  the path of the file with the pairs of names.
+     * @param outputFile the path of the file the relations are written to.
+     */
+    private void findRelationsInBatch(String treeFile, String pairsFile, String outputFile) {
+        try {
+            ValidationReport report = readTree(tree, new File(treeFile));
+            if (!report.isValid()) System.err.println(report);
+            tree.setRelationCacheSize(RelationCache.DEFAULT_CAPACITY);
+            BatchRelationFinder.Summary summary = new BatchRelationFinder(tree).run(Path.of(pairsFile), Path.of(outputFile));
+            System.out.println(summary);
+            System.out.println("Relation cache: " + tree.getRelationCacheStats());
+        } catch (IOException | PersonNotFoundException | IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Opens a snapshot file without loading it, and prints the relation the first person has to the second person.
+     * Only the people the query walks through are read from the file, so the relation is found about as fast however
+     * large the tree is.
+     *
+     * @param snapshotFile the path of the snapshot file.
+     * @param name1        the name of the first person.
+     * @param name2        the name of the second person.
+     */
+    private static void findRelationInSnapshot(String snapshotFile, String name1, String name2) {
+        try {
+            Relation relation = GenealogicalTree.openSnapshot(Path.of(snapshotFile)).findRelation(name1, name2);
+            System.out.println(name1 + " is " + relation + " to " + name2);
+        } catch (IOException | PersonNotFoundException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (UncheckedIOException e) {
+            System.err.println(e.getCause().getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Loads the tree from a file and serves its queries over HTTP, until the process is stopped.
+     *
+     * @param treeFile the path of the file with the tree.
+     * @param port     the port to listen on.
+     */
+    private void serve(String treeFile, String port) {
+        try {
+            ValidationReport report = readTree(tree, new File(treeFile));
+            if (!report.isValid()) System.err.println(report);
+            tree.setRelationCacheSize(RelationCache.DEFAULT_CAPACITY);
+            TreeServer server = new TreeServer(tree, Integer.parseInt(port));
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+            server.start();
+            System.out.println("Serving the genealogical tree on port " + server.port() + ".");
+        } catch (IOException | PersonNotFoundException | IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Enables the metrics of the tree, publishes them over JMX, and schedules their periodic dump if it was asked for
+     * with the system property {@value GenealogicalTreeApp#METRICS_DUMP_PROPERTY}. The application runs without them if
+     * they cannot be published.
+     */
+    private void enableMetrics() {
+        tree.setMetricsEnabled(true);
+        TreeMetrics metrics = tree.getMetrics();
+        try {
+            metrics.register("GenealogicalTreeApp");
+            String seconds = System.getProperty(METRICS_DUMP_PROPERTY);
+            if (seconds != null) metrics.dumpEvery(System.err, Duration.ofSeconds(Long.parseLong(seconds)));
+        } catch (JMException | IllegalArgumentException e) {
+            System.err.println("Metrics are not published: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the tree, with the storage of the system properties {@value GenealogicalTreeApp#STORAGE_PROPERTY} and
+     * {@value GenealogicalTreeApp#STORAGE_FILE_PROPERTY}.
+     *
+     * @return the empty tree.
+     */
+    private static GenealogicalTree createTree() {
+        String storage = System.getProperty(STORAGE_PROPERTY, "heap");
+        String file = System.getProperty(STORAGE_FILE_PROPERTY);
+        try {
+            return switch (storage) {
+                case "heap" -> new GenealogicalTree();
+                case "off-heap" -> file == null ? GenealogicalTree.offHeap() : GenealogicalTree.offHeap(Path.of(file));
+                default -> throw new IllegalArgumentException("Unknown storage: " + storage);
+            };
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+
     /**
      * Exits the program.
      */
@@ -0,0 +1,225 @@
+/**
+ * This class represents the blood relation one person has to another, of any degree.
+ * <p>
+ * A kinship is described by the closest common ancestor of the two people: the number of generations from the first
+ * person up to the ancestor, and from the second person up to the ancestor. Every named relation follows from these
+ * two numbers, e.g. one and two generations make the first person an uncle or aunt of the second, and three and four
+ * make them second cousins once removed.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+public final class Kinship {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The kinship of two people that have no common ancestor.
+     */
+    public static final Kinship UNRELATED = new Kinship(-1, -1, null);
+
+    /**
+     * The words used for the number of times cousins are removed.
+     */
+    private static final String[] REMOVALS = {"", " once removed", " twice removed", " thrice removed"};
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The number of generations from the first person up to the common ancestor.
+     */
+    private final int up;
+
+    /**
+     * The number of generations from the second person up to the common ancestor.
+     */
+    private final int down;
+
+    /**
+     * The gender of the first person, used to name the relation.
+     */
+    private final Gender gender;
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link Kinship} class.
+     *
+     * @param up     the number of generations from the first person up to the common ancestor.
+     * @param down   the number of generations from the second person up to the common ancestor.
+     * @param gender the gender of the first person.
+     */
+    Kinship(int up, int down, Gender gender) {
+        this.up = up;
+        this.down = down;
+        this.gender = gender;
+    }
+
+    // ####################### NESTED TYPES #######################
+
+    /**
+     * Enumerates the kinds of kinship.
+     */
+    public enum Kind {
+        SELF, ANCESTOR, DESCENDANT, SIBLING, UNCLE_OR_AUNT, NEPHEW_OR_NIECE, COUSIN, UNRELATED
+    }
+
+    // ####################### METHODS #######################
+
+    /**
+     * Checks if the two people have a common ancestor.
+     *
+     * @return {@code true} if the two people are related by blood, {@code false} otherwise.
+     */
+    public boolean isRelated() {
+        return up >= 0;
+    }
+
+    /**
+     * Finds the kind of the kinship.
+     *
+     * @return the kind of the kinship.
+     */
+    public Kind getKind() {
+        if (!isRelated()) return Kind.UNRELATED;
+        if (up == 0) return down == 0 ? Kind.SELF : Kind.ANCESTOR;
+        if (down == 0) return Kind.DESCENDANT;
+        if (up == 1) return down == 1 ? Kind.SIBLING : Kind.UNCLE_OR_AUNT;
+        if (down == 1) return Kind.NEPHEW_OR_NIECE;
+        return Kind.COUSIN;
+    }
+
+    /**
+     * Finds the number of "greats" in the name of the relation, e.g. two for a great-great-grandfather or a
+     * great-great-uncle. Zero for cousins, siblings and the relations without a "grand" or "uncle" prefix.
+     *
+     * @return the number of greats.
+     */
+    public int getGreats() {
+        return switch (getKind()) {
+            case ANCESTOR, UNCLE_OR_AUNT -> Math.max(0, down - 2);
+            case DESCENDANT, NEPHEW_OR_NIECE -> Math.max(0, up - 2);
+            default -> 0;
+        };
+    }
+
+    /**
+     * Finds the degree of cousinship, e.g. two for second cousins.
+     *
+     * @return the degree of cousinship, or zero if the two people are not cousins.
+     */
+    public int getCousinDegree() {
+        return getKind() == Kind.COUSIN ? Math.min(up, down) - 1 : 0;
+    }
+
+    /**
+     * Finds the number of generations by which cousins are removed from each other.
+     *
+     * @return the number of times the cousins are removed, or zero if the two people are not cousins.
+     */
+    public int getRemoval() {
+        return getKind() == Kind.COUSIN ? Math.abs(up - down) : 0;
+    }
+
+    /**
+     * Overrides the {@link Object#toString()} method, to return the name of the relation, e.g.
+     * {@code great-grandfather} or {@code 2nd cousin once removed}.
+     *
+     * @return the name of the relation the first person has to the second person.
+     */
+    @Override
+    public String toString() {
+        boolean man = gender == Gender.MAN;
+        return switch (getKind()) {
+            case SELF -> "self";
+            case ANCESTOR -> greats(down) + (down == 1 ? "" : "grand") + (man ? "father" : "mother");
+            case DESCENDANT -> greats(up) + (up == 1 ? "" : "grand") + (man ? "son" : "daughter");
+            case SIBLING -> man ? "brother" : "sister";
+            case UNCLE_OR_AUNT -> greats(down) + (man ? "uncle" : "aunt");
+            case NEPHEW_OR_NIECE -> greats(up) + (man ? "nephew" : "niece");
+            case COUSIN -> ordinal(getCousinDegree()) + " cousin" + removal(getRemoval());
+            case UNRELATED -> "unrelated";
+        };
+    }
+
+    /**
+     * Overrides the {@link Object#equals(Object)} method. Two kinships are equal if they have the same generations and
+     * gender.
+     *
+     * @param o the object to compare with.
+     * @return {@code true} if the object is an equal kinship, {@code false} otherwise.
+     */
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Kinship kinship && kinship.up == up && kinship.down == down && kinship.gender == gender;
+    }
+
+    /**
+     * Overrides the {@link Object#hashCode()} method, to be consistent with {@link Kinship#equals(Object)}.
+     *
+     * @return the hash code of the kinship.
+     */
+    @Override
+    public int hashCode() {
+        return (up * 31 + down) * 31 + (gender == null ? 0 : gender.ordinal() + 1);
+    }
+
+    /**
+     * Builds the "great" prefix of a relation that spans the specified number of generations.
+     *
+     * @param generations the number of generations.
+     * @return the prefix, e.g. {@code great-} for three generations or {@code 2nd great-} for four.
+     */
+    private static String greats(int generations) {
+        int greats = generations - 2;
+        if (greats <= 0) return "";
+        return greats == 1 ? "great-" : ordinal(greats) + " great-";
+    }
+
+    /**
+     * Builds the suffix of a cousinship that is removed by the specified number of generations.
+     *
+     * @param removal the number of generations.
+     * @return the suffix, e.g. {@code  twice removed}.
+     */
+    private static String removal(int removal) {
+        return removal < REMOVALS.length ? REMOVALS[removal] : " " + removal + " times removed";
+    }
+
+    /**
+     * Builds the English ordinal of a number.
+     *
+     * @param number the number.
+     * @return the ordinal, e.g. {@code 2nd} or {@code 11th}.
+     */
+    private static String ordinal(int number) {
+        int tens = number % 100;
+        if (tens >= 11 && tens <= 13) return number + "th";
+        return number + switch (number % 10) {
+            case 1 -> "st";
+            case 2 -> "nd";
+            case 3 -> "rd";
+            default -> "th";
+        };
+    }
+
+    // ####################### GETTERS #######################
+
+    /**
+     * Getter method for the {@link Kinship#up} attribute.
+     *
+     * @return the number of generations from the first person up to the common ancestor, or -1 if unrelated.
+     */
+    public int getGenerationsUp() {
+        return up;
+    }
+
+    /**
+     * Getter method for the {@link Kinship#down} attribute.
+     *
+     * @return the number of generations from the second person up to the common ancestor, or -1 if unrelated.
+     */
+    public int getGenerationsDown() {
+        return down;
+    }
+}
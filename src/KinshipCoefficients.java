@@ -0,0 +1,664 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * This class computes Wright's coefficients of the people of a {@link PersonStore}: the kinship coefficient of two
+ * people, i.e. the probability that a gene picked at random from each of them is identical by descent, the coefficient
+ * of relationship, and the inbreeding coefficient of a person, which is the kinship coefficient of their parents.
+ * <p>
+ * Following the parents of both people to every common ancestor takes time exponential in the number of generations
+ * when cousins marry, as they do in royal houses. Instead, the people are ranked generation by generation, so that
+ * every parent comes before their children, and the ancestors of a person are traced from the latest rank to the
+ * earliest, each once, passing half of their contribution to the person's genes on to each parent. With the method of
+ * Meuwissen and Luo, the kinship coefficient of two people is then half the sum, over their common ancestors, of the
+ * product of the ancestor's contributions to both, weighted by the part of the ancestor's genes that does not come
+ * from their own parents, which only depends on the inbreeding coefficients of the parents:
+ * <ul>
+ * <li>{@code f(x, y) = sum(a(x, z) * a(y, z) * (1/2 - (F(father of z) + F(mother of z)) / 4)) / 2},
+ * <li>{@code F(x) = f(father of x, mother of x)},
+ * </ul>
+ * where the inbreeding coefficient of an unknown parent counts as -1. The inbreeding coefficients are memoized in a
+ * table with one entry per person, so the ones of the parents of the common ancestors are only computed the first
+ * time they are needed, from the earliest rank to the latest, and are then shared by all threads. A table of the
+ * kinship coefficients of pairs of people would instead grow with the product of the numbers of their ancestors.
+ * <p>
+ * The inbreeding coefficients of all people are computed generation by generation, each generation in parallel, since
+ * each one only depends on the generations before it. Full siblings that come one after the other share the work. All
+ * computations walk the pedigree with explicit stacks, so its depth is only bounded by the memory, not by the call
+ * stack, and the memory a trace takes only grows with the number of ancestors it reaches.
+ * <p>
+ * Like {@link AncestryIndex}, a link is followed only if the child has the parent as their father or mother, and the
+ * parent has the child among their children. The coefficients are not defined if someone is their own ancestor.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+class KinshipCoefficients {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The number of people of a generation whose inbreeding coefficients are computed by the same task.
+     */
+    private static final int CHUNK_SIZE = 1024;
+
+    /**
+     * The bits of an inbreeding coefficient that has not been computed yet, which are not those of any number.
+     */
+    private static final long UNKNOWN = -1;
+
+    /**
+     * The state of a person whose generation has not been found.
+     */
+    private static final byte UNSEEN = 0;
+
+    /**
+     * The state of a person whose ancestors are being ranked.
+     */
+    private static final byte OPEN = 1;
+
+    /**
+     * The state of a person whose generation has been found.
+     */
+    private static final byte DONE = 2;
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The people whose coefficients are computed.
+     */
+    private final PersonStore people;
+
+    /**
+     * The father of each person, if the link is set both ways, or {@link PersonStore#NONE}.
+     */
+    private final int[] fathers;
+
+    /**
+     * The mother of each person, if the link is set both ways, or {@link PersonStore#NONE}.
+     */
+    private final int[] mothers;
+
+    /**
+     * The position of each person in {@link KinshipCoefficients#order}.
+     */
+    private final int[] ranks;
+
+    /**
+     * The IDs of the people, generation by generation, with the people without parents first.
+     */
+    private final int[] order;
+
+    /**
+     * The position in {@link KinshipCoefficients#order} at which each generation starts, followed by the number of
+     * people.
+     */
+    private final int[] generations;
+
+    /**
+     * The store's count of changes to the links of the people that the ranks reflect.
+     */
+    private final long modCount;
+
+    /**
+     * The bits of the inbreeding coefficient of each person, or {@link KinshipCoefficients#UNKNOWN} if it has not been
+     * computed yet.
+     */
+    private final AtomicLongArray inbreeding;
+
+    /**
+     * The search state of each thread.
+     */
+    private final ThreadLocal<Search> searches = ThreadLocal.withInitial(Search::new);
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link KinshipCoefficients} class.
+     *
+     * @param people      the people whose coefficients are computed.
+     * @param fathers     the father of each person, if the link is set both ways.
+     * @param mothers     the mother of each person, if the link is set both ways.
+     * @param order       the IDs of the people, generation by generation.
+     * @param generations the position at which each generation starts, followed by the number of people.
+     */
+    private KinshipCoefficients(PersonStore people, int[] fathers, int[] mothers, int[] order, int[] generations) {
+        this.people = people;
+        this.fathers = fathers;
+        this.mothers = mothers;
+        this.order = order;
+        this.generations = generations;
+        this.ranks = new int[order.length];
+        for (int rank = 0; rank < order.length; rank++) ranks[order[rank]] = rank;
+        this.inbreeding = new AtomicLongArray(order.length);
+        for (int id = 0; id < order.length; id++) inbreeding.set(id, UNKNOWN);
+        this.modCount = people.modCount();
+    }
+
+    // ######################### METHODS #########################
+
+    /**
+     * Ranks all the people of a store, generation by generation. A person's generation is one after the later of their
+     * parents' generations, or zero if they have no parents. The generations found by the last validation of the tree
+     * are reused if they are still current; they may count parents that are only linked one way, which still ranks
+     * every parent before their children.
+     *
+     * @param people the people to rank.
+     * @return the coefficients of the people.
+     * @throws IllegalStateException if someone is their own ancestor.
+     */
+    static KinshipCoefficients build(PersonStore people) {
+        int count = people.size();
+        int[] fathers = new int[count];
+        int[] mothers = new int[count];
+        for (int id = 0; id < count; id++) {
+            fathers[id] = linkedParent(people, people.father(id), id);
+            mothers[id] = linkedParent(people, people.mother(id), id);
+        }
+        int[] generation = new int[count];
+        int deepest = 0;
+        for (int id = 0; id < count && deepest >= 0; id++) {
+            generation[id] = people.generation(id);
+            deepest = generation[id] < 0 ? -1 : Math.max(deepest, generation[id]);
+        }
+        if (deepest < 0) deepest = generationsOf(people, fathers, mothers, generation);
+        int[] generations = new int[count == 0 ? 1 : deepest + 2];
+        for (int id = 0; id < count; id++) generations[generation[id] + 1]++;
+        for (int g = 1; g < generations.length; g++) generations[g] += generations[g - 1];
+        int[] next = Arrays.copyOf(generations, generations.length);
+        int[] order = new int[count];
+        for (int id = 0; id < count; id++) order[next[generation[id]]++] = id;
+        return new KinshipCoefficients(people, fathers, mothers, order, generations);
+    }
+
+    /**
+     * Finds the generation of every person, i.e. one more than the later generation of their parents, with a
+     * depth-first search over their parents.
+     *
+     * @param people     the people.
+     * @param fathers    the father of each person, if linked both ways.
+     * @param mothers    the mother of each person, if linked both ways.
+     * @param generation the array to put the generation of each person in.
+     * @return the latest generation.
+     * @throws IllegalStateException if someone is their own ancestor.
+     */
+    private static int generationsOf(PersonStore people, int[] fathers, int[] mothers, int[] generation) {
+        int count = generation.length;
+        byte[] state = new byte[count];
+        int[] stack = new int[64];
+        int deepest = 0;
+        for (int root = 0; root < count; root++) {
+            if (state[root] != UNSEEN) continue;
+            int top = 0;
+            stack[top++] = root;
+            while (top > 0) {
+                int id = stack[top - 1];
+                if (state[id] == DONE) {
+                    top--;
+                } else if (state[id] == UNSEEN) {
+                    state[id] = OPEN;
+                    if (top + 2 > stack.length) stack = Arrays.copyOf(stack, stack.length << 1);
+                    top = push(people, state, stack, top, fathers[id]);
+                    top = push(people, state, stack, top, mothers[id]);
+                } else {
+                    int father = fathers[id];
+                    int mother = mothers[id];
+                    generation[id] = 1 + Math.max(father == PersonStore.NONE ? -1 : generation[father],
+                            mother == PersonStore.NONE ? -1 : generation[mother]);
+                    deepest = Math.max(deepest, generation[id]);
+                    state[id] = DONE;
+                    top--;
+                }
+            }
+        }
+        return deepest;
+    }
+
+    /**
+     * Pushes a parent whose generation has not been found on the stack of {@link KinshipCoefficients#build}.
+     *
+     * @param people the people.
+     * @param state  the state of each person.
+     * @param stack  the stack.
+     * @param top    the number of people on the stack.
+     * @param parent the ID of the parent, or {@link PersonStore#NONE}.
+     * @return the new number of people on the stack.
+     * @throws IllegalStateException if the parent is their own ancestor.
+     */
+    private static int push(PersonStore people, byte[] state, int[] stack, int top, int parent) {
+        if (parent == PersonStore.NONE || state[parent] == DONE) return top;
+        if (state[parent] == OPEN) throw new IllegalStateException(people.name(parent) + " is their own ancestor.");
+        stack[top] = parent;
+        return top + 1;
+    }
+
+    /**
+     * Checks if the ranks reflect the current links of the people. People who were added since have no links, and
+     * are ranked after everyone else.
+     *
+     * @param modCount the store's current count of changes to the links of the people.
+     * @return {@code true} if the ranks are up to date, {@code false} otherwise.
+     */
+    boolean isCurrent(long modCount) {
+        return this.modCount == modCount;
+    }
+
+    /**
+     * Computes the kinship coefficient of two people.
+     *
+     * @param id1 the ID of the first person.
+     * @param id2 the ID of the second person.
+     * @return the kinship coefficient, between 0 and 1.
+     */
+    double kinship(int id1, int id2) {
+        return searches.get().kinship(id1, id2);
+    }
+
+    /**
+     * Computes the inbreeding coefficient of a person, i.e. the kinship coefficient of their parents.
+     *
+     * @param id the ID of the person.
+     * @return the inbreeding coefficient, between 0 and 1, which is 0 if either parent is unknown.
+     */
+    double inbreeding(int id) {
+        return searches.get().inbreeding(id);
+    }
+
+    /**
+     * Computes Wright's coefficient of relationship of two people, i.e. twice their kinship coefficient, scaled by
+     * their own inbreeding coefficients.
+     *
+     * @param id1 the ID of the first person.
+     * @param id2 the ID of the second person.
+     * @return the coefficient of relationship, between 0 and 1.
+     */
+    double relationship(int id1, int id2) {
+        Search search = searches.get();
+        double kinship = search.kinship(id1, id2);
+        if (kinship == 0) return 0;
+        return 2 * kinship / Math.sqrt((1 + search.inbreeding(id1)) * (1 + search.inbreeding(id2)));
+    }
+
+    /**
+     * Computes the inbreeding coefficients of all the people that were ranked, generation by generation, each
+     * generation in parallel, and memoizes them.
+     *
+     * @return the inbreeding coefficient of each person, indexed by ID.
+     */
+    double[] inbreedingOfAll() {
+        int count = order.length;
+        double[] all = new double[count];
+        double[] mendelian = new double[count];
+        for (int g = 0; g + 1 < generations.length; g++) {
+            int start = generations[g];
+            int end = generations[g + 1];
+            IntStream.range(0, (end - start + CHUNK_SIZE - 1) / CHUNK_SIZE).parallel().forEach(chunk -> {
+                Trace trace = searches.get().first;
+                int from = start + chunk * CHUNK_SIZE;
+                int to = Math.min(from + CHUNK_SIZE, end);
+                for (int rank = from; rank < to; rank++) {
+                    int id = order[rank];
+                    int father = fathers[id];
+                    int mother = mothers[id];
+                    mendelian[id] = 0.5 - 0.25 * ((father == PersonStore.NONE ? -1 : all[father])
+                            + (mother == PersonStore.NONE ? -1 : all[mother]));
+                    int previous = rank > from ? order[rank - 1] : PersonStore.NONE;
+                    if (father == PersonStore.NONE || mother == PersonStore.NONE) {
+                        all[id] = 0;
+                    } else if (previous != PersonStore.NONE && fathers[previous] == father
+                            && mothers[previous] == mother) {
+                        all[id] = all[previous];
+                    } else {
+                        trace.run(id);
+                        all[id] = trace.sumOfSquares(mendelian) - 1;
+                    }
+                    inbreeding.set(id, Double.doubleToRawLongBits(all[id]));
+                }
+            });
+        }
+        return all;
+    }
+
+    /**
+     * Writes the inbreeding coefficient of every person to a CSV file, one {@code name,coefficient} row per person, in
+     * the order the people were added.
+     *
+     * @param file the file to write to.
+     * @return the number of rows that were written.
+     * @throws IOException if the file cannot be written.
+     */
+    long exportInbreeding(Path file) throws IOException {
+        double[] all = inbreedingOfAll();
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int id = 0; id < all.length; id++) {
+                writer.write(people.name(id));
+                writer.write(',');
+                writer.write(Double.toString(all[id]));
+                writer.newLine();
+            }
+        }
+        return all.length;
+    }
+
+    /**
+     * Returns the memoized inbreeding coefficient of a person.
+     *
+     * @param id the ID of the person, or {@link PersonStore#NONE}.
+     * @return the inbreeding coefficient, -1 if the person is unknown, 0 if either of their parents is, or
+     *         {@code NaN} if it has not been computed yet.
+     */
+    private double memoized(int id) {
+        if (id == PersonStore.NONE) return -1;
+        if (father(id) == PersonStore.NONE || mother(id) == PersonStore.NONE) return 0;
+        long bits = inbreeding.get(id);
+        return bits == UNKNOWN ? Double.NaN : Double.longBitsToDouble(bits);
+    }
+
+    /**
+     * Returns the father of a person, if the link is set both ways.
+     *
+     * @param id the ID of the person.
+     * @return the ID of the father, or {@link PersonStore#NONE}, also for people who were added after the ranking.
+     */
+    private int father(int id) {
+        return id < fathers.length ? fathers[id] : PersonStore.NONE;
+    }
+
+    /**
+     * Returns the mother of a person, if the link is set both ways.
+     *
+     * @param id the ID of the person.
+     * @return the ID of the mother, or {@link PersonStore#NONE}, also for people who were added after the ranking.
+     */
+    private int mother(int id) {
+        return id < mothers.length ? mothers[id] : PersonStore.NONE;
+    }
+
+    /**
+     * Returns the rank of a person, which is higher than the ranks of all their ancestors.
+     *
+     * @param id the ID of the person.
+     * @return the rank of the person; people who were added after the ranking are ranked by ID, after everyone else.
+     */
+    private int rank(int id) {
+        return id < ranks.length ? ranks[id] : id;
+    }
+
+    /**
+     * Returns the father or mother of a person, if they have the person among their children.
+     *
+     * @param people the people.
+     * @param parent the ID of the father or mother, or {@link PersonStore#NONE}.
+     * @param child  the ID of the person.
+     * @return the ID of the parent, or {@link PersonStore#NONE} if they are not linked to the person.
+     */
+    private static int linkedParent(PersonStore people, int parent, int child) {
+        return parent != PersonStore.NONE && people.hasChild(parent, child) ? parent : PersonStore.NONE;
+    }
+
+    // ####################### NESTED TYPES #######################
+
+    /**
+     * The state of a search, reused by all the searches of a thread.
+     */
+    private class Search {
+
+        /**
+         * The trace of the ancestors of the first person of a pair.
+         */
+        private final Trace first = new Trace();
+
+        /**
+         * The trace of the ancestors of the second person of a pair.
+         */
+        private final Trace second = new Trace();
+
+        /**
+         * The people whose inbreeding coefficients are needed, the one on top first.
+         */
+        private int[] pending = new int[16];
+
+        /**
+         * The number of people in {@link Search#pending}.
+         */
+        private int top;
+
+        /**
+         * Computes the kinship coefficient of two people, computing first the inbreeding coefficients it depends on.
+         *
+         * @param id1 the ID of the first person, or {@link PersonStore#NONE}.
+         * @param id2 the ID of the second person, or {@link PersonStore#NONE}.
+         * @return the kinship coefficient, which is 0 if either person is unknown.
+         */
+        double kinship(int id1, int id2) {
+            if (id1 == PersonStore.NONE || id2 == PersonStore.NONE) return 0;
+            if (id1 == id2) return (1 + inbreeding(id1)) / 2;
+            top = 0;
+            while (true) {
+                double kinship = tryKinship(id1, id2);
+                if (!Double.isNaN(kinship)) return kinship;
+                resolve();
+            }
+        }
+
+        /**
+         * Computes the inbreeding coefficient of a person, and memoizes it.
+         *
+         * @param id the ID of the person.
+         * @return the inbreeding coefficient.
+         */
+        double inbreeding(int id) {
+            double known = memoized(id);
+            if (!Double.isNaN(known)) return known;
+            top = 0;
+            need(id);
+            resolve();
+            return memoized(id);
+        }
+
+        /**
+         * Computes the inbreeding coefficients of the pending people, computing first any others they depend on.
+         */
+        private void resolve() {
+            while (top > 0) {
+                int id = pending[top - 1];
+                if (!Double.isNaN(memoized(id))) {
+                    top--;
+                    continue;
+                }
+                double kinship = tryKinship(fathers[id], mothers[id]);
+                if (Double.isNaN(kinship)) continue;
+                inbreeding.set(id, Double.doubleToRawLongBits(kinship));
+                top--;
+            }
+        }
+
+        /**
+         * Computes the kinship coefficient of two different people, if the inbreeding coefficients of the parents of
+         * all their common ancestors are known. Otherwise, the unknown ones are added to the pending people.
+         *
+         * @param id1 the ID of the first person.
+         * @param id2 the ID of the second person.
+         * @return the kinship coefficient, or {@code NaN} if inbreeding coefficients have to be computed first.
+         */
+        private double tryKinship(int id1, int id2) {
+            first.run(id1);
+            second.run(id2);
+            Trace fewer = first.reached <= second.reached ? first : second;
+            Trace more = fewer == first ? second : first;
+            double sum = 0;
+            boolean known = true;
+            for (int i = 0; i < fewer.reached; i++) {
+                int ancestor = fewer.ids[i];
+                double other = more.contribution(ancestor);
+                if (other == 0) continue;
+                double father = memoized(father(ancestor));
+                double mother = memoized(mother(ancestor));
+                if (Double.isNaN(father)) need(father(ancestor));
+                if (Double.isNaN(mother)) need(mother(ancestor));
+                known &= !Double.isNaN(father) && !Double.isNaN(mother);
+                sum += fewer.contributions[i] * other * (0.5 - 0.25 * (father + mother));
+            }
+            return known ? sum / 2 : Double.NaN;
+        }
+
+        /**
+         * Adds a person to the pending people.
+         *
+         * @param id the ID of the person.
+         */
+        private void need(int id) {
+            if (top == pending.length) pending = Arrays.copyOf(pending, top << 1);
+            pending[top++] = id;
+        }
+    }
+
+    /**
+     * The trace of the ancestors of a person, with the contribution of each of them to the person's genes, reused by
+     * all the traces of a thread.
+     */
+    private class Trace {
+
+        /**
+         * The index of each ancestor that has been reached, in {@link Trace#ids}.
+         */
+        private final KinshipEngine.IntIntMap slots = new KinshipEngine.IntIntMap();
+
+        /**
+         * The ancestors that have been reached, including the person, in the order they were reached.
+         */
+        private int[] ids = new int[64];
+
+        /**
+         * The contribution of each ancestor that has been reached to the genes of the person.
+         */
+        private double[] contributions = new double[64];
+
+        /**
+         * The number of ancestors that have been reached.
+         */
+        private int reached;
+
+        /**
+         * The ancestors that have been reached but have not passed on their contribution yet, as a max-heap by rank.
+         */
+        private int[] heap = new int[64];
+
+        /**
+         * The number of ancestors in the heap.
+         */
+        private int size;
+
+        /**
+         * Traces the ancestors of a person. The ancestors are taken from the latest rank to the earliest, so each one
+         * has received the contributions of all their descendants in the trace before it passes half of the sum on to
+         * each parent.
+         *
+         * @param id the ID of the person.
+         */
+        void run(int id) {
+            slots.clear();
+            reached = 0;
+            size = 0;
+            pass(id, 1);
+            while (size > 0) {
+                int ancestor = heap[0];
+                heap[0] = heap[--size];
+                siftDown();
+                double contribution = contributions[slots.get(ancestor)] / 2;
+                pass(father(ancestor), contribution);
+                pass(mother(ancestor), contribution);
+            }
+        }
+
+        /**
+         * Returns the contribution of an ancestor to the genes of the person that was traced.
+         *
+         * @param id the ID of the ancestor.
+         * @return the contribution, or 0 if they are not an ancestor of the person, nor the person.
+         */
+        double contribution(int id) {
+            int slot = slots.get(id);
+            return slot < 0 ? 0 : contributions[slot];
+        }
+
+        /**
+         * Adds up the squared contribution of every ancestor that was reached, weighted by their Mendelian sampling
+         * variance, which is one more than the inbreeding coefficient of the person that was traced.
+         *
+         * @param mendelian the Mendelian sampling variance of each person, i.e. the part of their genes that does not
+         *                  come from their parents, known for every ancestor that was reached.
+         * @return the weighted sum.
+         */
+        double sumOfSquares(double[] mendelian) {
+            double sum = 0;
+            for (int i = 0; i < reached; i++) sum += contributions[i] * contributions[i] * mendelian[ids[i]];
+            return sum;
+        }
+
+        /**
+         * Adds to the contribution of an ancestor, reaching them first if they have not been reached.
+         *
+         * @param ancestor     the ID of the ancestor, or {@link PersonStore#NONE}.
+         * @param contribution the contribution to add.
+         */
+        private void pass(int ancestor, double contribution) {
+            if (ancestor == PersonStore.NONE) return;
+            int slot = slots.get(ancestor);
+            if (slot < 0) {
+                slot = reached++;
+                slots.put(ancestor, slot);
+                if (slot == ids.length) {
+                    ids = Arrays.copyOf(ids, slot << 1);
+                    contributions = Arrays.copyOf(contributions, slot << 1);
+                }
+                ids[slot] = ancestor;
+                contributions[slot] = 0;
+                if (size == heap.length) heap = Arrays.copyOf(heap, size << 1);
+                heap[size] = ancestor;
+                siftUp(size++);
+            }
+            contributions[slot] += contribution;
+        }
+
+        /**
+         * Moves the ancestor at an index of the heap up, until its parent in the heap has a higher rank.
+         *
+         * @param index the index of the ancestor.
+         */
+        private void siftUp(int index) {
+            int id = heap[index];
+            int rank = rank(id);
+            while (index > 0 && rank(heap[(index - 1) >> 1]) < rank) {
+                heap[index] = heap[(index - 1) >> 1];
+                index = (index - 1) >> 1;
+            }
+            heap[index] = id;
+        }
+
+        /**
+         * Moves the ancestor at the top of the heap down, until its children in the heap have lower ranks.
+         */
+        private void siftDown() {
+            if (size == 0) return;
+            int id = heap[0];
+            int rank = rank(id);
+            int index = 0;
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= size) break;
+                if (child + 1 < size && rank(heap[child + 1]) > rank(heap[child])) child++;
+                if (rank(heap[child]) <= rank) break;
+                heap[index] = heap[child];
+                index = child;
+            }
+            heap[index] = id;
+        }
+    }
+}
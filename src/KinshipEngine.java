@@ -0,0 +1,311 @@
+import java.util.Arrays;
+
+/**
+ * This class finds the blood relation of any degree between two people of a {@link PersonStore}.
+ * <p>
+ * The ancestors of both people are expanded one generation at a time, keeping the number of generations to each
+ * ancestor, until the closest common ancestor is found: the one with the fewest generations between the two people,
+ * preferring a direct line on ties. The search stops as soon as no closer common ancestor can exist, so its cost
+ * depends on how distant the relation is, not on the size of the tree; only unrelated people are searched up to the
+ * generation limit. Each thread reuses its own search state, so a search allocates nothing but its result.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+class KinshipEngine {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The default number of generations that are searched above each person.
+     */
+    static final int DEFAULT_MAX_GENERATIONS = 64;
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The people that are searched.
+     */
+    private final PersonStore people;
+
+    /**
+     * The number of generations that are searched above each person.
+     */
+    private final int maxGenerations;
+
+    /**
+     * The search state of each thread.
+     */
+    private final ThreadLocal<Search> searches = ThreadLocal.withInitial(Search::new);
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link KinshipEngine} class.
+     *
+     * @param people         the people that are searched.
+     * @param maxGenerations the number of generations that are searched above each person.
+     */
+    KinshipEngine(PersonStore people, int maxGenerations) {
+        if (maxGenerations < 1) throw new IllegalArgumentException("The generation limit must be positive.");
+        this.people = people;
+        this.maxGenerations = maxGenerations;
+    }
+
+    // ######################### METHODS #########################
+
+    /**
+     * Finds the blood relation the first person has to the second person.
+     *
+     * @param id1 the ID of the first person.
+     * @param id2 the ID of the second person.
+     * @return the kinship, or {@link Kinship#UNRELATED} if there is no common ancestor within the generation limit.
+     */
+    Kinship find(int id1, int id2) {
+        return searches.get().run(id1, id2);
+    }
+
+    // ####################### NESTED TYPES #######################
+
+    /**
+     * The state of a search, reused by all the searches of a thread.
+     */
+    private class Search {
+
+        /**
+         * The ancestors found above each of the two people, with the number of generations to each.
+         */
+        private final IntIntMap[] ancestors = {new IntIntMap(), new IntIntMap()};
+
+        /**
+         * The ancestors found in the last generation that was expanded, for each of the two people.
+         */
+        private final int[][] frontiers = {new int[16], new int[16]};
+
+        /**
+         * The number of ancestors in each frontier.
+         */
+        private final int[] frontierSizes = new int[2];
+
+        /**
+         * A buffer the next frontier is collected in.
+         */
+        private int[] next = new int[16];
+
+        /**
+         * The number of generations from the first person up to the closest common ancestor found so far.
+         */
+        private int bestUp;
+
+        /**
+         * The number of generations from the second person up to the closest common ancestor found so far.
+         */
+        private int bestDown;
+
+        /**
+         * Runs a search.
+         *
+         * @param id1 the ID of the first person.
+         * @param id2 the ID of the second person.
+         * @return the kinship.
+         */
+        Kinship run(int id1, int id2) {
+            Gender gender = people.gender(id1);
+            if (id1 == id2) return new Kinship(0, 0, gender);
+            bestUp = -1;
+            bestDown = -1;
+            start(0, id1);
+            start(1, id2);
+            for (int generation = 0; generation < maxGenerations; generation++) {
+                if (bestUp >= 0 && bestUp + bestDown <= generation) break;
+                if (frontierSizes[0] == 0 && frontierSizes[1] == 0) break;
+                expand(0, generation + 1);
+                expand(1, generation + 1);
+            }
+            return bestUp < 0 ? Kinship.UNRELATED : new Kinship(bestUp, bestDown, gender);
+        }
+
+        /**
+         * Starts the search above one of the two people.
+         *
+         * @param side the side of the search, 0 for the first person and 1 for the second.
+         * @param id   the ID of the person.
+         */
+        private void start(int side, int id) {
+            ancestors[side].clear();
+            ancestors[side].put(id, 0);
+            frontiers[side][0] = id;
+            frontierSizes[side] = 1;
+        }
+
+        /**
+         * Expands the frontier of one side by one generation, checking every new ancestor against the ancestors found
+         * by the other side.
+         *
+         * @param side       the side of the search, 0 for the first person and 1 for the second.
+         * @param generation the number of generations to the new ancestors.
+         */
+        private void expand(int side, int generation) {
+            IntIntMap own = ancestors[side];
+            IntIntMap other = ancestors[1 - side];
+            int[] frontier = frontiers[side];
+            int size = 0;
+            for (int i = 0, count = frontierSizes[side]; i < count; i++) {
+                int person = frontier[i];
+                size = visit(own, other, side, people.father(person), generation, size);
+                size = visit(own, other, side, people.mother(person), generation, size);
+            }
+            frontiers[side] = next;
+            next = frontier;
+            frontierSizes[side] = size;
+        }
+
+        /**
+         * Visits a parent while expanding a frontier.
+         *
+         * @param own        the ancestors found by the side that is being expanded.
+         * @param other      the ancestors found by the other side.
+         * @param side       the side of the search, 0 for the first person and 1 for the second.
+         * @param parent     the ID of the parent, or {@link PersonStore#NONE}.
+         * @param generation the number of generations to the parent.
+         * @param size       the size of the next frontier.
+         * @return the new size of the next frontier.
+         */
+        private int visit(IntIntMap own, IntIntMap other, int side, int parent, int generation, int size) {
+            if (parent == PersonStore.NONE || own.get(parent) >= 0) return size;
+            own.put(parent, generation);
+            int generations = other.get(parent);
+            if (generations >= 0) {
+                if (side == 0) consider(generation, generations);
+                else consider(generations, generation);
+            }
+            if (size == next.length) next = Arrays.copyOf(next, size << 1);
+            next[size] = parent;
+            return size + 1;
+        }
+
+        /**
+         * Keeps a common ancestor if it is closer than the closest one found so far.
+         *
+         * @param up   the number of generations from the first person up to the ancestor.
+         * @param down the number of generations from the second person up to the ancestor.
+         */
+        private void consider(int up, int down) {
+            if (bestUp >= 0) {
+                int distance = up + down;
+                int bestDistance = bestUp + bestDown;
+                if (distance > bestDistance) return;
+                if (distance == bestDistance && Math.min(up, down) >= Math.min(bestUp, bestDown)) return;
+            }
+            bestUp = up;
+            bestDown = down;
+        }
+    }
+
+    /**
+     * An open-addressing hash map from non-negative int keys to non-negative int values, that can be cleared in time
+     * proportional to the number of keys it holds.
+     */
+    static class IntIntMap {
+
+        /**
+         * The key of each slot, or -1 if the slot is empty.
+         */
+        private int[] keys = filled(new int[64]);
+
+        /**
+         * The value of each slot.
+         */
+        private int[] values = new int[64];
+
+        /**
+         * The slots that hold a key, in the order they were filled.
+         */
+        private int[] used = new int[32];
+
+        /**
+         * The number of keys in the map.
+         */
+        private int size;
+
+        /**
+         * Finds the value of a key.
+         *
+         * @param key the key.
+         * @return the value of the key, or -1 if the key is not in the map.
+         */
+        int get(int key) {
+            int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) return values[slot];
+                if (keys[slot] < 0) return -1;
+            }
+        }
+
+        /**
+         * Sets the value of a key.
+         *
+         * @param key   the key.
+         * @param value the value.
+         */
+        void put(int key, int value) {
+            if ((size + 1) * 2 > keys.length) rehash(keys.length << 1);
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (keys[slot] >= 0 && keys[slot] != key) slot = (slot + 1) & mask;
+            if (keys[slot] < 0) {
+                keys[slot] = key;
+                if (size == used.length) used = Arrays.copyOf(used, size << 1);
+                used[size++] = slot;
+            }
+            values[slot] = value;
+        }
+
+        /**
+         * Removes all keys from the map.
+         */
+        void clear() {
+            for (int i = 0; i < size; i++) keys[used[i]] = -1;
+            size = 0;
+        }
+
+        /**
+         * Rebuilds the map with the specified number of slots.
+         *
+         * @param slots the new number of slots, a power of two.
+         */
+        private void rehash(int slots) {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            int[] oldUsed = used;
+            int oldSize = size;
+            keys = filled(new int[slots]);
+            values = new int[slots];
+            used = new int[Math.max(oldUsed.length, slots >> 1)];
+            size = 0;
+            for (int i = 0; i < oldSize; i++) put(oldKeys[oldUsed[i]], oldValues[oldUsed[i]]);
+        }
+
+        /**
+         * Fills an array of keys with -1, marking every slot as empty.
+         *
+         * @param keys the array.
+         * @return the array.
+         */
+        private static int[] filled(int[] keys) {
+            Arrays.fill(keys, -1);
+            return keys;
+        }
+
+        /**
+         * Spreads a key, so that consecutive keys do not end up in neighbouring slots.
+         *
+         * @param key the key.
+         * @return the spread key.
+         */
+        private static int hash(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class counts the latencies of an operation, in buckets whose width grows with the latency, so any latency from
+ * a nanosecond to centuries is recorded in constant time and space, within 25% of its value.
+ * <p>
+ * Each power of two is split into {@link LatencyHistogram#SUB_BUCKETS} buckets of equal width. Every bucket is a
+ * {@link LongAdder}, so threads that record at the same time do not contend on the same memory, and recording never
+ * takes a lock. Reading the histogram sums the adders, which is slower, but only done when the metrics are published.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+class LatencyHistogram {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The number of bits of a latency, after its highest one, that select its bucket within its power of two.
+     */
+    private static final int SUB_BITS = 2;
+
+    /**
+     * The number of buckets of each power of two.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /**
+     * The number of buckets, enough for any non-negative {@code long}.
+     */
+    private static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_BUCKETS;
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The number of latencies in each bucket.
+     */
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+
+    /**
+     * The sum of all latencies, in nanoseconds.
+     */
+    private final LongAdder total = new LongAdder();
+
+    /**
+     * The highest latency, in nanoseconds.
+     */
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link LatencyHistogram} class.
+     */
+    LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) counts[i] = new LongAdder();
+    }
+
+    // ######################### METHODS #########################
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos the latency, in nanoseconds; negative latencies are counted as zero.
+     */
+    void record(long nanos) {
+        nanos = Math.max(nanos, 0);
+        counts[bucketOf(nanos)].increment();
+        total.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    /**
+     * Takes a snapshot of the latencies recorded so far. Latencies that are recorded while the snapshot is taken may or
+     * may not be in it.
+     *
+     * @return the snapshot.
+     */
+    Snapshot snapshot() {
+        long[] sums = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) sums[i] = counts[i].sum();
+        return new Snapshot(sums, total.sum(), max.get());
+    }
+
+    /**
+     * Discards the latencies recorded so far.
+     */
+    void reset() {
+        for (LongAdder count : counts) count.reset();
+        total.reset();
+        max.reset();
+    }
+
+    /**
+     * Finds the bucket of a latency.
+     *
+     * @param nanos the latency, in nanoseconds, not negative.
+     * @return the index of the bucket.
+     */
+    private static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) return (int) nanos;
+        int log = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (log - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (log - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Finds the lowest latency of a bucket.
+     *
+     * @param bucket the index of the bucket.
+     * @return the lowest latency of the bucket, in nanoseconds.
+     */
+    private static long lowestOf(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int log = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        return (long) (SUB_BUCKETS | bucket % SUB_BUCKETS) << (log - SUB_BITS);
+    }
+
+    // ####################### NESTED TYPES #######################
+
+    /**
+     * The latencies of a histogram at one point in time.
+     *
+     * @param counts the number of latencies in each bucket.
+     * @param total  the sum of all latencies, in nanoseconds.
+     * @param max    the highest latency, in nanoseconds.
+     */
+    record Snapshot(long[] counts, long total, long max) {
+
+        /**
+         * Counts the latencies.
+         *
+         * @return the number of latencies.
+         */
+        long count() {
+            long count = 0;
+            for (long c : counts) count += c;
+            return count;
+        }
+
+        /**
+         * Calculates the mean latency.
+         *
+         * @return the mean latency, in nanoseconds, or zero if there are none.
+         */
+        double mean() {
+            long count = count();
+            return count == 0 ? 0 : (double) total / count;
+        }
+
+        /**
+         * Estimates a percentile of the latencies, as the highest latency of the bucket it falls in, or the highest
+         * latency recorded if that is lower.
+         *
+         * @param percentile the percentile, between 0 and 100.
+         * @return the latency at the percentile, in nanoseconds, or zero if there are none.
+         */
+        long percentile(double percentile) {
+            long count = count();
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return i + 1 < BUCKETS ? Math.min(lowestOf(i + 1) - 1, max) : max;
+            }
+            return max;
+        }
+
+        /**
+         * Adds the latencies of another snapshot to the ones of this one.
+         *
+         * @param other the other snapshot.
+         * @return a snapshot with the latencies of both.
+         */
+        Snapshot plus(Snapshot other) {
+            long[] sums = counts.clone();
+            for (int i = 0; i < sums.length; i++) sums[i] += other.counts[i];
+            return new Snapshot(sums, total + other.total, Math.max(max, other.max));
+        }
+    }
+}
@@ -0,0 +1,253 @@
+import java.util.List;
+
+/**
+ * This class represents the outcome of a merge of CSV files into a {@link GenealogicalTree}: how many people and
+ * relations were read, how many of them were new to the tree and how many were already in it, and every conflict that
+ * was found, e.g. a person who is given two different fathers. See {@link CsvTreeMerger}.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+public final class MergeReport {
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The number of files that were merged.
+     */
+    private final int files;
+
+    /**
+     * The number of rows that were read.
+     */
+    private final long rows;
+
+    /**
+     * The number of people that were added to the tree.
+     */
+    private final int people;
+
+    /**
+     * The number of rows of people that were merged into a person that was already in the tree, or that was read
+     * before.
+     */
+    private final int merged;
+
+    /**
+     * The number of relations that were added to the tree.
+     */
+    private final int relations;
+
+    /**
+     * The number of relations that were already in the tree, or that were read before.
+     */
+    private final int knownRelations;
+
+    /**
+     * The conflicts that were found.
+     */
+    private final List<Conflict> conflicts;
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link MergeReport} class.
+     *
+     * @param files          the number of files that were merged.
+     * @param rows           the number of rows that were read.
+     * @param people         the number of people that were added to the tree.
+     * @param merged         the number of rows of people that were merged into a person that was already known.
+     * @param relations      the number of relations that were added to the tree.
+     * @param knownRelations the number of relations that were already known.
+     * @param conflicts      the conflicts that were found.
+     */
+    MergeReport(int files, long rows, int people, int merged, int relations, int knownRelations,
+                List<Conflict> conflicts) {
+        this.files = files;
+        this.rows = rows;
+        this.people = people;
+        this.merged = merged;
+        this.relations = relations;
+        this.knownRelations = knownRelations;
+        this.conflicts = List.copyOf(conflicts);
+    }
+
+    // ####################### METHODS #######################
+
+    /**
+     * Getter method for the number of files that were merged.
+     *
+     * @return the number of files.
+     */
+    public int getFiles() {
+        return files;
+    }
+
+    /**
+     * Getter method for the number of rows that were read, of people and of relations.
+     *
+     * @return the number of rows.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Getter method for the number of people that were added to the tree.
+     *
+     * @return the number of people.
+     */
+    public int getPeople() {
+        return people;
+    }
+
+    /**
+     * Getter method for the number of rows of people that were merged into a person that was already in the tree, or
+     * that was read before, instead of being added.
+     *
+     * @return the number of merged rows.
+     */
+    public int getMerged() {
+        return merged;
+    }
+
+    /**
+     * Getter method for the number of relations that were added to the tree.
+     *
+     * @return the number of relations.
+     */
+    public int getRelations() {
+        return relations;
+    }
+
+    /**
+     * Getter method for the number of relations that were already in the tree, or that were read before, and so were
+     * not added again.
+     *
+     * @return the number of known relations.
+     */
+    public int getKnownRelations() {
+        return knownRelations;
+    }
+
+    /**
+     * Getter method for the conflicts that were found.
+     *
+     * @return the conflicts of the people, and then those of the relations, each in the order of the files.
+     */
+    public List<Conflict> getConflicts() {
+        return conflicts;
+    }
+
+    /**
+     * Overrides the {@link Object#toString()} method, to return a summary of the merge, followed by one line per
+     * conflict.
+     *
+     * @return the summary and the conflicts.
+     */
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(rows).append(" rows of ").append(files).append(files == 1 ? " file: " : " files: ")
+                .append(people).append(" people added and ").append(merged).append(" merged, ")
+                .append(relations).append(" relations added and ").append(knownRelations).append(" known, ")
+                .append(conflicts.size()).append(conflicts.size() == 1 ? " conflict" : " conflicts");
+        for (Conflict conflict : conflicts) report.append('\n').append(conflict);
+        return report.toString();
+    }
+
+    // ####################### NESTED TYPES #######################
+
+    /**
+     * The kinds of conflicts a merge finds.
+     */
+    public enum Kind {
+        /**
+         * A row of a person was merged into a person of another gender, because the gender is not part of the key.
+         */
+        GENDER,
+        /**
+         * A person was given a father who is not the father they already have, who is kept.
+         */
+        FATHER,
+        /**
+         * A person was given a mother who is not the mother they already have, who is kept.
+         */
+        MOTHER,
+        /**
+         * A person was married to someone while either of them is already married to someone else, who is kept.
+         */
+        SPOUSE,
+        /**
+         * A relation names a person who is neither in its file, nor in the tree, so it was skipped.
+         */
+        MISSING_PERSON,
+        /**
+         * A person was added with the same name as a different person, i.e. one with another key, so only the person
+         * that was added last is found by name.
+         */
+        SAME_NAME
+    }
+
+    /**
+     * A conflict that was found while merging.
+     */
+    public static final class Conflict {
+
+        /**
+         * The kind of the conflict.
+         */
+        private final Kind kind;
+
+        /**
+         * The names of the people involved, starting with the person the conflict is about.
+         */
+        private final List<String> names;
+
+        /**
+         * The description of the conflict.
+         */
+        private final String message;
+
+        /**
+         * Constructor method for the {@link Conflict} class.
+         *
+         * @param kind    the kind of the conflict.
+         * @param names   the names of the people involved, starting with the person the conflict is about.
+         * @param message the description of the conflict.
+         */
+        Conflict(Kind kind, List<String> names, String message) {
+            this.kind = kind;
+            this.names = List.copyOf(names);
+            this.message = message;
+        }
+
+        /**
+         * Getter method for the kind of the conflict.
+         *
+         * @return the kind of the conflict.
+         */
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * Getter method for the names of the people involved in the conflict.
+         *
+         * @return the names, starting with the person the conflict is about.
+         */
+        public List<String> getNames() {
+            return names;
+        }
+
+        /**
+         * Overrides the {@link Object#toString()} method, to return the description of the conflict.
+         *
+         * @return the description of the conflict.
+         */
+        @Override
+        public String toString() {
+            return message;
+        }
+    }
+}
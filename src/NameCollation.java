@@ -0,0 +1,48 @@
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * @author George Gkonis
+ * @version 1.0
+ * <p>
+ * Enumerates the orders the names of the people of a tree can be sorted and searched in. Names that are equal under a
+ * collation, e.g. {@code Baratheon} and {@code baratheon} when case is ignored, are ordered by their exact spelling.
+ */
+public enum NameCollation {
+    EXACT, IGNORE_CASE, IGNORE_CASE_AND_ACCENTS;
+
+    /**
+     * Matches the combining marks that accents are decomposed into.
+     */
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    /**
+     * Returns the key a name is sorted and searched by under this collation.
+     *
+     * @param name the name.
+     * @return the key of the name.
+     */
+    String key(String name) {
+        return switch (this) {
+            case EXACT -> name;
+            case IGNORE_CASE -> name.toLowerCase(Locale.ROOT);
+            case IGNORE_CASE_AND_ACCENTS -> isAscii(name) ? name.toLowerCase(Locale.ROOT)
+                    : MARKS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD)).replaceAll("")
+                    .toLowerCase(Locale.ROOT);
+        };
+    }
+
+    /**
+     * Checks if a name is plain ASCII, which has no accents to remove.
+     *
+     * @param name the name.
+     * @return true if every character of the name is ASCII.
+     */
+    private static boolean isAscii(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) >= 0x80) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,630 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * This class keeps the names of the people of a {@link PersonStore}, and finds people by name.
+ * <p>
+ * The names are kept as UTF-8 in a single byte arena, one after the other in order of ID, and the name of a person is
+ * the bytes from their offset to the offset of the next person, so a name costs its bytes and one integer, instead of a
+ * {@link String} and its array. Names are only turned back into strings when they are read.
+ * <p>
+ * When a bulk load is complete, {@link NameDictionary#freeze()} builds a minimal perfect hash function over the
+ * names, which maps each of the {@code n} distinct names to its own slot between zero and {@code n - 1}, and keeps the
+ * ID of the person with that name in the slot. The keys are the {@link String#hashCode()} of the names, which
+ * strings cache, so a lookup hashes the name at most once, finds its slot with two multiplications and a read of the
+ * displacement of its bucket, and compares the name to the bytes in the arena in place, without allocating. The
+ * function is built with the hash-and-displace method: the keys are hashed into buckets of about
+ * {@value NameDictionary#BUCKET_SIZE}, and the buckets, largest first, are each given the first displacement that
+ * moves all of their keys into free slots, except that a bucket of one key is given a free slot directly.
+ * <p>
+ * Names that are added after the function was built, and the rare names whose hash code is the same as that of another
+ * name, are kept in an overflow table with open addressing, which is also the only table before the first build. Adding
+ * a name that is already in the dictionary points it to the new person, so the person that had it can no longer be
+ * found by name. Names are kept as UTF-8, so a name with an unpaired surrogate is kept, and read back, with a
+ * {@code ?} instead, as in a {@link TreeSnapshot}. The arena holds at most 2 GB of names.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+class NameDictionary {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The average number of keys of a bucket of the perfect hash function.
+     */
+    private static final int BUCKET_SIZE = 2;
+
+    /**
+     * The largest displacement that is tried for a bucket, before the function is built again with another seed.
+     */
+    private static final int MAX_DISPLACEMENT = 1 << 20;
+
+    /**
+     * The number of seeds that are tried before the names are left in the overflow table.
+     */
+    private static final int MAX_SEEDS = 8;
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The names of all people, as UTF-8, one after the other in order of ID.
+     */
+    private byte[] arena;
+
+    /**
+     * The offset of the name of each person in {@link NameDictionary#arena}, followed by the end of the used part of
+     * the arena.
+     */
+    private int[] offsets;
+
+    /**
+     * The number of names in the dictionary, including those that were replaced.
+     */
+    private int size;
+
+    /**
+     * The seed of the perfect hash function.
+     */
+    private int seed;
+
+    /**
+     * The displacement of each bucket of the perfect hash function, or, if negative, minus one minus the slot of its
+     * only key.
+     */
+    private int[] displacements = new int[0];
+
+    /**
+     * The person with the name of each slot of the perfect hash function: their ID in the lower half, and the offset
+     * of their name in the upper half, so the name is compared without looking up its offset first.
+     */
+    private long[] slots = new long[0];
+
+    /**
+     * The overflow table. Each slot is two integers: the ID plus one, or zero if the slot is empty, and the hash code
+     * of the name.
+     */
+    private int[] overflow = new int[32];
+
+    /**
+     * The number of names in the overflow table.
+     */
+    private int overflowSize;
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link NameDictionary} class.
+     *
+     * @param capacity the number of names the dictionary can hold before its offsets have to grow.
+     */
+    NameDictionary(int capacity) {
+        arena = new byte[capacity * 16];
+        offsets = new int[capacity + 1];
+    }
+
+    // ######################### METHODS #########################
+
+    /**
+     * Adds a name, and points it to the new person.
+     *
+     * @param name the name.
+     * @return the ID of the new person, i.e. the number of names that were added before.
+     * @throws IllegalStateException if the arena is full.
+     */
+    int add(String name) {
+        if (size + 1 == offsets.length) offsets = Arrays.copyOf(offsets, offsets.length << 1);
+        int id = size;
+        int end = append(offsets[id], name);
+        offsets[id + 1] = end;
+        size++;
+        int hash = name.hashCode();
+        int slot = frozenSlot(hash);
+        if (slot >= 0 && matches((int) slots[slot], name)) slots[slot] = entry(id);
+        else putOverflow(id, hash);
+        return id;
+    }
+
+    /**
+     * Finds the ID of the person with a name.
+     *
+     * @param name the name.
+     * @return the ID of the person, or {@link PersonStore#NONE} if there is no person with that name.
+     */
+    int idOf(String name) {
+        int hash = name.hashCode();
+        long[] slots = this.slots;
+        int slot = frozenSlot(hash);
+        if (slot >= 0) {
+            long entry = slots[slot];
+            if (matches((int) entry, (int) (entry >>> 32), name)) return (int) entry;
+        }
+        if (overflowSize == 0) return PersonStore.NONE;
+        int[] table = overflow;
+        int mask = (table.length >> 1) - 1;
+        for (int i = spread(hash) & mask; ; i = (i + 1) & mask) {
+            int entry = table[i << 1];
+            if (entry == 0) return PersonStore.NONE;
+            if (table[(i << 1) + 1] == hash && matches(entry - 1, name)) return entry - 1;
+        }
+    }
+
+    /**
+     * Checks if the person with an ID can still be found by name, i.e. has not been replaced by a person that was
+     * added later with the same name.
+     *
+     * @param id the ID of the person.
+     * @return {@code true} if the person can be found by name, {@code false} otherwise.
+     */
+    boolean isCurrent(int id) {
+        int hash = hash(id);
+        int slot = frozenSlot(hash);
+        if (slot >= 0 && sameName((int) slots[slot], id)) return (int) slots[slot] == id;
+        int mask = (overflow.length >> 1) - 1;
+        for (int i = spread(hash) & mask; ; i = (i + 1) & mask) {
+            int entry = overflow[i << 1];
+            if (entry == 0) return false;
+            if (overflow[(i << 1) + 1] == hash && sameName(entry - 1, id)) return entry - 1 == id;
+        }
+    }
+
+    /**
+     * Returns the name of a person.
+     *
+     * @param id the ID of the person.
+     * @return the name.
+     */
+    String name(int id) {
+        return new String(arena, offsets[id], offsets[id + 1] - offsets[id], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the number of names in the dictionary, including those that were replaced.
+     *
+     * @return the number of names.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Fills an empty dictionary with names that were saved before, e.g. in a {@link TreeSnapshot}, and builds the
+     * perfect hash function over them. The arrays are taken over by the dictionary.
+     *
+     * @param arena   the names, as UTF-8, one after the other.
+     * @param offsets the offset of each name in the arena, followed by the end of the last name.
+     * @throws IllegalStateException if the dictionary is not empty.
+     */
+    void restore(byte[] arena, int[] offsets) {
+        if (size != 0) throw new IllegalStateException("Cannot restore names into a dictionary that is not empty.");
+        this.arena = arena;
+        this.offsets = offsets;
+        this.size = offsets.length - 1;
+        int[] latest = new int[size];
+        for (int id = 0; id < size; id++) latest[id] = id;
+        build(latest);
+    }
+
+    /**
+     * Builds the perfect hash function over the names that can be found, and releases the spare capacity of the
+     * arena. Should be called once a bulk load is complete; names can still be added afterwards.
+     */
+    void freeze() {
+        long[] found = new long[(size + 63) >>> 6];
+        for (long entry : slots) found[(int) entry >>> 6] |= 1L << entry;
+        for (int i = 0; i < overflow.length; i += 2) {
+            if (overflow[i] != 0) found[overflow[i] - 1 >>> 6] |= 1L << overflow[i] - 1;
+        }
+        int[] current = new int[size];
+        int count = 0;
+        for (int id = 0; id < size; id++) if ((found[id >>> 6] & 1L << id) != 0) current[count++] = id;
+        arena = Arrays.copyOf(arena, Math.max(offsets[size], 1));
+        offsets = Arrays.copyOf(offsets, size + 1);
+        build(Arrays.copyOf(current, count));
+    }
+
+    /**
+     * Builds the perfect hash function over some names, and puts the others in the overflow table: the names whose hash
+     * code is the same as that of a name with a lower ID, or all of them if the function cannot be built.
+     *
+     * @param ids the IDs of the people with the names, in order; if the same name is given more than once, the person
+     *            with the highest ID keeps it.
+     */
+    private void build(int[] ids) {
+        long[] keys = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) keys[i] = (long) hash(ids[i]) << 32 | ids[i];
+        int[] rest = new int[ids.length];
+        for (int attempt = 0; attempt < MAX_SEEDS; attempt++) {
+            int restSize = place(keys, attempt * 0x61C88647 + 1, rest);
+            if (restSize >= 0) {
+                fillOverflow(rest, restSize);
+                return;
+            }
+        }
+        displacements = new int[0];
+        slots = new long[0];
+        fillOverflow(ids, ids.length);
+    }
+
+    /**
+     * Places the keys of the perfect hash function in their slots. Keys with the same hash code always share a bucket,
+     * so they are found there: of those with the same name, only the one with the highest ID is placed, and those whose
+     * name is not the same as that of the first key with the hash code are left out.
+     *
+     * @param keys the hash code of each name in the upper half, and the ID of the person in the lower half, in order
+     *             of ID.
+     * @param seed the seed of the function.
+     * @param rest the array to put the IDs of the people whose names are left out in.
+     * @return the number of names that were left out, or -1 if a bucket could not be placed.
+     */
+    private int place(long[] keys, int seed, int[] rest) {
+        int buckets = Math.max(1, (keys.length + BUCKET_SIZE - 1) / BUCKET_SIZE);
+        int[] starts = new int[buckets + 1];
+        for (long key : keys) starts[bucket(mix(key >>> 32 ^ (long) seed << 32), buckets) + 1]++;
+        for (int b = 0; b < buckets; b++) starts[b + 1] += starts[b];
+        long[] mixed = new long[keys.length];
+        int[] ids = new int[keys.length];
+        int[] sizes = Arrays.copyOf(starts, buckets);
+        for (long key : keys) {
+            long m = mix(key >>> 32 ^ (long) seed << 32);
+            int at = sizes[bucket(m, buckets)]++;
+            mixed[at] = m;
+            ids[at] = (int) key;
+        }
+        int n = 0;
+        int largest = 0;
+        int restSize = 0;
+        for (int b = 0; b < buckets; b++) {
+            int kept = starts[b];
+            next:
+            for (int i = starts[b]; i < starts[b + 1]; i++) {
+                for (int j = starts[b]; j < kept; j++) {
+                    if (mixed[j] != mixed[i]) continue;
+                    if (sameName(ids[j], ids[i])) ids[j] = ids[i];
+                    else rest[restSize++] = ids[i];
+                    continue next;
+                }
+                mixed[kept] = mixed[i];
+                ids[kept++] = ids[i];
+            }
+            sizes[b] = kept - starts[b];
+            n += sizes[b];
+            largest = Math.max(largest, sizes[b]);
+        }
+        int[] bySize = new int[largest + 2];
+        for (int b = 0; b < buckets; b++) bySize[largest - sizes[b] + 1]++;
+        for (int s = 0; s <= largest; s++) bySize[s + 1] += bySize[s];
+        int[] order = new int[buckets];
+        for (int b = 0; b < buckets; b++) order[bySize[largest - sizes[b]]++] = b;
+
+        int[] displacements = new int[buckets];
+        long[] slots = new long[n];
+        long[] taken = new long[(n + 63) >>> 6];
+        int[] positions = new int[largest];
+        int free = 0;
+        for (int b : order) {
+            int from = starts[b];
+            int count = sizes[b];
+            if (count == 0) break;
+            if (count == 1) {
+                while ((taken[free >>> 6] & 1L << free) != 0) free++;
+                taken[free >>> 6] |= 1L << free;
+                displacements[b] = -1 - free;
+                slots[free] = entry(ids[from]);
+                continue;
+            }
+            int displacement = displace(mixed, from, count, n, taken, positions);
+            if (displacement < 0) return -1;
+            displacements[b] = displacement;
+            for (int i = 0; i < count; i++) {
+                taken[positions[i] >>> 6] |= 1L << positions[i];
+                slots[positions[i]] = entry(ids[from + i]);
+            }
+        }
+        this.seed = seed;
+        this.displacements = displacements;
+        this.slots = slots;
+        return restSize;
+    }
+
+    /**
+     * Finds the first displacement that moves all the keys of a bucket into free slots, which differ from each other.
+     *
+     * @param mixed     the mixed keys, grouped by bucket.
+     * @param from      the position of the first key of the bucket.
+     * @param count     the number of keys of the bucket.
+     * @param slots     the number of slots.
+     * @param taken     the slots that are taken, one bit per slot.
+     * @param positions the array to put the slot of each key in.
+     * @return the displacement, or -1 if there is none below {@link NameDictionary#MAX_DISPLACEMENT}.
+     */
+    private static int displace(long[] mixed, int from, int count, int slots, long[] taken, int[] positions) {
+        search:
+        for (int displacement = 0; displacement < MAX_DISPLACEMENT; displacement++) {
+            for (int i = 0; i < count; i++) {
+                int position = slot(mixed[from + i], displacement, slots);
+                if ((taken[position >>> 6] & 1L << position) != 0) continue search;
+                for (int j = 0; j < i; j++) if (positions[j] == position) continue search;
+                positions[i] = position;
+            }
+            return displacement;
+        }
+        return -1;
+    }
+
+    /**
+     * Empties the overflow table, and fills it with some names.
+     *
+     * @param ids   the IDs of the people with the names.
+     * @param count the number of names.
+     */
+    private void fillOverflow(int[] ids, int count) {
+        overflow = new int[Math.max(32, Integer.highestOneBit(Math.max(count, 1)) << 3)];
+        overflowSize = 0;
+        for (int i = 0; i < count; i++) putOverflow(ids[i], hash(ids[i]));
+    }
+
+    /**
+     * Points a name to a person in the overflow table, replacing the person that had it, if any.
+     *
+     * @param id   the ID of the person.
+     * @param hash the hash code of the name.
+     */
+    private void putOverflow(int id, int hash) {
+        if ((overflowSize + 1) * 4 > overflow.length) {
+            int[] old = overflow;
+            overflow = new int[old.length << 1];
+            overflowSize = 0;
+            for (int i = 0; i < old.length; i += 2) if (old[i] != 0) putOverflow(old[i] - 1, old[i + 1]);
+        }
+        int mask = (overflow.length >> 1) - 1;
+        int i = spread(hash) & mask;
+        for (int entry; (entry = overflow[i << 1]) != 0; i = (i + 1) & mask) {
+            if (overflow[(i << 1) + 1] == hash && sameName(entry - 1, id)) break;
+        }
+        if (overflow[i << 1] == 0) overflowSize++;
+        overflow[i << 1] = id + 1;
+        overflow[(i << 1) + 1] = hash;
+    }
+
+    /**
+     * Finds the slot of the perfect hash function a hash code maps to. A name that is not among the keys of the
+     * function is mapped to the slot of some other name.
+     *
+     * @param hash the hash code of the name.
+     * @return the slot, or -1 if the function has no keys.
+     */
+    private int frozenSlot(int hash) {
+        int[] displacements = this.displacements;
+        int n = slots.length;
+        if (n == 0 || displacements.length == 0) return -1;
+        long mixed = mix((hash & 0xFFFFFFFFL) ^ (long) seed << 32);
+        int displacement = displacements[bucket(mixed, displacements.length)];
+        return displacement < 0 ? -1 - displacement : slot(mixed, displacement, n);
+    }
+
+    /**
+     * Appends a name to the arena, growing it if needed.
+     *
+     * @param offset the offset to write the name at.
+     * @param name   the name.
+     * @return the end of the name.
+     * @throws IllegalStateException if the arena is full.
+     */
+    private int append(int offset, String name) {
+        int length = name.length();
+        ensureArena((long) offset + length);
+        for (int i = 0; i < length; i++) {
+            char c = name.charAt(i);
+            if (c >= 0x80) {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                ensureArena((long) offset + bytes.length);
+                System.arraycopy(bytes, 0, arena, offset, bytes.length);
+                return offset + bytes.length;
+            }
+            arena[offset + i] = (byte) c;
+        }
+        return offset + length;
+    }
+
+    /**
+     * Makes sure the arena has at least a length.
+     *
+     * @param length the required length.
+     * @throws IllegalStateException if the length is above the largest length of an array.
+     */
+    private void ensureArena(long length) {
+        if (length <= arena.length) return;
+        if (length > Integer.MAX_VALUE - 8) throw new IllegalStateException("The names are too large.");
+        arena = Arrays.copyOf(arena, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(length, (long) arena.length << 1)));
+    }
+
+    /**
+     * Returns the entry of a person in a slot of the perfect hash function.
+     *
+     * @param id the ID of the person.
+     * @return the entry. See {@link NameDictionary#slots}.
+     */
+    private long entry(int id) {
+        return (long) offsets[id] << 32 | id;
+    }
+
+    /**
+     * Checks if the name of a person is a name.
+     *
+     * @param id   the ID of the person.
+     * @param name the name.
+     * @return {@code true} if the person has the name, {@code false} otherwise.
+     */
+    private boolean matches(int id, String name) {
+        return matches(id, offsets[id], name);
+    }
+
+    /**
+     * Checks if the name of a person is a name, by comparing the name to the UTF-8 bytes in the arena, without
+     * allocating unless they are not valid UTF-8.
+     *
+     * @param id     the ID of the person.
+     * @param offset the offset of the name of the person.
+     * @param name   the name.
+     * @return {@code true} if the person has the name, {@code false} otherwise.
+     */
+    private boolean matches(int id, int offset, String name) {
+        byte[] arena = this.arena;
+        int length = name.length();
+        int i = 0;
+        if (offset + length <= arena.length) {
+            while (i < length && arena[offset + i] >= 0) {
+                if (name.charAt(i) != arena[offset + i]) return false;
+                i++;
+            }
+            if (i == length) return offsets[id + 1] == offset + length;
+        }
+        int end = offsets[id + 1];
+        if (end - offset < length) return false;
+        i = 0;
+        while (offset < end) {
+            int b = arena[offset];
+            if (b >= 0) {
+                if (i == length || name.charAt(i++) != b) return false;
+                offset++;
+                continue;
+            }
+            int codePoint = decode(arena, offset, end);
+            if (codePoint < 0) return name(id).equals(name);
+            offset += width(b);
+            if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                if (i + 1 >= length || name.charAt(i) != Character.highSurrogate(codePoint)
+                        || name.charAt(i + 1) != Character.lowSurrogate(codePoint)) return false;
+                i += 2;
+            } else {
+                if (i == length || name.charAt(i++) != codePoint) return false;
+            }
+        }
+        return i == length;
+    }
+
+    /**
+     * Checks if two people have the same name, by comparing their bytes in the arena.
+     *
+     * @param id1 the ID of the first person.
+     * @param id2 the ID of the second person.
+     * @return {@code true} if the names are the same, {@code false} otherwise.
+     */
+    private boolean sameName(int id1, int id2) {
+        return Arrays.equals(arena, offsets[id1], offsets[id1 + 1], arena, offsets[id2], offsets[id2 + 1]);
+    }
+
+    /**
+     * Computes the hash code of the name of a person, as {@link String#hashCode()} would, by decoding its UTF-8 bytes
+     * in place, without allocating unless they are not valid UTF-8.
+     *
+     * @param id the ID of the person.
+     * @return the hash code of the name.
+     */
+    private int hash(int id) {
+        int hash = 0;
+        for (int offset = offsets[id], end = offsets[id + 1]; offset < end; ) {
+            int b = arena[offset];
+            if (b >= 0) {
+                hash = 31 * hash + b;
+                offset++;
+                continue;
+            }
+            int codePoint = decode(arena, offset, end);
+            if (codePoint < 0) return name(id).hashCode();
+            offset += width(b);
+            if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                hash = 31 * (31 * hash + Character.highSurrogate(codePoint)) + Character.lowSurrogate(codePoint);
+            } else {
+                hash = 31 * hash + codePoint;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Decodes a code point of two to four bytes, rejecting the same sequences the UTF-8 decoder of the JDK replaces,
+     * i.e. overlong forms, surrogates, code points above {@code U+10FFFF}, and sequences that are cut short.
+     *
+     * @param bytes  the bytes.
+     * @param offset the offset of the first byte, which is not ASCII.
+     * @param end    the end of the bytes that may be read.
+     * @return the code point, or -1 if the bytes are not valid UTF-8.
+     */
+    private static int decode(byte[] bytes, int offset, int end) {
+        int b0 = bytes[offset] & 0xFF;
+        int width = width(b0);
+        if (width == 0 || offset + width > end) return -1;
+        int b1 = bytes[offset + 1] & 0xFF;
+        int low = b0 == 0xE0 ? 0xA0 : b0 == 0xF0 ? 0x90 : 0x80;
+        int high = b0 == 0xED ? 0x9F : b0 == 0xF4 ? 0x8F : 0xBF;
+        if (b1 < low || b1 > high) return -1;
+        if (width == 2) return (b0 & 0x1F) << 6 | b1 & 0x3F;
+        int b2 = bytes[offset + 2] & 0xFF;
+        if ((b2 & 0xC0) != 0x80) return -1;
+        if (width == 3) return (b0 & 0x0F) << 12 | (b1 & 0x3F) << 6 | b2 & 0x3F;
+        int b3 = bytes[offset + 3] & 0xFF;
+        if ((b3 & 0xC0) != 0x80) return -1;
+        return (b0 & 0x07) << 18 | (b1 & 0x3F) << 12 | (b2 & 0x3F) << 6 | b3 & 0x3F;
+    }
+
+    /**
+     * Returns the number of bytes of a UTF-8 sequence, by its first byte.
+     *
+     * @param b the first byte.
+     * @return two to four, or zero if the byte cannot start a sequence of more than one byte.
+     */
+    private static int width(int b) {
+        b &= 0xFF;
+        return b >= 0xC2 && b <= 0xDF ? 2 : b >= 0xE0 && b <= 0xEF ? 3 : b >= 0xF0 && b <= 0xF4 ? 4 : 0;
+    }
+
+    /**
+     * Finds the bucket of a key of the perfect hash function.
+     *
+     * @param mixed   the mixed key.
+     * @param buckets the number of buckets.
+     * @return the bucket.
+     */
+    private static int bucket(long mixed, int buckets) {
+        return (int) (((mixed >>> 32) * buckets) >>> 32);
+    }
+
+    /**
+     * Finds the slot of a key of the perfect hash function under a displacement.
+     *
+     * @param mixed        the mixed key.
+     * @param displacement the displacement of the bucket of the key.
+     * @param slots        the number of slots.
+     * @return the slot.
+     */
+    private static int slot(long mixed, int displacement, int slots) {
+        long key = (mixed ^ displacement * 0x9E3779B97F4A7C15L) * 0xC4CEB9FE1A85EC53L;
+        return (int) (((key ^ key >>> 29) >>> 32) * slots >>> 32);
+    }
+
+    /**
+     * Mixes the bits of a key, so that every bit of the result depends on every bit of the key.
+     *
+     * @param key the key.
+     * @return the mixed key.
+     */
+    private static long mix(long key) {
+        key = (key ^ (key >>> 33)) * 0xFF51AFD7ED558CCDL;
+        key = (key ^ (key >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return key ^ (key >>> 33);
+    }
+
+    /**
+     * Spreads the hash code of a name, so that similar names do not end up in neighbouring slots of the overflow
+     * table.
+     *
+     * @param hash the hash code.
+     * @return the spread hash code.
+     */
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
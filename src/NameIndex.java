@@ -0,0 +1,431 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * This class keeps the people of a {@link PersonStore} sorted by name, in a B+-tree that is updated as people are
+ * added, so they can be listed in order, a page at a time, or by prefix or range, without sorting them again.
+ * <p>
+ * Each entry holds the key of a name under a {@link NameCollation}, the name itself, and the ID of the person that
+ * currently has it; entries are ordered by key, then by name. The leaves are linked, so a scan walks down the tree once
+ * and then along the leaves. Only people that can be found by name are in the index: adding a person with a name that
+ * is already in it points the entry to the new person.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+class NameIndex {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The maximum number of entries of a leaf, and of children of an inner node.
+     */
+    private static final int ORDER = 64;
+
+    /**
+     * The number of entries each leaf is filled with when the index is built in bulk, leaving room for later additions.
+     */
+    private static final int BULK_FILL = ORDER * 3 / 4;
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The collation of the names.
+     */
+    private final NameCollation collation;
+
+    /**
+     * The root of the tree.
+     */
+    private Node root;
+
+    /**
+     * The first leaf of the tree.
+     */
+    private Leaf first;
+
+    /**
+     * The number of entries in the index.
+     */
+    private int size;
+
+    /**
+     * The node that was split off by the last insertion into a node, or {@code null} if the node was not split.
+     */
+    private Node split;
+
+    /**
+     * The key of the first entry under {@link NameIndex#split}.
+     */
+    private String splitKey;
+
+    /**
+     * The name of the first entry under {@link NameIndex#split}.
+     */
+    private String splitName;
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link NameIndex} class, that creates an empty index.
+     *
+     * @param collation the collation of the names.
+     */
+    NameIndex(NameCollation collation) {
+        this.collation = collation;
+        first = new Leaf();
+        root = first;
+    }
+
+    // ######################### METHODS #########################
+
+    /**
+     * Builds the index of the people of a store in bulk, by sorting them once and filling the leaves in order.
+     *
+     * @param people    the people to index.
+     * @param collation the collation of the names.
+     * @return the index.
+     */
+    static NameIndex build(PersonStore people, NameCollation collation) {
+        NameIndex index = new NameIndex(collation);
+        Entry[] entries = IntStream.range(0, people.size())
+                .parallel()
+                .filter(people::isCurrent)
+                .mapToObj(id -> new Entry(collation.key(people.name(id)), people.name(id), id))
+                .toArray(Entry[]::new);
+        Arrays.parallelSort(entries, (a, b) -> {
+            int comparison = a.key.compareTo(b.key);
+            return comparison != 0 ? comparison : a.name.compareTo(b.name);
+        });
+        if (entries.length == 0) return index;
+
+        Node[] level = new Node[(entries.length + BULK_FILL - 1) / BULK_FILL];
+        String[] firstKeys = new String[level.length];
+        String[] firstNames = new String[level.length];
+        Leaf previous = null;
+        for (int i = 0; i < level.length; i++) {
+            Leaf leaf = new Leaf();
+            int from = i * BULK_FILL;
+            int count = Math.min(BULK_FILL, entries.length - from);
+            for (int j = 0; j < count; j++) {
+                Entry entry = entries[from + j];
+                leaf.keys[j] = entry.key;
+                leaf.names[j] = entry.name;
+                leaf.ids[j] = entry.id;
+            }
+            leaf.count = count;
+            if (previous == null) index.first = leaf;
+            else previous.next = leaf;
+            previous = leaf;
+            level[i] = leaf;
+            firstKeys[i] = leaf.keys[0];
+            firstNames[i] = leaf.names[0];
+        }
+        while (level.length > 1) {
+            int parents = (level.length + BULK_FILL - 1) / BULK_FILL;
+            Node[] up = new Node[parents];
+            String[] upKeys = new String[parents];
+            String[] upNames = new String[parents];
+            for (int i = 0; i < parents; i++) {
+                Inner inner = new Inner();
+                int from = i * BULK_FILL;
+                int count = Math.min(BULK_FILL, level.length - from);
+                for (int j = 0; j < count; j++) {
+                    inner.children[j] = level[from + j];
+                    if (j > 0) {
+                        inner.keys[j - 1] = firstKeys[from + j];
+                        inner.names[j - 1] = firstNames[from + j];
+                    }
+                }
+                inner.count = count - 1;
+                up[i] = inner;
+                upKeys[i] = firstKeys[from];
+                upNames[i] = firstNames[from];
+            }
+            level = up;
+            firstKeys = upKeys;
+            firstNames = upNames;
+        }
+        index.root = level[0];
+        index.size = entries.length;
+        return index;
+    }
+
+    /**
+     * Points the entry of a name to a person, adding the entry if the name is not in the index yet.
+     *
+     * @param name the name.
+     * @param id   the ID of the person that has the name.
+     */
+    void put(String name, int id) {
+        String key = collation.key(name);
+        if (!insert(root, key, name, id)) return;
+        Inner parent = new Inner();
+        parent.children[0] = root;
+        parent.children[1] = split;
+        parent.keys[0] = splitKey;
+        parent.names[0] = splitName;
+        parent.count = 1;
+        root = parent;
+        split = null;
+    }
+
+    /**
+     * Inserts an entry under a node, splitting the node if it overflows.
+     *
+     * @param node the node.
+     * @param key  the key of the name.
+     * @param name the name.
+     * @param id   the ID of the person.
+     * @return {@code true} if the node was split, with the new node in {@link NameIndex#split}, {@code false}
+     * otherwise.
+     */
+    private boolean insert(Node node, String key, String name, int id) {
+        if (node instanceof Leaf leaf) {
+            int position = search(leaf.keys, leaf.names, leaf.count, key, name);
+            if (position >= 0) {
+                leaf.ids[position] = id;
+                return false;
+            }
+            position = -position - 1;
+            int move = leaf.count - position;
+            System.arraycopy(leaf.keys, position, leaf.keys, position + 1, move);
+            System.arraycopy(leaf.names, position, leaf.names, position + 1, move);
+            System.arraycopy(leaf.ids, position, leaf.ids, position + 1, move);
+            leaf.keys[position] = key;
+            leaf.names[position] = name;
+            leaf.ids[position] = id;
+            leaf.count++;
+            size++;
+            if (leaf.count <= ORDER) return false;
+            splitLeaf(leaf);
+            return true;
+        }
+
+        Inner inner = (Inner) node;
+        int child = childIndex(inner, key, name);
+        if (!insert(inner.children[child], key, name, id)) return false;
+        int move = inner.count - child;
+        System.arraycopy(inner.keys, child, inner.keys, child + 1, move);
+        System.arraycopy(inner.names, child, inner.names, child + 1, move);
+        System.arraycopy(inner.children, child + 1, inner.children, child + 2, move);
+        inner.keys[child] = splitKey;
+        inner.names[child] = splitName;
+        inner.children[child + 1] = split;
+        inner.count++;
+        if (inner.count < ORDER) return false;
+        splitInner(inner);
+        return true;
+    }
+
+    /**
+     * Moves the upper half of the entries of a full leaf to a new leaf, which is linked after it.
+     *
+     * @param leaf the leaf.
+     */
+    private void splitLeaf(Leaf leaf) {
+        Leaf right = new Leaf();
+        int keep = leaf.count / 2;
+        int move = leaf.count - keep;
+        System.arraycopy(leaf.keys, keep, right.keys, 0, move);
+        System.arraycopy(leaf.names, keep, right.names, 0, move);
+        System.arraycopy(leaf.ids, keep, right.ids, 0, move);
+        Arrays.fill(leaf.keys, keep, leaf.count, null);
+        Arrays.fill(leaf.names, keep, leaf.count, null);
+        leaf.count = keep;
+        right.count = move;
+        right.next = leaf.next;
+        leaf.next = right;
+        split = right;
+        splitKey = right.keys[0];
+        splitName = right.names[0];
+    }
+
+    /**
+     * Moves the upper half of the children of a full inner node to a new node. The separator in the middle moves up to
+     * the parent.
+     *
+     * @param inner the inner node.
+     */
+    private void splitInner(Inner inner) {
+        Inner right = new Inner();
+        int middle = inner.count / 2;
+        int move = inner.count - middle - 1;
+        System.arraycopy(inner.keys, middle + 1, right.keys, 0, move);
+        System.arraycopy(inner.names, middle + 1, right.names, 0, move);
+        System.arraycopy(inner.children, middle + 1, right.children, 0, move + 1);
+        splitKey = inner.keys[middle];
+        splitName = inner.names[middle];
+        Arrays.fill(inner.keys, middle, inner.count, null);
+        Arrays.fill(inner.names, middle, inner.count, null);
+        Arrays.fill(inner.children, middle + 1, inner.count + 1, null);
+        inner.count = middle;
+        right.count = move;
+        split = right;
+    }
+
+    /**
+     * Scans the entries in order, from a name on, and collects the IDs of their people.
+     *
+     * @param from      the name to start from, or {@code null} to start from the first entry.
+     * @param exclusive whether the entry of the starting name itself is skipped, e.g. when it was the last of a page.
+     * @param prefix    the prefix the keys of the entries must start with, under the collation, or {@code null}.
+     * @param to        the name whose key ends the scan, exclusive, or {@code null} to scan to the end.
+     * @param limit     the maximum number of entries to collect.
+     * @return the IDs of the people of the entries, in order.
+     */
+    int[] scan(String from, boolean exclusive, String prefix, String to, int limit) {
+        String prefixKey = prefix == null ? null : collation.key(prefix);
+        String toKey = to == null ? null : collation.key(to);
+        Leaf leaf = first;
+        int position = 0;
+        if (from != null) {
+            String key = collation.key(from);
+            String name = exclusive ? from : "";
+            Node node = root;
+            while (node instanceof Inner inner) node = inner.children[childIndex(inner, key, name)];
+            leaf = (Leaf) node;
+            position = search(leaf.keys, leaf.names, leaf.count, key, name);
+            position = position >= 0 ? position + (exclusive ? 1 : 0) : -position - 1;
+        }
+
+        int[] ids = new int[Math.min(limit, Math.min(size, 1024))];
+        int count = 0;
+        for (; leaf != null && count < limit; leaf = leaf.next, position = 0) {
+            for (; position < leaf.count && count < limit; position++) {
+                String key = leaf.keys[position];
+                if (prefixKey != null && !key.startsWith(prefixKey) || toKey != null && key.compareTo(toKey) >= 0) {
+                    return Arrays.copyOf(ids, count);
+                }
+                if (count == ids.length) ids = Arrays.copyOf(ids, Math.min(limit, Math.max(count << 1, 16)));
+                ids[count++] = leaf.ids[position];
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * Returns the number of entries in the index.
+     *
+     * @return the number of entries.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the collation of the names.
+     *
+     * @return the collation.
+     */
+    NameCollation collation() {
+        return collation;
+    }
+
+    /**
+     * Finds the child of an inner node that an entry belongs under.
+     *
+     * @param inner the inner node.
+     * @param key   the key of the name.
+     * @param name  the name.
+     * @return the index of the child.
+     */
+    private static int childIndex(Inner inner, String key, String name) {
+        int position = search(inner.keys, inner.names, inner.count, key, name);
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+
+    /**
+     * Searches sorted entries for an entry, by binary search.
+     *
+     * @param keys  the keys of the entries.
+     * @param names the names of the entries.
+     * @param count the number of entries.
+     * @param key   the key of the entry.
+     * @param name  the name of the entry.
+     * @return the position of the entry, if it is found; otherwise, {@code (-(insertion point) - 1)}.
+     */
+    private static int search(String[] keys, String[] names, int count, String key, String name) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = keys[middle].compareTo(key);
+            if (comparison == 0) comparison = names[middle].compareTo(name);
+            if (comparison < 0) low = middle + 1;
+            else if (comparison > 0) high = middle - 1;
+            else return middle;
+        }
+        return -(low + 1);
+    }
+
+    // ####################### NESTED TYPES #######################
+
+    /**
+     * An entry of the index, while it is built in bulk.
+     *
+     * @param key  the key of the name.
+     * @param name the name.
+     * @param id   the ID of the person.
+     */
+    private record Entry(String key, String name, int id) {
+    }
+
+    /**
+     * A node of the tree.
+     */
+    private abstract static class Node {
+
+        /**
+         * The number of entries of a leaf, or of separators of an inner node.
+         */
+        int count;
+    }
+
+    /**
+     * A leaf of the tree, which holds entries.
+     */
+    private static final class Leaf extends Node {
+
+        /**
+         * The keys of the names of the entries.
+         */
+        final String[] keys = new String[ORDER + 1];
+
+        /**
+         * The names of the entries.
+         */
+        final String[] names = new String[ORDER + 1];
+
+        /**
+         * The IDs of the people of the entries.
+         */
+        final int[] ids = new int[ORDER + 1];
+
+        /**
+         * The next leaf, or {@code null} if this is the last one.
+         */
+        Leaf next;
+    }
+
+    /**
+     * An inner node of the tree, whose children are separated by the first entry under each child but the first.
+     */
+    private static final class Inner extends Node {
+
+        /**
+         * The keys of the separators.
+         */
+        final String[] keys = new String[ORDER];
+
+        /**
+         * The names of the separators.
+         */
+        final String[] names = new String[ORDER];
+
+        /**
+         * The children of the node, one more than the separators.
+         */
+        final Node[] children = new Node[ORDER + 1];
+    }
+}
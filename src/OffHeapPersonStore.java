@@ -0,0 +1,536 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * This class is a {@link PersonStore} that keeps the people outside the Java heap, so the garbage collector does not
+ * have to trace them, however large the tree grows. The memory is either anonymous, i.e. direct buffers, or mapped
+ * from a scratch file, which lets the operating system page the tree out when memory is short.
+ * <p>
+ * Each person is a fixed-size record of {@value OffHeapPersonStore#RECORD_SIZE} bytes, with the IDs of their father,
+ * mother and spouse, the offset, count and capacity of their segment of children, the offset of their name and their
+ * gender, so a walk up the tree reads one record per person. The children are kept in a shared array of IDs, in the
+ * same segments as on the heap, and the names are kept as UTF-8 in an arena, one after the other in order of ID, and
+ * found through an open-addressing table of IDs and hashes. A {@link Person} is a view over a record, and names are
+ * only decoded when they are asked for.
+ * <p>
+ * The memory is grown by allocating a buffer of twice the size and copying into it; the old buffer is released once
+ * no reader holds it anymore. A mapped store appends every buffer to its file, which is never shrunk, and which stays
+ * in place when the store is gone. A buffer is indexed by {@code int}, so a store holds at most
+ * {@value OffHeapPersonStore#MAX_PEOPLE} people, and at most 2 GB of names.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+class OffHeapPersonStore extends PersonStore {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The size of the record of a person, in bytes.
+     */
+    static final int RECORD_SIZE = 32;
+
+    /**
+     * The largest number of people a store can hold.
+     */
+    static final int MAX_PEOPLE = Integer.MAX_VALUE / RECORD_SIZE;
+
+    /**
+     * The offset of the ID of the father in a record.
+     */
+    private static final int FATHER = 0;
+
+    /**
+     * The offset of the ID of the mother in a record.
+     */
+    private static final int MOTHER = 4;
+
+    /**
+     * The offset of the ID of the spouse in a record.
+     */
+    private static final int SPOUSE = 8;
+
+    /**
+     * The offset of the offset of the children in a record.
+     */
+    private static final int CHILD_OFFSET = 12;
+
+    /**
+     * The offset of the number of children in a record.
+     */
+    private static final int CHILD_COUNT = 16;
+
+    /**
+     * The offset of the capacity of the segment of children in a record.
+     */
+    private static final int CHILD_CAPACITY = 20;
+
+    /**
+     * The offset of the offset of the name in a record.
+     */
+    private static final int NAME_OFFSET = 24;
+
+    /**
+     * The offset of the ordinal of the gender in a record.
+     */
+    private static final int GENDER = 28;
+
+    /**
+     * The number of people the store can hold before its records have to grow.
+     */
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * The amount of unused space that is tolerated in the children before they are compacted.
+     */
+    private static final int COMPACTION_SLACK = 1024;
+
+    /**
+     * The genders, indexed by the values stored in the records.
+     */
+    private static final Gender[] GENDERS = Gender.values();
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The file the memory is mapped from, or {@code null} if it is anonymous.
+     */
+    private final FileChannel file;
+
+    /**
+     * The end of the used part of {@link OffHeapPersonStore#file}.
+     */
+    private long fileEnd;
+
+    /**
+     * The record of each person.
+     */
+    private ByteBuffer records;
+
+    /**
+     * The IDs of the children of all people.
+     */
+    private IntBuffer children;
+
+    /**
+     * The names of all people, as UTF-8, one after the other in order of ID.
+     */
+    private ByteBuffer names;
+
+    /**
+     * The open-addressing hash table that maps names to IDs. Each slot is two integers: the ID plus one, or zero if the
+     * slot is empty, and the hash of the name, so most names that do not match are told apart without reading them.
+     */
+    private IntBuffer nameSlots;
+
+    /**
+     * The number of slots of {@link OffHeapPersonStore#nameSlots}, a power of two.
+     */
+    private int slotCount;
+
+    /**
+     * The number of people in the store.
+     */
+    private int size;
+
+    /**
+     * The end of the used part of {@link OffHeapPersonStore#names}.
+     */
+    private int namesEnd;
+
+    /**
+     * The end of the used part of {@link OffHeapPersonStore#children}.
+     */
+    private int childrenEnd;
+
+    /**
+     * The total number of parent-child links in the store.
+     */
+    private int childLinks;
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link OffHeapPersonStore} class, which keeps the people in anonymous memory.
+     */
+    OffHeapPersonStore() {
+        super(1);
+        file = null;
+        allocateAll(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor method for the {@link OffHeapPersonStore} class, which keeps the people in memory mapped from a
+     * scratch file. The file is created, or emptied if it exists.
+     *
+     * @param path the path of the file.
+     * @throws IOException if the file cannot be created.
+     */
+    OffHeapPersonStore(Path path) throws IOException {
+        super(1);
+        file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        allocateAll(DEFAULT_CAPACITY);
+    }
+
+    // ####################### METHODS #######################
+
+    @Override
+    int add(String name, Gender gender) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (size == MAX_PEOPLE) throw new IllegalStateException("The off-heap store is full.");
+        int id = size;
+        int record = id * RECORD_SIZE;
+        if (record + RECORD_SIZE > records.capacity()) records = grow(records, record, record + RECORD_SIZE);
+        long nameEnd = (long) namesEnd + bytes.length;
+        if (nameEnd > names.capacity()) names = grow(names, namesEnd, nameEnd);
+        records.putInt(record + FATHER, NONE);
+        records.putInt(record + MOTHER, NONE);
+        records.putInt(record + SPOUSE, NONE);
+        records.putInt(record + CHILD_OFFSET, childrenEnd);
+        records.putInt(record + CHILD_COUNT, 0);
+        records.putInt(record + CHILD_CAPACITY, 0);
+        records.putInt(record + NAME_OFFSET, namesEnd);
+        records.put(record + GENDER, (byte) gender.ordinal());
+        names.put(namesEnd, bytes);
+        namesEnd += bytes.length;
+        size++;
+        if (size * 2L > slotCount) rehash(slotCount << 1);
+        putName(id, name);
+        return id;
+    }
+
+    @Override
+    int idOf(String name) {
+        int hash = hash(name);
+        int mask = slotCount - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = nameSlots.get(slot << 1);
+            if (entry == 0) return NONE;
+            if (nameSlots.get((slot << 1) + 1) == hash && hasName(entry - 1, name)) return entry - 1;
+        }
+    }
+
+    @Override
+    boolean isCurrent(int id) {
+        return idOf(name(id)) == id;
+    }
+
+    @Override
+    void addChild(int parent, int child) {
+        if (hasChild(parent, child)) return;
+        int record = parent * RECORD_SIZE;
+        int count = records.getInt(record + CHILD_COUNT);
+        if (count == records.getInt(record + CHILD_CAPACITY)) growSegment(parent);
+        children.put(records.getInt(record + CHILD_OFFSET) + count, child);
+        records.putInt(record + CHILD_COUNT, count + 1);
+        childLinks++;
+        changed();
+    }
+
+    @Override
+    boolean hasChild(int parent, int child) {
+        int record = parent * RECORD_SIZE;
+        int from = records.getInt(record + CHILD_OFFSET);
+        int to = from + records.getInt(record + CHILD_COUNT);
+        for (int i = from; i < to; i++) {
+            if (children.get(i) == child) return true;
+        }
+        return false;
+    }
+
+    @Override
+    void compact() {
+        IntBuffer packed = allocate(Math.max(childLinks, 1) * 4L).asIntBuffer();
+        int end = 0;
+        for (int id = 0; id < size; id++) {
+            int record = id * RECORD_SIZE;
+            int count = records.getInt(record + CHILD_COUNT);
+            packed.put(end, children, records.getInt(record + CHILD_OFFSET), count);
+            records.putInt(record + CHILD_OFFSET, end);
+            records.putInt(record + CHILD_CAPACITY, count);
+            end += count;
+        }
+        children = packed;
+        childrenEnd = end;
+    }
+
+    @Override
+    void restore(byte[] names, int[] nameOffsets, byte[] genders, int[] fathers, int[] mothers, int[] spouses,
+                 int[] childCounts, int[] children) {
+        if (size != 0) throw new IllegalStateException("Cannot restore people into a store that is not empty.");
+        int count = genders.length;
+        if (count > MAX_PEOPLE) throw new IllegalStateException("The off-heap store is full.");
+        allocateAll(count);
+        this.children = allocate(Math.max(children.length, 1) * 4L).asIntBuffer();
+        this.children.put(0, children);
+        namesEnd = nameOffsets[count];
+        if (namesEnd > this.names.capacity()) this.names = grow(this.names, 0, namesEnd);
+        this.names.put(0, names, 0, namesEnd);
+        int end = 0;
+        for (int id = 0; id < count; id++) {
+            int record = id * RECORD_SIZE;
+            records.putInt(record + FATHER, fathers[id]);
+            records.putInt(record + MOTHER, mothers[id]);
+            records.putInt(record + SPOUSE, spouses[id]);
+            records.putInt(record + CHILD_OFFSET, end);
+            records.putInt(record + CHILD_COUNT, childCounts[id]);
+            records.putInt(record + CHILD_CAPACITY, childCounts[id]);
+            records.putInt(record + NAME_OFFSET, nameOffsets[id]);
+            records.put(record + GENDER, genders[id]);
+            end += childCounts[id];
+        }
+        childrenEnd = end;
+        childLinks = end;
+        size = count;
+        for (int id = 0; id < count; id++) putName(id, name(id));
+        changed();
+    }
+
+    /**
+     * Allocates the records, names, children and name table of an empty store.
+     *
+     * @param capacity the number of people the store can hold before its records have to grow.
+     */
+    private void allocateAll(int capacity) {
+        capacity = Math.max(capacity, 1);
+        records = allocate((long) capacity * RECORD_SIZE);
+        names = allocate(capacity * 16L);
+        children = allocate(capacity * 4L).asIntBuffer();
+        slotCount = Integer.highestOneBit(capacity) << 2;
+        nameSlots = allocate(slotCount * 8L).asIntBuffer();
+    }
+
+    /**
+     * Allocates zeroed memory, from the file if the store is mapped, or anonymous memory otherwise.
+     *
+     * @param bytes the number of bytes.
+     * @return the memory, in native byte order.
+     * @throws IllegalStateException if the memory is larger than a buffer can be, or the file cannot be mapped.
+     */
+    private ByteBuffer allocate(long bytes) {
+        if (bytes > Integer.MAX_VALUE) throw new IllegalStateException("The off-heap store is full.");
+        if (file == null) return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+        try {
+            ByteBuffer buffer = file.map(FileChannel.MapMode.READ_WRITE, fileEnd, bytes);
+            fileEnd += bytes;
+            return buffer.order(ByteOrder.nativeOrder());
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot map the off-heap store: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Grows a buffer to twice its size, or more if needed, copying the used part of it.
+     *
+     * @param buffer   the buffer.
+     * @param used     the number of bytes used.
+     * @param required the number of bytes the buffer must have room for.
+     * @return the grown buffer.
+     */
+    private ByteBuffer grow(ByteBuffer buffer, int used, long required) {
+        ByteBuffer grown = allocate(Math.max(Math.min((long) buffer.capacity() << 1, Integer.MAX_VALUE), required));
+        grown.put(0, buffer, 0, used);
+        return grown;
+    }
+
+    /**
+     * Moves the children of a person to the end of the children, doubling their capacity. If the segment is already at
+     * the end, it is extended in place instead.
+     *
+     * @param parent the ID of the parent whose segment is full.
+     */
+    private void growSegment(int parent) {
+        int record = parent * RECORD_SIZE;
+        int offset = records.getInt(record + CHILD_OFFSET);
+        int count = records.getInt(record + CHILD_COUNT);
+        int capacity = Math.max(2, count << 1);
+        if (offset + count != childrenEnd) {
+            if (childrenEnd - childLinks > childLinks + COMPACTION_SLACK) {
+                compact();
+                offset = records.getInt(record + CHILD_OFFSET);
+            }
+            ensureChildren(childrenEnd + capacity);
+            children.put(childrenEnd, children, offset, count);
+            offset = childrenEnd;
+            records.putInt(record + CHILD_OFFSET, offset);
+        } else {
+            ensureChildren(offset + capacity);
+        }
+        records.putInt(record + CHILD_CAPACITY, capacity);
+        childrenEnd = offset + capacity;
+    }
+
+    /**
+     * Makes sure the children have room for at least the specified number of IDs.
+     *
+     * @param length the required number of IDs.
+     */
+    private void ensureChildren(int length) {
+        if (length <= children.capacity()) return;
+        IntBuffer grown = allocate(Math.max(length, (long) children.capacity() << 1) * 4L).asIntBuffer();
+        grown.put(0, children, 0, childrenEnd);
+        children = grown;
+    }
+
+    /**
+     * Rebuilds the name table with the specified number of slots.
+     *
+     * @param slots the new number of slots, a power of two.
+     */
+    private void rehash(int slots) {
+        IntBuffer old = nameSlots;
+        int oldCount = slotCount;
+        nameSlots = allocate(slots * 8L).asIntBuffer();
+        slotCount = slots;
+        for (int i = 0; i < oldCount; i++) {
+            int entry = old.get(i << 1);
+            if (entry == 0) continue;
+            int hash = old.get((i << 1) + 1);
+            int slot = hash & (slots - 1);
+            while (nameSlots.get(slot << 1) != 0) slot = (slot + 1) & (slots - 1);
+            nameSlots.put(slot << 1, entry);
+            nameSlots.put((slot << 1) + 1, hash);
+        }
+    }
+
+    /**
+     * Points the name of the person with the specified ID to that person in the name table.
+     *
+     * @param id   the ID of the person.
+     * @param name the name of the person.
+     */
+    private void putName(int id, String name) {
+        int hash = hash(name);
+        int mask = slotCount - 1;
+        int slot = hash & mask;
+        for (int entry; (entry = nameSlots.get(slot << 1)) != 0; slot = (slot + 1) & mask) {
+            if (nameSlots.get((slot << 1) + 1) == hash && hasName(entry - 1, name)) break;
+        }
+        nameSlots.put(slot << 1, id + 1);
+        nameSlots.put((slot << 1) + 1, hash);
+    }
+
+    /**
+     * Checks if a person has a name. A name of ASCII characters is compared with the arena as it is, and any other name
+     * is encoded first.
+     *
+     * @param id   the ID of the person.
+     * @param name the name.
+     * @return {@code true} if the person has the name, {@code false} otherwise.
+     */
+    private boolean hasName(int id, String name) {
+        int offset = records.getInt(id * RECORD_SIZE + NAME_OFFSET);
+        int length = nameEnd(id) - offset;
+        if (length < name.length()) return false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= 0x80) return Arrays.equals(nameBytes(id), name.getBytes(StandardCharsets.UTF_8));
+            if (names.get(offset + i) != c) return false;
+        }
+        return length == name.length();
+    }
+
+    /**
+     * Copies the name of a person out of the arena.
+     *
+     * @param id the ID of the person.
+     * @return the name, as UTF-8.
+     */
+    private byte[] nameBytes(int id) {
+        int offset = records.getInt(id * RECORD_SIZE + NAME_OFFSET);
+        byte[] name = new byte[nameEnd(id) - offset];
+        names.get(offset, name);
+        return name;
+    }
+
+    /**
+     * Returns the end of the name of a person in the arena, which is where the name of the next person starts.
+     *
+     * @param id the ID of the person.
+     * @return the end of the name.
+     */
+    private int nameEnd(int id) {
+        return id + 1 < size ? records.getInt((id + 1) * RECORD_SIZE + NAME_OFFSET) : namesEnd;
+    }
+
+    /**
+     * Spreads the hash code of a name, so that similar names do not end up in neighbouring slots.
+     *
+     * @param name the name.
+     * @return the spread hash code.
+     */
+    private static int hash(String name) {
+        int h = name.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // ####################### GETTERS #######################
+
+    @Override
+    int size() {
+        return size;
+    }
+
+    @Override
+    String name(int id) {
+        return new String(nameBytes(id), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    Gender gender(int id) {
+        return GENDERS[records.get(id * RECORD_SIZE + GENDER)];
+    }
+
+    @Override
+    int father(int id) {
+        return records.getInt(id * RECORD_SIZE + FATHER);
+    }
+
+    @Override
+    int mother(int id) {
+        return records.getInt(id * RECORD_SIZE + MOTHER);
+    }
+
+    @Override
+    int spouse(int id) {
+        return records.getInt(id * RECORD_SIZE + SPOUSE);
+    }
+
+    @Override
+    int childCount(int id) {
+        return records.getInt(id * RECORD_SIZE + CHILD_COUNT);
+    }
+
+    @Override
+    int child(int id, int index) {
+        return children.get(records.getInt(id * RECORD_SIZE + CHILD_OFFSET) + index);
+    }
+
+    // ####################### SETTERS #######################
+
+    @Override
+    void setFather(int id, int father) {
+        records.putInt(id * RECORD_SIZE + FATHER, father);
+        changed();
+    }
+
+    @Override
+    void setMother(int id, int mother) {
+        records.putInt(id * RECORD_SIZE + MOTHER, mother);
+        changed();
+    }
+
+    @Override
+    void setSpouse(int id, int spouse) {
+        records.putInt(id * RECORD_SIZE + SPOUSE, spouse);
+        changed();
+    }
+}
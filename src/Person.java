@@ -1,7 +1,8 @@
 import java.util.*;
 
 /**
- * This class represents a person.
+ * This class represents a person. A person is a lightweight view over a record in a {@link PersonStore}; two views
+ * over the same record are equal.
  *
  * @author George Gkonis
  * @version 1.0
@@ -11,47 +12,38 @@ public class Person {
     // ####################### ATTRIBUTES #######################
 
     /**
-     * The person's name.
+     * The store that holds the person's data.
      */
-    private final String name;
+    private PersonStore store;
 
     /**
-     * The person's gender.
+     * The person's ID in the {@link Person#store}.
      */
-    private final Gender gender;
-
-    /**
-     * The person's father.
-     */
-    private Person father;
-
-    /**
-     * The person's mother.
-     */
-    private Person mother;
-
-    /**
-     * The person's spouse.
-     */
-    private Person spouse;
-
-    /**
-     * The person's children.
-     */
-    private final Set<Person> children;
+    private int id;
 
     // ####################### CONSTRUCTORS #######################
 
     /**
-     * Constructor method for the {@link Person} class.
+     * Constructor method for the {@link Person} class. The person is kept in a store of its own, until it is added to a
+     * {@link GenealogicalTree}.
      *
      * @param name   the person's name.
      * @param gender the person's gender.
      */
     public Person(String name, Gender gender) {
-        this.name = name;
-        this.gender = gender;
-        this.children = new HashSet<>();
+        this.store = new PersonStore(1);
+        this.id = store.add(name, gender);
+    }
+
+    /**
+     * Constructor method for the {@link Person} class, that creates a view over a person that is already in a store.
+     *
+     * @param store the store that holds the person's data.
+     * @param id    the person's ID in the store.
+     */
+    Person(PersonStore store, int id) {
+        this.store = store;
+        this.id = id;
     }
 
     // ####################### METHODS #######################
@@ -63,6 +55,8 @@ public class Person {
      */
     public Set<Person> findSiblings() {
         Set<Person> siblings = new HashSet<>();
+        Person father = getFather();
+        Person mother = getMother();
         if (father != null) siblings.addAll(father.getChildren());
         if (mother != null) siblings.addAll(mother.getChildren());
         siblings.remove(this);
@@ -76,6 +70,8 @@ public class Person {
      */
     public Set<Person> findGrandparents() {
         Set<Person> grandparents = new HashSet<>();
+        Person father = getFather();
+        Person mother = getMother();
         if (father != null) {
             if (father.getFather() != null) grandparents.add(father.getFather());
             if (father.getMother() != null) grandparents.add(father.getMother());
@@ -94,7 +90,7 @@ public class Person {
      */
     public Set<Person> findGrandchildren() {
         Set<Person> grandchildren = new HashSet<>();
-        for (Person child : children) {
+        for (Person child : getChildren()) {
             grandchildren.addAll(child.getChildren());
         }
         return grandchildren;
@@ -107,6 +103,8 @@ public class Person {
      */
     public Set<Person> findUnclesAndAunts() {
         Set<Person> unclesAndAunts = new HashSet<>();
+        Person father = getFather();
+        Person mother = getMother();
         if (father != null) unclesAndAunts.addAll(father.findSiblings());
         if (mother != null) unclesAndAunts.addAll(mother.findSiblings());
         return unclesAndAunts;
@@ -138,6 +136,51 @@ public class Person {
         return nephewsAndNieces;
     }
 
+    /**
+     * Moves the person to another store, e.g. when it is added to a {@link GenealogicalTree}.
+     *
+     * @param store the store that now holds the person's data.
+     * @param id    the person's ID in that store.
+     */
+    void attach(PersonStore store, int id) {
+        this.store = store;
+        this.id = id;
+    }
+
+    /**
+     * Finds the ID of the specified person in the store of this person.
+     *
+     * @param person the person, or {@code null}.
+     * @return the ID of the person, or {@link PersonStore#NONE} if the person is {@code null}.
+     * @throws IllegalArgumentException if the person is kept in a different store.
+     */
+    private int idOf(Person person) {
+        if (person == null) return PersonStore.NONE;
+        if (person.store != store) throw new IllegalArgumentException("Person not in the same tree: " + person.getName());
+        return person.id;
+    }
+
+    /**
+     * Overrides the {@link Object#equals(Object)} method. Two people are equal if they are views over the same person.
+     *
+     * @param o the object to compare with.
+     * @return {@code true} if the object is a view over the same person, {@code false} otherwise.
+     */
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Person person && person.store == store && person.id == id;
+    }
+
+    /**
+     * Overrides the {@link Object#hashCode()} method, to be consistent with {@link Person#equals(Object)}.
+     *
+     * @return the hash code of the person.
+     */
+    @Override
+    public int hashCode() {
+        return id;
+    }
+
     /**
      * Overrides the {@link Object#toString()} method, to return a string representation of the person.
      *
@@ -145,91 +188,140 @@ public class Person {
      */
     @Override
     public String toString() {
-        return name + "," + gender;
+        return getName() + "," + getGender();
     }
 
     // ####################### GETTERS #######################
 
     /**
-     * Getter method for the {@link Person#name} attribute.
+     * Getter method for the person's ID.
+     *
+     * @return the person's ID in its store.
+     */
+    int getId() {
+        return id;
+    }
+
+    /**
+     * Getter method for the person's name.
      *
      * @return the person's name.
      */
     public String getName() {
-        return name;
+        return store.name(id);
     }
 
     /**
-     * Getter method for the {@link Person#gender} attribute.
+     * Getter method for the person's gender.
      *
      * @return the person's gender.
      */
     public Gender getGender() {
-        return gender;
+        return store.gender(id);
     }
 
     /**
-     * Getter method for the {@link Person#father} attribute.
+     * Getter method for the person's generation, i.e. the length of the longest line of parents above them, as found
+     * by the last {@link GenealogicalTree#validate()}.
+     *
+     * @return the person's generation, or -1 if the tree changed since it was last validated, or the person is their
+     * own ancestor or descends from someone who is.
+     */
+    public int getGeneration() {
+        return store.generation(id);
+    }
+
+    /**
+     * Getter method for the person's father.
      *
      * @return the person's father.
      */
     public Person getFather() {
-        return father;
+        return store.view(store.father(id));
     }
 
     /**
-     * Getter method for the {@link Person#mother} attribute.
+     * Getter method for the person's mother.
      *
      * @return the person's mother.
      */
     public Person getMother() {
-        return mother;
+        return store.view(store.mother(id));
     }
 
     /**
-     * Getter method for the {@link Person#spouse} attribute.
+     * Getter method for the person's spouse.
      *
      * @return the person's spouse.
      */
     public Person getSpouse() {
-        return spouse;
+        return store.view(store.spouse(id));
     }
 
     /**
-     * Getter method for the {@link Person#children} attribute.
+     * Getter method for the person's children. Children are added through
+     * {@link GenealogicalTree#addRelation(String, String, Relation)}.
      *
-     * @return the person's children.
+     * @return an unmodifiable view over the person's children.
      */
     public Set<Person> getChildren() {
-        return children;
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Person> iterator() {
+                return new Iterator<>() {
+                    private int index = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < store.childCount(id);
+                    }
+
+                    @Override
+                    public Person next() {
+                        if (!hasNext()) throw new NoSuchElementException();
+                        return store.view(store.child(id, index++));
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Person person && person.store == store && store.hasChild(id, person.id);
+            }
+
+            @Override
+            public int size() {
+                return store.childCount(id);
+            }
+        };
     }
 
     // ####################### SETTERS #######################
 
     /**
-     * Setter method for the {@link Person#father} attribute.
+     * Setter method for the person's father.
      *
      * @param person the person to set as the father.
      */
     public void setFather(Person person) {
-        this.father = person;
+        store.setFather(id, idOf(person));
     }
 
     /**
-     * Setter method for the {@link Person#mother} attribute.
+     * Setter method for the person's mother.
      *
      * @param person the person to set as the mother.
      */
     public void setMother(Person person) {
-        this.mother = person;
+        store.setMother(id, idOf(person));
     }
 
     /**
-     * Setter method for the {@link Person#spouse} attribute.
+     * Setter method for the person's spouse.
      *
      * @param person the person to set as the spouse.
      */
     public void setSpouse(Person person) {
-        this.spouse = person;
+        store.setSpouse(id, idOf(person));
     }
 }
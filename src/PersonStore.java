@@ -0,0 +1,522 @@
+import java.util.Arrays;
+
+/**
+ * This class represents the columnar storage engine behind a {@link GenealogicalTree}.
+ * <p>
+ * Every person is given a dense integer ID, in the order they were added, and each of their attributes is kept in a
+ * primitive array indexed by that ID. The children of all people are kept in a single shared array, using a CSR
+ * (offset + index) layout: the children of a person are the {@code childCounts[id]} entries of {@code children}
+ * starting at {@code childOffsets[id]}. While the tree is being built, segments are given some spare capacity and are
+ * moved to the end of the shared array when they fill up; {@link PersonStore#compact()} packs them back together. The
+ * names are kept as UTF-8 in a {@link NameDictionary}, which {@link PersonStore#compact()} also indexes with a perfect
+ * hash function.
+ * <p>
+ * {@link OffHeapPersonStore} keeps the same layout outside the Java heap. It overrides every method that touches the
+ * arrays; as long as it is not loaded, calls to this class are not virtual.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+class PersonStore {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The ID used for a missing person, e.g. when a person has no known father.
+     */
+    static final int NONE = -1;
+
+    /**
+     * The number of people the store can hold before its arrays have to grow.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * The amount of unused space that is tolerated in the children array before it is compacted.
+     */
+    private static final int COMPACTION_SLACK = 1024;
+
+    /**
+     * The genders, indexed by the values stored in {@link PersonStore#genders}.
+     */
+    private static final Gender[] GENDERS = Gender.values();
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The name of each person, and the table that maps names to IDs.
+     */
+    private NameDictionary names;
+
+    /**
+     * The ordinal of the gender of each person.
+     */
+    private byte[] genders;
+
+    /**
+     * The ID of the father of each person, or {@link PersonStore#NONE}.
+     */
+    private int[] fathers;
+
+    /**
+     * The ID of the mother of each person, or {@link PersonStore#NONE}.
+     */
+    private int[] mothers;
+
+    /**
+     * The ID of the spouse of each person, or {@link PersonStore#NONE}.
+     */
+    private int[] spouses;
+
+    /**
+     * The offset of the children of each person in {@link PersonStore#children}.
+     */
+    private int[] childOffsets;
+
+    /**
+     * The number of children of each person.
+     */
+    private int[] childCounts;
+
+    /**
+     * The number of children each person can have before their segment has to be moved.
+     */
+    private int[] childCapacities;
+
+    /**
+     * The IDs of the children of all people.
+     */
+    private int[] children;
+
+    /**
+     * The end of the used part of {@link PersonStore#children}.
+     */
+    private int childrenEnd;
+
+    /**
+     * The total number of parent-child links in the store.
+     */
+    private int childLinks;
+
+    /**
+     * The number of people in the store.
+     */
+    private int size;
+
+    /**
+     * The number of changes that have been made to the parents, spouses and children of the people in the store.
+     */
+    private long modCount;
+
+    /**
+     * The generation of each person, as found by the last validation, or {@code null} if the store was never
+     * validated. See {@link TreeValidator}.
+     */
+    private int[] generations;
+
+    /**
+     * The {@link PersonStore#modCount} the generations were found at; they are out of date once it moves.
+     */
+    private long generationsModCount = -1;
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link PersonStore} class.
+     */
+    PersonStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor method for the {@link PersonStore} class.
+     *
+     * @param capacity the number of people the store can hold before its arrays have to grow.
+     */
+    PersonStore(int capacity) {
+        capacity = Math.max(capacity, 1);
+        names = new NameDictionary(capacity);
+        genders = new byte[capacity];
+        fathers = new int[capacity];
+        mothers = new int[capacity];
+        spouses = new int[capacity];
+        childOffsets = new int[capacity];
+        childCounts = new int[capacity];
+        childCapacities = new int[capacity];
+        children = new int[capacity];
+    }
+
+    // ####################### METHODS #######################
+
+    /**
+     * Adds a person to the store. If a person with the same name already exists, the name is pointed to the new person
+     * and the old one can no longer be found by name.
+     *
+     * @param name   the person's name.
+     * @param gender the person's gender.
+     * @return the ID of the new person.
+     */
+    int add(String name, Gender gender) {
+        if (size == genders.length) grow();
+        int id = size++;
+        names.add(name);
+        genders[id] = (byte) gender.ordinal();
+        fathers[id] = NONE;
+        mothers[id] = NONE;
+        spouses[id] = NONE;
+        childOffsets[id] = childrenEnd;
+        return id;
+    }
+
+    /**
+     * Finds the ID of the person with the specified name.
+     *
+     * @param name the name of the person.
+     * @return the ID of the person, or {@link PersonStore#NONE} if there is no person with that name.
+     */
+    int idOf(String name) {
+        return names.idOf(name);
+    }
+
+    /**
+     * Checks if the person with the specified ID can still be found by name, i.e. has not been replaced by a person that
+     * was added later with the same name.
+     *
+     * @param id the ID of the person.
+     * @return {@code true} if the person can be found by name, {@code false} otherwise.
+     */
+    boolean isCurrent(int id) {
+        return names.isCurrent(id);
+    }
+
+    /**
+     * Adds a child to the children of a parent, unless it is already one of them.
+     *
+     * @param parent the ID of the parent.
+     * @param child  the ID of the child.
+     */
+    void addChild(int parent, int child) {
+        if (hasChild(parent, child)) return;
+        int count = childCounts[parent];
+        if (count == childCapacities[parent]) growSegment(parent);
+        children[childOffsets[parent] + count] = child;
+        childCounts[parent] = count + 1;
+        childLinks++;
+        modCount++;
+    }
+
+    /**
+     * Checks if a person is one of the children of another.
+     *
+     * @param parent the ID of the parent.
+     * @param child  the ID of the child.
+     * @return {@code true} if the child is one of the children of the parent, {@code false} otherwise.
+     */
+    boolean hasChild(int parent, int child) {
+        int from = childOffsets[parent];
+        int to = from + childCounts[parent];
+        for (int i = from; i < to; i++) {
+            if (children[i] == child) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Packs the children of all people back together, in order of ID, releases the spare capacity of the children
+     * array and of the names, and indexes the names with a perfect hash function. Should be called once a bulk load is
+     * complete.
+     */
+    void compact() {
+        packChildren();
+        names.freeze();
+    }
+
+    /**
+     * Packs the children of all people back together, in order of ID, and releases the spare capacity of the children
+     * array.
+     */
+    private void packChildren() {
+        int[] packed = new int[Math.max(childLinks, 1)];
+        int end = 0;
+        for (int id = 0; id < size; id++) {
+            int count = childCounts[id];
+            System.arraycopy(children, childOffsets[id], packed, end, count);
+            childOffsets[id] = end;
+            childCapacities[id] = count;
+            end += count;
+        }
+        children = packed;
+        childrenEnd = end;
+    }
+
+    /**
+     * Fills an empty store with people that were saved before, e.g. in a {@link TreeSnapshot}. The arrays are taken
+     * over by the store, and the children are expected to be packed, in order of ID.
+     *
+     * @param names       the names of the people, as UTF-8, one after the other.
+     * @param nameOffsets the offset of the name of each person in {@code names}, followed by the end of the last name.
+     * @param genders     the ordinal of the gender of each person.
+     * @param fathers     the ID of the father of each person, or {@link PersonStore#NONE}.
+     * @param mothers     the ID of the mother of each person, or {@link PersonStore#NONE}.
+     * @param spouses     the ID of the spouse of each person, or {@link PersonStore#NONE}.
+     * @param childCounts the number of children of each person.
+     * @param children    the children of all people.
+     * @throws IllegalStateException if the store is not empty.
+     */
+    void restore(byte[] names, int[] nameOffsets, byte[] genders, int[] fathers, int[] mothers, int[] spouses,
+                 int[] childCounts, int[] children) {
+        if (size != 0) throw new IllegalStateException("Cannot restore people into a store that is not empty.");
+        int count = genders.length;
+        this.names = new NameDictionary(1);
+        this.names.restore(names, nameOffsets);
+        this.genders = genders;
+        this.fathers = fathers;
+        this.mothers = mothers;
+        this.spouses = spouses;
+        this.childCounts = childCounts;
+        this.childCapacities = childCounts.clone();
+        this.childOffsets = new int[count];
+        int end = 0;
+        for (int id = 0; id < count; id++) {
+            childOffsets[id] = end;
+            end += childCounts[id];
+        }
+        this.children = children;
+        this.childrenEnd = end;
+        this.childLinks = end;
+        this.size = count;
+        modCount++;
+    }
+
+    /**
+     * Creates a view over the person with the specified ID.
+     *
+     * @param id the ID of the person.
+     * @return the view over the person, or {@code null} if the ID is {@link PersonStore#NONE}.
+     */
+    Person view(int id) {
+        return id == NONE ? null : new Person(this, id);
+    }
+
+    /**
+     * Moves the children of a person to the end of the children array, doubling their capacity. If the segment is
+     * already at the end, it is extended in place instead.
+     *
+     * @param parent the ID of the parent whose segment is full.
+     */
+    private void growSegment(int parent) {
+        int count = childCounts[parent];
+        int capacity = Math.max(2, count << 1);
+        if (childOffsets[parent] + count != childrenEnd) {
+            if (childrenEnd - childLinks > childLinks + COMPACTION_SLACK) packChildren();
+            ensureChildren(childrenEnd + capacity);
+            System.arraycopy(children, childOffsets[parent], children, childrenEnd, count);
+            childOffsets[parent] = childrenEnd;
+        } else {
+            ensureChildren(childOffsets[parent] + capacity);
+        }
+        childCapacities[parent] = capacity;
+        childrenEnd = childOffsets[parent] + capacity;
+    }
+
+    /**
+     * Makes sure the children array has at least the specified length.
+     *
+     * @param length the required length.
+     */
+    private void ensureChildren(int length) {
+        if (length > children.length) children = Arrays.copyOf(children, Math.max(length, children.length << 1));
+    }
+
+    /**
+     * Doubles the capacity of the per-person arrays.
+     */
+    private void grow() {
+        int capacity = Math.max(DEFAULT_CAPACITY, genders.length << 1);
+        genders = Arrays.copyOf(genders, capacity);
+        fathers = Arrays.copyOf(fathers, capacity);
+        mothers = Arrays.copyOf(mothers, capacity);
+        spouses = Arrays.copyOf(spouses, capacity);
+        childOffsets = Arrays.copyOf(childOffsets, capacity);
+        childCounts = Arrays.copyOf(childCounts, capacity);
+        childCapacities = Arrays.copyOf(childCapacities, capacity);
+    }
+
+    // ####################### GETTERS #######################
+
+    /**
+     * Getter method for the {@link PersonStore#size} attribute.
+     *
+     * @return the number of people in the store.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Getter method for the {@link PersonStore#modCount} attribute.
+     *
+     * @return the number of changes that have been made to the relations of the people in the store.
+     */
+    long modCount() {
+        return modCount;
+    }
+
+    /**
+     * Returns the generation of a person, i.e. the length of the longest line of parents above them, as found by the
+     * last validation. People who were added since have no parents, and are in generation zero.
+     *
+     * @param id the ID of the person.
+     * @return the person's generation, or -1 if it is not known, because the links changed since the last validation
+     * or the person is their own ancestor or descends from someone who is.
+     */
+    int generation(int id) {
+        if (!hasGenerations()) return -1;
+        return id < generations.length ? generations[id] : 0;
+    }
+
+    /**
+     * Checks if the generations of the people are known, i.e. if the store was validated since its links last changed.
+     *
+     * @return {@code true} if the generations are up to date, {@code false} otherwise.
+     */
+    boolean hasGenerations() {
+        return generations != null && generationsModCount == modCount;
+    }
+
+    /**
+     * Checks if the generations allow a person to be an ancestor of another. An ancestor is always in an earlier
+     * generation than their descendants.
+     *
+     * @param ancestor   the ID of the possible ancestor.
+     * @param descendant the ID of the possible descendant.
+     * @return {@code false} if the first person is certainly not an ancestor of the second, {@code true} otherwise.
+     */
+    boolean mayPrecede(int ancestor, int descendant) {
+        int generation = generation(descendant);
+        return generation < 0 || generation(ancestor) < generation;
+    }
+
+    /**
+     * Returns the name of a person.
+     *
+     * @param id the ID of the person.
+     * @return the person's name.
+     */
+    String name(int id) {
+        return names.name(id);
+    }
+
+    /**
+     * Returns the gender of a person.
+     *
+     * @param id the ID of the person.
+     * @return the person's gender.
+     */
+    Gender gender(int id) {
+        return GENDERS[genders[id]];
+    }
+
+    /**
+     * Returns the father of a person.
+     *
+     * @param id the ID of the person.
+     * @return the ID of the person's father, or {@link PersonStore#NONE}.
+     */
+    int father(int id) {
+        return fathers[id];
+    }
+
+    /**
+     * Returns the mother of a person.
+     *
+     * @param id the ID of the person.
+     * @return the ID of the person's mother, or {@link PersonStore#NONE}.
+     */
+    int mother(int id) {
+        return mothers[id];
+    }
+
+    /**
+     * Returns the spouse of a person.
+     *
+     * @param id the ID of the person.
+     * @return the ID of the person's spouse, or {@link PersonStore#NONE}.
+     */
+    int spouse(int id) {
+        return spouses[id];
+    }
+
+    /**
+     * Returns the number of children of a person.
+     *
+     * @param id the ID of the person.
+     * @return the number of the person's children.
+     */
+    int childCount(int id) {
+        return childCounts[id];
+    }
+
+    /**
+     * Returns one of the children of a person.
+     *
+     * @param id    the ID of the person.
+     * @param index the index of the child, between zero and {@link PersonStore#childCount(int)}.
+     * @return the ID of the child.
+     */
+    int child(int id, int index) {
+        return children[childOffsets[id] + index];
+    }
+
+    // ####################### SETTERS #######################
+
+    /**
+     * Sets the father of a person.
+     *
+     * @param id     the ID of the person.
+     * @param father the ID of the father, or {@link PersonStore#NONE}.
+     */
+    void setFather(int id, int father) {
+        fathers[id] = father;
+        modCount++;
+    }
+
+    /**
+     * Sets the mother of a person.
+     *
+     * @param id     the ID of the person.
+     * @param mother the ID of the mother, or {@link PersonStore#NONE}.
+     */
+    void setMother(int id, int mother) {
+        mothers[id] = mother;
+        modCount++;
+    }
+
+    /**
+     * Sets the spouse of a person.
+     *
+     * @param id     the ID of the person.
+     * @param spouse the ID of the spouse, or {@link PersonStore#NONE}.
+     */
+    void setSpouse(int id, int spouse) {
+        spouses[id] = spouse;
+        modCount++;
+    }
+
+    /**
+     * Records a change to the parents, spouses or children of the people, by a subclass that keeps them elsewhere.
+     */
+    void changed() {
+        modCount++;
+    }
+
+    /**
+     * Sets the generations of the people, as found by a validation of the current links.
+     *
+     * @param generations the generation of each person, or -1 for the people whose generation is not known.
+     */
+    void setGenerations(int[] generations) {
+        this.generations = generations;
+        generationsModCount = modCount;
+    }
+}
@@ -0,0 +1,490 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class represents a bounded cache of the relations found by {@link GenealogicalTree#findRelation}, keyed by the
+ * IDs of the two people.
+ * <p>
+ * The cache is split into segments, each guarded by its own lock, so concurrent readers rarely wait for each other.
+ * Each segment evicts with a segmented LRU policy: new entries start in a probation area, and move to a protected area
+ * when they are hit again, so pairs that are queried often are not pushed out by a burst of pairs that are queried only
+ * once.
+ * <p>
+ * Every person has a version, and each entry remembers the version of its first person when it was cached. Since the
+ * relation of a pair only depends on the records of the first person's close family, a change to the tree only has to
+ * bump the versions of those people; entries of other pairs stay valid.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+class RelationCache {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The default maximum number of entries.
+     */
+    static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /**
+     * The maximum number of segments.
+     */
+    private static final int MAX_SEGMENTS = 64;
+
+    /**
+     * The relations, indexed by the ordinals stored in the entries.
+     */
+    private static final Relation[] RELATIONS = Relation.values();
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The segments of the cache.
+     */
+    private final Segment[] segments;
+
+    /**
+     * The version of each person, indexed by ID.
+     */
+    private volatile int[] versions = new int[0];
+
+    /**
+     * The number of lookups that found a valid entry.
+     */
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * The number of lookups that did not find a valid entry.
+     */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * The number of entries that were evicted to make room for new ones.
+     */
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * The number of people whose entries were invalidated, or of full flushes.
+     */
+    private final LongAdder invalidations = new LongAdder();
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link RelationCache} class.
+     *
+     * @param capacity the maximum number of entries.
+     */
+    RelationCache(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("The capacity of the cache must be positive.");
+        int count = Math.min(MAX_SEGMENTS, Integer.highestOneBit(Math.max(1, capacity / 64)));
+        segments = new Segment[count];
+        // The first segments take one more entry each, so the capacities add up to exactly the capacity of the cache.
+        for (int i = 0; i < count; i++) segments[i] = new Segment(capacity / count + (i < capacity % count ? 1 : 0));
+    }
+
+    // ######################### METHODS #########################
+
+    /**
+     * Finds the cached relation of a pair.
+     *
+     * @param id1 the ID of the first person.
+     * @param id2 the ID of the second person.
+     * @return the relation, or {@code null} if it is not cached or is no longer valid.
+     */
+    Relation get(int id1, int id2) {
+        long key = key(id1, id2);
+        int relation = segmentOf(key).get(key, versionOf(id1));
+        if (relation < 0) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return RELATIONS[relation];
+    }
+
+    /**
+     * Caches the relation of a pair.
+     *
+     * @param id1      the ID of the first person.
+     * @param id2      the ID of the second person.
+     * @param relation the relation the first person has to the second person.
+     */
+    void put(int id1, int id2, Relation relation) {
+        long key = key(id1, id2);
+        if (segmentOf(key).put(key, versionOf(id1), (byte) relation.ordinal())) evictions.increment();
+    }
+
+    /**
+     * Invalidates every cached relation whose first person is the specified person.
+     *
+     * @param id the ID of the person.
+     */
+    void invalidate(int id) {
+        int[] current = versions;
+        if (id >= current.length) {
+            current = Arrays.copyOf(current, Math.max(id + 1, current.length << 1));
+            versions = current;
+        }
+        current[id]++;
+        invalidations.increment();
+    }
+
+    /**
+     * Removes all entries from the cache.
+     */
+    void clear() {
+        for (Segment segment : segments) segment.clear();
+        invalidations.increment();
+    }
+
+    /**
+     * Returns the current counters of the cache.
+     *
+     * @return the counters.
+     */
+    Stats stats() {
+        long size = 0;
+        for (Segment segment : segments) size += segment.size();
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), invalidations.sum(), size);
+    }
+
+    /**
+     * Finds the version of a person.
+     *
+     * @param id the ID of the person.
+     * @return the version of the person.
+     */
+    private int versionOf(int id) {
+        int[] current = versions;
+        return id < current.length ? current[id] : 0;
+    }
+
+    /**
+     * Finds the segment that holds a key.
+     *
+     * @param key the key.
+     * @return the segment.
+     */
+    private Segment segmentOf(long key) {
+        return segments[(int) (mix(key) >>> 32) & (segments.length - 1)];
+    }
+
+    /**
+     * Combines the IDs of a pair into a key.
+     *
+     * @param id1 the ID of the first person.
+     * @param id2 the ID of the second person.
+     * @return the key.
+     */
+    private static long key(int id1, int id2) {
+        return ((long) id1 << 32) | (id2 & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Spreads the bits of a key.
+     *
+     * @param key the key.
+     * @return the spread key.
+     */
+    private static long mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    // ####################### NESTED TYPES #######################
+
+    /**
+     * The counters of a cache.
+     *
+     * @param hits          the number of lookups that found a valid entry.
+     * @param misses        the number of lookups that did not find a valid entry.
+     * @param evictions     the number of entries that were evicted to make room for new ones.
+     * @param invalidations the number of people whose entries were invalidated, or of full flushes.
+     * @param size          the number of entries in the cache, including ones that are no longer valid.
+     */
+    record Stats(long hits, long misses, long evictions, long invalidations, long size) {
+
+        /**
+         * Calculates the fraction of lookups that found a valid entry.
+         *
+         * @return the hit rate, between 0 and 1.
+         */
+        double hitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        /**
+         * Overrides the {@link Object#toString()} method, to return a string representation of the counters.
+         *
+         * @return the counters and the hit rate.
+         */
+        @Override
+        public String toString() {
+            return String.format("%d hits, %d misses (%.1f%% hit rate), %d evictions, %d invalidations, %d entries",
+                    hits, misses, hitRate() * 100, evictions, invalidations, size);
+        }
+    }
+
+    /**
+     * A segment of the cache, with a segmented LRU policy. The entries are kept in arrays, linked into two lists, the
+     * probation and the protected list, and found through an open-addressing index.
+     */
+    private static class Segment {
+
+        /**
+         * The list of entries that were hit only once.
+         */
+        private static final byte PROBATION = 0;
+
+        /**
+         * The list of entries that were hit more than once.
+         */
+        private static final byte PROTECTED = 1;
+
+        /**
+         * The maximum number of entries.
+         */
+        private final int capacity;
+
+        /**
+         * The maximum number of entries in the protected list.
+         */
+        private final int protectedCapacity;
+
+        /**
+         * The key of each entry.
+         */
+        private final long[] keys;
+
+        /**
+         * The version of the first person of each entry, when it was cached.
+         */
+        private final int[] stamps;
+
+        /**
+         * The ordinal of the relation of each entry.
+         */
+        private final byte[] relations;
+
+        /**
+         * The list each entry is in.
+         */
+        private final byte[] lists;
+
+        /**
+         * The previous entry in the list of each entry, towards the least recently used, or -1.
+         */
+        private final int[] previous;
+
+        /**
+         * The next entry in the list of each entry, towards the most recently used, or -1.
+         */
+        private final int[] next;
+
+        /**
+         * The least recently used entry of each list, or -1.
+         */
+        private final int[] heads = {-1, -1};
+
+        /**
+         * The most recently used entry of each list, or -1.
+         */
+        private final int[] tails = {-1, -1};
+
+        /**
+         * The number of entries in each list.
+         */
+        private final int[] sizes = new int[2];
+
+        /**
+         * The open-addressing index from keys to entries. Each slot holds the entry plus one, or zero if it is empty.
+         */
+        private final int[] index;
+
+        /**
+         * The number of entries in use.
+         */
+        private int used;
+
+        /**
+         * Constructor method for the {@link Segment} class.
+         *
+         * @param capacity the maximum number of entries.
+         */
+        Segment(int capacity) {
+            this.capacity = capacity;
+            this.protectedCapacity = Math.max(1, capacity * 4 / 5);
+            keys = new long[capacity];
+            stamps = new int[capacity];
+            relations = new byte[capacity];
+            lists = new byte[capacity];
+            previous = new int[capacity];
+            next = new int[capacity];
+            index = new int[Integer.highestOneBit(capacity) << 2];
+        }
+
+        /**
+         * Finds the relation of a key, promoting the entry if it is found.
+         *
+         * @param key     the key.
+         * @param version the current version of the first person of the pair.
+         * @return the ordinal of the relation, or -1 if there is no valid entry.
+         */
+        synchronized int get(long key, int version) {
+            int entry = find(key);
+            if (entry < 0 || stamps[entry] != version) return -1;
+            if (lists[entry] == PROBATION) {
+                unlink(entry);
+                link(entry, PROTECTED);
+                if (sizes[PROTECTED] > protectedCapacity) {
+                    int demoted = heads[PROTECTED];
+                    unlink(demoted);
+                    link(demoted, PROBATION);
+                }
+            } else {
+                unlink(entry);
+                link(entry, PROTECTED);
+            }
+            return relations[entry];
+        }
+
+        /**
+         * Caches the relation of a key, evicting the least recently used entry if the segment is full.
+         *
+         * @param key      the key.
+         * @param version  the current version of the first person of the pair.
+         * @param relation the ordinal of the relation.
+         * @return {@code true} if an entry was evicted, {@code false} otherwise.
+         */
+        synchronized boolean put(long key, int version, byte relation) {
+            int entry = find(key);
+            boolean evicted = false;
+            if (entry < 0) {
+                if (used < capacity) {
+                    entry = used++;
+                } else {
+                    entry = heads[sizes[PROBATION] > 0 ? PROBATION : PROTECTED];
+                    unlink(entry);
+                    removeFromIndex(keys[entry]);
+                    evicted = true;
+                }
+                keys[entry] = key;
+                addToIndex(key, entry);
+                link(entry, PROBATION);
+            }
+            stamps[entry] = version;
+            relations[entry] = relation;
+            return evicted;
+        }
+
+        /**
+         * Removes all entries from the segment.
+         */
+        synchronized void clear() {
+            Arrays.fill(index, 0);
+            Arrays.fill(heads, -1);
+            Arrays.fill(tails, -1);
+            Arrays.fill(sizes, 0);
+            used = 0;
+        }
+
+        /**
+         * Returns the number of entries in the segment.
+         *
+         * @return the number of entries.
+         */
+        synchronized int size() {
+            return used;
+        }
+
+        /**
+         * Finds the entry of a key.
+         *
+         * @param key the key.
+         * @return the entry, or -1 if the key is not in the segment.
+         */
+        private int find(long key) {
+            int mask = index.length - 1;
+            for (int slot = slotOf(key, mask); index[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[index[slot] - 1] == key) return index[slot] - 1;
+            }
+            return -1;
+        }
+
+        /**
+         * Adds an entry to the index.
+         *
+         * @param key   the key of the entry.
+         * @param entry the entry.
+         */
+        private void addToIndex(long key, int entry) {
+            int mask = index.length - 1;
+            int slot = slotOf(key, mask);
+            while (index[slot] != 0) slot = (slot + 1) & mask;
+            index[slot] = entry + 1;
+        }
+
+        /**
+         * Removes a key from the index, shifting back the entries that follow it so that no lookup is broken.
+         *
+         * @param key the key.
+         */
+        private void removeFromIndex(long key) {
+            int mask = index.length - 1;
+            int slot = slotOf(key, mask);
+            while (keys[index[slot] - 1] != key) slot = (slot + 1) & mask;
+            int hole = slot;
+            for (slot = (slot + 1) & mask; index[slot] != 0; slot = (slot + 1) & mask) {
+                int home = slotOf(keys[index[slot] - 1], mask);
+                if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                    index[hole] = index[slot];
+                    hole = slot;
+                }
+            }
+            index[hole] = 0;
+        }
+
+        /**
+         * Finds the home slot of a key in the index.
+         *
+         * @param key  the key.
+         * @param mask the mask of the index.
+         * @return the slot.
+         */
+        private static int slotOf(long key, int mask) {
+            return (int) mix(key) & mask;
+        }
+
+        /**
+         * Links an entry as the most recently used entry of a list.
+         *
+         * @param entry the entry.
+         * @param list  the list.
+         */
+        private void link(int entry, byte list) {
+            lists[entry] = list;
+            previous[entry] = tails[list];
+            next[entry] = -1;
+            if (tails[list] >= 0) next[tails[list]] = entry;
+            else heads[list] = entry;
+            tails[list] = entry;
+            sizes[list]++;
+        }
+
+        /**
+         * Unlinks an entry from its list.
+         *
+         * @param entry the entry.
+         */
+        private void unlink(int entry) {
+            byte list = lists[entry];
+            if (previous[entry] >= 0) next[previous[entry]] = next[entry];
+            else heads[list] = next[entry];
+            if (next[entry] >= 0) previous[next[entry]] = previous[entry];
+            else tails[list] = previous[entry];
+            sizes[list]--;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+import java.util.ConcurrentModificationException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * This class represents the close relatives of a person, grouped by the relation each of them has to the person, as
+ * {@link GenealogicalTree#findRelation} would find it, e.g. the people whose relation to the person is
+ * {@link Relation#COUSIN}. See {@link GenealogicalTree#findRelatives(String)}.
+ * <p>
+ * The relatives are not found until they are asked for: {@link Relatives#stream(Relation...)} walks only the parents,
+ * children and spouses that lead to relatives of the given relations, a few at a time as the stream is consumed, so a
+ * stream that is stopped after the first few cousins does not walk the rest of them, and
+ * {@link Relatives#toMap()} walks them all in one pass. Either one throws a {@link ConcurrentModificationException}
+ * if a relation was added to the tree after the relatives were found.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+public final class Relatives {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The relations of all the relatives.
+     */
+    private static final Set<Relation> ALL = EnumSet.complementOf(EnumSet.of(Relation.UNRELATED));
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The tree of the person.
+     */
+    private final GenealogicalTree tree;
+
+    /**
+     * The person whose relatives these are.
+     */
+    private final Person person;
+
+    /**
+     * The ID of the person.
+     */
+    private final int id;
+
+    /**
+     * The tree's count of changes to the links of the people when the relatives were found.
+     */
+    private final long modCount;
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link Relatives} class.
+     *
+     * @param tree     the tree of the person.
+     * @param person   the person whose relatives these are.
+     * @param id       the ID of the person.
+     * @param modCount the tree's count of changes to the links of the people when the relatives were found.
+     */
+    Relatives(GenealogicalTree tree, Person person, int id, long modCount) {
+        this.tree = tree;
+        this.person = person;
+        this.id = id;
+        this.modCount = modCount;
+    }
+
+    // ####################### METHODS #######################
+
+    /**
+     * Getter method for the person whose relatives these are.
+     *
+     * @return the person.
+     */
+    public Person getPerson() {
+        return person;
+    }
+
+    /**
+     * Returns the relatives whose relation to the person is one of some relations, e.g. {@link Relation#FATHER} and
+     * {@link Relation#MOTHER} for the parents, or all of them if no relation is given. Each relative is returned once,
+     * in the order the walk reaches them.
+     *
+     * @param relations the relations, none of which may be {@link Relation#UNRELATED}.
+     * @return the relatives.
+     * @throws IllegalArgumentException        if one of the relations is {@link Relation#UNRELATED}.
+     * @throws ConcurrentModificationException when consumed, if a relation was added to the tree after the relatives
+     *                                         were found.
+     */
+    public Stream<Person> stream(Relation... relations) {
+        Set<Relation> wanted = relations.length == 0 ? ALL : EnumSet.of(relations[0], relations);
+        if (wanted.contains(Relation.UNRELATED)) {
+            throw new IllegalArgumentException("Unrelated people are not relatives");
+        }
+        return tree.relatives(id, modCount, wanted);
+    }
+
+    /**
+     * Returns all the relatives, grouped by their relation to the person, in one walk.
+     *
+     * @return the relatives of each relation the person has any of, in the order of {@link Relation}.
+     * @throws ConcurrentModificationException if a relation was added to the tree after the relatives were found.
+     */
+    public Map<Relation, List<Person>> toMap() {
+        return tree.relativesByRelation(id, modCount, ALL);
+    }
+}
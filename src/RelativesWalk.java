@@ -0,0 +1,288 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+
+/**
+ * This class walks the close relatives of a person, i.e. the people that {@link GenealogicalTree#findRelation} finds
+ * related to them, and returns the ones of some relations.
+ * <p>
+ * Every relation is reached from the person by a path of at most four steps, up to a father or mother, down to a
+ * child, or across to the spouse, e.g. a cousin is up, up, down and down. The walk follows all the paths of the
+ * relations at once, depth-first, so the paths that share a prefix, e.g. those of the siblings and the nephews and
+ * nieces, walk it only once, and a step down right after a step up skips the person the walk came up from. Every person
+ * that is reached at the end of a path is classified by {@link GenealogicalTree#classify(int, int)}, so they are
+ * returned only if it is one of the relations, and only once, even if more than one path reaches them.
+ * <p>
+ * The paths follow the links of the person outwards, so when the links are not consistent, e.g. a parent does not have
+ * their child among their children, or a spouse is married to someone else, a relative that is only linked to the
+ * person from their side is not found. {@link GenealogicalTree#validate()} reports such links.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+class RelativesWalk implements PrimitiveIterator.OfInt {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The step up to the father or mother.
+     */
+    private static final int UP = 1;
+
+    /**
+     * The step down to a child.
+     */
+    private static final int DOWN = 2;
+
+    /**
+     * The step across to the spouse.
+     */
+    private static final int SPOUSE = 3;
+
+    /**
+     * The largest number of steps of a path.
+     */
+    private static final int MAX_STEPS = 4;
+
+    /**
+     * The number of codes of the paths. See {@link RelativesWalk#code(int...)}.
+     */
+    private static final int CODES = 1 << 2 * MAX_STEPS;
+
+    /**
+     * The mark of a person that has been reached at the end of a path. See {@link RelativesWalk#reached}.
+     */
+    private static final int END = 1;
+
+    /**
+     * The position of the first child among the steps from a person, which start with the father, the mother and the
+     * spouse.
+     */
+    private static final int FIRST_CHILD = 3;
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The tree that classifies the relatives.
+     */
+    private final GenealogicalTree tree;
+
+    /**
+     * The people that are walked.
+     */
+    private final PersonStore people;
+
+    /**
+     * The ID of the person whose relatives are walked.
+     */
+    private final int id;
+
+    /**
+     * The relations of the relatives that are returned.
+     */
+    private final Set<Relation> relations;
+
+    /**
+     * Whether each path, by code, ends at a relative that may be returned.
+     */
+    private final boolean[] ends = new boolean[CODES];
+
+    /**
+     * The mark of each path, by code, that is followed by a further step, which is set on the people whose steps have
+     * been walked after that path, or zero if the path is not followed.
+     */
+    private final int[] prefixMarks = new int[CODES];
+
+    /**
+     * The marks of the people that have been reached, including the person whose relatives are walked: whether they
+     * have been reached at the end of a path, and after which paths their steps have been walked, so a person that is
+     * reached by more than one path, e.g. a sibling through both parents, is classified and walked from only once.
+     */
+    private final KinshipEngine.IntIntMap reached = new KinshipEngine.IntIntMap();
+
+    /**
+     * The person of each step of the current path, starting with the person whose relatives are walked.
+     */
+    private final int[] path = new int[MAX_STEPS + 1];
+
+    /**
+     * The code of each prefix of the current path.
+     */
+    private final int[] codes = new int[MAX_STEPS + 1];
+
+    /**
+     * The position of the next step from each person of the current path.
+     */
+    private final int[] cursors = new int[MAX_STEPS + 1];
+
+    /**
+     * The position of the last person of the current path.
+     */
+    private int depth;
+
+    /**
+     * The ID of the next relative to return, or {@link PersonStore#NONE} if it has not been found yet.
+     */
+    private int next = PersonStore.NONE;
+
+    /**
+     * The relation of the next relative to return.
+     */
+    private Relation nextRelation;
+
+    /**
+     * The relation of the last relative that was returned.
+     */
+    private Relation relation;
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link RelativesWalk} class.
+     *
+     * @param tree      the tree that classifies the relatives.
+     * @param people    the people that are walked.
+     * @param id        the ID of the person whose relatives are walked.
+     * @param relations the relations of the relatives that are returned, which must not include
+     *                  {@link Relation#UNRELATED}.
+     */
+    RelativesWalk(GenealogicalTree tree, PersonStore people, int id, Set<Relation> relations) {
+        this.tree = tree;
+        this.people = people;
+        this.id = id;
+        this.relations = relations;
+        int mark = END;
+        for (Relation relation : relations) {
+            int[] steps = steps(relation);
+            for (int length = 1; length < steps.length; length++) {
+                int code = code(Arrays.copyOf(steps, length));
+                if (prefixMarks[code] == 0) prefixMarks[code] = mark <<= 1;
+            }
+            ends[code(steps)] = true;
+        }
+        reached.put(id, END);
+        path[0] = id;
+    }
+
+    // ######################### METHODS #########################
+
+    @Override
+    public boolean hasNext() {
+        if (next == PersonStore.NONE) advance();
+        return next != PersonStore.NONE;
+    }
+
+    @Override
+    public int nextInt() {
+        if (!hasNext()) throw new NoSuchElementException();
+        int relative = next;
+        relation = nextRelation;
+        next = PersonStore.NONE;
+        return relative;
+    }
+
+    /**
+     * Returns the relation of the last relative that was returned.
+     *
+     * @return the relation the relative has to the person whose relatives are walked.
+     */
+    Relation relation() {
+        return relation;
+    }
+
+    /**
+     * Walks the paths until it finds the next relative to return, or there are no more steps.
+     */
+    private void advance() {
+        while (depth >= 0) {
+            int from = path[depth];
+            int position = cursors[depth]++;
+            int step;
+            int to;
+            if (position == 0) {
+                step = UP;
+                to = people.father(from);
+            } else if (position == 1) {
+                step = UP;
+                to = people.mother(from);
+            } else if (position == 2) {
+                step = SPOUSE;
+                to = people.spouse(from);
+            } else if (position - FIRST_CHILD < people.childCount(from) && follows(codes[depth] << 2 | DOWN)) {
+                step = DOWN;
+                to = people.child(from, position - FIRST_CHILD);
+                if (depth > 0 && (codes[depth] & 3) == UP && to == path[depth - 1]) continue;
+            } else {
+                depth--;
+                continue;
+            }
+            int code = codes[depth] << 2 | step;
+            if (to == PersonStore.NONE || !follows(code)) continue;
+            int marks = Math.max(reached.get(to), 0);
+            boolean walk = prefixMarks[code] != 0 && (marks & prefixMarks[code]) == 0;
+            boolean end = ends[code] && (marks & END) == 0;
+            if (!walk && !end) continue;
+            reached.put(to, marks | prefixMarks[code] | (end ? END : 0));
+            if (walk) {
+                depth++;
+                path[depth] = to;
+                codes[depth] = code;
+                cursors[depth] = 0;
+            }
+            if (end) {
+                Relation found = tree.classify(to, id);
+                if (relations.contains(found)) {
+                    next = to;
+                    nextRelation = found;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if a path may lead to a relative that is returned.
+     *
+     * @param code the code of the path.
+     * @return {@code true} if the path ends at such a relative, or is followed by a step to one, {@code false}
+     * otherwise.
+     */
+    private boolean follows(int code) {
+        return ends[code] || prefixMarks[code] != 0;
+    }
+
+    /**
+     * Returns the steps of the path from a person to their relatives of a relation.
+     *
+     * @param relation the relation.
+     * @return the steps.
+     */
+    private static int[] steps(Relation relation) {
+        return switch (relation) {
+            case FATHER, MOTHER -> new int[]{UP};
+            case SON, DAUGHTER -> new int[]{DOWN};
+            case BROTHER, SISTER -> new int[]{UP, DOWN};
+            case COUSIN -> new int[]{UP, UP, DOWN, DOWN};
+            case HUSBAND, WIFE -> new int[]{SPOUSE};
+            case GRANDFATHER, GRANDMOTHER -> new int[]{UP, UP};
+            case GRANDSON, GRANDDAUGHTER -> new int[]{DOWN, DOWN};
+            case UNCLE, AUNT -> new int[]{UP, UP, DOWN};
+            case NEPHEW, NIECE -> new int[]{UP, DOWN, DOWN};
+            case UNRELATED -> throw new IllegalArgumentException("Unrelated people are not relatives");
+        };
+    }
+
+    /**
+     * Returns the code of a path, with two bits per step, the first step highest, so the code of a path followed by a
+     * step is the code of the path shifted left by two bits, plus the step.
+     *
+     * @param steps the steps of the path.
+     * @return the code of the path.
+     */
+    private static int code(int... steps) {
+        int code = 0;
+        for (int step : steps) code = code << 2 | step;
+        return code;
+    }
+}
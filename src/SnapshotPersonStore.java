@@ -0,0 +1,377 @@
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * This class is a read-only {@link PersonStore} over a {@link TreeSnapshot} that is mapped into memory, so a tree of
+ * any size can be queried without loading it.
+ * <p>
+ * Nothing is read when the store is opened: the sections of the snapshot are mapped, and every person is read from
+ * their record in the file when a query touches them, e.g. the records of the ancestors a relation query walks up
+ * through. A name is found through the name table of the snapshot, which costs a read of a slot and of the names it
+ * is compared with, and is only decoded when it is asked for. The pages of the file that are read are kept by the
+ * operating system's page cache, which evicts them when memory is short, and nothing is kept on the heap per person,
+ * so the memory the store takes grows with the people that queries touch, not with the size of the file.
+ * <p>
+ * Since the checksum of the file is not verified, every ID, offset and range is checked as it is read, and one that
+ * is out of range, e.g. because a bit of the file flipped, throws an {@link UncheckedIOException} that names the file,
+ * instead of failing somewhere in a query. A corrupt value that is still in range cannot be told apart, and gives a
+ * wrong answer, which only {@link GenealogicalTree#loadSnapshot} detects.
+ * <p>
+ * The store cannot be changed: adding a person or a relation throws an {@link IllegalStateException}.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+class SnapshotPersonStore extends PersonStore {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The offset of the ID of the father in a record.
+     */
+    private static final int FATHER = 0;
+
+    /**
+     * The offset of the ID of the mother in a record.
+     */
+    private static final int MOTHER = 1;
+
+    /**
+     * The offset of the ID of the spouse in a record.
+     */
+    private static final int SPOUSE = 2;
+
+    /**
+     * The offset of the index of the first child in a record.
+     */
+    private static final int FIRST_CHILD = 3;
+
+    /**
+     * The offset of the number of children in a record.
+     */
+    private static final int CHILD_COUNT = 4;
+
+    /**
+     * The offset of the ordinal of the gender in a record.
+     */
+    private static final int GENDER = 5;
+
+    /**
+     * The genders, indexed by the ordinals stored in the records.
+     */
+    private static final Gender[] GENDERS = Gender.values();
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The snapshot file, which is named by the errors of the store.
+     */
+    private final Path file;
+
+    /**
+     * The flags of the snapshot.
+     */
+    private final int flags;
+
+    /**
+     * The number of people in the snapshot.
+     */
+    private final int size;
+
+    /**
+     * The names of all people, as UTF-8, one after the other in order of ID.
+     */
+    private final ByteBuffer names;
+
+    /**
+     * The offset of the name of each person, followed by the end of the last name.
+     */
+    private final IntBuffer nameOffsets;
+
+    /**
+     * The record of each person.
+     */
+    private final IntBuffer records;
+
+    /**
+     * The IDs of the children of all people, in order of ID.
+     */
+    private final IntBuffer children;
+
+    /**
+     * The name table, in the layout of the table of {@link OffHeapPersonStore}.
+     */
+    private final IntBuffer nameSlots;
+
+    /**
+     * The number of slots of {@link SnapshotPersonStore#nameSlots}, a power of two.
+     */
+    private final int slotCount;
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link SnapshotPersonStore} class, over the mapped sections of a snapshot. See
+     * {@link TreeSnapshot#open(java.nio.file.Path)}.
+     *
+     * @param file        the snapshot file.
+     * @param flags       the flags of the snapshot.
+     * @param size        the number of people in the snapshot.
+     * @param names       the name dictionary.
+     * @param nameOffsets the name index.
+     * @param records     the person records.
+     * @param children    the child adjacency.
+     * @param nameSlots   the name table.
+     */
+    SnapshotPersonStore(Path file, int flags, int size, ByteBuffer names, IntBuffer nameOffsets, IntBuffer records,
+                        IntBuffer children, IntBuffer nameSlots) {
+        super(1);
+        this.file = file;
+        this.flags = flags;
+        this.size = size;
+        this.names = names;
+        this.nameOffsets = nameOffsets;
+        this.records = records;
+        this.children = children;
+        this.nameSlots = nameSlots;
+        this.slotCount = nameSlots.capacity() / TreeSnapshot.SLOT_INTS;
+        changed();
+    }
+
+    // ####################### METHODS #######################
+
+    /**
+     * Returns the flags of the snapshot, e.g. {@link TreeSnapshot#FLAG_LINKS_CONSISTENT}.
+     *
+     * @return the flags.
+     */
+    int flags() {
+        return flags;
+    }
+
+    @Override
+    int add(String name, Gender gender) {
+        throw readOnly();
+    }
+
+    @Override
+    int idOf(String name) {
+        int hash = TreeSnapshot.nameHash(name);
+        int mask = slotCount - 1;
+        for (int slot = hash & mask, probes = 0; probes < slotCount; slot = (slot + 1) & mask, probes++) {
+            int at = slot * TreeSnapshot.SLOT_INTS;
+            int entry = nameSlots.get(at);
+            if (entry == 0) return NONE;
+            if (entry < 0 || entry > size) throw corrupt("bad name table entry " + entry);
+            if (nameSlots.get(at + 1) == hash && hasName(entry - 1, name)) return entry - 1;
+        }
+        throw corrupt("the name table has no free slot");
+    }
+
+    @Override
+    boolean isCurrent(int id) {
+        return idOf(name(id)) == id;
+    }
+
+    @Override
+    void addChild(int parent, int child) {
+        throw readOnly();
+    }
+
+    @Override
+    boolean hasChild(int parent, int child) {
+        for (int i = 0, count = childCount(parent); i < count; i++) {
+            if (child(parent, i) == child) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Does nothing, since the children of a snapshot are packed already.
+     */
+    @Override
+    void compact() {
+    }
+
+    @Override
+    void restore(byte[] names, int[] nameOffsets, byte[] genders, int[] fathers, int[] mothers, int[] spouses,
+                 int[] childCounts, int[] children) {
+        throw readOnly();
+    }
+
+    /**
+     * Checks if a person has a name. A name of ASCII characters is compared with the dictionary as it is, and any
+     * other name is encoded first.
+     *
+     * @param id   the ID of the person.
+     * @param name the name.
+     * @return {@code true} if the person has the name, {@code false} otherwise.
+     */
+    private boolean hasName(int id, String name) {
+        int offset = nameOffset(id);
+        int length = nameOffsets.get(id + 1) - offset;
+        if (length < name.length()) return false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= 0x80) return Arrays.equals(nameBytes(id), name.getBytes(StandardCharsets.UTF_8));
+            if (names.get(offset + i) != c) return false;
+        }
+        return length == name.length();
+    }
+
+    /**
+     * Copies the name of a person out of the dictionary.
+     *
+     * @param id the ID of the person.
+     * @return the name, as UTF-8.
+     */
+    private byte[] nameBytes(int id) {
+        int offset = nameOffset(id);
+        byte[] name = new byte[nameOffsets.get(id + 1) - offset];
+        names.get(offset, name);
+        return name;
+    }
+
+    /**
+     * Returns the offset of the name of a person in the dictionary, after checking that the name lies within it.
+     *
+     * @param id the ID of the person.
+     * @return the offset of the name.
+     * @throws UncheckedIOException if the name does not lie within the dictionary.
+     */
+    private int nameOffset(int id) {
+        int offset = nameOffsets.get(id);
+        int end = nameOffsets.get(id + 1);
+        if (offset < 0 || end < offset || end > names.capacity()) throw corrupt("bad name offset of person " + id);
+        return offset;
+    }
+
+    /**
+     * Reads a field of the record of a person.
+     *
+     * @param id    the ID of the person.
+     * @param field the offset of the field in the record.
+     * @return the value of the field.
+     */
+    private int field(int id, int field) {
+        return records.get(id * TreeSnapshot.RECORD_INTS + field);
+    }
+
+    /**
+     * Reads the ID of the father, mother or spouse of a person, after checking that it is a person of the snapshot.
+     *
+     * @param id    the ID of the person.
+     * @param field the offset of the field in the record.
+     * @return the ID of the linked person, or {@link PersonStore#NONE}.
+     * @throws UncheckedIOException if the ID is out of range.
+     */
+    private int link(int id, int field) {
+        int linked = field(id, field);
+        if (linked < NONE || linked >= size) throw corrupt("bad person ID " + linked);
+        return linked;
+    }
+
+    /**
+     * Reads the index of the first child of a person, after checking that all their children lie within the child
+     * adjacency.
+     *
+     * @param id the ID of the person.
+     * @return the index of the first child.
+     * @throws UncheckedIOException if the children do not lie within the child adjacency.
+     */
+    private int firstChild(int id) {
+        int first = field(id, FIRST_CHILD);
+        int count = field(id, CHILD_COUNT);
+        if (first < 0 || count < 0 || (long) first + count > children.capacity()) {
+            throw corrupt("bad children of person " + id);
+        }
+        return first;
+    }
+
+    /**
+     * Creates the exception that is thrown for a value of the file that is out of range.
+     *
+     * @param reason what is wrong with the file.
+     * @return the exception.
+     */
+    private UncheckedIOException corrupt(String reason) {
+        return new UncheckedIOException(TreeSnapshot.invalid(file, reason));
+    }
+
+    /**
+     * Creates the exception that is thrown for a change to the store.
+     *
+     * @return the exception.
+     */
+    private static IllegalStateException readOnly() {
+        return new IllegalStateException("A tree that is opened from a snapshot cannot be changed.");
+    }
+
+    // ####################### GETTERS #######################
+
+    @Override
+    int size() {
+        return size;
+    }
+
+    @Override
+    String name(int id) {
+        return new String(nameBytes(id), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    Gender gender(int id) {
+        int gender = field(id, GENDER);
+        if (gender < 0 || gender >= GENDERS.length) throw corrupt("bad gender of person " + id);
+        return GENDERS[gender];
+    }
+
+    @Override
+    int father(int id) {
+        return link(id, FATHER);
+    }
+
+    @Override
+    int mother(int id) {
+        return link(id, MOTHER);
+    }
+
+    @Override
+    int spouse(int id) {
+        return link(id, SPOUSE);
+    }
+
+    @Override
+    int childCount(int id) {
+        firstChild(id);
+        return field(id, CHILD_COUNT);
+    }
+
+    @Override
+    int child(int id, int index) {
+        int child = children.get(firstChild(id) + index);
+        if (child < 0 || child >= size) throw corrupt("bad child ID " + child + " of person " + id);
+        return child;
+    }
+
+    // ####################### SETTERS #######################
+
+    @Override
+    void setFather(int id, int father) {
+        throw readOnly();
+    }
+
+    @Override
+    void setMother(int id, int mother) {
+        throw readOnly();
+    }
+
+    @Override
+    void setSpouse(int id, int spouse) {
+        throw readOnly();
+    }
+}
@@ -0,0 +1,79 @@
+import java.util.List;
+
+/**
+ * This class represents a connected component of a {@link GenealogicalTree}, i.e. a group of people that are linked to
+ * each other through parents, children and spouses, and to no one outside the group. People of different components
+ * are unrelated, so components can be processed in parallel, each by its own thread. See
+ * {@link GenealogicalTree#getComponents()}.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+public final class TreeComponent {
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The names of the people of the component.
+     */
+    private final List<String> names;
+
+    /**
+     * The number of generations of the component.
+     */
+    private final int depth;
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link TreeComponent} class.
+     *
+     * @param names the names of the people of the component, in the order they were added to the tree.
+     * @param depth the number of generations of the component.
+     */
+    TreeComponent(List<String> names, int depth) {
+        this.names = List.copyOf(names);
+        this.depth = depth;
+    }
+
+    // ####################### METHODS #######################
+
+    /**
+     * Getter method for the number of people of the component.
+     *
+     * @return the number of people.
+     */
+    public int getSize() {
+        return names.size();
+    }
+
+    /**
+     * Getter method for the number of generations of the component, i.e. one more than the latest generation of its
+     * people. People who are their own ancestors, or descend from someone who is, are not counted.
+     *
+     * @return the number of generations.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Getter method for the names of the people of the component.
+     *
+     * @return the names of the people, in the order they were added to the tree.
+     */
+    public List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * Overrides the {@link Object#toString()} method, to return the size and depth of the component.
+     *
+     * @return the size and depth of the component, e.g. {@code 12 people in 3 generations}.
+     */
+    @Override
+    public String toString() {
+        return names.size() + (names.size() == 1 ? " person in " : " people in ") + depth
+                + (depth == 1 ? " generation" : " generations");
+    }
+}
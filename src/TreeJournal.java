@@ -0,0 +1,703 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.CRC32C;
+
+/**
+ * This class keeps a durable, append-only journal of the people and relations that are added to a
+ * {@link GenealogicalTree}, so a tree can be brought up to date by replaying a few records instead of reloading it.
+ * <p>
+ * The journal lives in a directory of numbered generations. A generation has an optional base, {@code base-<n>.snapshot},
+ * which is a {@link TreeSnapshot} of every record of the earlier generations, and a segment, {@code journal-<n>.log},
+ * which holds the records that were added since. On opening, the newest base is loaded and the segments from its
+ * generation on are replayed in order. A record that was only partly written when the process stopped, or that fails
+ * its checksum, is cut off the end of the last segment, together with anything after it.
+ * <p>
+ * Records are appended to a buffer, and only reach the disk when the journal is committed. Every record that was
+ * appended since the last commit is written with one write and made durable with one {@code fsync}, and threads that
+ * commit at the same time share a single one of them. Compaction seals the current segment and starts the next
+ * generation; a background thread then builds the new base from the old base and the sealed segments, and deletes them
+ * once the new base has been moved into place.
+ * <p>
+ * Each segment starts with a 16-byte header, with the magic number, the format version and the generation. Each record
+ * is the length of its payload, the CRC-32C checksum of the payload and the payload, all little-endian. The payload of a
+ * person is their gender and name; the payload of a relation is the relation and the IDs of the two people, which are
+ * the same on every replay, since people are always replayed in the order they were added.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+class TreeJournal implements AutoCloseable {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The first four bytes of every segment, {@code GTJL} in ASCII.
+     */
+    static final int MAGIC = 0x4C4A5447;
+
+    /**
+     * The version of the format that is written.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The size of the header of a segment, in bytes.
+     */
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * The size of the length and checksum in front of every record, in bytes.
+     */
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    /**
+     * The largest payload of a record, in bytes. Anything larger is taken to be a corrupt length.
+     */
+    private static final int MAX_PAYLOAD = 1 << 20;
+
+    /**
+     * The amount of appended records, in bytes, that are written to the segment without waiting for a commit.
+     */
+    private static final int FLUSH_THRESHOLD = 1 << 20;
+
+    /**
+     * The size of the buffer that segments are replayed through, in bytes.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * The type of the record of a person.
+     */
+    private static final byte PERSON = 0;
+
+    /**
+     * The type of the record of a relation.
+     */
+    private static final byte RELATION = 1;
+
+    /**
+     * The genders, indexed by the ordinals stored in the records.
+     */
+    private static final Gender[] GENDERS = Gender.values();
+
+    /**
+     * The relations, indexed by the ordinals stored in the records.
+     */
+    private static final Relation[] RELATIONS = Relation.values();
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The directory of the journal.
+     */
+    private final Path directory;
+
+    /**
+     * The checksum of the records that are appended.
+     */
+    private final CRC32C crc = new CRC32C();
+
+    /**
+     * The records that were appended but not yet written to the segment.
+     */
+    private ByteBuffer pending = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * The buffer that takes the place of {@link TreeJournal#pending} while it is being written.
+     */
+    private ByteBuffer spare = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * The current segment.
+     */
+    private FileChannel channel;
+
+    /**
+     * The generation of the current segment.
+     */
+    private long generation;
+
+    /**
+     * The generation of the newest base, or of the first segment if there is no base yet.
+     */
+    private long baseGeneration;
+
+    /**
+     * Whether a base file exists for {@link TreeJournal#baseGeneration}.
+     */
+    private boolean hasBase;
+
+    /**
+     * The number of records that have been appended.
+     */
+    private long appended;
+
+    /**
+     * The number of records that have been written to the segment.
+     */
+    private long written;
+
+    /**
+     * The number of records that have been made durable.
+     */
+    private long durable;
+
+    /**
+     * Whether a thread is writing to the segment, in which case the others wait for it.
+     */
+    private boolean flushing;
+
+    /**
+     * The error that a write to the segment failed with, after which the journal can no longer be trusted, or
+     * {@code null} if every write succeeded.
+     */
+    private IOException failure;
+
+    /**
+     * The compaction that is running, or {@code null} if there is none.
+     */
+    private CompletableFuture<Void> compaction;
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Private constructor method for the {@link TreeJournal} class. Journals are opened with
+     * {@link TreeJournal#open(GenealogicalTree, Path)}.
+     *
+     * @param directory the directory of the journal.
+     */
+    private TreeJournal(Path directory) {
+        this.directory = directory;
+    }
+
+    // ######################### METHODS #########################
+
+    /**
+     * Opens the journal in a directory, which is created if it does not exist, and loads its base and replays its
+     * segments into an empty tree. Files of generations that are older than the newest base are deleted.
+     *
+     * @param tree      the empty tree to load the journal into.
+     * @param directory the directory of the journal.
+     * @return the journal, positioned after its last valid record.
+     * @throws IOException if the journal cannot be read, or a sealed segment is corrupt.
+     */
+    static TreeJournal open(GenealogicalTree tree, Path directory) throws IOException {
+        Files.createDirectories(directory);
+        TreeJournal journal = new TreeJournal(directory);
+        List<Long> bases = generations(directory, "base-", ".snapshot");
+        List<Long> segments = generations(directory, "journal-", ".log");
+
+        journal.hasBase = !bases.isEmpty();
+        journal.baseGeneration = journal.hasBase ? bases.get(bases.size() - 1)
+                : segments.isEmpty() ? 0 : segments.get(0);
+        if (journal.hasBase) tree.loadSnapshot(journal.basePath(journal.baseGeneration));
+
+        List<Long> live = new ArrayList<>();
+        for (long segment : segments) if (segment >= journal.baseGeneration) live.add(segment);
+        for (int i = 0; i < live.size(); i++) {
+            Path file = journal.segmentPath(live.get(i));
+            long end = replay(file, live.get(i), tree, i == live.size() - 1);
+            if (i == live.size() - 1) {
+                journal.generation = live.get(i);
+                journal.channel = FileChannel.open(file, StandardOpenOption.WRITE);
+                if (end < HEADER_SIZE) writeHeader(journal.channel, journal.generation);
+                else journal.channel.truncate(end).position(end);
+                journal.channel.force(true);
+            }
+        }
+        if (journal.channel == null) {
+            journal.generation = journal.baseGeneration;
+            journal.channel = createSegment(journal.segmentPath(journal.generation), journal.generation);
+        }
+        if (journal.hasBase) journal.deleteBefore(journal.baseGeneration);
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(directory, "*.tmp")) {
+            for (Path leftover : leftovers) Files.deleteIfExists(leftover);
+        }
+        return journal;
+    }
+
+    /**
+     * Appends the record of a person who was added to the tree.
+     *
+     * @param name   the person's name.
+     * @param gender the person's gender.
+     */
+    void logPerson(String name, Gender gender) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length + 2 > MAX_PAYLOAD) throw new IllegalArgumentException("The name is too long to be journaled.");
+        append(bytes.length + 2, PERSON, (byte) gender.ordinal(), bytes, 0, 0);
+    }
+
+    /**
+     * Appends the record of a relation that was added to the tree.
+     *
+     * @param id1      the ID of the first person.
+     * @param id2      the ID of the second person.
+     * @param relation the relation the first person has to the second person.
+     */
+    void logRelation(int id1, int id2, Relation relation) {
+        append(2 + 2 * Integer.BYTES, RELATION, (byte) relation.ordinal(), null, id1, id2);
+    }
+
+    /**
+     * Appends a record to the pending buffer, and writes the buffer to the segment once it holds more than
+     * {@link TreeJournal#FLUSH_THRESHOLD} bytes. The record is not durable until the journal is committed.
+     *
+     * @param length the length of the payload.
+     * @param type   the type of the record.
+     * @param value  the gender or relation of the record.
+     * @param name   the name of a person, or {@code null} for a relation.
+     * @param id1    the ID of the first person of a relation.
+     * @param id2    the ID of the second person of a relation.
+     * @throws UncheckedIOException if the segment cannot be written.
+     */
+    private void append(int length, byte type, byte value, byte[] name, int id1, int id2) {
+        boolean full;
+        synchronized (this) {
+            ensurePending(RECORD_HEADER_SIZE + length);
+            int start = pending.position();
+            pending.putInt(length).putInt(0).put(type).put(value);
+            if (name != null) pending.put(name);
+            else pending.putInt(id1).putInt(id2);
+            crc.reset();
+            crc.update(pending.array(), start + RECORD_HEADER_SIZE, length);
+            pending.putInt(start + Integer.BYTES, (int) crc.getValue());
+            appended++;
+            full = pending.position() >= FLUSH_THRESHOLD;
+        }
+        if (full) {
+            try {
+                flush(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Makes every record that has been appended so far durable. If another thread is already writing, this one waits
+     * for it and then writes whatever is left with the next {@code fsync}, so concurrent commits are grouped together.
+     *
+     * @throws IOException if the segment cannot be written.
+     */
+    void commit() throws IOException {
+        flush(true);
+    }
+
+    /**
+     * Writes every record that has been appended so far to the segment, and optionally forces it to the disk. Only one
+     * thread writes at a time; it takes every pending record with it, and the others wait until their records have
+     * been written.
+     *
+     * @param force whether the records must also be forced to the disk.
+     * @throws IOException if the segment cannot be written.
+     */
+    private void flush(boolean force) throws IOException {
+        long target;
+        synchronized (this) {
+            target = appended;
+        }
+        while (true) {
+            ByteBuffer batch;
+            FileChannel out;
+            long upTo;
+            synchronized (this) {
+                while (flushing) waitForFlush();
+                checkFailure();
+                if (force ? durable >= target : written >= target) return;
+                flushing = true;
+                batch = pending;
+                pending = spare;
+                spare = batch;
+                batch.flip();
+                out = channel;
+                upTo = appended;
+            }
+            IOException error = null;
+            try {
+                while (batch.hasRemaining()) out.write(batch);
+                if (force) out.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+            synchronized (this) {
+                batch.clear();
+                flushing = false;
+                if (error == null) {
+                    written = upTo;
+                    if (force) durable = upTo;
+                } else {
+                    failure = error;
+                }
+                notifyAll();
+            }
+            if (error != null) throw error;
+        }
+    }
+
+    /**
+     * Seals the current segment and starts the next generation, then builds the base of the new generation from the
+     * old base and the sealed segments on a background thread. The tree is not touched by the compaction, so it can
+     * keep being changed and journaled while the compaction runs. If a compaction is already running, it is returned
+     * instead.
+     *
+     * @return the compaction, which completes once the new base is in place and the old files have been deleted.
+     * @throws IOException if the current segment cannot be sealed, or the next one cannot be created.
+     */
+    CompletableFuture<Void> compact() throws IOException {
+        long from;
+        long sealed;
+        boolean fromBase;
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        synchronized (this) {
+            if (compaction != null && !compaction.isDone()) return compaction;
+            while (flushing) waitForFlush();
+            checkFailure();
+            flushing = true;
+            try {
+                pending.flip();
+                while (pending.hasRemaining()) channel.write(pending);
+                channel.force(true);
+                pending.clear();
+                written = durable = appended;
+                sealed = generation;
+                FileChannel next = createSegment(segmentPath(sealed + 1), sealed + 1);
+                channel.close();
+                channel = next;
+                generation = sealed + 1;
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            } finally {
+                flushing = false;
+                notifyAll();
+            }
+            from = baseGeneration;
+            fromBase = hasBase;
+            compaction = future;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                buildBase(from, fromBase, sealed);
+                future.complete(null);
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }, "tree-journal-compaction");
+        thread.setDaemon(true);
+        thread.start();
+        return future;
+    }
+
+    /**
+     * Builds the base of the generation after a sealed segment, by loading the old base and replaying the sealed
+     * segments into a tree of its own, and saving that tree as a snapshot. The snapshot is moved into place atomically,
+     * so a crash leaves either the old files or the new base, and the old files are deleted only afterwards.
+     *
+     * @param from     the generation of the old base.
+     * @param fromBase whether the old base exists, or the tree starts empty.
+     * @param sealed   the generation of the last sealed segment.
+     * @throws IOException if the old files cannot be read or the new base cannot be written.
+     */
+    private void buildBase(long from, boolean fromBase, long sealed) throws IOException {
+        GenealogicalTree tree = new GenealogicalTree();
+        if (fromBase) tree.loadSnapshot(basePath(from));
+        for (long segment : generations(directory, "journal-", ".log")) {
+            if (segment >= from && segment <= sealed) replay(segmentPath(segment), segment, tree, false);
+        }
+        tree.saveSnapshot(basePath(sealed + 1));
+        synchronized (this) {
+            baseGeneration = sealed + 1;
+            hasBase = true;
+        }
+        deleteBefore(sealed + 1);
+    }
+
+    /**
+     * Commits the pending records, waits for a running compaction and closes the current segment.
+     *
+     * @throws IOException if the records cannot be committed or the compaction failed.
+     */
+    @Override
+    public void close() throws IOException {
+        commit();
+        CompletableFuture<Void> running;
+        synchronized (this) {
+            running = compaction;
+        }
+        try {
+            if (running != null) running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw e;
+        } finally {
+            synchronized (this) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Replays the records of a segment into a tree.
+     *
+     * @param file       the segment.
+     * @param generation the generation of the segment.
+     * @param tree       the tree to replay the records into.
+     * @param last       whether the segment is the last one, whose torn or corrupt tail is ignored instead of failing.
+     * @return the position after the last valid record, or zero if even the header of the last segment is missing.
+     * @throws IOException if the segment cannot be read, is corrupt and not the last, or refers to unknown people.
+     */
+    private static long replay(Path file, long generation, GenealogicalTree tree, boolean last) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = fill(in, ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN).limit(0),
+                    HEADER_SIZE);
+            if (buffer == null) {
+                if (last) return 0;
+                throw invalid(file, "the header is missing");
+            }
+            if (buffer.getInt() != MAGIC) throw invalid(file, "the file is not a journal segment");
+            int version = buffer.getInt();
+            if (version != VERSION) throw invalid(file, "unsupported version " + version);
+            if (buffer.getLong() != generation) throw invalid(file, "the generation does not match its name");
+
+            long position = HEADER_SIZE;
+            CRC32C crc = new CRC32C();
+            while (true) {
+                ByteBuffer record = fill(in, buffer, RECORD_HEADER_SIZE);
+                if (record == null) {
+                    return position == in.size() ? position : corrupt(file, position, last, "the last record is torn");
+                }
+                int length = record.getInt(record.position());
+                if (length < 2 || length > MAX_PAYLOAD) return corrupt(file, position, last, "bad record length");
+                buffer = fill(in, record, RECORD_HEADER_SIZE + length);
+                if (buffer == null) return corrupt(file, position, last, "the last record is torn");
+                buffer.getInt();
+                int checksum = buffer.getInt();
+                crc.reset();
+                crc.update(buffer.array(), buffer.position(), length);
+                if ((int) crc.getValue() != checksum) return corrupt(file, position, last, "the checksum does not match");
+                apply(file, buffer, length, tree);
+                position += RECORD_HEADER_SIZE + length;
+            }
+        }
+    }
+
+    /**
+     * Reads from a segment until a buffer holds at least the specified number of bytes, growing it if needed.
+     *
+     * @param in     the channel of the segment.
+     * @param buffer the buffer, ready to be read from.
+     * @param length the number of bytes that must be in the buffer.
+     * @return the buffer, or a larger one that took its place, ready to be read from; or {@code null} if the segment
+     * ended first.
+     * @throws IOException if the segment cannot be read.
+     */
+    private static ByteBuffer fill(FileChannel in, ByteBuffer buffer, int length) throws IOException {
+        if (buffer.remaining() >= length) return buffer;
+        if (buffer.capacity() < length) {
+            buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN).put(buffer);
+        } else {
+            buffer.compact();
+        }
+        while (buffer.position() < length) {
+            if (in.read(buffer) < 0) return null;
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Applies the payload of a record to a tree.
+     *
+     * @param file   the segment of the record.
+     * @param buffer the buffer, positioned at the payload.
+     * @param length the length of the payload.
+     * @param tree   the tree to apply the record to.
+     * @throws IOException if the record is invalid or refers to unknown people.
+     */
+    private static void apply(Path file, ByteBuffer buffer, int length, GenealogicalTree tree) throws IOException {
+        byte type = buffer.get();
+        int value = buffer.get();
+        if (type == PERSON) {
+            if (value < 0 || value >= GENDERS.length) throw invalid(file, "bad gender " + value);
+            String name = new String(buffer.array(), buffer.position(), length - 2, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length - 2);
+            tree.addPerson(name, GENDERS[value]);
+        } else if (type == RELATION && length == 2 + 2 * Integer.BYTES) {
+            if (value < 0 || value >= RELATIONS.length) throw invalid(file, "bad relation " + value);
+            int id1 = buffer.getInt();
+            int id2 = buffer.getInt();
+            int size = tree.size();
+            if (id1 < 0 || id1 >= size || id2 < 0 || id2 >= size) throw invalid(file, "bad person ID");
+            tree.addRelation(id1, id2, RELATIONS[value]);
+        } else {
+            throw invalid(file, "bad record type " + type);
+        }
+    }
+
+    /**
+     * Handles a corrupt record, which ends the replay of the last segment, but fails the replay of any other.
+     *
+     * @param file     the segment.
+     * @param position the position of the corrupt record.
+     * @param last     whether the segment is the last one.
+     * @param reason   the reason the record is corrupt.
+     * @return the position of the corrupt record, which the last segment is cut at.
+     * @throws IOException if the segment is not the last one.
+     */
+    private static long corrupt(Path file, long position, boolean last, String reason) throws IOException {
+        if (!last) throw invalid(file, reason + " at " + position);
+        return position;
+    }
+
+    /**
+     * Ensures the pending buffer has room for a record, growing it if needed.
+     *
+     * @param length the length of the record, in bytes.
+     */
+    private void ensurePending(int length) {
+        if (pending.remaining() >= length) return;
+        int capacity = Math.max(pending.capacity() << 1, pending.position() + length);
+        pending = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN).put(pending.flip());
+    }
+
+    /**
+     * Checks that no write to the segment has failed.
+     *
+     * @throws IOException the error of the write that failed.
+     */
+    private void checkFailure() throws IOException {
+        if (failure != null) throw new IOException("The journal can no longer be written.", failure);
+    }
+
+    /**
+     * Waits for the thread that is writing to the segment.
+     *
+     * @throws IOException if the thread is interrupted while waiting.
+     */
+    private void waitForFlush() throws IOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the journal to be written.", e);
+        }
+    }
+
+    /**
+     * Creates a segment with its header, replacing any file that is there.
+     *
+     * @param file       the segment.
+     * @param generation the generation of the segment.
+     * @return the channel of the segment, positioned after the header.
+     * @throws IOException if the segment cannot be created.
+     */
+    private static FileChannel createSegment(Path file, long generation) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        try {
+            writeHeader(channel, generation);
+            channel.force(true);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    /**
+     * Writes the header of a segment at the start of its channel, and cuts anything after it.
+     *
+     * @param channel    the channel of the segment.
+     * @param generation the generation of the segment.
+     * @throws IOException if the header cannot be written.
+     */
+    private static void writeHeader(FileChannel channel, long generation) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putLong(generation).flip();
+        channel.truncate(0).position(0);
+        while (header.hasRemaining()) channel.write(header);
+    }
+
+    /**
+     * Deletes the bases and segments of the generations before the generation of a base.
+     *
+     * @param generation the generation of the base.
+     * @throws IOException if the files cannot be deleted.
+     */
+    private void deleteBefore(long generation) throws IOException {
+        for (long base : generations(directory, "base-", ".snapshot")) {
+            if (base < generation) Files.deleteIfExists(basePath(base));
+        }
+        for (long segment : generations(directory, "journal-", ".log")) {
+            if (segment < generation) Files.deleteIfExists(segmentPath(segment));
+        }
+    }
+
+    /**
+     * Lists the generations of the files in a directory with the specified prefix and suffix.
+     *
+     * @param directory the directory.
+     * @param prefix    the prefix of the files, before the generation.
+     * @param suffix    the suffix of the files, after the generation.
+     * @return the generations, in ascending order.
+     * @throws IOException if the directory cannot be listed.
+     */
+    private static List<Long> generations(Path directory, String prefix, String suffix) throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    generations.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                } catch (NumberFormatException e) {
+                    // Not one of the journal's files.
+                }
+            }
+        }
+        generations.sort(null);
+        return generations;
+    }
+
+    /**
+     * Returns the path of the base of a generation.
+     *
+     * @param generation the generation.
+     * @return the path of the base.
+     */
+    private Path basePath(long generation) {
+        return directory.resolve("base-" + generation + ".snapshot");
+    }
+
+    /**
+     * Returns the path of the segment of a generation.
+     *
+     * @param generation the generation.
+     * @return the path of the segment.
+     */
+    private Path segmentPath(long generation) {
+        return directory.resolve("journal-" + generation + ".log");
+    }
+
+    /**
+     * Creates the exception that is thrown for a segment that is not valid.
+     *
+     * @param file   the segment.
+     * @param reason the reason the segment is not valid.
+     * @return the exception.
+     */
+    private static IOException invalid(Path file, String reason) {
+        return new IOException("Invalid journal segment " + file + ": " + reason + ".");
+    }
+}
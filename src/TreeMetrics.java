@@ -0,0 +1,356 @@
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class holds the metrics of the operations of a {@link GenealogicalTree}: how many times, and how long, the tree
+ * was loaded, exported and queried for relations, with the queries broken down by the relation they found, and how
+ * many lookups asked for a person that is not in the tree. Metrics are enabled with
+ * {@link GenealogicalTree#setMetricsEnabled(boolean)}.
+ * <p>
+ * Recording only adds to {@link LongAdder}s, which never take a lock and rarely contend. Reading the clock twice costs
+ * more than most relation queries, so every relation query is counted, but only one in
+ * {@link TreeMetrics#QUERY_SAMPLE_RATE}, picked at random, is timed; the times of the relation queries are those of the
+ * sample. Loads and exports are rare and slow, and are always timed. The metrics can be read through the getters of
+ * {@link TreeMetricsMBean}, published over JMX with {@link TreeMetrics#register(String)}, or printed as text every so
+ * often with {@link TreeMetrics#dumpEvery(PrintStream, Duration)}.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+public class TreeMetrics implements TreeMetricsMBean {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The domain of the JMX names of the metrics.
+     */
+    static final String DOMAIN = "genealogy";
+
+    /**
+     * The number of relation queries per query that is timed, a power of two.
+     */
+    static final int QUERY_SAMPLE_RATE = 16;
+
+    /**
+     * The relations, indexed by ordinal.
+     */
+    private static final Relation[] RELATIONS = Relation.values();
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The times of the loads.
+     */
+    private final LatencyHistogram loads = new LatencyHistogram();
+
+    /**
+     * The times of the exports.
+     */
+    private final LatencyHistogram exports = new LatencyHistogram();
+
+    /**
+     * The number of relation queries, indexed by the ordinal of the relation they found.
+     */
+    private final LongAdder[] relationCounts = new LongAdder[RELATIONS.length];
+
+    /**
+     * The times of the sampled relation queries, indexed by the ordinal of the relation they found.
+     */
+    private final LatencyHistogram[] relations = new LatencyHistogram[RELATIONS.length];
+
+    /**
+     * The number of lookups of a person that is not in the tree.
+     */
+    private final LongAdder lookupMisses = new LongAdder();
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link TreeMetrics} class.
+     */
+    TreeMetrics() {
+        for (int i = 0; i < relations.length; i++) {
+            relationCounts[i] = new LongAdder();
+            relations[i] = new LatencyHistogram();
+        }
+    }
+
+    // ######################### METHODS #########################
+
+    /**
+     * Records a load of the tree.
+     *
+     * @param nanos the time of the load, in nanoseconds.
+     */
+    void recordLoad(long nanos) {
+        loads.record(nanos);
+    }
+
+    /**
+     * Records an export of the tree.
+     *
+     * @param nanos the time of the export, in nanoseconds.
+     */
+    void recordExport(long nanos) {
+        exports.record(nanos);
+    }
+
+    /**
+     * Decides whether the relation query that is about to run is timed.
+     *
+     * @return {@code true} for one in {@link TreeMetrics#QUERY_SAMPLE_RATE} queries, at random.
+     */
+    boolean sampleQuery() {
+        return (ThreadLocalRandom.current().nextInt() & (QUERY_SAMPLE_RATE - 1)) == 0;
+    }
+
+    /**
+     * Counts a relation query that was not timed.
+     *
+     * @param relation the relation the query found.
+     */
+    void countRelation(Relation relation) {
+        relationCounts[relation.ordinal()].increment();
+    }
+
+    /**
+     * Counts and records a relation query that was timed.
+     *
+     * @param relation the relation the query found.
+     * @param nanos    the time of the query, in nanoseconds.
+     */
+    void recordRelation(Relation relation, long nanos) {
+        relationCounts[relation.ordinal()].increment();
+        relations[relation.ordinal()].record(nanos);
+    }
+
+    /**
+     * Records a lookup of a person that is not in the tree.
+     */
+    void recordLookupMiss() {
+        lookupMisses.increment();
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, so they can be read over JMX. If metrics with the same
+     * name are already registered, they are replaced.
+     *
+     * @param name the name the metrics are registered under, e.g. the name of the tree.
+     * @return the JMX name of the metrics.
+     * @throws JMException if the metrics cannot be registered.
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = objectName(name);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(this, objectName);
+        } catch (InstanceAlreadyExistsException e) {
+            server.unregisterMBean(objectName);
+            server.registerMBean(this, objectName);
+        }
+        return objectName;
+    }
+
+    /**
+     * Unregisters the metrics from the platform MBean server, if they are registered.
+     *
+     * @param name the name the metrics were registered under.
+     * @throws JMException if the metrics cannot be unregistered.
+     */
+    public void unregister(String name) throws JMException {
+        ObjectName objectName = objectName(name);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+    }
+
+    /**
+     * Prints the metrics to a stream at a fixed rate, from a daemon thread, until the returned task is cancelled.
+     *
+     * @param out    the stream to print to.
+     * @param period the time between two dumps.
+     * @return the task that prints the metrics.
+     */
+    public ScheduledFuture<?> dumpEvery(PrintStream out, Duration period) {
+        long millis = period.toMillis();
+        if (millis <= 0) throw new IllegalArgumentException("The period of the dump must be positive.");
+        return Dumper.SCHEDULER.scheduleAtFixedRate(() -> out.println(dump()), millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long getLoads() {
+        return loads.snapshot().count();
+    }
+
+    @Override
+    public double getLoadMeanMillis() {
+        return loads.snapshot().mean() / 1e6;
+    }
+
+    @Override
+    public double getLoadMaxMillis() {
+        return loads.snapshot().max() / 1e6;
+    }
+
+    @Override
+    public long getExports() {
+        return exports.snapshot().count();
+    }
+
+    @Override
+    public double getExportMeanMillis() {
+        return exports.snapshot().mean() / 1e6;
+    }
+
+    @Override
+    public double getExportMaxMillis() {
+        return exports.snapshot().max() / 1e6;
+    }
+
+    @Override
+    public long getRelationQueries() {
+        long count = 0;
+        for (LongAdder relationCount : relationCounts) count += relationCount.sum();
+        return count;
+    }
+
+    @Override
+    public double getRelationQueryMeanMicros() {
+        return relationQueries().mean() / 1e3;
+    }
+
+    @Override
+    public double getRelationQueryP50Micros() {
+        return relationQueries().percentile(50) / 1e3;
+    }
+
+    @Override
+    public double getRelationQueryP99Micros() {
+        return relationQueries().percentile(99) / 1e3;
+    }
+
+    @Override
+    public double getRelationQueryMaxMicros() {
+        return relationQueries().max() / 1e3;
+    }
+
+    @Override
+    public String[] getRelationBreakdown() {
+        List<String> lines = new ArrayList<>();
+        for (Relation relation : RELATIONS) {
+            long count = relationCounts[relation.ordinal()].sum();
+            if (count > 0) lines.add(relation + ": " + micros(count, relations[relation.ordinal()].snapshot()));
+        }
+        return lines.toArray(new String[0]);
+    }
+
+    @Override
+    public long getLookupMisses() {
+        return lookupMisses.sum();
+    }
+
+    @Override
+    public String dump() {
+        StringBuilder dump = new StringBuilder();
+        dump.append("loads: ").append(millis(loads.snapshot())).append('\n');
+        dump.append("exports: ").append(millis(exports.snapshot())).append('\n');
+        dump.append("relation queries: ").append(micros(getRelationQueries(), relationQueries())).append('\n');
+        for (String line : getRelationBreakdown()) dump.append("  ").append(line).append('\n');
+        dump.append("lookup misses: ").append(getLookupMisses());
+        return dump.toString();
+    }
+
+    @Override
+    public void reset() {
+        loads.reset();
+        exports.reset();
+        for (LongAdder relationCount : relationCounts) relationCount.reset();
+        for (LatencyHistogram histogram : relations) histogram.reset();
+        lookupMisses.reset();
+    }
+
+    /**
+     * Overrides the {@link Object#toString()} method, to return the metrics as text.
+     *
+     * @return the metrics, as returned by {@link TreeMetrics#dump()}.
+     */
+    @Override
+    public String toString() {
+        return dump();
+    }
+
+    /**
+     * Adds up the times of the sampled relation queries of all relations.
+     *
+     * @return a snapshot of the times of all sampled relation queries.
+     */
+    private LatencyHistogram.Snapshot relationQueries() {
+        LatencyHistogram.Snapshot all = relations[0].snapshot();
+        for (int i = 1; i < relations.length; i++) all = all.plus(relations[i].snapshot());
+        return all;
+    }
+
+    /**
+     * Formats the count and times of a slow operation, in milliseconds.
+     *
+     * @param snapshot the times of the operation.
+     * @return the count, mean and longest time.
+     */
+    private static String millis(LatencyHistogram.Snapshot snapshot) {
+        return String.format("%d, mean %.3f ms, max %.3f ms", snapshot.count(), snapshot.mean() / 1e6,
+                snapshot.max() / 1e6);
+    }
+
+    /**
+     * Formats the count and sampled times of a fast operation, in microseconds.
+     *
+     * @param count    the number of operations.
+     * @param snapshot the times of the sampled operations.
+     * @return the count, mean, median, 99th percentile and longest time.
+     */
+    private static String micros(long count, LatencyHistogram.Snapshot snapshot) {
+        return String.format("%d, mean %.2f us, p50 %.2f us, p99 %.2f us, max %.2f us", count,
+                snapshot.mean() / 1e3, snapshot.percentile(50) / 1e3, snapshot.percentile(99) / 1e3,
+                snapshot.max() / 1e3);
+    }
+
+    /**
+     * Builds the JMX name of the metrics.
+     *
+     * @param name the name the metrics are registered under.
+     * @return the JMX name.
+     * @throws JMException if the name is not valid.
+     */
+    private static ObjectName objectName(String name) throws JMException {
+        return new ObjectName(DOMAIN + ":type=TreeMetrics,name=" + ObjectName.quote(name));
+    }
+
+    // ####################### NESTED TYPES #######################
+
+    /**
+     * The holder of the scheduler of the periodic dumps, which is only started when a dump is first scheduled.
+     */
+    private static class Dumper {
+
+        /**
+         * The scheduler of the periodic dumps, with a single daemon thread.
+         */
+        static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "tree-metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
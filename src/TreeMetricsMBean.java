@@ -0,0 +1,114 @@
+/**
+ * This interface is the management interface of the {@link TreeMetrics} of a {@link GenealogicalTree}, through which
+ * they are published over JMX, e.g. to JConsole or VisualVM. Every relation query is counted, but only a random sample
+ * of them is timed; see {@link TreeMetrics#QUERY_SAMPLE_RATE}.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+public interface TreeMetricsMBean {
+
+    /**
+     * Returns the number of times the tree was loaded from a file.
+     *
+     * @return the number of loads.
+     */
+    long getLoads();
+
+    /**
+     * Returns the mean time of the loads.
+     *
+     * @return the mean time of the loads, in milliseconds.
+     */
+    double getLoadMeanMillis();
+
+    /**
+     * Returns the longest time of the loads.
+     *
+     * @return the longest time of the loads, in milliseconds.
+     */
+    double getLoadMaxMillis();
+
+    /**
+     * Returns the number of times the tree was exported to a CSV file.
+     *
+     * @return the number of exports.
+     */
+    long getExports();
+
+    /**
+     * Returns the mean time of the exports.
+     *
+     * @return the mean time of the exports, in milliseconds.
+     */
+    double getExportMeanMillis();
+
+    /**
+     * Returns the longest time of the exports.
+     *
+     * @return the longest time of the exports, in milliseconds.
+     */
+    double getExportMaxMillis();
+
+    /**
+     * Returns the number of relations that were found.
+     *
+     * @return the number of relation queries.
+     */
+    long getRelationQueries();
+
+    /**
+     * Returns the mean time of the relation queries that were timed.
+     *
+     * @return the mean time of the relation queries, in microseconds.
+     */
+    double getRelationQueryMeanMicros();
+
+    /**
+     * Returns the median time of the relation queries that were timed.
+     *
+     * @return the median time of the relation queries, in microseconds.
+     */
+    double getRelationQueryP50Micros();
+
+    /**
+     * Returns the 99th percentile of the time of the relation queries that were timed.
+     *
+     * @return the 99th percentile of the time of the relation queries, in microseconds.
+     */
+    double getRelationQueryP99Micros();
+
+    /**
+     * Returns the longest time of the relation queries that were timed.
+     *
+     * @return the longest time of the relation queries, in microseconds.
+     */
+    double getRelationQueryMaxMicros();
+
+    /**
+     * Returns the relation queries of each resulting relation, one line per relation that was found at least once, with
+     * the times of the queries of the relation that were timed.
+     *
+     * @return the number and times of the queries of each relation.
+     */
+    String[] getRelationBreakdown();
+
+    /**
+     * Returns the number of lookups of a person that is not in the tree.
+     *
+     * @return the number of lookup misses.
+     */
+    long getLookupMisses();
+
+    /**
+     * Returns all the metrics as text, as they are printed by the periodic dump.
+     *
+     * @return the metrics, one line per operation.
+     */
+    String dump();
+
+    /**
+     * Discards all the metrics recorded so far.
+     */
+    void reset();
+}
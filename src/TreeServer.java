@@ -0,0 +1,504 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * This class serves the queries of a genealogical tree over HTTP, as JSON, so the tree can run as a long-lived service
+ * instead of through the menu of {@link GenealogicalTreeApp}.
+ * <p>
+ * The following endpoints are served; names are passed as URL-encoded query parameters:
+ * <ul>
+ * <li>{@code GET /relation?from=<name>&to=<name>}: the relation of the first person to the second, as
+ * {@code {"from":..,"to":..,"relation":..}}.
+ * <li>{@code GET /kinship?from=<name>&to=<name>}: the blood relation of any degree, in the same form.
+ * <li>{@code GET /connection?from=<name>&to=<name>[&spouses=false]}: a shortest path of parent, child and, unless
+ * {@code spouses} is {@code false}, spouse links from the first person to the second, as {@code names} and the
+ * {@code relations} of each person to the next, which are empty if the people are not connected.
+ * <li>{@code GET /person?name=<name>}: the person, with their gender, father, mother, spouse and children.
+ * <li>{@code GET /relatives?name=<name>&kind=<kind>}: the names of the person's relatives of one kind, which is one of
+ * {@code siblings}, {@code grandparents}, {@code grandchildren}, {@code unclesAndAunts}, {@code cousins} and
+ * {@code nephewsAndNieces}, or all of them, grouped by relation, for the kind {@code all}.
+ * <li>{@code POST /relations}: the relations of many pairs, sent as the body of the request with one {@code name,name}
+ * pair per line, like the pairs file of the batch mode. The response is an array with one result per pair, in order; a
+ * pair that cannot be resolved has an {@code error} instead of a {@code relation}.
+ * </ul>
+ * A name that is not in the tree, or a path that is not one of the above, is answered with {@code 404}, a missing or
+ * invalid parameter with {@code 400}, and any other failure with {@code 500}, all with an {@code error} message. Every
+ * request is handled on a virtual thread of its own when the runtime supports them, i.e. on Java 21 or later, and
+ * otherwise on a pool with one thread per available processor. The server only queries the tree, and reads the
+ * {@link Person} views of {@code /person} and {@code /relatives} through {@link GenealogicalTree#withPerson}, so it is
+ * safe while other threads change the tree; see {@link GenealogicalTree}.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+class TreeServer {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The default port of the server.
+     */
+    static final int DEFAULT_PORT = 8080;
+
+    /**
+     * The number of connections that may wait to be accepted.
+     */
+    private static final int BACKLOG = 1024;
+
+    /**
+     * The largest body of a batch request, in bytes.
+     */
+    private static final int MAX_BATCH_BYTES = 16 << 20;
+
+    static {
+        // The headers and body of a response are written separately; without this, Nagle's algorithm holds back the
+        // body until the client acknowledges the headers, which adds tens of milliseconds to every request.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The tree whose queries are served.
+     */
+    private final GenealogicalTree tree;
+
+    /**
+     * The HTTP server.
+     */
+    private final HttpServer server;
+
+    /**
+     * The executor the requests are handled on.
+     */
+    private final ExecutorService executor;
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link TreeServer} class. The server is bound to the port, but does not serve requests
+     * until it is started.
+     *
+     * @param tree the tree whose queries are served.
+     * @param port the port to listen on, or zero for any free port.
+     * @throws IOException if the port cannot be bound.
+     */
+    TreeServer(GenealogicalTree tree, int port) throws IOException {
+        this.tree = tree;
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        this.executor = requestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/relation", handler("GET", this::relation));
+        server.createContext("/kinship", handler("GET", this::kinship));
+        server.createContext("/connection", handler("GET", this::connection));
+        server.createContext("/person", handler("GET", this::person));
+        server.createContext("/relatives", handler("GET", this::relatives));
+        server.createContext("/relations", handler("POST", this::relations));
+    }
+
+    // ######################### METHODS #########################
+
+    /**
+     * Starts serving requests.
+     */
+    void start() {
+        server.start();
+    }
+
+    /**
+     * Stops serving requests, waiting up to a second for the requests that are being handled.
+     */
+    void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the port.
+     */
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Answers {@code GET /relation}.
+     *
+     * @param exchange the exchange of the request.
+     * @return the JSON of the relation.
+     * @throws PersonNotFoundException if either of the people are not in the tree.
+     * @throws InvalidInputException   if either of the names is missing.
+     */
+    private String relation(HttpExchange exchange) throws PersonNotFoundException, InvalidInputException {
+        Map<String, String> query = query(exchange);
+        String from = require(query, "from");
+        String to = require(query, "to");
+        return pair(new StringBuilder(), from, to).append(",\"relation\":")
+                .append(quote(tree.findRelation(from, to).toString())).append('}').toString();
+    }
+
+    /**
+     * Answers {@code GET /kinship}.
+     *
+     * @param exchange the exchange of the request.
+     * @return the JSON of the kinship.
+     * @throws PersonNotFoundException if either of the people are not in the tree.
+     * @throws InvalidInputException   if either of the names is missing.
+     */
+    private String kinship(HttpExchange exchange) throws PersonNotFoundException, InvalidInputException {
+        Map<String, String> query = query(exchange);
+        String from = require(query, "from");
+        String to = require(query, "to");
+        return pair(new StringBuilder(), from, to).append(",\"kinship\":")
+                .append(quote(tree.findKinship(from, to).toString())).append('}').toString();
+    }
+
+    /**
+     * Answers {@code GET /connection}.
+     *
+     * @param exchange the exchange of the request.
+     * @return the JSON of the connection.
+     * @throws PersonNotFoundException if either of the people are not in the tree.
+     * @throws InvalidInputException   if either of the names is missing.
+     */
+    private String connection(HttpExchange exchange) throws PersonNotFoundException, InvalidInputException {
+        Map<String, String> query = query(exchange);
+        String from = require(query, "from");
+        String to = require(query, "to");
+        Connection connection = tree.findConnection(from, to, ConnectionFinder.DEFAULT_MAX_DEPTH,
+                ConnectionFinder.DEFAULT_MAX_FRONTIER, !"false".equals(query.get("spouses")));
+        StringBuilder json = pair(new StringBuilder(), from, to).append(",\"names\":[");
+        for (int i = 0; i < connection.getNames().size(); i++) {
+            json.append(i == 0 ? "" : ",").append(quote(connection.getNames().get(i)));
+        }
+        json.append("],\"relations\":[");
+        for (int i = 0; i < connection.getRelations().size(); i++) {
+            json.append(i == 0 ? "" : ",").append(quote(connection.getRelations().get(i).toString()));
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Answers {@code GET /person}.
+     *
+     * @param exchange the exchange of the request.
+     * @return the JSON of the person.
+     * @throws PersonNotFoundException if the person is not in the tree.
+     * @throws InvalidInputException   if the name is missing.
+     */
+    private String person(HttpExchange exchange) throws PersonNotFoundException, InvalidInputException {
+        return tree.withPerson(require(query(exchange), "name"), person -> {
+            StringBuilder json = new StringBuilder("{\"name\":").append(quote(person.getName()))
+                    .append(",\"gender\":").append(quote(person.getGender().toString()))
+                    .append(",\"father\":").append(nameOf(person.getFather()))
+                    .append(",\"mother\":").append(nameOf(person.getMother()))
+                    .append(",\"spouse\":").append(nameOf(person.getSpouse()))
+                    .append(",\"children\":");
+            return names(json, person.getChildren()).append('}').toString();
+        });
+    }
+
+    /**
+     * Answers {@code GET /relatives}.
+     *
+     * @param exchange the exchange of the request.
+     * @return the JSON of the relatives.
+     * @throws PersonNotFoundException if the person is not in the tree.
+     * @throws InvalidInputException   if the name or kind is missing, or the kind is unknown.
+     */
+    private String relatives(HttpExchange exchange) throws PersonNotFoundException, InvalidInputException {
+        Map<String, String> query = query(exchange);
+        String kind = require(query, "kind");
+        if (kind.equals("all")) return allRelatives(require(query, "name"));
+        Function<Person, Set<Person>> finder = switch (kind) {
+            case "siblings" -> Person::findSiblings;
+            case "grandparents" -> Person::findGrandparents;
+            case "grandchildren" -> Person::findGrandchildren;
+            case "unclesAndAunts" -> Person::findUnclesAndAunts;
+            case "cousins" -> Person::findCousins;
+            case "nephewsAndNieces" -> Person::findNephewsAndNieces;
+            default -> throw new InvalidInputException("Unknown kind of relatives: " + kind);
+        };
+        return tree.withPerson(require(query, "name"), person -> {
+            StringBuilder json = new StringBuilder("{\"name\":").append(quote(person.getName()))
+                    .append(",\"kind\":").append(quote(kind)).append(",\"relatives\":");
+            return names(json, finder.apply(person)).append('}').toString();
+        });
+    }
+
+    /**
+     * Answers {@code GET /relatives} for the kind {@code all}, with the relatives grouped by their relation to the
+     * person. The relatives are found again if the tree is changed while they are walked.
+     *
+     * @param name the name of the person.
+     * @return the JSON of the relatives.
+     * @throws PersonNotFoundException if the person is not in the tree.
+     */
+    private String allRelatives(String name) throws PersonNotFoundException {
+        Relatives relatives;
+        Map<Relation, List<Person>> groups;
+        while (true) {
+            relatives = tree.findRelatives(name);
+            try {
+                groups = relatives.toMap();
+                break;
+            } catch (ConcurrentModificationException e) {
+                // The tree was changed after the person was found, so they are found again.
+            }
+        }
+        StringBuilder json = new StringBuilder("{\"name\":").append(quote(relatives.getPerson().getName()))
+                .append(",\"kind\":\"all\",\"relatives\":{");
+        boolean first = true;
+        for (Map.Entry<Relation, List<Person>> group : groups.entrySet()) {
+            if (!first) json.append(',');
+            names(json.append(quote(group.getKey().toString())).append(':'), group.getValue());
+            first = false;
+        }
+        return json.append("}}").toString();
+    }
+
+    /**
+     * Answers {@code POST /relations}.
+     *
+     * @param exchange the exchange of the request.
+     * @return the JSON array of the relations.
+     * @throws IOException           if the body cannot be read.
+     * @throws InvalidInputException if the body is too large.
+     */
+    private String relations(HttpExchange exchange) throws IOException, InvalidInputException {
+        String body;
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BATCH_BYTES + 1);
+            if (bytes.length > MAX_BATCH_BYTES) throw new InvalidInputException("The batch is too large.");
+            body = new String(bytes, StandardCharsets.UTF_8);
+        }
+        StringBuilder json = new StringBuilder("[");
+        for (String line : body.split("\r?\n")) {
+            if (line.isBlank()) continue;
+            if (json.length() > 1) json.append(',');
+            String[] names = line.split(",");
+            if (names.length != 2) {
+                json.append("{\"pair\":").append(quote(line))
+                        .append(",\"error\":").append(quote("Expected 2 names separated by comma.")).append('}');
+                continue;
+            }
+            pair(json, names[0], names[1]);
+            try {
+                Relation relation = tree.findRelation(names[0], names[1]);
+                json.append(",\"relation\":").append(quote(relation.toString()));
+            } catch (PersonNotFoundException e) {
+                json.append(",\"error\":").append(quote(e.getMessage()));
+            }
+            json.append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * Creates the handler of an endpoint, which checks the path and method of the request, runs the endpoint and sends
+     * its result, or an error. A path that only starts with the path of the endpoint is not found, and any unexpected
+     * failure of the endpoint, e.g. a snapshot that turns out to be corrupt, is answered with {@code 500}.
+     *
+     * @param method   the method the endpoint accepts.
+     * @param endpoint the endpoint.
+     * @return the handler.
+     */
+    private static HttpHandler handler(String method, Endpoint endpoint) {
+        return exchange -> {
+            try (exchange) {
+                int status = 200;
+                String json;
+                try {
+                    if (!exchange.getRequestURI().getPath().equals(exchange.getHttpContext().getPath())) {
+                        // Contexts match by prefix, so e.g. /relationsfoo would otherwise reach /relation.
+                        status = 404;
+                        json = error("Not found: " + exchange.getRequestURI().getPath());
+                    } else if (!exchange.getRequestMethod().equals(method)) {
+                        exchange.getResponseHeaders().set("Allow", method);
+                        status = 405;
+                        json = error("Method not allowed: " + exchange.getRequestMethod());
+                    } else {
+                        json = endpoint.answer(exchange);
+                    }
+                } catch (PersonNotFoundException e) {
+                    status = 404;
+                    json = error(e.getMessage());
+                } catch (InvalidInputException | IllegalArgumentException e) {
+                    status = 400;
+                    json = error(e.getMessage());
+                } catch (RuntimeException e) {
+                    status = 500;
+                    json = error(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+                }
+                byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+                exchange.sendResponseHeaders(status, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            }
+        };
+    }
+
+    /**
+     * Parses the query parameters of a request.
+     *
+     * @param exchange the exchange of the request.
+     * @return the decoded parameters, by name.
+     */
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) return parameters;
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals < 0) continue;
+            parameters.put(URLDecoder.decode(parameter.substring(0, equals), StandardCharsets.UTF_8),
+                    URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    /**
+     * Returns a query parameter that must be present.
+     *
+     * @param query the query parameters.
+     * @param name  the name of the parameter.
+     * @return the value of the parameter.
+     * @throws InvalidInputException if the parameter is missing or empty.
+     */
+    private static String require(Map<String, String> query, String name) throws InvalidInputException {
+        String value = query.get(name);
+        if (value == null || value.isEmpty()) throw new InvalidInputException("Missing parameter: " + name);
+        return value;
+    }
+
+    /**
+     * Opens the JSON object of a pair of names.
+     *
+     * @param json the JSON to append to.
+     * @param from the name of the first person.
+     * @param to   the name of the second person.
+     * @return the JSON.
+     */
+    private static StringBuilder pair(StringBuilder json, String from, String to) {
+        return json.append("{\"from\":").append(quote(from)).append(",\"to\":").append(quote(to));
+    }
+
+    /**
+     * Appends the names of some people as a JSON array.
+     *
+     * @param json   the JSON to append to.
+     * @param people the people.
+     * @return the JSON.
+     */
+    private static StringBuilder names(StringBuilder json, Collection<Person> people) {
+        json.append('[');
+        boolean first = true;
+        for (Person person : people) {
+            if (!first) json.append(',');
+            json.append(quote(person.getName()));
+            first = false;
+        }
+        return json.append(']');
+    }
+
+    /**
+     * Returns the name of a person as JSON.
+     *
+     * @param person the person, or {@code null}.
+     * @return the quoted name, or {@code null} if there is no person.
+     */
+    private static String nameOf(Person person) {
+        return person == null ? "null" : quote(person.getName());
+    }
+
+    /**
+     * Creates the JSON of an error.
+     *
+     * @param message the message of the error.
+     * @return the JSON.
+     */
+    private static String error(String message) {
+        return "{\"error\":" + quote(message) + "}";
+    }
+
+    /**
+     * Quotes a string as JSON.
+     *
+     * @param value the string.
+     * @return the quoted and escaped string.
+     */
+    static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                case '\r' -> quoted.append("\\r");
+                case '\t' -> quoted.append("\\t");
+                default -> {
+                    if (c < 0x20) quoted.append(String.format("\\u%04x", (int) c));
+                    else quoted.append(c);
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Creates the executor the requests are handled on: one virtual thread per request, if the runtime supports
+     * virtual threads, and otherwise a pool with one thread per available processor.
+     *
+     * @return the executor.
+     */
+    private static ExecutorService requestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    // ####################### NESTED TYPES #######################
+
+    /**
+     * An endpoint of the server, that answers a request with JSON.
+     */
+    @FunctionalInterface
+    private interface Endpoint {
+
+        /**
+         * Answers a request.
+         *
+         * @param exchange the exchange of the request.
+         * @return the JSON of the answer.
+         * @throws IOException             if the request cannot be read.
+         * @throws PersonNotFoundException if a person of the request is not in the tree.
+         * @throws InvalidInputException   if the request is invalid.
+         */
+        String answer(HttpExchange exchange) throws IOException, PersonNotFoundException, InvalidInputException;
+    }
+}
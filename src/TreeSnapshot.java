@@ -0,0 +1,521 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * This class saves the people of a {@link PersonStore} to a binary snapshot file, and loads them back.
+ * <p>
+ * A snapshot is a fixed-size header, followed by five sections, all little-endian:
+ * <ol>
+ * <li>the name dictionary: the UTF-8 bytes of every name, one after the other, padded to a multiple of four bytes;
+ * <li>the name index: the offset of every name in the dictionary, plus the offset of the end of the dictionary;
+ * <li>the person records: six ints per person, i.e. the IDs of the father, mother and spouse, the index of the first
+ * child in the child adjacency, the number of children and the ordinal of the gender;
+ * <li>the child adjacency: the IDs of the children of every person, in order of ID;
+ * <li>the name table: an open-addressing hash table with linear probing, that maps the name of every person who can
+ * be found by name to their ID, in the layout of the table of {@link OffHeapPersonStore}: each slot is two ints, the
+ * ID plus one, or zero if the slot is empty, and the hash of the name, see {@link TreeSnapshot#nameHash(String)}.
+ * </ol>
+ * The header holds the format version, the size and position of every section, the number of slots of the name table,
+ * and a CRC-32C checksum of all of them. Snapshots of version 1 have no name table.
+ * <p>
+ * Loading maps the sections into memory and copies them into the store's arrays in bulk, so no text has to be parsed
+ * and no relation has to be resolved by name; the name dictionary and index are taken over by the store's
+ * {@link NameDictionary} as they are, without decoding the names, and the name table is not needed. Opening a snapshot
+ * maps the sections into a {@link SnapshotPersonStore} instead, which reads them in place, so only the parts of the
+ * file that queries touch are ever read.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+class TreeSnapshot {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The first four bytes of every snapshot, {@code GTSS} in ASCII.
+     */
+    static final int MAGIC = 0x53535447;
+
+    /**
+     * The version of the format that is written.
+     */
+    static final int VERSION = 2;
+
+    /**
+     * The flag that is set if every parent link of the saved people is matched by a child link, and the other way
+     * around.
+     */
+    static final int FLAG_LINKS_CONSISTENT = 1;
+
+    /**
+     * The size of the header, in bytes.
+     */
+    private static final int HEADER_SIZE = 64;
+
+    /**
+     * The number of ints in a person record.
+     */
+    static final int RECORD_INTS = 6;
+
+    /**
+     * The number of ints in a slot of the name table.
+     */
+    static final int SLOT_INTS = 2;
+
+    /**
+     * The size of the buffer that sections are written through, in bytes.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * The genders, indexed by the ordinals stored in the records.
+     */
+    private static final Gender[] GENDERS = Gender.values();
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Private constructor method for the {@link TreeSnapshot} class, which only has static methods.
+     */
+    private TreeSnapshot() {
+    }
+
+    // ######################### METHODS #########################
+
+    /**
+     * Saves the people of a store to a snapshot file. The snapshot is written to a temporary file next to the target,
+     * which is then moved over it, so an existing snapshot is never left half-written.
+     *
+     * @param people the people to save.
+     * @param flags  the flags of the snapshot, e.g. {@link TreeSnapshot#FLAG_LINKS_CONSISTENT}.
+     * @param file   the file to write to.
+     * @throws IOException if the file cannot be written.
+     */
+    static void write(PersonStore people, int flags, Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        int count = people.size();
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            Output out = new Output(channel, HEADER_SIZE);
+
+            int[] nameOffsets = new int[count + 1];
+            int[] nameHashes = new int[count];
+            long nameBytes = 0;
+            for (int id = 0; id < count; id++) {
+                String name = people.name(id);
+                nameHashes[id] = nameHash(name);
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                out.putBytes(bytes);
+                nameBytes += bytes.length;
+                if (nameBytes > Integer.MAX_VALUE) throw new IOException("The names are too large for a snapshot.");
+                nameOffsets[id + 1] = (int) nameBytes;
+            }
+            out.pad();
+
+            long nameIndexOffset = out.position();
+            for (int offset : nameOffsets) out.putInt(offset);
+
+            long recordsOffset = out.position();
+            int firstChild = 0;
+            for (int id = 0; id < count; id++) {
+                int children = people.childCount(id);
+                out.putInt(people.father(id));
+                out.putInt(people.mother(id));
+                out.putInt(people.spouse(id));
+                out.putInt(firstChild);
+                out.putInt(children);
+                out.putInt(people.gender(id).ordinal());
+                firstChild += children;
+            }
+
+            long childrenOffset = out.position();
+            for (int id = 0; id < count; id++) {
+                for (int i = 0, children = people.childCount(id); i < children; i++) out.putInt(people.child(id, i));
+            }
+
+            long tableSlots = Long.highestOneBit(Math.max(count, 1) * 2L - 1) << 1;
+            if (tableSlots * SLOT_INTS * Integer.BYTES > Integer.MAX_VALUE) {
+                throw new IOException("The name table is too large for a snapshot.");
+            }
+            int slots = (int) tableSlots;
+            out.putMapped(slots * SLOT_INTS * Integer.BYTES, section -> {
+                IntBuffer table = section.asIntBuffer();
+                int mask = slots - 1;
+                for (int id = 0; id < count; id++) {
+                    int hash = nameHashes[id];
+                    int slot = hash & mask;
+                    for (int entry; (entry = table.get(slot * SLOT_INTS)) != 0; slot = (slot + 1) & mask) {
+                        if (table.get(slot * SLOT_INTS + 1) == hash
+                                && people.name(entry - 1).equals(people.name(id))) break;
+                    }
+                    table.put(slot * SLOT_INTS, id + 1);
+                    table.put(slot * SLOT_INTS + 1, hash);
+                }
+            });
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(flags).putInt(count).putInt(firstChild).putInt(slots)
+                    .putLong(HEADER_SIZE).putLong(nameIndexOffset).putLong(recordsOffset).putLong(childrenOffset)
+                    .putLong(out.checksum()).flip();
+            while (header.hasRemaining()) channel.write(header, header.position());
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads the people of a snapshot file into an empty store. The checksum of the snapshot is verified, and every ID
+     * is checked to be in range, before the store is filled.
+     *
+     * @param file   the file to read.
+     * @param people the store to fill.
+     * @return the flags of the snapshot.
+     * @throws IOException if the file cannot be read or is not a valid snapshot.
+     */
+    static int read(Path file, PersonStore people) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Header header = readHeader(file, channel);
+            int count = header.count();
+            int links = header.links();
+            ByteBuffer dictionary = map(channel, HEADER_SIZE, header.nameIndexOffset() - HEADER_SIZE);
+            ByteBuffer nameIndex = map(channel, header.nameIndexOffset(), 4L * (count + 1));
+            ByteBuffer records = map(channel, header.recordsOffset(), 4L * RECORD_INTS * count);
+            ByteBuffer adjacency = map(channel, header.childrenOffset(), 4L * links);
+            ByteBuffer table = map(channel, header.tableOffset(), 4L * SLOT_INTS * header.slots());
+            CRC32C crc = new CRC32C();
+            for (ByteBuffer section : new ByteBuffer[]{dictionary, nameIndex, records, adjacency, table}) {
+                crc.update(section.duplicate());
+            }
+            if (crc.getValue() != header.checksum()) throw invalid(file, "the checksum does not match");
+
+            byte[] names = new byte[dictionary.remaining()];
+            dictionary.get(names);
+            int[] nameOffsets = new int[count + 1];
+            nameIndex.asIntBuffer().get(nameOffsets);
+            if (nameOffsets[0] != 0) throw invalid(file, "bad name offset of person 0");
+            for (int id = 0; id < count; id++) {
+                if (nameOffsets[id + 1] < nameOffsets[id] || nameOffsets[id + 1] > names.length) {
+                    throw invalid(file, "bad name offset of person " + id);
+                }
+            }
+
+            byte[] genders = new byte[count];
+            int[] fathers = new int[count];
+            int[] mothers = new int[count];
+            int[] spouses = new int[count];
+            int[] childCounts = new int[count];
+            IntBuffer fields = records.asIntBuffer();
+            int firstChild = 0;
+            for (int id = 0, at = 0; id < count; id++, at += RECORD_INTS) {
+                fathers[id] = checkId(file, fields.get(at), count);
+                mothers[id] = checkId(file, fields.get(at + 1), count);
+                spouses[id] = checkId(file, fields.get(at + 2), count);
+                int children = fields.get(at + 4);
+                int gender = fields.get(at + 5);
+                if (fields.get(at + 3) != firstChild || children < 0 || links - firstChild < children) {
+                    throw invalid(file, "bad children of person " + id);
+                }
+                if (gender < 0 || gender >= GENDERS.length) throw invalid(file, "bad gender of person " + id);
+                childCounts[id] = children;
+                genders[id] = (byte) gender;
+                firstChild += children;
+            }
+            if (firstChild != links) throw invalid(file, "the children do not match the child adjacency");
+
+            int[] children = new int[links];
+            adjacency.asIntBuffer().get(children);
+            for (int child : children) {
+                if (child < 0 || child >= count) throw invalid(file, "bad child ID " + child);
+            }
+
+            people.restore(names, nameOffsets, genders, fathers, mothers, spouses, childCounts, children);
+            return header.flags();
+        }
+    }
+
+    /**
+     * Opens a snapshot file in place, without reading its people: its sections are mapped into a read-only store,
+     * which reads each person and name from the file when they are asked for. Only the header and the ends of the name
+     * index are checked; the checksum is not verified, since that would read the whole file, and the store checks the
+     * rest of the values as it reads them.
+     *
+     * @param file the file to open.
+     * @return the store of the people of the snapshot.
+     * @throws IOException if the file cannot be read, is not a valid snapshot, or has no name table.
+     */
+    static SnapshotPersonStore open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Header header = readHeader(file, channel);
+            if (header.slots() == 0) throw invalid(file, "it has no name table, it must be saved again to be opened");
+            int count = header.count();
+            ByteBuffer names = map(channel, HEADER_SIZE, header.nameIndexOffset() - HEADER_SIZE);
+            IntBuffer nameOffsets = map(channel, header.nameIndexOffset(), 4L * (count + 1)).asIntBuffer();
+            int namesEnd = nameOffsets.get(count);
+            if (nameOffsets.get(0) != 0 || namesEnd > names.capacity() || namesEnd < names.capacity() - 3) {
+                throw invalid(file, "the name index does not match the name dictionary");
+            }
+            return new SnapshotPersonStore(file, header.flags(), count, names, nameOffsets,
+                    map(channel, header.recordsOffset(), 4L * RECORD_INTS * count).asIntBuffer(),
+                    map(channel, header.childrenOffset(), 4L * header.links()).asIntBuffer(),
+                    map(channel, header.tableOffset(), 4L * SLOT_INTS * header.slots()).asIntBuffer());
+        }
+    }
+
+    /**
+     * Reads the header of a snapshot, and checks that its sections match the size of the file.
+     *
+     * @param file    the snapshot file.
+     * @param channel the channel of the file.
+     * @return the header.
+     * @throws IOException if the file cannot be read or is not a valid snapshot.
+     */
+    private static Header readHeader(Path file, FileChannel channel) throws IOException {
+        long length = channel.size();
+        if (length < HEADER_SIZE) throw invalid(file, "the file is too short");
+        ByteBuffer header = map(channel, 0, HEADER_SIZE);
+        if (header.getInt() != MAGIC) throw invalid(file, "the file is not a snapshot");
+        int version = header.getInt();
+        if (version < 1 || version > VERSION) throw invalid(file, "unsupported version " + version);
+        int flags = header.getInt();
+        int count = header.getInt();
+        int links = header.getInt();
+        int slots = header.getInt();
+        long namesOffset = header.getLong();
+        long nameIndexOffset = header.getLong();
+        long recordsOffset = header.getLong();
+        long childrenOffset = header.getLong();
+        long checksum = header.getLong();
+        long tableOffset = childrenOffset + 4L * links;
+        if (count < 0 || links < 0 || namesOffset != HEADER_SIZE || nameIndexOffset < namesOffset
+                || recordsOffset != nameIndexOffset + 4L * (count + 1)
+                || childrenOffset != recordsOffset + 4L * RECORD_INTS * count
+                || (version == 1 ? slots != 0 : slots <= count || Integer.bitCount(slots) != 1)
+                || length != tableOffset + 4L * SLOT_INTS * slots) {
+            throw invalid(file, "the sections do not match the size of the file");
+        }
+        return new Header(flags, count, links, slots, nameIndexOffset, recordsOffset, childrenOffset, tableOffset,
+                checksum);
+    }
+
+    /**
+     * Computes the hash of a name in the name table: its {@link String#hashCode()}, spread so that similar names do not
+     * end up in neighbouring slots.
+     *
+     * @param name the name.
+     * @return the hash.
+     */
+    static int nameHash(String name) {
+        int h = name.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Checks if a file starts like a snapshot.
+     *
+     * @param file the file to check.
+     * @return {@code true} if the file starts with {@link TreeSnapshot#MAGIC}, {@code false} otherwise.
+     * @throws IOException if the file cannot be read.
+     */
+    static boolean isSnapshot(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            int read = 0;
+            while (magic.hasRemaining() && read >= 0) read = channel.read(magic);
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Maps a section of a snapshot into memory.
+     *
+     * @param channel  the channel of the snapshot.
+     * @param position the position of the section.
+     * @param size     the size of the section, in bytes.
+     * @return the little-endian buffer of the section.
+     * @throws IOException if the section cannot be mapped.
+     */
+    private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) throw new IOException("A section of the snapshot is larger than 2 GB.");
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Checks that an ID read from a snapshot refers to one of its people, or is {@link PersonStore#NONE}.
+     *
+     * @param file  the snapshot file.
+     * @param id    the ID.
+     * @param count the number of people in the snapshot.
+     * @return the ID.
+     * @throws IOException if the ID is out of range.
+     */
+    private static int checkId(Path file, int id, int count) throws IOException {
+        if (id < PersonStore.NONE || id >= count) throw invalid(file, "bad person ID " + id);
+        return id;
+    }
+
+    /**
+     * Creates the exception that is thrown for a file that is not a valid snapshot.
+     *
+     * @param file   the file.
+     * @param reason the reason the file is not valid.
+     * @return the exception.
+     */
+    static IOException invalid(Path file, String reason) {
+        return new IOException("Invalid snapshot " + file + ": " + reason + ".");
+    }
+
+    // ####################### NESTED TYPES #######################
+
+    /**
+     * The header of a snapshot.
+     *
+     * @param flags           the flags of the snapshot.
+     * @param count           the number of people.
+     * @param links           the number of parent-child links.
+     * @param slots           the number of slots of the name table, or zero if there is none.
+     * @param nameIndexOffset the position of the name index.
+     * @param recordsOffset   the position of the person records.
+     * @param childrenOffset  the position of the child adjacency.
+     * @param tableOffset     the position of the name table.
+     * @param checksum        the CRC-32C checksum of the sections.
+     */
+    private record Header(int flags, int count, int links, int slots, long nameIndexOffset, long recordsOffset,
+                          long childrenOffset, long tableOffset, long checksum) {
+    }
+
+    /**
+     * Writes the sections of a snapshot to a channel through a buffer, keeping their checksum.
+     */
+    private static class Output {
+
+        /**
+         * The channel of the snapshot.
+         */
+        private final FileChannel channel;
+
+        /**
+         * The buffer that is written to the channel when full.
+         */
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        /**
+         * The checksum of everything that has been written.
+         */
+        private final CRC32C crc = new CRC32C();
+
+        /**
+         * The position of the channel the buffer is written at.
+         */
+        private long position;
+
+        /**
+         * Constructor method for the {@link Output} class.
+         *
+         * @param channel  the channel of the snapshot.
+         * @param position the position the first section is written at.
+         */
+        Output(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        /**
+         * Writes an int.
+         *
+         * @param value the int.
+         * @throws IOException if the channel cannot be written.
+         */
+        void putInt(int value) throws IOException {
+            if (buffer.remaining() < Integer.BYTES) flush();
+            buffer.putInt(value);
+        }
+
+        /**
+         * Writes an array of bytes.
+         *
+         * @param bytes the bytes.
+         * @throws IOException if the channel cannot be written.
+         */
+        void putBytes(byte[] bytes) throws IOException {
+            for (int from = 0; from < bytes.length; ) {
+                if (!buffer.hasRemaining()) flush();
+                int length = Math.min(buffer.remaining(), bytes.length - from);
+                buffer.put(bytes, from, length);
+                from += length;
+            }
+        }
+
+        /**
+         * Writes zeros up to the next multiple of four bytes.
+         *
+         * @throws IOException if the channel cannot be written.
+         */
+        void pad() throws IOException {
+            while (position() % Integer.BYTES != 0) {
+                if (!buffer.hasRemaining()) flush();
+                buffer.put((byte) 0);
+            }
+        }
+
+        /**
+         * Writes a section that is filled in place rather than in order, e.g. a hash table, by mapping it into memory.
+         * The section is a new part of the file, so it starts out as zeros.
+         *
+         * @param size   the size of the section, in bytes.
+         * @param filler fills the section, with absolute writes.
+         * @throws IOException if the channel cannot be written.
+         */
+        void putMapped(int size, Consumer<ByteBuffer> filler) throws IOException {
+            flush();
+            MappedByteBuffer section = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+            filler.accept(section.order(ByteOrder.LITTLE_ENDIAN));
+            section.force();
+            crc.update(section.duplicate());
+            position += size;
+        }
+
+        /**
+         * Writes the buffer to the channel.
+         *
+         * @throws IOException if the channel cannot be written.
+         */
+        void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) position += channel.write(buffer, position);
+            buffer.clear();
+        }
+
+        /**
+         * Returns the position the next byte is written at.
+         *
+         * @return the position.
+         */
+        long position() {
+            return position + buffer.position();
+        }
+
+        /**
+         * Returns the checksum of everything that has been written and flushed.
+         *
+         * @return the CRC-32C checksum.
+         */
+        long checksum() {
+            return crc.getValue();
+        }
+    }
+}
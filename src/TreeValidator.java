@@ -0,0 +1,361 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * This class validates the links of the people of a {@link PersonStore}, and finds the generation of every person,
+ * i.e. the length of the longest line of parents above them. The generations are kept in the store, where other
+ * queries use them to rule out people who cannot be ancestors of each other.
+ * <p>
+ * The people are split into families, i.e. the connected components of the tree, as kept by a {@link ComponentIndex}.
+ * Each family is validated on its own, in parallel with the others. The generations are layered with Kahn's
+ * algorithm: the people without parents are in generation zero, and a person is layered once both their parents are,
+ * one generation after the later of the two. The people that are never layered are their own ancestors, or descend
+ * from someone who is, and the cycles among them are found by following their parents that were not layered either.
+ * The links of each person are checked in the same pass, so all the problems of the tree are found at once, in time
+ * linear in the number of people and links.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+class TreeValidator {
+
+    // ####################### CONSTANTS #######################
+
+    /**
+     * The flag of a person whose father has them among their children.
+     */
+    private static final byte FATHER_LINKED = 1;
+
+    /**
+     * The flag of a person whose mother has them among their children.
+     */
+    private static final byte MOTHER_LINKED = 2;
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The people that are validated.
+     */
+    private final PersonStore people;
+
+    /**
+     * The number of people that are validated.
+     */
+    private final int count;
+
+    /**
+     * The people of each family, one family after the other, each in order of ID.
+     */
+    private final int[] members;
+
+    /**
+     * The index in {@link TreeValidator#members} where each family starts, followed by the number of people.
+     */
+    private final int[] families;
+
+    /**
+     * The index in {@link TreeValidator#children} where the children of each person start, followed by the number of
+     * links.
+     */
+    private final int[] childStarts;
+
+    /**
+     * The children of each person, i.e. the people whose father or mother they are, one person after the other. A
+     * person who is both the father and the mother of someone has them twice.
+     */
+    private final int[] children;
+
+    /**
+     * The generation of each person, or -1 for the people that were not layered.
+     */
+    private final int[] generations;
+
+    /**
+     * The number of parents of each person that have not been layered yet.
+     */
+    private final byte[] pending;
+
+    /**
+     * The flags of the parents of each person that have them among their children.
+     */
+    private final byte[] links;
+
+    /**
+     * The people of each family in the order they were layered.
+     */
+    private final int[] queue;
+
+    /**
+     * The walk that first reached each person that was not layered, while looking for cycles.
+     */
+    private final int[] walks;
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link TreeValidator} class, which groups the people into families and indexes the
+     * children of every person.
+     *
+     * @param people     the people to validate.
+     * @param components the connected components of the people, which are their families; must be up to date.
+     */
+    private TreeValidator(PersonStore people, ComponentIndex components) {
+        this.people = people;
+        this.count = people.size();
+        int[][] grouped = components.members();
+        members = grouped[0];
+        families = grouped[1];
+        int[] childCounts = new int[count + 1];
+        for (int id = 0; id < count; id++) {
+            if (people.father(id) != PersonStore.NONE) childCounts[people.father(id)]++;
+            if (people.mother(id) != PersonStore.NONE) childCounts[people.mother(id)]++;
+        }
+        childStarts = new int[count + 1];
+        for (int id = 0; id < count; id++) childStarts[id + 1] = childStarts[id] + childCounts[id];
+        children = new int[childStarts[count]];
+        int[] next = childCounts;
+        System.arraycopy(childStarts, 0, next, 0, count);
+        for (int id = 0; id < count; id++) {
+            if (people.father(id) != PersonStore.NONE) children[next[people.father(id)]++] = id;
+            if (people.mother(id) != PersonStore.NONE) children[next[people.mother(id)]++] = id;
+        }
+        generations = new int[count];
+        pending = new byte[count];
+        links = new byte[count];
+        queue = new int[count];
+        walks = new int[count];
+    }
+
+    // ######################### METHODS #########################
+
+    /**
+     * Validates the links of the people of a store, and sets their generations in the store. Must not run while the
+     * links of the store change.
+     *
+     * @param people     the people to validate.
+     * @param components the connected components of the people; must be up to date.
+     * @return the report of the validation.
+     */
+    static ValidationReport validate(PersonStore people, ComponentIndex components) {
+        TreeValidator validator = new TreeValidator(people, components);
+        int familyCount = validator.families.length - 1;
+        List<ValidationReport.Problem> problems = IntStream.range(0, familyCount).parallel()
+                .mapToObj(validator::validateFamily)
+                .flatMap(List::stream)
+                .toList();
+        int deepest = -1;
+        for (int generation : validator.generations) deepest = Math.max(deepest, generation);
+        people.setGenerations(validator.generations);
+        return new ValidationReport(validator.count, deepest + 1, familyCount, problems);
+    }
+
+    /**
+     * Validates the people of a family, and finds their generations. Families share no people, so they can be
+     * validated in parallel.
+     *
+     * @param family the index of the family.
+     * @return the problems that were found: the cycles, then the problems of the children, the parents and the
+     * spouses of the people.
+     */
+    private List<ValidationReport.Problem> validateFamily(int family) {
+        int start = families[family];
+        int end = families[family + 1];
+        List<ValidationReport.Problem> problems = new ArrayList<>(0);
+        int tail = layer(start, end);
+        if (tail < end) findCycles(start, end, problems);
+        for (int i = start; i < end; i++) checkChildren(members[i], problems);
+        for (int i = start; i < end; i++) checkParents(members[i], problems);
+        for (int i = start; i < end; i++) checkSpouse(members[i], problems);
+        return problems;
+    }
+
+    /**
+     * Layers the people of a family into generations with Kahn's algorithm. People that are not layered are left with
+     * parents pending.
+     *
+     * @param start the index of the first person of the family in {@link TreeValidator#members}.
+     * @param end   the index after the last person of the family.
+     * @return the index in {@link TreeValidator#queue} after the last person that was layered.
+     */
+    private int layer(int start, int end) {
+        int tail = start;
+        for (int i = start; i < end; i++) {
+            int id = members[i];
+            pending[id] = (byte) ((people.father(id) == PersonStore.NONE ? 0 : 1)
+                    + (people.mother(id) == PersonStore.NONE ? 0 : 1));
+            generations[id] = pending[id] == 0 ? 0 : -1;
+            if (pending[id] == 0) queue[tail++] = id;
+        }
+        for (int head = start; head < tail; head++) {
+            int id = queue[head];
+            for (int c = childStarts[id], last = childStarts[id + 1]; c < last; c++) {
+                int child = children[c];
+                generations[child] = Math.max(generations[child], generations[id] + 1);
+                if (--pending[child] == 0) queue[tail++] = child;
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * Finds the cycles among the people of a family that were not layered, and puts them in generation -1. Each of
+     * them has a parent that was not layered either, so following such parents from any of them always ends up going round a cycle. The walks mark
+     * the people they visit in {@link TreeValidator#walks}, so every person is visited once, and every cycle is
+     * reported once.
+     *
+     * @param start    the index of the first person of the family in {@link TreeValidator#members}.
+     * @param end      the index after the last person of the family.
+     * @param problems the problems of the family, to add the cycles to.
+     */
+    private void findCycles(int start, int end, List<ValidationReport.Problem> problems) {
+        for (int i = start; i < end; i++) {
+            int id = members[i];
+            if (pending[id] > 0) {
+                generations[id] = -1;
+                walks[id] = -1;
+            }
+        }
+        for (int i = start; i < end; i++) {
+            int walk = members[i];
+            if (pending[walk] == 0 || walks[walk] != -1) continue;
+            int id = walk;
+            while (walks[id] == -1) {
+                walks[id] = walk;
+                id = unlayeredParent(id);
+            }
+            if (walks[id] == walk) problems.add(cycle(id));
+        }
+    }
+
+    /**
+     * Returns a parent of a person that was not layered.
+     *
+     * @param id the ID of a person that was not layered.
+     * @return the ID of their father, if he was not layered, or else of their mother.
+     */
+    private int unlayeredParent(int id) {
+        int father = people.father(id);
+        return father != PersonStore.NONE && pending[father] > 0 ? father : people.mother(id);
+    }
+
+    /**
+     * Describes a cycle, as the path from a person down to themselves, in the format of a {@link Connection}.
+     *
+     * @param id the ID of a person on the cycle.
+     * @return the problem.
+     */
+    private ValidationReport.Problem cycle(int id) {
+        List<Integer> ids = new ArrayList<>();
+        int ancestor = id;
+        do {
+            ids.add(ancestor);
+            ancestor = unlayeredParent(ancestor);
+        } while (ancestor != id);
+        ids.add(id);
+        List<String> names = new ArrayList<>(ids.size() - 1);
+        StringBuilder path = new StringBuilder(people.name(id));
+        for (int i = ids.size() - 1; i > 0; i--) {
+            int parent = ids.get(i);
+            int child = ids.get(i - 1);
+            names.add(people.name(parent));
+            Relation relation = people.father(child) == parent ? Relation.FATHER : Relation.MOTHER;
+            path.append(" -").append(relation).append("-> ").append(people.name(child));
+        }
+        return new ValidationReport.Problem(ValidationReport.Kind.CYCLE, names,
+                people.name(id) + " is their own ancestor: " + path);
+    }
+
+    /**
+     * Checks the children of a person, and flags the ones whose father or mother the person is. The children that are
+     * flagged are in the same family as the person, so no other family writes their flags.
+     *
+     * @param id       the ID of the person.
+     * @param problems the problems of the family, to add to.
+     */
+    private void checkChildren(int id, List<ValidationReport.Problem> problems) {
+        for (int c = 0, childCount = people.childCount(id); c < childCount; c++) {
+            int child = people.child(id, c);
+            boolean father = people.father(child) == id;
+            boolean mother = people.mother(child) == id;
+            if (father) links[child] |= FATHER_LINKED;
+            if (mother) links[child] |= MOTHER_LINKED;
+            if (!father && !mother) {
+                problems.add(problem(ValidationReport.Kind.CONFLICTING_PARENT, id, child,
+                        "%s has %s among their children, but is neither their father nor their mother."));
+            }
+        }
+    }
+
+    /**
+     * Checks the father and mother of a person, once their children have been checked.
+     *
+     * @param id       the ID of the person.
+     * @param problems the problems of the family, to add to.
+     */
+    private void checkParents(int id, List<ValidationReport.Problem> problems) {
+        int father = people.father(id);
+        if (father != PersonStore.NONE) {
+            if (people.gender(father) != Gender.MAN) {
+                problems.add(problem(ValidationReport.Kind.FATHER_NOT_MAN, father, id,
+                        "%s is the father of %s, but is not a man."));
+            }
+            if ((links[id] & FATHER_LINKED) == 0) {
+                problems.add(problem(ValidationReport.Kind.ONE_WAY_PARENT, id, father,
+                        "%s has %s as their father, who does not have them among their children."));
+            }
+        }
+        int mother = people.mother(id);
+        if (mother != PersonStore.NONE) {
+            if (people.gender(mother) != Gender.WOMAN) {
+                problems.add(problem(ValidationReport.Kind.MOTHER_NOT_WOMAN, mother, id,
+                        "%s is the mother of %s, but is not a woman."));
+            }
+            if ((links[id] & MOTHER_LINKED) == 0) {
+                problems.add(problem(ValidationReport.Kind.ONE_WAY_PARENT, id, mother,
+                        "%s has %s as their mother, who does not have them among their children."));
+            }
+        }
+    }
+
+    /**
+     * Checks the spouse of a person.
+     *
+     * @param id       the ID of the person.
+     * @param problems the problems of the family, to add to.
+     */
+    private void checkSpouse(int id, List<ValidationReport.Problem> problems) {
+        int spouse = people.spouse(id);
+        if (spouse == PersonStore.NONE) return;
+        if (spouse == id) {
+            problems.add(new ValidationReport.Problem(ValidationReport.Kind.OWN_SPOUSE, List.of(people.name(id)),
+                    people.name(id) + " is married to themselves."));
+        } else if (people.spouse(spouse) != id) {
+            int other = people.spouse(spouse);
+            if (other == PersonStore.NONE) {
+                problems.add(problem(ValidationReport.Kind.ONE_WAY_SPOUSE, id, spouse,
+                        "%s is married to %s, who is not married."));
+            } else {
+                problems.add(new ValidationReport.Problem(ValidationReport.Kind.ONE_WAY_SPOUSE,
+                        List.of(people.name(id), people.name(spouse), people.name(other)),
+                        people.name(id) + " is married to " + people.name(spouse) + ", who is married to "
+                                + people.name(other) + "."));
+            }
+        }
+    }
+
+    /**
+     * Describes a problem between two people.
+     *
+     * @param kind   the kind of the problem.
+     * @param id1    the ID of the person the problem is about.
+     * @param id2    the ID of the other person.
+     * @param format the description, with the names of the two people in place of two {@code %s}.
+     * @return the problem.
+     */
+    private ValidationReport.Problem problem(ValidationReport.Kind kind, int id1, int id2, String format) {
+        String name1 = people.name(id1);
+        String name2 = people.name(id2);
+        return new ValidationReport.Problem(kind, List.of(name1, name2), String.format(format, name1, name2));
+    }
+}
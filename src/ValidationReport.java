@@ -0,0 +1,215 @@
+import java.util.List;
+
+/**
+ * This class represents the outcome of a validation of a {@link GenealogicalTree}: the number of generations and
+ * families of the tree, and every problem that was found in its links, e.g. a person who is their own ancestor, or a
+ * mother who is a man. See {@link GenealogicalTree#validate()}.
+ *
+ * @author George Gkonis
+ * @version 1.0
+ */
+public final class ValidationReport {
+
+    // ####################### ATTRIBUTES #######################
+
+    /**
+     * The number of people in the tree.
+     */
+    private final int people;
+
+    /**
+     * The number of generations of the people whose generation is known.
+     */
+    private final int generations;
+
+    /**
+     * The number of families, i.e. of groups of people that are linked through parents, children and spouses.
+     */
+    private final int families;
+
+    /**
+     * The problems that were found.
+     */
+    private final List<Problem> problems;
+
+    // ####################### CONSTRUCTORS #######################
+
+    /**
+     * Constructor method for the {@link ValidationReport} class.
+     *
+     * @param people      the number of people in the tree.
+     * @param generations the number of generations of the people whose generation is known.
+     * @param families    the number of families.
+     * @param problems    the problems that were found.
+     */
+    ValidationReport(int people, int generations, int families, List<Problem> problems) {
+        this.people = people;
+        this.generations = generations;
+        this.families = families;
+        this.problems = List.copyOf(problems);
+    }
+
+    // ####################### METHODS #######################
+
+    /**
+     * Checks if the tree is valid.
+     *
+     * @return {@code true} if no problems were found, {@code false} otherwise.
+     */
+    public boolean isValid() {
+        return problems.isEmpty();
+    }
+
+    /**
+     * Getter method for the number of people in the tree.
+     *
+     * @return the number of people.
+     */
+    public int getPeople() {
+        return people;
+    }
+
+    /**
+     * Getter method for the number of generations.
+     *
+     * @return the number of generations of the people whose generation is known.
+     */
+    public int getGenerations() {
+        return generations;
+    }
+
+    /**
+     * Getter method for the number of families, i.e. of groups of people that are linked through parents, children
+     * and spouses. A person without any of them is a family of their own. See {@link TreeComponent}.
+     *
+     * @return the number of families.
+     */
+    public int getFamilies() {
+        return families;
+    }
+
+    /**
+     * Getter method for the problems that were found.
+     *
+     * @return the problems, grouped by family.
+     */
+    public List<Problem> getProblems() {
+        return problems;
+    }
+
+    /**
+     * Overrides the {@link Object#toString()} method, to return a summary of the validation, followed by one line per
+     * problem.
+     *
+     * @return the summary and the problems.
+     */
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(people).append(" people in ").append(generations).append(" generations and ")
+                .append(families).append(" families, ").append(problems.size())
+                .append(problems.size() == 1 ? " problem" : " problems");
+        for (Problem problem : problems) report.append('\n').append(problem);
+        return report.toString();
+    }
+
+    // ####################### NESTED TYPES #######################
+
+    /**
+     * The kinds of problems a validation finds.
+     */
+    public enum Kind {
+        /**
+         * A person is their own ancestor.
+         */
+        CYCLE,
+        /**
+         * The father of a person is not a man.
+         */
+        FATHER_NOT_MAN,
+        /**
+         * The mother of a person is not a woman.
+         */
+        MOTHER_NOT_WOMAN,
+        /**
+         * A person has a child whose father and mother are both someone else, e.g. after a second father of the child
+         * replaced the first.
+         */
+        CONFLICTING_PARENT,
+        /**
+         * A person has a father or mother who does not have them among their children.
+         */
+        ONE_WAY_PARENT,
+        /**
+         * A person is married to someone who is married to someone else, or to no one, e.g. after a second marriage
+         * of their spouse.
+         */
+        ONE_WAY_SPOUSE,
+        /**
+         * A person is married to themselves.
+         */
+        OWN_SPOUSE
+    }
+
+    /**
+     * A problem that was found in the links of the tree.
+     */
+    public static final class Problem {
+
+        /**
+         * The kind of the problem.
+         */
+        private final Kind kind;
+
+        /**
+         * The names of the people involved, starting with the person the problem is about.
+         */
+        private final List<String> names;
+
+        /**
+         * The description of the problem.
+         */
+        private final String message;
+
+        /**
+         * Constructor method for the {@link Problem} class.
+         *
+         * @param kind    the kind of the problem.
+         * @param names   the names of the people involved, starting with the person the problem is about.
+         * @param message the description of the problem.
+         */
+        Problem(Kind kind, List<String> names, String message) {
+            this.kind = kind;
+            this.names = List.copyOf(names);
+            this.message = message;
+        }
+
+        /**
+         * Getter method for the kind of the problem.
+         *
+         * @return the kind of the problem.
+         */
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * Getter method for the names of the people involved in the problem.
+         *
+         * @return the names, starting with the person the problem is about.
+         */
+        public List<String> getNames() {
+            return names;
+        }
+
+        /**
+         * Overrides the {@link Object#toString()} method, to return the description of the problem.
+         *
+         * @return the description of the problem.
+         */
+        @Override
+        public String toString() {
+            return message;
+        }
+    }
+}